@@ -17,21 +17,52 @@
 
 package org.sweble.wikitext.articlecruncher;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
 import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
 
+/**
+ * Takes processed jobs and decides where they go next.
+ * 
+ * Successfully processed jobs go to the out tray. Failed jobs are sent back
+ * to the in tray until they have failed {@code maxRetries + 1} times. Jobs
+ * that exhausted their retries go to the dead letter tray, if there is one,
+ * and to the out tray otherwise.
+ * 
+ * Retried jobs are never put into the in tray with a blocking call: the in
+ * tray only drains if processed jobs are taken from the gatherer, so waiting
+ * for room in the in tray could deadlock the pipeline. Jobs that don't fit
+ * are kept in a backlog and offered again later.
+ */
 public class Gatherer
 		extends
 			WorkerBase
 {
+	private static final int MAX_BATCH_SIZE = 64;
+	
+	private static final long RETRY_BACKLOG_POLL_MILLIS = 10;
+	
+	// =========================================================================
+	
 	private final BlockingQueue<Job> inTray;
 	
 	private final BlockingQueue<Job> processedJobs;
 	
 	private final BlockingQueue<Job> outTray;
 	
+	private final BlockingQueue<Job> deadLetters;
+	
+	private final int maxRetries;
+	
+	private final JobCounters counters;
+	
+	private final LinkedList<Job> retryBacklog = new LinkedList<Job>();
+	
 	// =========================================================================
 	
 	public Gatherer(
@@ -39,6 +70,25 @@ public class Gatherer
 			BlockingQueue<Job> inTray,
 			BlockingQueue<Job> processedJobs,
 			BlockingQueue<Job> outTray)
+	{
+		this(abortHandler, inTray, processedJobs, outTray, null, 0, new JobCounters());
+	}
+	
+	/**
+	 * @param deadLetters
+	 *            Receives jobs that failed more than {@code maxRetries}
+	 *            times. If {@code null} these jobs go to the out tray.
+	 * @param maxRetries
+	 *            How often a failed job is processed again.
+	 */
+	public Gatherer(
+			AbortHandler abortHandler,
+			BlockingQueue<Job> inTray,
+			BlockingQueue<Job> processedJobs,
+			BlockingQueue<Job> outTray,
+			BlockingQueue<Job> deadLetters,
+			int maxRetries,
+			JobCounters counters)
 	{
 		super(getClassName(), abortHandler);
 		
@@ -47,6 +97,9 @@ public class Gatherer
 		this.inTray = inTray;
 		this.processedJobs = processedJobs;
 		this.outTray = outTray;
+		this.deadLetters = deadLetters;
+		this.maxRetries = maxRetries;
+		this.counters = counters;
 	}
 	
 	private static String getClassName()
@@ -61,24 +114,60 @@ public class Gatherer
 	@Override
 	protected void work() throws Throwable
 	{
+		List<Job> batch = new ArrayList<Job>(MAX_BATCH_SIZE);
 		while (true)
 		{
-			Job processed = processedJobs.take();
-			++count;
-			
-			processed.signOff(getClass(), null);
+			offerRetries();
 			
-			// TODO: Decide what to do with it.
-			boolean tryAgain = false;
-			
-			if (tryAgain)
+			// Wait for one job, then take whatever else has piled up.
+			if (retryBacklog.isEmpty())
 			{
-				inTray.put(processed);
+				batch.add(processedJobs.take());
 			}
 			else
 			{
-				outTray.put(processed);
+				Job job = processedJobs.poll(RETRY_BACKLOG_POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (job == null)
+					continue;
+				batch.add(job);
+			}
+			processedJobs.drainTo(batch, MAX_BATCH_SIZE - 1);
+			
+			for (Job processed : batch)
+			{
+				++count;
+				
+				processed.signOff(getClass(), null);
+				
+				if (processed.getState() != JobProcessingState.FAILED)
+				{
+					counters.succeeded();
+					outTray.put(processed);
+					continue;
+				}
+				
+				counters.failed(processed);
+				
+				if (processed.getFailureCount() <= maxRetries)
+				{
+					counters.retried();
+					if (retryBacklog.isEmpty() && inTray.offer(processed))
+						continue;
+					retryBacklog.add(processed);
+				}
+				else if (deadLetters != null)
+				{
+					counters.deadLettered();
+					deadLetters.put(processed);
+				}
+				else
+				{
+					counters.givenUp();
+					outTray.put(processed);
+				}
 			}
+			
+			batch.clear();
 		}
 	}
 	
@@ -86,5 +175,21 @@ public class Gatherer
 	protected void after()
 	{
 		info(getClass().getSimpleName() + " counts " + count + " items");
+		info(getClass().getSimpleName() + " counts " + counters);
+		
+		if (!retryBacklog.isEmpty())
+			warn(getClass().getSimpleName() + " dropped " + retryBacklog.size() + " jobs waiting for retry");
+	}
+	
+	// =========================================================================
+	
+	private void offerRetries()
+	{
+		while (!retryBacklog.isEmpty())
+		{
+			if (!inTray.offer(retryBacklog.peek()))
+				break;
+			retryBacklog.poll();
+		}
 	}
 }
@@ -117,8 +117,31 @@ public abstract class Job
 		history = new JobHistory(history, exception);
 	}
 	
+	/**
+	 * Called by the storer once the job has left the processing pipeline for
+	 * good. Override this method to release resources held by the payload of
+	 * the job (e.g. pooled buffers). The default implementation does nothing.
+	 */
+	public void completed()
+	{
+	}
+	
 	// =========================================================================
 	
+	/**
+	 * Returns how many processing runs of this job failed.
+	 */
+	public synchronized int getFailureCount()
+	{
+		int failures = 0;
+		for (JobHistory h = history; h != null; h = h.getPrevious())
+		{
+			if (h.getState() == JobProcessingState.FAILED)
+				++failures;
+		}
+		return failures;
+	}
+	
 	/**
 	 * Returns the state of this job.
 	 */
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what happened to the jobs that passed the gatherer.
+ */
+public class JobCounters
+{
+	private final AtomicLong succeeded = new AtomicLong(0);
+	
+	private final AtomicLong failed = new AtomicLong(0);
+	
+	private final AtomicLong timeouts = new AtomicLong(0);
+	
+	private final AtomicLong retries = new AtomicLong(0);
+	
+	private final AtomicLong deadLetters = new AtomicLong(0);
+	
+	private final AtomicLong givenUp = new AtomicLong(0);
+	
+	// =========================================================================
+	
+	public long getSucceeded()
+	{
+		return succeeded.get();
+	}
+	
+	/**
+	 * The number of failed processing attempts, including timeouts.
+	 */
+	public long getFailed()
+	{
+		return failed.get();
+	}
+	
+	public long getTimeouts()
+	{
+		return timeouts.get();
+	}
+	
+	public long getRetries()
+	{
+		return retries.get();
+	}
+	
+	/**
+	 * The number of jobs that exhausted their retries and were handed to the
+	 * dead-letter storer.
+	 */
+	public long getDeadLetters()
+	{
+		return deadLetters.get();
+	}
+	
+	/**
+	 * The number of jobs that exhausted their retries and were passed on to
+	 * the regular storers because no dead-letter storer is configured.
+	 */
+	public long getGivenUp()
+	{
+		return givenUp.get();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"%d succeeded, %d failed (%d timed out), %d retried, %d dead letters, %d given up",
+				getSucceeded(),
+				getFailed(),
+				getTimeouts(),
+				getRetries(),
+				getDeadLetters(),
+				getGivenUp());
+	}
+	
+	// =========================================================================
+	
+	void succeeded()
+	{
+		succeeded.incrementAndGet();
+	}
+	
+	void failed(Job job)
+	{
+		failed.incrementAndGet();
+		if (job.getException() instanceof JobTimeoutException)
+			timeouts.incrementAndGet();
+	}
+	
+	void retried()
+	{
+		retries.incrementAndGet();
+	}
+	
+	void deadLettered()
+	{
+		deadLetters.incrementAndGet();
+	}
+	
+	void givenUp()
+	{
+		givenUp.incrementAndGet();
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns small integer ids to the classes that sign off jobs. Compact job
+ * traces record these ids instead of the classes themselves.
+ */
+public final class JobStage
+{
+	private static final ConcurrentHashMap<Class<?>, Integer> ids =
+			new ConcurrentHashMap<Class<?>, Integer>();
+	
+	private static final List<Class<?>> stages = new ArrayList<Class<?>>();
+	
+	// =========================================================================
+	
+	private JobStage()
+	{
+	}
+	
+	// =========================================================================
+	
+	public static int idOf(Class<?> stage)
+	{
+		Integer id = ids.get(stage);
+		if (id != null)
+			return id;
+		
+		synchronized (stages)
+		{
+			id = ids.get(stage);
+			if (id == null)
+			{
+				id = stages.size();
+				stages.add(stage);
+				ids.put(stage, id);
+			}
+			return id;
+		}
+	}
+	
+	public static Class<?> classOf(int id)
+	{
+		synchronized (stages)
+		{
+			return stages.get(id);
+		}
+	}
+	
+	public static int count()
+	{
+		synchronized (stages)
+		{
+			return stages.size();
+		}
+	}
+}
@@ -18,11 +18,27 @@
 package org.sweble.wikitext.articlecruncher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Records which stages of the pipeline have signed off a job and when.
+ * 
+ * In {@link TraceMode#COMPACT} mode a trace stores the stage id (see
+ * {@link JobStage}) and the {@link System#nanoTime()} of every sign-off in a
+ * single primitive array. In {@link TraceMode#VERBOSE} mode it additionally
+ * keeps a {@link Signer} object with the message that was passed to
+ * {@link #signOff(Class, String)}.
+ */
 public class JobTrace
 {
+	public static enum TraceMode
+	{
+		COMPACT,
+		VERBOSE
+	}
+	
 	public static final class Signer
 	{
 		private Class<?> signer;
@@ -58,19 +74,70 @@ public class JobTrace
 	
 	// =========================================================================
 	
+	/**
+	 * Generator, distributor, worker, gatherer and storer sign every job.
+	 */
+	private static final int INITIAL_SIGNATURES = 6;
+	
 	private static AtomicLong jobIdCounter = new AtomicLong(0);
 	
+	private static volatile TraceMode traceMode = TraceMode.COMPACT;
+	
+	// =========================================================================
+	
 	private final long jobId = jobIdCounter.incrementAndGet();
 	
+	private final boolean verbose = (traceMode == TraceMode.VERBOSE);
+	
+	/**
+	 * Pairs of stage id and time stamp.
+	 */
+	private long[] signatures;
+	
+	private int signatureCount;
+	
 	private List<Signer> signers;
 	
+	private long registeredAt;
+	
+	// =========================================================================
+	
+	/**
+	 * Sets the mode of all traces created from now on.
+	 */
+	public static void setTraceMode(TraceMode mode)
+	{
+		traceMode = mode;
+	}
+	
+	public static TraceMode getTraceMode()
+	{
+		return traceMode;
+	}
+	
 	// =========================================================================
 	
 	public void signOff(Class<?> signer, String signature)
 	{
-		if (signers == null)
-			signers = new ArrayList<Signer>();
-		signers.add(new Signer(signer, signature));
+		if (signatures == null)
+		{
+			signatures = new long[INITIAL_SIGNATURES * 2];
+		}
+		else if (signatureCount * 2 == signatures.length)
+		{
+			signatures = Arrays.copyOf(signatures, signatures.length * 2);
+		}
+		
+		signatures[signatureCount * 2] = JobStage.idOf(signer);
+		signatures[signatureCount * 2 + 1] = System.nanoTime();
+		++signatureCount;
+		
+		if (verbose)
+		{
+			if (signers == null)
+				signers = new ArrayList<Signer>();
+			signers.add(new Signer(signer, signature));
+		}
 	}
 	
 	public long getJobId()
@@ -78,9 +145,60 @@ public class JobTrace
 		return jobId;
 	}
 	
+	/**
+	 * Returns the signers of this job. In compact mode the signers are
+	 * reconstructed from the stage ids and carry no message.
+	 */
 	public List<Signer> getSigners()
 	{
-		return signers;
+		if (verbose || signatures == null)
+			return signers;
+		
+		List<Signer> result = new ArrayList<Signer>(signatureCount);
+		for (int i = 0; i < signatureCount; ++i)
+			result.add(new Signer(JobStage.classOf(getStageId(i)), null));
+		return result;
+	}
+	
+	public int getSignatureCount()
+	{
+		return signatureCount;
+	}
+	
+	public int getStageId(int signature)
+	{
+		checkSignature(signature);
+		return (int) signatures[signature * 2];
+	}
+	
+	/**
+	 * The value of {@link System#nanoTime()} when the given signature was
+	 * made.
+	 */
+	public long getSignedAt(int signature)
+	{
+		checkSignature(signature);
+		return signatures[signature * 2 + 1];
+	}
+	
+	/**
+	 * The value of {@link System#nanoTime()} when this trace was added to a
+	 * {@link JobTraceSet}.
+	 */
+	public long getRegisteredAt()
+	{
+		return registeredAt;
+	}
+	
+	void setRegisteredAt(long registeredAt)
+	{
+		this.registeredAt = registeredAt;
+	}
+	
+	private void checkSignature(int signature)
+	{
+		if (signature < 0 || signature >= signatureCount)
+			throw new IndexOutOfBoundsException("No such signature: " + signature);
 	}
 	
 	// =========================================================================
@@ -118,14 +236,31 @@ public class JobTrace
 		
 		b.append(String.format("[ Job Trace: Job Id = %9d", jobId));
 		
-		boolean first = true;
 		b.append("; Signed by = ");
-		for (Signer signer : signers)
+		if (verbose && signers != null)
+		{
+			boolean first = true;
+			for (Signer signer : signers)
+			{
+				if (!first)
+					b.append(", ");
+				b.append(signer.toString());
+				first = false;
+			}
+		}
+		else
 		{
-			if (!first)
-				b.append(", ");
-			b.append(signer.toString());
-			first = false;
+			for (int i = 0; i < signatureCount; ++i)
+			{
+				if (i > 0)
+					b.append(", ");
+				
+				b.append(JobStage.classOf(getStageId(i)).getSimpleName());
+				
+				// Time since the previous sign-off
+				if (i > 0)
+					b.append(String.format(" (+%dus)", (getSignedAt(i) - getSignedAt(i - 1)) / 1000));
+			}
 		}
 		
 		b.append(" ]");
@@ -17,36 +17,146 @@
 
 package org.sweble.wikitext.articlecruncher;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import org.sweble.wikitext.articlecruncher.utils.StripedCounter;
+
+/**
+ * Tracks the jobs that are in flight in the Nexus.
+ * 
+ * Job generators add the trace of each job they emit and storers remove it
+ * once the job is done. Traces are kept in a concurrent set and counted with a
+ * striped counter, so that adding and removing traces does not contend on a
+ * single lock. Removing a trace only wakes up threads in
+ * {@link #waitForCompletion(int)} when the last trace is gone.
+ * 
+ * The sign-offs of every removed trace are added to a
+ * {@link StageLatencyHistogram}.
+ */
 public class JobTraceSet
 {
-	private Set<JobTrace> traces = new HashSet<JobTrace>();
+	private final Set<JobTrace> traces;
+	
+	private final StripedCounter count = new StripedCounter();
+	
+	private final StageLatencyHistogram latencies = new StageLatencyHistogram();
+	
+	private final Object completionMonitor = new Object();
+	
+	private volatile int waitingForCompletion = 0;
+	
+	// =========================================================================
+	
+	public JobTraceSet()
+	{
+		int concurrencyLevel = Runtime.getRuntime().availableProcessors() * 4;
+		
+		this.traces = Collections.newSetFromMap(
+				new ConcurrentHashMap<JobTrace, Boolean>(1024, 0.75f, concurrencyLevel));
+	}
 	
 	// =========================================================================
 	
-	public synchronized void add(JobTrace trace)
+	public void add(JobTrace trace)
 	{
-		traces.add(trace);
+		trace.setRegisteredAt(System.nanoTime());
+		if (traces.add(trace))
+			count.increment();
 	}
 	
-	public synchronized boolean remove(JobTrace trace)
+	public boolean remove(JobTrace trace)
 	{
 		boolean removed = traces.remove(trace);
-		notifyAll();
+		if (removed)
+		{
+			count.decrement();
+			latencies.record(trace);
+			
+			if (waitingForCompletion > 0 && isEmpty())
+			{
+				synchronized (completionMonitor)
+				{
+					completionMonitor.notifyAll();
+				}
+			}
+		}
 		return removed;
 	}
 	
-	public synchronized Set<JobTrace> getTraces()
+	public StageLatencyHistogram getLatencies()
+	{
+		return latencies;
+	}
+	
+	/**
+	 * Returns a read-only, live view of the traces of all jobs in flight.
+	 * Iterating over the view does not block adding and removing traces.
+	 */
+	public Set<JobTrace> getTraces()
 	{
 		return Collections.unmodifiableSet(traces);
 	}
 	
-	public synchronized void waitForCompletion(int timeoutInSeconds) throws InterruptedException
+	/**
+	 * The number of jobs in flight. The number is exact once job generators
+	 * stopped adding traces.
+	 */
+	public long size()
+	{
+		return count.sum();
+	}
+	
+	public boolean isEmpty()
+	{
+		return count.sum() <= 0 && traces.isEmpty();
+	}
+	
+	/**
+	 * Returns the traces of all jobs that have been in flight for longer than
+	 * the given amount of time. Traces are inspected one by one without
+	 * locking the set.
+	 */
+	public List<JobTrace> getStuckTraces(long olderThan, TimeUnit unit)
+	{
+		long threshold = System.nanoTime() - unit.toNanos(olderThan);
+		
+		List<JobTrace> stuck = new ArrayList<JobTrace>();
+		for (JobTrace trace : traces)
+		{
+			if (trace.getRegisteredAt() - threshold < 0)
+				stuck.add(trace);
+		}
+		return stuck;
+	}
+	
+	/**
+	 * Blocks until all traces have been removed. Must be called after the job
+	 * generators have stopped adding traces.
+	 * 
+	 * @param timeoutInSeconds
+	 *            The maximum time to wait before checking again.
+	 */
+	public void waitForCompletion(int timeoutInSeconds) throws InterruptedException
 	{
-		while (!traces.isEmpty())
-			wait(timeoutInSeconds * 1000);
+		synchronized (completionMonitor)
+		{
+			++waitingForCompletion;
+			try
+			{
+				// Check after registering, a remover that empties the set
+				// afterwards is guaranteed to see us waiting
+				while (!isEmpty())
+					completionMonitor.wait(timeoutInSeconds * 1000L);
+			}
+			finally
+			{
+				--waitingForCompletion;
+			}
+		}
 	}
 }
@@ -21,12 +21,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
 import org.sweble.wikitext.articlecruncher.utils.ExecutorType;
+import org.sweble.wikitext.articlecruncher.utils.MeteredTray;
 import org.sweble.wikitext.articlecruncher.utils.MyExecutorService;
+import org.sweble.wikitext.articlecruncher.utils.TrayType;
 import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
 import org.sweble.wikitext.articlecruncher.utils.WorkerLauncher;
 import org.sweble.wikitext.articlecruncher.utils.WorkerSynchronizer;
@@ -48,11 +50,17 @@ public class Nexus
 	
 	// =========================================================================
 	
-	private BlockingQueue<Job> inTray;
+	private MeteredTray<Job> inTray;
 	
-	private BlockingQueue<Job> processedJobs;
+	private MeteredTray<Job> processedJobs;
 	
-	private BlockingQueue<Job> outTray;
+	private MeteredTray<Job> outTray;
+	
+	private MeteredTray<Job> deadLetterTray;
+	
+	private int maxRetries = 0;
+	
+	private final JobCounters jobCounters = new JobCounters();
 	
 	private JobTraceSet jobTraces = new JobTraceSet();
 	
@@ -74,6 +82,8 @@ public class Nexus
 	
 	private List<WorkerLauncher> storers = new ArrayList<WorkerLauncher>();
 	
+	private List<WorkerLauncher> deadLetterStorers = new ArrayList<WorkerLauncher>();
+	
 	// =========================================================================
 	
 	public Nexus()
@@ -86,6 +96,19 @@ public class Nexus
 			int inTrayCapacity,
 			int processedJobsCapacity,
 			int outTrayCapacity) throws Throwable
+	{
+		setUp(
+				TrayType.RING_BUFFER,
+				inTrayCapacity,
+				processedJobsCapacity,
+				outTrayCapacity);
+	}
+	
+	public void setUp(
+			TrayType trayType,
+			int inTrayCapacity,
+			int processedJobsCapacity,
+			int outTrayCapacity) throws Throwable
 	{
 		synchronized (synchronizer.getMonitor())
 		{
@@ -96,11 +119,13 @@ public class Nexus
 			{
 				logger.info("Nexus starting");
 				
-				inTray = new LinkedBlockingDeque<Job>(inTrayCapacity);
+				inTray = new MeteredTray<Job>("In tray", trayType, inTrayCapacity);
+				
+				processedJobs = new MeteredTray<Job>("Processed jobs", trayType, processedJobsCapacity);
 				
-				processedJobs = new LinkedBlockingDeque<Job>(processedJobsCapacity);
+				outTray = new MeteredTray<Job>("Out tray", trayType, outTrayCapacity);
 				
-				outTray = new LinkedBlockingDeque<Job>(outTrayCapacity);
+				deadLetterTray = new MeteredTray<Job>("Dead letters", trayType, outTrayCapacity);
 				
 				executor = new MyExecutorService(ExecutorType.CACHED_THREAD_POOL, logger);
 				
@@ -118,7 +143,14 @@ public class Nexus
 					@Override
 					public WorkerBase instantiate()
 					{
-						return new Gatherer(abortHandler, inTray, processedJobs, outTray);
+						return new Gatherer(
+								abortHandler,
+								inTray,
+								processedJobs,
+								outTray,
+								deadLetterStorers.isEmpty() ? null : deadLetterTray,
+								maxRetries,
+								jobCounters);
 					}
 				}, abortHandler);
 				
@@ -285,11 +317,79 @@ public class Nexus
 		}
 	}
 	
+	/**
+	 * Sets how often a job whose processing failed is sent back to the in
+	 * tray. Jobs that fail more often are handed to the dead letter storers
+	 * or, if there are none, to the regular storers. Defaults to 0.
+	 */
+	public void setMaxRetries(int maxRetries)
+	{
+		synchronized (synchronizer.getMonitor())
+		{
+			if (state != NexusState.INITIALIZED)
+				throw new IllegalStateException("Can only configure retries of initialized Nexus");
+			
+			this.maxRetries = maxRetries;
+		}
+	}
+	
+	/**
+	 * Adds a storer for jobs that failed more often than allowed by
+	 * {@link #setMaxRetries(int)}. Dead letter storers have to be added before
+	 * the Nexus is started.
+	 */
+	public void addDeadLetterStorer(final StorerFactory factory)
+	{
+		synchronized (synchronizer.getMonitor())
+		{
+			if (state != NexusState.INITIALIZED)
+				throw new IllegalStateException("Can only add dead letter storers to initialized Nexus");
+			
+			logger.info("Adding dead letter storer");
+			
+			WorkerLauncher wl = new WorkerLauncher(new WorkerInstantiator()
+			{
+				@Override
+				public WorkerBase instantiate()
+				{
+					return factory.create(abortHandler, jobTraces, deadLetterTray);
+				}
+			}, abortHandler);
+			
+			deadLetterStorers.add(wl);
+			
+			wl.start(executor);
+		}
+	}
+	
+	public JobCounters getJobCounters()
+	{
+		return jobCounters;
+	}
+	
 	public Set<JobTrace> getJobTraces()
 	{
 		return jobTraces.getTraces();
 	}
 	
+	/**
+	 * Returns per-stage latencies of all jobs that made it through the
+	 * pipeline.
+	 */
+	public StageLatencyHistogram getStageLatencies()
+	{
+		return jobTraces.getLatencies();
+	}
+	
+	/**
+	 * Returns the traces of jobs that have been in flight for longer than the
+	 * given amount of time.
+	 */
+	public List<JobTrace> getStuckJobTraces(long olderThan, TimeUnit unit)
+	{
+		return jobTraces.getStuckTraces(olderThan, unit);
+	}
+	
 	public BlockingQueue<Job> getInTray()
 	{
 		return inTray;
@@ -300,6 +400,22 @@ public class Nexus
 		return outTray;
 	}
 	
+	/**
+	 * Returns the trays in the order in which jobs pass through them. Their
+	 * metrics can be inspected while the Nexus is running and after it was
+	 * shut down.
+	 */
+	public List<MeteredTray<Job>> getTrays()
+	{
+		List<MeteredTray<Job>> trays = new ArrayList<MeteredTray<Job>>(4);
+		trays.add(inTray);
+		trays.add(processedJobs);
+		trays.add(outTray);
+		if (!deadLetterStorers.isEmpty())
+			trays.add(deadLetterTray);
+		return trays;
+	}
+	
 	public/*static*/void shutdown()
 	{
 		internalShutdown(null);
@@ -370,6 +486,9 @@ public class Nexus
 			for (WorkerLauncher s : storers)
 				s.stop();
 			
+			for (WorkerLauncher s : deadLetterStorers)
+				s.stop();
+			
 			if (executor != null)
 			{
 				exec = executor;
@@ -384,6 +503,18 @@ public class Nexus
 	{
 		state = NexusState.SHUTDOWN;
 		
+		if (outTray != null)
+		{
+			for (MeteredTray<Job> tray : getTrays())
+				logger.info(tray.formatMetrics());
+		}
+		
+		logger.info("Jobs: " + jobCounters);
+		
+		String latencies = jobTraces.getLatencies().format();
+		if (!latencies.isEmpty())
+			logger.info("Stage latencies:\n" + latencies);
+		
 		logger.info("Nexus stopped");
 		
 		if (emergencyCause != null)
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects, per pipeline stage, how long jobs took from the previous sign-off
+ * to the sign-off of that stage.
+ * 
+ * Latencies are sorted into power-of-two buckets of nanoseconds. Percentiles
+ * are therefore reported as the upper bound of the bucket they fall into.
+ */
+public class StageLatencyHistogram
+{
+	private static final int MAX_STAGES = 64;
+	
+	private static final int BUCKETS = 64;
+	
+	// =========================================================================
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(MAX_STAGES * BUCKETS);
+	
+	private final AtomicLongArray counts = new AtomicLongArray(MAX_STAGES);
+	
+	private final AtomicLongArray sums = new AtomicLongArray(MAX_STAGES);
+	
+	private final AtomicLongArray maxima = new AtomicLongArray(MAX_STAGES);
+	
+	// =========================================================================
+	
+	/**
+	 * Adds the latencies between consecutive sign-offs of the given trace.
+	 */
+	public void record(JobTrace trace)
+	{
+		int n = trace.getSignatureCount();
+		for (int i = 1; i < n; ++i)
+		{
+			int stage = trace.getStageId(i);
+			if (stage >= MAX_STAGES)
+				continue;
+			
+			long latency = Math.max(0, trace.getSignedAt(i) - trace.getSignedAt(i - 1));
+			
+			buckets.incrementAndGet(stage * BUCKETS + bucketOf(latency));
+			counts.incrementAndGet(stage);
+			sums.addAndGet(stage, latency);
+			
+			long max;
+			while ((max = maxima.get(stage)) < latency)
+			{
+				if (maxima.compareAndSet(stage, max, latency))
+					break;
+			}
+		}
+	}
+	
+	public long getCount(int stage)
+	{
+		return counts.get(stage);
+	}
+	
+	public long getMeanNanos(int stage)
+	{
+		long count = counts.get(stage);
+		return (count == 0) ? 0 : sums.get(stage) / count;
+	}
+	
+	public long getMaxNanos(int stage)
+	{
+		return maxima.get(stage);
+	}
+	
+	/**
+	 * Returns an upper bound for the given percentile (0 to 100) of the
+	 * latencies recorded for a stage.
+	 */
+	public long getPercentileNanos(int stage, double percentile)
+	{
+		long count = counts.get(stage);
+		if (count == 0)
+			return 0;
+		
+		long rank = (long) Math.ceil(count * percentile / 100.);
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; ++b)
+		{
+			seen += buckets.get(stage * BUCKETS + b);
+			if (seen >= rank)
+				return Math.min(upperBoundOf(b), getMaxNanos(stage));
+		}
+		return getMaxNanos(stage);
+	}
+	
+	/**
+	 * Formats one line per stage for which latencies were recorded.
+	 */
+	public String format()
+	{
+		StringBuilder b = new StringBuilder();
+		
+		int stages = Math.min(JobStage.count(), MAX_STAGES);
+		for (int stage = 0; stage < stages; ++stage)
+		{
+			if (getCount(stage) == 0)
+				continue;
+			
+			if (b.length() > 0)
+				b.append('\n');
+			
+			b.append(String.format(
+					"%s: %d jobs, mean %dus, p50 %dus, p90 %dus, p99 %dus, max %dus",
+					JobStage.classOf(stage).getSimpleName(),
+					getCount(stage),
+					getMeanNanos(stage) / 1000,
+					getPercentileNanos(stage, 50) / 1000,
+					getPercentileNanos(stage, 90) / 1000,
+					getPercentileNanos(stage, 99) / 1000,
+					getMaxNanos(stage) / 1000));
+		}
+		
+		return b.toString();
+	}
+	
+	// =========================================================================
+	
+	private static int bucketOf(long nanos)
+	{
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+	
+	private static long upperBoundOf(int bucket)
+	{
+		return (bucket >= 63) ? Long.MAX_VALUE : (1L << bucket);
+	}
+}
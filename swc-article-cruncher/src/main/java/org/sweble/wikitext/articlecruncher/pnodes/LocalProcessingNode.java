@@ -17,15 +17,19 @@
 
 package org.sweble.wikitext.articlecruncher.pnodes;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.sweble.wikitext.articlecruncher.Job;
 import org.sweble.wikitext.articlecruncher.ProcessingNode;
 import org.sweble.wikitext.articlecruncher.WorkerInstantiator;
 import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
+import org.sweble.wikitext.articlecruncher.utils.DeadlineWatchdog;
 import org.sweble.wikitext.articlecruncher.utils.ExecutorType;
 import org.sweble.wikitext.articlecruncher.utils.MyExecutorService;
 import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
@@ -44,6 +48,12 @@ public class LocalProcessingNode
 	
 	private final LpnJobProcessorFactory jobProcessorFactory;
 	
+	private final ExecutorType executorType;
+	
+	private long jobTimeoutMillis = 0;
+	
+	private DeadlineWatchdog watchdog;
+	
 	private MyExecutorService executor;
 	
 	private Semaphore backPressure;
@@ -52,6 +62,8 @@ public class LocalProcessingNode
 	
 	private WorkerLauncher gatherer;
 	
+	private List<WorkerLauncher> workers = new ArrayList<WorkerLauncher>();
+	
 	// =========================================================================
 	
 	public LocalProcessingNode(
@@ -60,6 +72,32 @@ public class LocalProcessingNode
 			BlockingQueue<Job> processedJobs,
 			LpnJobProcessorFactory jobProcessorFactory,
 			int numWorkers)
+	{
+		this(
+				abortHandler,
+				inTray,
+				processedJobs,
+				jobProcessorFactory,
+				numWorkers,
+				ExecutorType.CACHED_THREAD_POOL);
+	}
+	
+	/**
+	 * @param executorType
+	 *            {@link ExecutorType#CACHED_THREAD_POOL} distributes jobs to a
+	 *            pool of workers and gathers them again with two extra
+	 *            threads. {@link ExecutorType#DEDICATED_WORKERS} starts
+	 *            {@code numWorkers} workers that take jobs from and put jobs
+	 *            into the trays directly. In both cases at most
+	 *            {@code numWorkers} jobs are in flight.
+	 */
+	public LocalProcessingNode(
+			AbortHandler abortHandler,
+			BlockingQueue<Job> inTray,
+			BlockingQueue<Job> processedJobs,
+			LpnJobProcessorFactory jobProcessorFactory,
+			int numWorkers,
+			ExecutorType executorType)
 	{
 		super(getClassName(), abortHandler);
 		
@@ -69,6 +107,7 @@ public class LocalProcessingNode
 		this.processedJobs = processedJobs;
 		this.jobProcessorFactory = jobProcessorFactory;
 		this.numWorkers = numWorkers;
+		this.executorType = executorType;
 	}
 	
 	private static String getClassName()
@@ -76,6 +115,18 @@ public class LocalProcessingNode
 		return LocalProcessingNode.class.getSimpleName();
 	}
 	
+	/**
+	 * Limits the time a worker may spend on a single job. Workers that exceed
+	 * the limit are interrupted and the job fails with a
+	 * {@link org.sweble.wikitext.articlecruncher.JobTimeoutException}. Must
+	 * be called before the node starts working. A timeout of 0 disables the
+	 * limit, which is the default.
+	 */
+	public void setJobTimeout(long timeout, TimeUnit unit)
+	{
+		this.jobTimeoutMillis = unit.toMillis(timeout);
+	}
+	
 	// =========================================================================
 	
 	@Override
@@ -83,9 +134,7 @@ public class LocalProcessingNode
 	{
 		try
 		{
-			executor = new MyExecutorService(
-					ExecutorType.CACHED_THREAD_POOL,
-					getLogger());
+			executor = new MyExecutorService(executorType, getLogger());
 			
 			final AbortHandler abortHandler = new AbortHandler()
 			{
@@ -98,46 +147,25 @@ public class LocalProcessingNode
 			
 			WorkerSynchronizer synchronizer = new WorkerSynchronizer();
 			
-			backPressure = new Semaphore(numWorkers);
-			
-			final BlockingQueue<CompletionService<Job>> ecsQueue =
-					new LinkedBlockingQueue<CompletionService<Job>>();
-			
-			distributor = new WorkerLauncher(new WorkerInstantiator()
+			if (jobTimeoutMillis > 0)
 			{
-				@Override
-				public WorkerBase instantiate()
-				{
-					LpnDistributor d = new LpnDistributor(
-							abortHandler,
-							inTray,
-							executor.getThreadGroup(),
-							numWorkers,
-							jobProcessorFactory,
-							backPressure);
-					ecsQueue.add(d.getEcs());
-					return d;
-				}
-			}, abortHandler);
-			
-			distributor.start(executor, synchronizer);
+				long checkInterval = Math.max(10, Math.min(1000, jobTimeoutMillis / 10));
+				watchdog = new DeadlineWatchdog(getWorkerName() + "-Watchdog", checkInterval);
+			}
 			
-			final CompletionService<Job> ecs = ecsQueue.take();
-			
-			gatherer = new WorkerLauncher(new WorkerInstantiator()
+			switch (executorType)
 			{
-				@Override
-				public WorkerBase instantiate()
-				{
-					return new LpnGatherer(
-							abortHandler,
-							ecs,
-							processedJobs,
-							backPressure);
-				}
-			}, abortHandler);
-			
-			gatherer.start(executor, synchronizer);
+				case CACHED_THREAD_POOL:
+					startDistributorAndGatherer(abortHandler, synchronizer);
+					break;
+				
+				case DEDICATED_WORKERS:
+					startDedicatedWorkers(abortHandler, synchronizer);
+					break;
+				
+				default:
+					throw new IllegalArgumentException("Invalid executor type");
+			}
 			
 			synchronizer.waitForAny();
 		}
@@ -151,8 +179,102 @@ public class LocalProcessingNode
 			if (gatherer != null)
 				gatherer.stop();
 			
+			for (WorkerLauncher worker : workers)
+				worker.stop();
+			
 			if (executor != null)
 				executor.shutdownAndAwaitTermination();
+			
+			if (watchdog != null)
+			{
+				info(watchdog.getFiredCount() + " jobs exceeded the time limit of " + jobTimeoutMillis + "ms");
+				watchdog.shutdown();
+			}
+		}
+	}
+	
+	// =========================================================================
+	
+	private void startDistributorAndGatherer(
+			final AbortHandler abortHandler,
+			WorkerSynchronizer synchronizer) throws InterruptedException
+	{
+		backPressure = new Semaphore(numWorkers);
+		
+		final BlockingQueue<CompletionService<Job>> ecsQueue =
+				new LinkedBlockingQueue<CompletionService<Job>>();
+		
+		distributor = new WorkerLauncher(new WorkerInstantiator()
+		{
+			@Override
+			public WorkerBase instantiate()
+			{
+				LpnDistributor d = new LpnDistributor(
+						abortHandler,
+						inTray,
+						executor.getThreadGroup(),
+						numWorkers,
+						jobProcessorFactory,
+						backPressure,
+						watchdog,
+						jobTimeoutMillis);
+				ecsQueue.add(d.getEcs());
+				return d;
+			}
+		}, abortHandler);
+		
+		distributor.start(executor, synchronizer);
+		
+		final CompletionService<Job> ecs = ecsQueue.take();
+		
+		gatherer = new WorkerLauncher(new WorkerInstantiator()
+		{
+			@Override
+			public WorkerBase instantiate()
+			{
+				return new LpnGatherer(
+						abortHandler,
+						ecs,
+						processedJobs,
+						backPressure);
+			}
+		}, abortHandler);
+		
+		gatherer.start(executor, synchronizer);
+	}
+	
+	private void startDedicatedWorkers(
+			final AbortHandler abortHandler,
+			WorkerSynchronizer synchronizer)
+	{
+		info(getClass().getSimpleName() + " starts " + numWorkers + " dedicated workers");
+		
+		String nameTemplate = jobProcessorFactory.getProcessorNameTemplate();
+		executor.setThreadNameTemplate(nameTemplate);
+		
+		for (int i = 1; i <= numWorkers; ++i)
+		{
+			final String workerName = String.format(nameTemplate, i);
+			
+			WorkerLauncher worker = new WorkerLauncher(new WorkerInstantiator()
+			{
+				@Override
+				public WorkerBase instantiate()
+				{
+					return new LpnDedicatedWorker(
+							workerName,
+							abortHandler,
+							inTray,
+							processedJobs,
+							jobProcessorFactory,
+							watchdog,
+							jobTimeoutMillis);
+				}
+			}, abortHandler);
+			
+			workers.add(worker);
+			
+			worker.start(executor, synchronizer);
 		}
 	}
 }
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher.pnodes;
+
+import java.util.concurrent.BlockingQueue;
+
+import org.sweble.wikitext.articlecruncher.Job;
+import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
+import org.sweble.wikitext.articlecruncher.utils.DeadlineWatchdog;
+import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
+
+/**
+ * A worker of a LocalProcessingNode in {@code DEDICATED_WORKERS} mode. Takes
+ * a job from the in tray, processes it on its own thread and puts it into the
+ * processed jobs tray.
+ * 
+ * Since every worker holds at most one job, at most as many jobs are in
+ * flight as there are workers. This is the same bound the distributor
+ * enforces with its back-pressure semaphore.
+ */
+final class LpnDedicatedWorker
+		extends
+			WorkerBase
+{
+	private final BlockingQueue<Job> inTray;
+	
+	private final BlockingQueue<Job> processedJobs;
+	
+	private final LpnJobProcessorFactory jobProcessorFactory;
+	
+	private final DeadlineWatchdog watchdog;
+	
+	private final long timeoutMillis;
+	
+	private int count = 0;
+	
+	private int failureCount = 0;
+	
+	private int successCount = 0;
+	
+	// =========================================================================
+	
+	LpnDedicatedWorker(
+			String workerName,
+			AbortHandler abortHandler,
+			BlockingQueue<Job> inTray,
+			BlockingQueue<Job> processedJobs,
+			LpnJobProcessorFactory jobProcessorFactory,
+			DeadlineWatchdog watchdog,
+			long timeoutMillis)
+	{
+		super(workerName, abortHandler);
+		
+		this.inTray = inTray;
+		this.processedJobs = processedJobs;
+		this.jobProcessorFactory = jobProcessorFactory;
+		this.watchdog = watchdog;
+		this.timeoutMillis = timeoutMillis;
+	}
+	
+	// =========================================================================
+	
+	@Override
+	protected void work() throws Throwable
+	{
+		while (true)
+		{
+			Job job = inTray.take();
+			++count;
+			
+			job.signOff(getClass(), null);
+			
+			LpnWorker.process(jobProcessorFactory, job, watchdog, timeoutMillis);
+			
+			switch (job.getState())
+			{
+				case FAILED:
+					++failureCount;
+					break;
+				
+				case HAS_RESULT:
+					++successCount;
+					break;
+				
+				default:
+					throw new InternalError();
+			}
+			
+			processedJobs.put(job);
+		}
+	}
+	
+	@Override
+	protected void after()
+	{
+		debug(getWorkerName() + " counts " + count + " items");
+		debug(getWorkerName() + " counts " + failureCount + " items for which processing failed");
+		debug(getWorkerName() + " counts " + successCount + " items which were successfully processed");
+	}
+}
@@ -28,6 +28,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.sweble.wikitext.articlecruncher.Job;
 import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
+import org.sweble.wikitext.articlecruncher.utils.DeadlineWatchdog;
 import org.sweble.wikitext.articlecruncher.utils.MyExecutorCompletionService;
 import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
 
@@ -45,6 +46,10 @@ public class LpnDistributor
 	
 	private final LpnJobProcessorFactory jobProcessorFactory;
 	
+	private final DeadlineWatchdog watchdog;
+	
+	private final long timeoutMillis;
+	
 	private int count = 0;
 	
 	// =========================================================================
@@ -56,6 +61,32 @@ public class LpnDistributor
 			int numWorkers,
 			LpnJobProcessorFactory jobProcessorFactory,
 			Semaphore backPressure)
+	{
+		this(
+				abortHandler,
+				inTray,
+				fatherThreadGroup,
+				numWorkers,
+				jobProcessorFactory,
+				backPressure,
+				null,
+				0);
+	}
+	
+	/**
+	 * @param watchdog
+	 *            If not {@code null} enforces a processing deadline of
+	 *            {@code timeoutMillis} on each job.
+	 */
+	public LpnDistributor(
+			AbortHandler abortHandler,
+			BlockingQueue<Job> inTray,
+			ThreadGroup fatherThreadGroup,
+			int numWorkers,
+			LpnJobProcessorFactory jobProcessorFactory,
+			Semaphore backPressure,
+			DeadlineWatchdog watchdog,
+			long timeoutMillis)
 	{
 		super(getClassName(), abortHandler);
 		
@@ -64,6 +95,8 @@ public class LpnDistributor
 		this.inTray = inTray;
 		this.backPressure = backPressure;
 		this.jobProcessorFactory = jobProcessorFactory;
+		this.watchdog = watchdog;
+		this.timeoutMillis = timeoutMillis;
 		
 		int corePoolSize = numWorkers;
 		int maximumPoolSize = numWorkers;
@@ -102,7 +135,7 @@ public class LpnDistributor
 			
 			job.signOff(getClass(), null);
 			
-			Callable<Job> worker = new LpnWorker(jobProcessorFactory, job);
+			Callable<Job> worker = new LpnWorker(jobProcessorFactory, job, watchdog, timeoutMillis);
 			
 			execComplServ.submit(worker);
 		}
@@ -18,10 +18,13 @@
 package org.sweble.wikitext.articlecruncher.pnodes;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.sweble.wikitext.articlecruncher.Job;
+import org.sweble.wikitext.articlecruncher.JobTimeoutException;
 import org.sweble.wikitext.articlecruncher.Processor;
+import org.sweble.wikitext.articlecruncher.utils.DeadlineWatchdog;
 
 final class LpnWorker
 		implements
@@ -33,12 +36,22 @@ final class LpnWorker
 	
 	private final Job job;
 	
+	private final DeadlineWatchdog watchdog;
+	
+	private final long timeoutMillis;
+	
 	// =========================================================================
 	
-	LpnWorker(LpnJobProcessorFactory jobProcessorFactory, Job jobHistory)
+	LpnWorker(
+			LpnJobProcessorFactory jobProcessorFactory,
+			Job jobHistory,
+			DeadlineWatchdog watchdog,
+			long timeoutMillis)
 	{
 		this.jobProcessorFactory = jobProcessorFactory;
 		this.job = jobHistory;
+		this.watchdog = watchdog;
+		this.timeoutMillis = timeoutMillis;
 	}
 	
 	// =========================================================================
@@ -46,19 +59,70 @@ final class LpnWorker
 	@Override
 	public Job call() throws Exception
 	{
+		return process(jobProcessorFactory, job, watchdog, timeoutMillis);
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Processes a job on the current thread.
+	 * 
+	 * @param watchdog
+	 *            If not {@code null} the current thread is interrupted once
+	 *            processing takes longer than {@code timeoutMillis} and the
+	 *            job fails with a {@link JobTimeoutException}.
+	 */
+	static Job process(
+			LpnJobProcessorFactory jobProcessorFactory,
+			Job job,
+			DeadlineWatchdog watchdog,
+			long timeoutMillis)
+	{
+		job.signOff(LpnWorker.class, null);
+		
+		Object result = null;
+		Exception failure = null;
+		
+		boolean armed = false;
+		boolean timedOut = false;
 		try
 		{
-			job.signOff(getClass(), null);
-			
 			Processor processor = jobProcessorFactory.createProcessor();
 			
-			job.processed(processor.process(job));
+			if (watchdog != null)
+			{
+				watchdog.arm(timeoutMillis, TimeUnit.MILLISECONDS);
+				armed = true;
+			}
+			
+			result = processor.process(job);
 		}
 		catch (Exception t)
 		{
-			logger.warn("Processing failed with exception", t);
+			failure = t;
+		}
+		finally
+		{
+			if (armed)
+				timedOut = watchdog.disarm();
+		}
+		
+		if (timedOut)
+		{
+			failure = new JobTimeoutException(
+					"Processing of job " + job.getJobId() + " exceeded " + timeoutMillis + "ms",
+					failure);
+		}
+		
+		if (failure != null)
+		{
+			logger.warn("Processing failed with exception", failure);
 			
-			job.failed(t);
+			job.failed(failure);
+		}
+		else
+		{
+			job.processed(result);
 		}
 		
 		return job;
@@ -17,6 +17,8 @@
 
 package org.sweble.wikitext.articlecruncher.storers;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 
 import org.sweble.wikitext.articlecruncher.Job;
@@ -29,6 +31,10 @@ public class DummyStorer
 		extends
 			WorkerBase
 {
+	private static final int MAX_BATCH_SIZE = 64;
+	
+	// =========================================================================
+	
 	private final JobTraceSet jobTraces;
 	
 	private final BlockingQueue<Job> outTray;
@@ -53,18 +59,28 @@ public class DummyStorer
 	@Override
 	protected void work() throws Throwable
 	{
+		List<Job> batch = new ArrayList<Job>(MAX_BATCH_SIZE);
 		while (true)
 		{
-			Job job = outTray.take();
-			++count;
-			
-			// Do nothing
+			batch.add(outTray.take());
+			outTray.drainTo(batch, MAX_BATCH_SIZE - 1);
 			
-			JobTrace trace = job.getTrace();
-			trace.signOff(getClass(), null);
+			for (Job job : batch)
+			{
+				++count;
+				
+				// Do nothing
+				
+				JobTrace trace = job.getTrace();
+				trace.signOff(getClass(), null);
+				
+				if (!jobTraces.remove(trace))
+					throw new InternalError("Missing job trace");
+				
+				job.completed();
+			}
 			
-			if (!jobTraces.remove(trace))
-				throw new InternalError("Missing job trace");
+			batch.clear();
 		}
 	}
 	
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher.utils;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interrupts threads that exceed a deadline.
+ * 
+ * A thread calls {@link #arm(long, TimeUnit)} before it starts a piece of
+ * work and {@link #disarm()} when it is done. A single watchdog thread checks
+ * the armed deadlines periodically and interrupts threads that overran. Each
+ * thread owns one slot, so arming and disarming does not allocate.
+ * 
+ * Interrupting a thread only helps if the work reacts to interruption. Work
+ * that does not will still be reported as timed out by {@link #disarm()}.
+ */
+public final class DeadlineWatchdog
+{
+	private static final long IDLE = 0;
+	
+	private static final long FIRING = Long.MIN_VALUE;
+	
+	private static final long FIRED = Long.MIN_VALUE + 1;
+	
+	// =========================================================================
+	
+	private final long checkIntervalMillis;
+	
+	private final CopyOnWriteArrayList<Slot> slots = new CopyOnWriteArrayList<Slot>();
+	
+	private final ThreadLocal<Slot> slot = new ThreadLocal<Slot>()
+	{
+		@Override
+		protected Slot initialValue()
+		{
+			Slot s = new Slot(Thread.currentThread());
+			slots.add(s);
+			return s;
+		}
+	};
+	
+	private final Thread watchdog;
+	
+	private volatile boolean running = true;
+	
+	private final AtomicLong firedCount = new AtomicLong(0);
+	
+	// =========================================================================
+	
+	public DeadlineWatchdog(String name, long checkIntervalMillis)
+	{
+		this.checkIntervalMillis = checkIntervalMillis;
+		
+		this.watchdog = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				watch();
+			}
+		}, name);
+		
+		this.watchdog.setDaemon(true);
+		this.watchdog.start();
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Arms the deadline of the current thread.
+	 */
+	public void arm(long timeout, TimeUnit unit)
+	{
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		
+		// Keep clear of the values that encode the state of a slot
+		if (deadline == IDLE || deadline == FIRING || deadline == FIRED)
+			deadline += 2;
+		
+		slot.get().deadline.set(deadline);
+	}
+	
+	/**
+	 * Disarms the deadline of the current thread.
+	 * 
+	 * @return {@code true} if the deadline expired. In that case the
+	 *         interrupt that was sent to the current thread has been
+	 *         cleared.
+	 */
+	public boolean disarm()
+	{
+		AtomicLong deadline = slot.get().deadline;
+		
+		long d = deadline.get();
+		if (d != FIRING && d != FIRED && deadline.compareAndSet(d, IDLE))
+			return false;
+		
+		// Wait for the interrupt to be delivered before we clear it
+		while (deadline.get() != FIRED)
+			Thread.yield();
+		
+		Thread.interrupted();
+		deadline.set(IDLE);
+		return true;
+	}
+	
+	public long getFiredCount()
+	{
+		return firedCount.get();
+	}
+	
+	public void shutdown()
+	{
+		running = false;
+		watchdog.interrupt();
+	}
+	
+	// =========================================================================
+	
+	private void watch()
+	{
+		while (running)
+		{
+			try
+			{
+				Thread.sleep(checkIntervalMillis);
+			}
+			catch (InterruptedException e)
+			{
+				continue;
+			}
+			
+			long now = System.nanoTime();
+			for (Slot s : slots)
+			{
+				long d = s.deadline.get();
+				if (d == IDLE || d == FIRING || d == FIRED)
+				{
+					if (d == IDLE && !s.thread.isAlive())
+						slots.remove(s);
+					continue;
+				}
+				
+				// Comparing with the exact value also rules out that the
+				// thread re-armed for another piece of work meanwhile
+				if (now - d >= 0 && s.deadline.compareAndSet(d, FIRING))
+				{
+					s.thread.interrupt();
+					s.deadline.set(FIRED);
+					firedCount.incrementAndGet();
+				}
+			}
+		}
+	}
+	
+	// =========================================================================
+	
+	private static final class Slot
+	{
+		final Thread thread;
+		
+		final AtomicLong deadline = new AtomicLong(IDLE);
+		
+		public Slot(Thread thread)
+		{
+			this.thread = thread;
+		}
+	}
+}
@@ -19,5 +19,17 @@ package org.sweble.wikitext.articlecruncher.utils;
 
 public enum ExecutorType
 {
-	CACHED_THREAD_POOL
+	/**
+	 * A pool that creates threads on demand. A LocalProcessingNode of this
+	 * type hands every job from a distributor thread to a pooled worker and
+	 * collects the result with a separate gatherer thread.
+	 */
+	CACHED_THREAD_POOL,
+	
+	/**
+	 * Long-running workers, each on a thread of its own. A LocalProcessingNode
+	 * of this type lets every worker take jobs from the in tray, process them
+	 * and put them into the processed jobs tray itself.
+	 */
+	DEDICATED_WORKERS
 }
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher.utils;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A tray between two stages of the Nexus. Wraps a blocking queue and records
+ * how often and for how long producers and consumers had to wait on it.
+ * 
+ * Blocking operations first try the non-blocking variant and only take the
+ * time if that fails. Metrics therefore cost nothing while jobs flow freely.
+ */
+public class MeteredTray<E>
+		extends
+			AbstractQueue<E>
+		implements
+			BlockingQueue<E>
+{
+	private final String name;
+	
+	private final int capacity;
+	
+	private final BlockingQueue<E> queue;
+	
+	private final AtomicLong putWaitCount = new AtomicLong(0);
+	
+	private final AtomicLong putWaitNanos = new AtomicLong(0);
+	
+	private final AtomicLong takeWaitCount = new AtomicLong(0);
+	
+	private final AtomicLong takeWaitNanos = new AtomicLong(0);
+	
+	private final AtomicLong drainCount = new AtomicLong(0);
+	
+	private final AtomicLong drainedElements = new AtomicLong(0);
+	
+	// =========================================================================
+	
+	public MeteredTray(String name, TrayType type, int capacity)
+	{
+		this.name = name;
+		
+		switch (type)
+		{
+			case LINKED_BLOCKING_DEQUE:
+				this.queue = new LinkedBlockingDeque<E>(capacity);
+				this.capacity = capacity;
+				break;
+			case RING_BUFFER:
+			{
+				RingBufferQueue<E> ring = new RingBufferQueue<E>(capacity);
+				this.queue = ring;
+				this.capacity = ring.getCapacity();
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("Unknown tray type: " + type);
+		}
+	}
+	
+	// =========================================================================
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	public int getCapacity()
+	{
+		return capacity;
+	}
+	
+	/**
+	 * The number of jobs currently queued in this tray.
+	 */
+	public int getDepth()
+	{
+		return queue.size();
+	}
+	
+	public long getPutWaitCount()
+	{
+		return putWaitCount.get();
+	}
+	
+	public long getPutWaitNanos()
+	{
+		return putWaitNanos.get();
+	}
+	
+	public long getTakeWaitCount()
+	{
+		return takeWaitCount.get();
+	}
+	
+	public long getTakeWaitNanos()
+	{
+		return takeWaitNanos.get();
+	}
+	
+	public long getDrainCount()
+	{
+		return drainCount.get();
+	}
+	
+	public long getDrainedElements()
+	{
+		return drainedElements.get();
+	}
+	
+	public String formatMetrics()
+	{
+		return String.format(
+				"%s: depth %d/%d, %d puts waited %.3fs, %d takes waited %.3fs, %d drains moved %d jobs",
+				name,
+				getDepth(),
+				capacity,
+				getPutWaitCount(),
+				getPutWaitNanos() / 1e9,
+				getTakeWaitCount(),
+				getTakeWaitNanos() / 1e9,
+				getDrainCount(),
+				getDrainedElements());
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public int size()
+	{
+		return queue.size();
+	}
+	
+	@Override
+	public int remainingCapacity()
+	{
+		return queue.remainingCapacity();
+	}
+	
+	@Override
+	public Iterator<E> iterator()
+	{
+		return queue.iterator();
+	}
+	
+	@Override
+	public boolean offer(E e)
+	{
+		return queue.offer(e);
+	}
+	
+	@Override
+	public E poll()
+	{
+		return queue.poll();
+	}
+	
+	@Override
+	public E peek()
+	{
+		return queue.peek();
+	}
+	
+	@Override
+	public void put(E e) throws InterruptedException
+	{
+		if (queue.offer(e))
+			return;
+		
+		long start = System.nanoTime();
+		try
+		{
+			queue.put(e);
+		}
+		finally
+		{
+			putWaitCount.incrementAndGet();
+			putWaitNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+	
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException
+	{
+		if (queue.offer(e))
+			return true;
+		
+		long start = System.nanoTime();
+		try
+		{
+			return queue.offer(e, timeout, unit);
+		}
+		finally
+		{
+			putWaitCount.incrementAndGet();
+			putWaitNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+	
+	@Override
+	public E take() throws InterruptedException
+	{
+		E e = queue.poll();
+		if (e != null)
+			return e;
+		
+		long start = System.nanoTime();
+		try
+		{
+			return queue.take();
+		}
+		finally
+		{
+			takeWaitCount.incrementAndGet();
+			takeWaitNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+	
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		E e = queue.poll();
+		if (e != null)
+			return e;
+		
+		long start = System.nanoTime();
+		try
+		{
+			return queue.poll(timeout, unit);
+		}
+		finally
+		{
+			takeWaitCount.incrementAndGet();
+			takeWaitNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+	
+	@Override
+	public int drainTo(Collection<? super E> c)
+	{
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements)
+	{
+		int n = queue.drainTo(c, maxElements);
+		if (n > 0)
+		{
+			drainCount.incrementAndGet();
+			drainedElements.addAndGet(n);
+		}
+		return n;
+	}
+}
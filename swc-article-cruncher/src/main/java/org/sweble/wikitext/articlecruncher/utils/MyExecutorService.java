@@ -66,6 +66,8 @@ public class MyExecutorService
 		switch (type)
 		{
 			case CACHED_THREAD_POOL:
+			case DEDICATED_WORKERS:
+				// Dedicated workers never return their thread to the pool
 				this.executor = Executors.newCachedThreadPool(threadFactory);
 				break;
 			
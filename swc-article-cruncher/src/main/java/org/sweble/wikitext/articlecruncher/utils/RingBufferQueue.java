@@ -0,0 +1,485 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher.utils;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded multi-producer/multi-consumer queue on top of a ring buffer.
+ * 
+ * Every slot of the ring carries a sequence number that tells producers and
+ * consumers whether the slot is free or holds an element of the current lap.
+ * Producers and consumers claim slots by advancing the tail and head counters
+ * with a CAS. {@link #offer(Object)}, {@link #poll()} and
+ * {@link #drainTo(Collection, int)} therefore never lock and never allocate.
+ * 
+ * The blocking operations first retry for a short while and only then park on
+ * a lock condition. They don't retry if other threads are parked already.
+ * Producers and consumers only take the lock to signal parked threads, and only
+ * if there are any. A woken thread passes the signal on if more elements (or
+ * free slots) are left.
+ * 
+ * The capacity is rounded up to the next power of two and is at least two.
+ * With a single slot the sequence number of a published element would equal
+ * the sequence number that frees the slot for the next lap.
+ */
+public class RingBufferQueue<E>
+		extends
+			AbstractQueue<E>
+		implements
+			BlockingQueue<E>
+{
+	private static final int SPIN_TRIES = 64;
+	
+	// =========================================================================
+	
+	private final int capacity;
+	
+	private final int mask;
+	
+	private final Object[] items;
+	
+	private final AtomicLongArray sequences;
+	
+	private final AtomicLong head = new AtomicLong(0);
+	
+	private final AtomicLong tail = new AtomicLong(0);
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	private final Condition notEmpty = lock.newCondition();
+	
+	private final Condition notFull = lock.newCondition();
+	
+	private final AtomicInteger waitingTakers = new AtomicInteger(0);
+	
+	private final AtomicInteger waitingPutters = new AtomicInteger(0);
+	
+	// =========================================================================
+	
+	public RingBufferQueue(int capacity)
+	{
+		if (capacity <= 0 || capacity > (1 << 30))
+			throw new IllegalArgumentException("Capacity out of range: " + capacity);
+		
+		int size = Math.max(2, Integer.highestOneBit(capacity));
+		if (size < capacity)
+			size <<= 1;
+		
+		this.capacity = size;
+		this.mask = size - 1;
+		this.items = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		
+		for (int i = 0; i < size; ++i)
+			sequences.set(i, i);
+	}
+	
+	// =========================================================================
+	
+	public int getCapacity()
+	{
+		return capacity;
+	}
+	
+	@Override
+	public int size()
+	{
+		long h = head.get();
+		long t = tail.get();
+		long size = t - h;
+		if (size < 0)
+			return 0;
+		return (int) Math.min(size, capacity);
+	}
+	
+	@Override
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+	
+	@Override
+	public int remainingCapacity()
+	{
+		return capacity - size();
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public boolean offer(E e)
+	{
+		if (!enqueue(e))
+			return false;
+		signalNotEmpty();
+		return true;
+	}
+	
+	@Override
+	public void put(E e) throws InterruptedException
+	{
+		if (offer(e))
+			return;
+		
+		for (int i = 0; i < SPIN_TRIES && waitingPutters.get() == 0; ++i)
+		{
+			Thread.yield();
+			if (offer(e))
+				return;
+		}
+		
+		lock.lockInterruptibly();
+		try
+		{
+			// Register before retrying so that a consumer which frees a slot
+			// after our last attempt is guaranteed to see us waiting.
+			waitingPutters.incrementAndGet();
+			try
+			{
+				while (!offer(e))
+					notFull.await();
+			}
+			catch (InterruptedException ie)
+			{
+				// Don't swallow a signal meant for someone else
+				notFull.signal();
+				throw ie;
+			}
+			finally
+			{
+				waitingPutters.decrementAndGet();
+			}
+			
+			if (remainingCapacity() > 0)
+				notFull.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException
+	{
+		if (offer(e))
+			return true;
+		
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try
+		{
+			waitingPutters.incrementAndGet();
+			try
+			{
+				while (!offer(e))
+				{
+					if (nanos <= 0)
+						return false;
+					nanos = notFull.awaitNanos(nanos);
+				}
+			}
+			catch (InterruptedException ie)
+			{
+				notFull.signal();
+				throw ie;
+			}
+			finally
+			{
+				waitingPutters.decrementAndGet();
+			}
+			
+			if (remainingCapacity() > 0)
+				notFull.signal();
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public E poll()
+	{
+		E e = dequeue();
+		if (e != null)
+			signalNotFull();
+		return e;
+	}
+	
+	@Override
+	public E take() throws InterruptedException
+	{
+		E e = poll();
+		if (e != null)
+			return e;
+		
+		for (int i = 0; i < SPIN_TRIES && waitingTakers.get() == 0; ++i)
+		{
+			Thread.yield();
+			e = poll();
+			if (e != null)
+				return e;
+		}
+		
+		lock.lockInterruptibly();
+		try
+		{
+			waitingTakers.incrementAndGet();
+			try
+			{
+				while ((e = poll()) == null)
+					notEmpty.await();
+			}
+			catch (InterruptedException ie)
+			{
+				notEmpty.signal();
+				throw ie;
+			}
+			finally
+			{
+				waitingTakers.decrementAndGet();
+			}
+			
+			if (!isEmpty())
+				notEmpty.signal();
+			return e;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		E e = poll();
+		if (e != null)
+			return e;
+		
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try
+		{
+			waitingTakers.incrementAndGet();
+			try
+			{
+				while ((e = poll()) == null)
+				{
+					if (nanos <= 0)
+						return null;
+					nanos = notEmpty.awaitNanos(nanos);
+				}
+			}
+			catch (InterruptedException ie)
+			{
+				notEmpty.signal();
+				throw ie;
+			}
+			finally
+			{
+				waitingTakers.decrementAndGet();
+			}
+			
+			if (!isEmpty())
+				notEmpty.signal();
+			return e;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public E peek()
+	{
+		while (true)
+		{
+			long pos = head.get();
+			int index = (int) pos & mask;
+			long dif = sequences.get(index) - (pos + 1);
+			if (dif < 0)
+				return null;
+			
+			E e = (E) items[index];
+			if (dif == 0 && e != null && head.get() == pos)
+				return e;
+		}
+	}
+	
+	@Override
+	public int drainTo(Collection<? super E> c)
+	{
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Moves up to {@code maxElements} elements into the given collection.
+	 * Blocked producers are signalled once for the whole batch.
+	 */
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements)
+	{
+		if (c == null)
+			throw new NullPointerException();
+		if (c == this)
+			throw new IllegalArgumentException();
+		
+		int n = 0;
+		E e;
+		while (n < maxElements && (e = dequeue()) != null)
+		{
+			c.add(e);
+			++n;
+		}
+		
+		if (n > 0)
+			signalNotFull();
+		return n;
+	}
+	
+	/**
+	 * Returns a snapshot of the elements in the queue. The iterator does not
+	 * support removal.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Iterator<E> iterator()
+	{
+		List<E> snapshot = new ArrayList<E>();
+		long end = tail.get();
+		for (long pos = head.get(); pos < end; ++pos)
+		{
+			int index = (int) pos & mask;
+			if (sequences.get(index) != pos + 1)
+				continue;
+			E e = (E) items[index];
+			if (e != null)
+				snapshot.add(e);
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+	
+	// =========================================================================
+	
+	private boolean enqueue(E e)
+	{
+		if (e == null)
+			throw new NullPointerException();
+		
+		long pos = tail.get();
+		while (true)
+		{
+			int index = (int) pos & mask;
+			long dif = sequences.get(index) - pos;
+			if (dif == 0)
+			{
+				if (tail.compareAndSet(pos, pos + 1))
+				{
+					items[index] = e;
+					// Publishes the element to consumers
+					sequences.set(index, pos + 1);
+					return true;
+				}
+			}
+			else if (dif < 0)
+			{
+				// The slot still holds an element of the previous lap
+				return false;
+			}
+			pos = tail.get();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private E dequeue()
+	{
+		long pos = head.get();
+		while (true)
+		{
+			int index = (int) pos & mask;
+			long dif = sequences.get(index) - (pos + 1);
+			if (dif == 0)
+			{
+				if (head.compareAndSet(pos, pos + 1))
+				{
+					E e = (E) items[index];
+					items[index] = null;
+					// Hands the slot to the producers of the next lap
+					sequences.set(index, pos + capacity);
+					return e;
+				}
+			}
+			else if (dif < 0)
+			{
+				// The slot has not been published yet
+				return null;
+			}
+			pos = head.get();
+		}
+	}
+	
+	private void signalNotEmpty()
+	{
+		if (waitingTakers.get() > 0)
+		{
+			lock.lock();
+			try
+			{
+				notEmpty.signal();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+	
+	private void signalNotFull()
+	{
+		if (waitingPutters.get() > 0)
+		{
+			lock.lock();
+			try
+			{
+				notFull.signal();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads updates over several cells to avoid contention
+ * between threads. A thread always updates the same cell, so a single cell can
+ * become negative. Only the sum over all cells is meaningful.
+ * 
+ * The sum is exact if no updates happen concurrently with {@link #sum()}.
+ */
+public final class StripedCounter
+{
+	/**
+	 * Cells are spaced out so that two cells never share a cache line.
+	 */
+	private static final int PADDING = 8;
+	
+	// =========================================================================
+	
+	private final int mask;
+	
+	private final AtomicLongArray cells;
+	
+	// =========================================================================
+	
+	public StripedCounter()
+	{
+		this(Runtime.getRuntime().availableProcessors() * 2);
+	}
+	
+	public StripedCounter(int minStripes)
+	{
+		int stripes = Integer.highestOneBit(Math.max(1, minStripes));
+		if (stripes < minStripes)
+			stripes <<= 1;
+		
+		this.mask = stripes - 1;
+		this.cells = new AtomicLongArray(stripes * PADDING);
+	}
+	
+	// =========================================================================
+	
+	public void increment()
+	{
+		cells.incrementAndGet(cell());
+	}
+	
+	public void decrement()
+	{
+		cells.decrementAndGet(cell());
+	}
+	
+	public void add(long delta)
+	{
+		cells.addAndGet(cell(), delta);
+	}
+	
+	public long sum()
+	{
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += PADDING)
+			sum += cells.get(i);
+		return sum;
+	}
+	
+	// =========================================================================
+	
+	private int cell()
+	{
+		long id = Thread.currentThread().getId();
+		// Spread consecutive thread ids over the stripes
+		int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return ((h >>> 16) & mask) * PADDING;
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.articlecruncher.utils;
+
+/**
+ * Selects the queue implementation that backs the trays of a Nexus.
+ */
+public enum TrayType
+{
+	/**
+	 * A lock-based, linked queue that allocates a node for every job.
+	 */
+	LINKED_BLOCKING_DEQUE,
+	
+	/**
+	 * A bounded, array-based multi-producer/multi-consumer ring buffer that
+	 * moves jobs without locking and without allocation.
+	 * 
+	 * @see RingBufferQueue
+	 */
+	RING_BUFFER
+}
@@ -104,7 +104,7 @@ public class CruncherTestBase
 					{
 						while (true)
 						{
-							TestJob job = (TestJob) outTray.take();
+							Job job = outTray.take();
 							
 							JobTrace trace = job.getTrace();
 							trace.signOff(getClass(), null);
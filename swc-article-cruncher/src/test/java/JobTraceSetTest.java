@@ -0,0 +1,98 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.sweble.wikitext.articlecruncher.JobTrace;
+import org.sweble.wikitext.articlecruncher.JobTraceSet;
+
+public class JobTraceSetTest
+{
+	@Test
+	public void testAddAndRemove()
+	{
+		JobTraceSet set = new JobTraceSet();
+		JobTrace a = new JobTrace();
+		JobTrace b = new JobTrace();
+		
+		set.add(a);
+		set.add(b);
+		assertEquals(2, set.size());
+		assertEquals(2, set.getTraces().size());
+		
+		assertTrue(set.remove(a));
+		assertFalse(set.remove(a));
+		assertEquals(1, set.size());
+		assertFalse(set.isEmpty());
+		
+		assertTrue(set.remove(b));
+		assertTrue(set.isEmpty());
+	}
+	
+	@Test
+	public void testStuckTraces() throws InterruptedException
+	{
+		JobTraceSet set = new JobTraceSet();
+		JobTrace old = new JobTrace();
+		set.add(old);
+		
+		Thread.sleep(50);
+		
+		JobTrace young = new JobTrace();
+		set.add(young);
+		
+		List<JobTrace> stuck = set.getStuckTraces(25, TimeUnit.MILLISECONDS);
+		assertEquals(1, stuck.size());
+		assertSame(old, stuck.get(0));
+	}
+	
+	@Test
+	public void testWaitForCompletionWakesUpOnLastRemove() throws Throwable
+	{
+		final JobTraceSet set = new JobTraceSet();
+		final JobTrace[] traces = new JobTrace[1000];
+		for (int i = 0; i < traces.length; ++i)
+		{
+			traces[i] = new JobTrace();
+			set.add(traces[i]);
+		}
+		
+		Thread remover = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				for (JobTrace trace : traces)
+					set.remove(trace);
+			}
+		};
+		
+		long start = System.nanoTime();
+		remover.start();
+		
+		// The timeout is long enough to fail the test if we are not woken up
+		set.waitForCompletion(60);
+		
+		assertTrue(set.isEmpty());
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+		remover.join();
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sweble.wikitext.articlecruncher.JobStage;
+import org.sweble.wikitext.articlecruncher.JobTrace;
+import org.sweble.wikitext.articlecruncher.JobTrace.Signer;
+import org.sweble.wikitext.articlecruncher.JobTrace.TraceMode;
+import org.sweble.wikitext.articlecruncher.StageLatencyHistogram;
+
+public class JobTraceTest
+{
+	private static final class StageA
+	{
+	}
+	
+	private static final class StageB
+	{
+	}
+	
+	// =========================================================================
+	
+	@After
+	public void after()
+	{
+		JobTrace.setTraceMode(TraceMode.COMPACT);
+	}
+	
+	@Test
+	public void testCompactTraceRecordsStagesAndTimes()
+	{
+		JobTrace trace = new JobTrace();
+		for (int i = 0; i < 10; ++i)
+			trace.signOff((i % 2 == 0) ? StageA.class : StageB.class, "ignored");
+		
+		assertEquals(10, trace.getSignatureCount());
+		assertEquals(JobStage.idOf(StageA.class), trace.getStageId(0));
+		assertEquals(JobStage.idOf(StageB.class), trace.getStageId(9));
+		assertTrue(trace.getSignedAt(9) >= trace.getSignedAt(0));
+		
+		List<Signer> signers = trace.getSigners();
+		assertEquals(10, signers.size());
+		assertEquals(StageB.class, signers.get(1).getSigner());
+		assertNull(signers.get(1).getMessage());
+	}
+	
+	@Test
+	public void testVerboseTraceKeepsMessages()
+	{
+		JobTrace.setTraceMode(TraceMode.VERBOSE);
+		
+		JobTrace trace = new JobTrace();
+		trace.signOff(StageA.class, "hello");
+		
+		assertEquals(1, trace.getSignatureCount());
+		assertEquals("hello", trace.getSigners().get(0).getMessage());
+		assertTrue(trace.toString().contains("StageA <hello>"));
+	}
+	
+	@Test
+	public void testHistogramRecordsLatencyOfLaterStages()
+	{
+		JobTrace trace = new JobTrace();
+		trace.signOff(StageA.class, null);
+		trace.signOff(StageB.class, null);
+		
+		StageLatencyHistogram histogram = new StageLatencyHistogram();
+		histogram.record(trace);
+		histogram.record(trace);
+		
+		int a = JobStage.idOf(StageA.class);
+		int b = JobStage.idOf(StageB.class);
+		
+		long latency = trace.getSignedAt(1) - trace.getSignedAt(0);
+		assertEquals(0, histogram.getCount(a));
+		assertEquals(2, histogram.getCount(b));
+		assertEquals(latency, histogram.getMaxNanos(b));
+		assertTrue(histogram.getPercentileNanos(b, 50) >= latency);
+		assertTrue(histogram.format().contains("StageB: 2 jobs"));
+	}
+}
@@ -33,6 +33,7 @@ import org.sweble.wikitext.articlecruncher.StorerFactory;
 import org.sweble.wikitext.articlecruncher.pnodes.LocalProcessingNode;
 import org.sweble.wikitext.articlecruncher.pnodes.LpnJobProcessorFactory;
 import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
+import org.sweble.wikitext.articlecruncher.utils.ExecutorType;
 import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
 
 public class LpnCruncherTest
@@ -60,9 +61,6 @@ public class LpnCruncherTest
 		JobGeneratorFactory jobFactory = createJobFactory();
 		nexus.addJobGenerator(jobFactory);
 		
-		ProcessingNodeFactory pnFactory = createPnFactory();
-		nexus.addProcessingNode(pnFactory);
-		
 		StorerFactory storerFactory = createStorerFactory();
 		nexus.addStorer(storerFactory);
 	}
@@ -72,6 +70,22 @@ public class LpnCruncherTest
 	@Test
 	public void test() throws Throwable
 	{
+		runWith(ExecutorType.CACHED_THREAD_POOL);
+	}
+	
+	@Test
+	public void testDedicatedWorkers() throws Throwable
+	{
+		runWith(ExecutorType.DEDICATED_WORKERS);
+	}
+	
+	// =========================================================================
+	
+	private void runWith(ExecutorType executorType) throws Throwable
+	{
+		ProcessingNodeFactory pnFactory = createPnFactory(executorType);
+		nexus.addProcessingNode(pnFactory);
+		
 		nexus.start();
 		
 		assertEquals(NUM_JOBS_TO_GENERATE, generated.get());
@@ -84,9 +98,7 @@ public class LpnCruncherTest
 		assertTrue(jobTraces.isEmpty());
 	}
 	
-	// =========================================================================
-	
-	private ProcessingNodeFactory createPnFactory()
+	private ProcessingNodeFactory createPnFactory(final ExecutorType executorType)
 	{
 		return new ProcessingNodeFactory()
 		{
@@ -101,7 +113,8 @@ public class LpnCruncherTest
 						inTray,
 						processedJobs,
 						createLpnFactory(),
-						NUM_WORKERS);
+						NUM_WORKERS,
+						executorType);
 			}
 		};
 	}
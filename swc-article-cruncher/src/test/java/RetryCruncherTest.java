@@ -0,0 +1,248 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.sweble.wikitext.articlecruncher.Job;
+import org.sweble.wikitext.articlecruncher.JobCounters;
+import org.sweble.wikitext.articlecruncher.JobGeneratorFactory;
+import org.sweble.wikitext.articlecruncher.JobTrace;
+import org.sweble.wikitext.articlecruncher.JobTraceSet;
+import org.sweble.wikitext.articlecruncher.Nexus;
+import org.sweble.wikitext.articlecruncher.ProcessingNodeFactory;
+import org.sweble.wikitext.articlecruncher.Processor;
+import org.sweble.wikitext.articlecruncher.StorerFactory;
+import org.sweble.wikitext.articlecruncher.pnodes.LocalProcessingNode;
+import org.sweble.wikitext.articlecruncher.pnodes.LpnJobProcessorFactory;
+import org.sweble.wikitext.articlecruncher.storers.DeadLetterStorer;
+import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
+import org.sweble.wikitext.articlecruncher.utils.ExecutorType;
+import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
+
+public class RetryCruncherTest
+		extends
+			CruncherTestBase
+{
+	private static final int NUM_JOBS = 1000;
+	
+	private static final int NUM_WORKERS = 16;
+	
+	private static final long TIMEOUT_MILLIS = 50;
+	
+	private AtomicLong attempts = new AtomicLong(0);
+	
+	// =========================================================================
+	
+	private static final class IndexedJob
+			extends
+				Job
+	{
+		private final int index;
+		
+		public IndexedJob(int index)
+		{
+			this.index = index;
+		}
+	}
+	
+	// =========================================================================
+	
+	@Test
+	public void testDistributor() throws Throwable
+	{
+		runWith(ExecutorType.CACHED_THREAD_POOL, true);
+	}
+	
+	@Test
+	public void testDedicatedWorkers() throws Throwable
+	{
+		runWith(ExecutorType.DEDICATED_WORKERS, true);
+	}
+	
+	@Test
+	public void testWithoutDeadLetterStorer() throws Throwable
+	{
+		runWith(ExecutorType.DEDICATED_WORKERS, false);
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Every tenth job fails once, every hundredth job (offset by one) always
+	 * fails and four jobs always exceed the time limit. With one retry the
+	 * last two kinds end up as dead letters or, without a dead-letter storer,
+	 * in the out tray.
+	 */
+	private void runWith(
+			ExecutorType executorType,
+			boolean withDeadLetterStorer) throws Throwable
+	{
+		Nexus nexus = new Nexus();
+		
+		nexus.setUp(16, 16, 16);
+		nexus.setMaxRetries(1);
+		
+		nexus.addJobGenerator(createIndexedJobFactory());
+		nexus.addProcessingNode(createPnFactory(executorType));
+		nexus.addStorer(createStorerFactory());
+		if (withDeadLetterStorer)
+		{
+			nexus.addDeadLetterStorer(new StorerFactory()
+			{
+				@Override
+				public WorkerBase create(
+						AbortHandler abortHandler,
+						JobTraceSet jobTraces,
+						BlockingQueue<Job> outTray)
+				{
+					return new DeadLetterStorer(abortHandler, jobTraces, outTray);
+				}
+			});
+		}
+		
+		nexus.start();
+		
+		int failOnce = NUM_JOBS / 10;
+		int alwaysFail = NUM_JOBS / 100;
+		int timeOut = NUM_JOBS / 250;
+		int deadLetters = alwaysFail + timeOut;
+		
+		JobCounters counters = nexus.getJobCounters();
+		assertEquals(NUM_JOBS - deadLetters, counters.getSucceeded());
+		assertEquals(failOnce + 2 * deadLetters, counters.getFailed());
+		assertEquals(2 * timeOut, counters.getTimeouts());
+		assertEquals(failOnce + deadLetters, counters.getRetries());
+		
+		assertEquals(NUM_JOBS + failOnce + deadLetters, attempts.get());
+		
+		if (withDeadLetterStorer)
+		{
+			assertEquals(deadLetters, counters.getDeadLetters());
+			assertEquals(0, counters.getGivenUp());
+			assertEquals(NUM_JOBS - deadLetters, stored.get());
+		}
+		else
+		{
+			assertEquals(0, counters.getDeadLetters());
+			assertEquals(deadLetters, counters.getGivenUp());
+			assertEquals(NUM_JOBS, stored.get());
+		}
+		
+		assertTrue(nexus.getJobTraces().isEmpty());
+	}
+	
+	// =========================================================================
+	
+	private JobGeneratorFactory createIndexedJobFactory()
+	{
+		return new JobGeneratorFactory()
+		{
+			@Override
+			public WorkerBase create(
+					final AbortHandler abortHandler,
+					final BlockingQueue<Job> inTray,
+					final JobTraceSet jobTraces)
+			{
+				return new WorkerBase("JobGenerator", abortHandler)
+				{
+					@Override
+					protected void work() throws InterruptedException
+					{
+						for (int i = 0; i < NUM_JOBS; ++i)
+						{
+							Job job = new IndexedJob(i);
+							generated.incrementAndGet();
+							
+							JobTrace trace = job.getTrace();
+							trace.signOff(getClass(), null);
+							
+							jobTraces.add(trace);
+							
+							inTray.put(job);
+						}
+					}
+				};
+			}
+		};
+	}
+	
+	private ProcessingNodeFactory createPnFactory(final ExecutorType executorType)
+	{
+		return new ProcessingNodeFactory()
+		{
+			@Override
+			public WorkerBase create(
+					AbortHandler abortHandler,
+					BlockingQueue<Job> inTray,
+					BlockingQueue<Job> processedJobs)
+			{
+				LocalProcessingNode node = new LocalProcessingNode(
+						abortHandler,
+						inTray,
+						processedJobs,
+						createLpnFactory(),
+						NUM_WORKERS,
+						executorType);
+				
+				node.setJobTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				return node;
+			}
+		};
+	}
+	
+	private LpnJobProcessorFactory createLpnFactory()
+	{
+		return new LpnJobProcessorFactory()
+		{
+			@Override
+			public Processor createProcessor()
+			{
+				return new Processor()
+				{
+					@Override
+					public Object process(Job job) throws Exception
+					{
+						attempts.incrementAndGet();
+						
+						int index = ((IndexedJob) job).index;
+						if (index % 10 == 0 && job.getFailureCount() == 0)
+							throw new Exception("Fails once");
+						
+						if (index % 100 == 1)
+							throw new Exception("Always fails");
+						
+						if (index % 250 == 3)
+							Thread.sleep(TIMEOUT_MILLIS * 1000);
+						
+						return null;
+					}
+				};
+			}
+			
+			@Override
+			public String getProcessorNameTemplate()
+			{
+				return "Processor-%02d";
+			}
+		};
+	}
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.sweble.wikitext.articlecruncher.utils.MeteredTray;
+import org.sweble.wikitext.articlecruncher.utils.RingBufferQueue;
+import org.sweble.wikitext.articlecruncher.utils.TrayType;
+
+public class RingBufferQueueTest
+{
+	private static final int NUM_THREADS = 4;
+	
+	private static final int NUM_ELEMENTS_PER_PRODUCER = 1 << 18;
+	
+	// =========================================================================
+	
+	@Test
+	public void testCapacityIsRoundedUpToPowerOfTwo()
+	{
+		assertEquals(2, new RingBufferQueue<Integer>(1).getCapacity());
+		assertEquals(16, new RingBufferQueue<Integer>(16).getCapacity());
+		assertEquals(128, new RingBufferQueue<Integer>(100).getCapacity());
+	}
+	
+	@Test
+	public void testFifoOrderAndBounds()
+	{
+		RingBufferQueue<Integer> q = new RingBufferQueue<Integer>(4);
+		
+		// Go around the ring a few times
+		for (int lap = 0; lap < 3; ++lap)
+		{
+			for (int i = 0; i < 4; ++i)
+				assertTrue(q.offer(i));
+			
+			assertFalse(q.offer(4));
+			assertEquals(4, q.size());
+			assertEquals(0, q.remainingCapacity());
+			assertEquals(Integer.valueOf(0), q.peek());
+			
+			for (int i = 0; i < 4; ++i)
+				assertEquals(Integer.valueOf(i), q.poll());
+			
+			assertNull(q.poll());
+			assertNull(q.peek());
+			assertTrue(q.isEmpty());
+		}
+	}
+	
+	@Test
+	public void testDrainToRespectsMaxElements()
+	{
+		RingBufferQueue<Integer> q = new RingBufferQueue<Integer>(8);
+		for (int i = 0; i < 8; ++i)
+			q.offer(i);
+		
+		List<Integer> batch = new ArrayList<Integer>();
+		assertEquals(5, q.drainTo(batch, 5));
+		assertEquals(3, q.size());
+		assertEquals(3, q.drainTo(batch, 5));
+		assertEquals(0, q.drainTo(batch, 5));
+		
+		for (int i = 0; i < 8; ++i)
+			assertEquals(Integer.valueOf(i), batch.get(i));
+	}
+	
+	@Test
+	public void testTimedPollAndOfferGiveUp() throws InterruptedException
+	{
+		RingBufferQueue<Integer> q = new RingBufferQueue<Integer>(2);
+		assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+		assertTrue(q.offer(1, 10, TimeUnit.MILLISECONDS));
+		assertTrue(q.offer(2, 10, TimeUnit.MILLISECONDS));
+		assertFalse(q.offer(3, 10, TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void testBlockedTakerIsWokenUp() throws Throwable
+	{
+		final RingBufferQueue<Integer> q = new RingBufferQueue<Integer>(1);
+		final AtomicLong taken = new AtomicLong(-1);
+		
+		Thread taker = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					taken.set(q.take());
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
+		};
+		taker.start();
+		
+		Thread.sleep(50);
+		q.put(42);
+		taker.join(10000);
+		
+		assertEquals(42, taken.get());
+	}
+	
+	@Test
+	public void testMpmcRingBufferDeliversEveryElementOnce() throws Throwable
+	{
+		checkMpmc(new RingBufferQueue<Long>(1));
+		checkMpmc(new RingBufferQueue<Long>(16));
+	}
+	
+	@Test
+	public void testMpmcMeteredTraysDeliverEveryElementOnce() throws Throwable
+	{
+		for (TrayType type : TrayType.values())
+		{
+			MeteredTray<Long> tray = new MeteredTray<Long>("test", type, 16);
+			checkMpmc(tray);
+			assertEquals(0, tray.getDepth());
+		}
+	}
+	
+	// =========================================================================
+	
+	private void checkMpmc(final BlockingQueue<Long> q) throws Throwable
+	{
+		final long total = (long) NUM_THREADS * NUM_ELEMENTS_PER_PRODUCER;
+		final AtomicLong sum = new AtomicLong(0);
+		final AtomicLong count = new AtomicLong(0);
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < NUM_THREADS; ++i)
+		{
+			final long offset = (long) i * NUM_ELEMENTS_PER_PRODUCER;
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						for (long j = 0; j < NUM_ELEMENTS_PER_PRODUCER; ++j)
+							q.put(offset + j);
+					}
+					catch (InterruptedException e)
+					{
+					}
+				}
+			});
+			
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					List<Long> batch = new ArrayList<Long>();
+					try
+					{
+						while (count.get() < total)
+						{
+							Long e = q.poll(10, TimeUnit.MILLISECONDS);
+							if (e == null)
+								continue;
+							
+							batch.add(e);
+							q.drainTo(batch, 7);
+							
+							for (Long x : batch)
+								sum.addAndGet(x);
+							count.addAndGet(batch.size());
+							batch.clear();
+						}
+					}
+					catch (InterruptedException e)
+					{
+					}
+				}
+			});
+		}
+		
+		for (Thread t : threads)
+			t.start();
+		for (Thread t : threads)
+			t.join(60000);
+		
+		assertEquals(total, count.get());
+		assertEquals(total * (total - 1) / 2, sum.get());
+		assertTrue(q.isEmpty());
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import org.sweble.wikitext.articlecruncher.Job;
+import org.sweble.wikitext.articlecruncher.Nexus;
+import org.sweble.wikitext.articlecruncher.ProcessingNodeFactory;
+import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
+import org.sweble.wikitext.articlecruncher.utils.MeteredTray;
+import org.sweble.wikitext.articlecruncher.utils.TrayType;
+import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
+
+/**
+ * Compares the throughput of the tray implementations on small jobs. Not run
+ * as part of the test suite; start it with the test class path.
+ * 
+ * The first part moves jobs through a single tray with a varying number of
+ * producer and consumer threads. The second part pushes jobs through a
+ * complete Nexus where processing does nothing, so that the trays dominate
+ * the cost.
+ */
+public class TrayBenchmark
+		extends
+			CruncherTestBase
+{
+	private static final int TRAY_CAPACITY = 16;
+	
+	private static final int JOBS_PER_PRODUCER = 1 << 20;
+	
+	private static final int BATCH_SIZE = 64;
+	
+	private static final int[] NUM_THREADS = { 1, 2, 4 };
+	
+	private static final int ROUNDS = 3;
+	
+	// =========================================================================
+	
+	public static void main(String[] args) throws Throwable
+	{
+		for (int round = 0; round < ROUNDS; ++round)
+		{
+			System.out.println("Round " + (round + 1) + " of " + ROUNDS);
+			
+			for (TrayType type : TrayType.values())
+			{
+				for (int n : NUM_THREADS)
+				{
+					benchmarkTray(type, n, false);
+					benchmarkTray(type, n, true);
+				}
+			}
+			
+			for (TrayType type : TrayType.values())
+				new TrayBenchmark().benchmarkNexus(type);
+		}
+	}
+	
+	// =========================================================================
+	
+	private static void benchmarkTray(
+			TrayType type,
+			int numThreads,
+			final boolean batched) throws InterruptedException
+	{
+		final MeteredTray<Job> tray = new MeteredTray<Job>("Tray", type, TRAY_CAPACITY);
+		
+		final Job job = new TestJob();
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < numThreads; ++i)
+		{
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						for (int j = 0; j < JOBS_PER_PRODUCER; ++j)
+							tray.put(job);
+					}
+					catch (InterruptedException e)
+					{
+					}
+				}
+			});
+			
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					List<Job> batch = new ArrayList<Job>(BATCH_SIZE);
+					try
+					{
+						int taken = 0;
+						while (taken < JOBS_PER_PRODUCER)
+						{
+							if (batched)
+							{
+								batch.add(tray.take());
+								tray.drainTo(batch, Math.min(
+										BATCH_SIZE,
+										JOBS_PER_PRODUCER - taken) - 1);
+								taken += batch.size();
+								batch.clear();
+							}
+							else
+							{
+								tray.take();
+								++taken;
+							}
+						}
+					}
+					catch (InterruptedException e)
+					{
+					}
+				}
+			});
+		}
+		
+		long start = System.nanoTime();
+		for (Thread t : threads)
+			t.start();
+		for (Thread t : threads)
+			t.join();
+		long elapsed = System.nanoTime() - start;
+		
+		long jobs = (long) numThreads * JOBS_PER_PRODUCER;
+		System.out.println(String.format(
+				"  %-21s %d:%d %-8s %12.0f jobs/s   (%s)",
+				type,
+				numThreads,
+				numThreads,
+				batched ? "batched" : "single",
+				jobs / (elapsed / 1e9),
+				tray.formatMetrics()));
+	}
+	
+	private void benchmarkNexus(TrayType type) throws Throwable
+	{
+		Nexus nexus = new Nexus();
+		nexus.setUp(type, TRAY_CAPACITY, TRAY_CAPACITY, TRAY_CAPACITY);
+		nexus.addJobGenerator(createJobFactory());
+		nexus.addProcessingNode(createPnFactory());
+		nexus.addStorer(createStorerFactory());
+		
+		long start = System.nanoTime();
+		nexus.start();
+		long elapsed = System.nanoTime() - start;
+		
+		System.out.println(String.format(
+				"  Nexus %-15s %12.0f jobs/s",
+				type,
+				stored.get() / (elapsed / 1e9)));
+		
+		for (MeteredTray<Job> tray : nexus.getTrays())
+			System.out.println("    " + tray.formatMetrics());
+	}
+	
+	private ProcessingNodeFactory createPnFactory()
+	{
+		return new ProcessingNodeFactory()
+		{
+			@Override
+			public WorkerBase create(
+					final AbortHandler abortHandler,
+					final BlockingQueue<Job> inTray,
+					final BlockingQueue<Job> processedJobs)
+			{
+				return new WorkerBase("ProcessingNode", abortHandler)
+				{
+					@Override
+					protected void work() throws InterruptedException
+					{
+						while (true)
+						{
+							Job job = inTray.take();
+							job.processed((Object) null);
+							processedJobs.put(job);
+						}
+					}
+				};
+			}
+		};
+	}
+}
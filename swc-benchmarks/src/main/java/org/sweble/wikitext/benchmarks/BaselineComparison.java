@@ -0,0 +1,214 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compares two JMH result files (JSON format) benchmark by benchmark.
+ * 
+ * A benchmark regressed if its performance dropped or its normalized
+ * allocation rate (bytes per operation, as reported by the GC profiler) grew
+ * by more than the given tolerance. Whether a higher score is better depends
+ * on the benchmark mode: throughput ("thrpt") scores are operations per time
+ * unit, all other modes ("avgt", "sample", "ss") report time per operation.
+ * The reported score change is therefore normalized: a positive change
+ * always means the benchmark got faster.
+ */
+public class BaselineComparison
+{
+	private static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+	
+	// =========================================================================
+	
+	private final double tolerance;
+	
+	// =========================================================================
+	
+	/**
+	 * @param tolerance
+	 *            The tolerated relative change, e.g. 0.05 for 5%.
+	 */
+	public BaselineComparison(double tolerance)
+	{
+		this.tolerance = tolerance;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * @return True if no benchmark regressed.
+	 */
+	public boolean compare(File baseline, File current, PrintStream out) throws IOException
+	{
+		Map<String, Score> before = load(baseline);
+		Map<String, Score> after = load(current);
+		
+		out.println();
+		out.format("%-70s %14s %14s %-10s %8s %14s %14s %8s%n",
+				"Benchmark",
+				"Base",
+				"Current",
+				"Unit",
+				"Change",
+				"Base [B/op]",
+				"Current [B/op]",
+				"Change");
+		
+		boolean ok = true;
+		for (Entry<String, Score> e : after.entrySet())
+		{
+			Score b = before.get(e.getKey());
+			Score a = e.getValue();
+			if (b == null)
+			{
+				out.format("%-70s %14s %14.2f %-10s%n", e.getKey(), "-", a.score, a.unit);
+				continue;
+			}
+			
+			if (!b.unit.equals(a.unit))
+			{
+				out.format("%-70s %14.2f %14.2f %-10s  (baseline unit: %s, not compared)%n",
+						e.getKey(),
+						b.score,
+						a.score,
+						a.unit,
+						b.unit);
+				continue;
+			}
+			
+			double scoreChange = change(b.score, a.score);
+			if (!a.higherIsBetter)
+				scoreChange = -scoreChange;
+			
+			double allocChange = change(b.allocated, a.allocated);
+			
+			boolean regressed = (scoreChange < -tolerance) || (allocChange > tolerance);
+			ok &= !regressed;
+			
+			out.format("%-70s %14.2f %14.2f %-10s %+7.1f%% %14.0f %14.0f %+7.1f%%%s%n",
+					e.getKey(),
+					b.score,
+					a.score,
+					a.unit,
+					scoreChange * 100.,
+					b.allocated,
+					a.allocated,
+					allocChange * 100.,
+					regressed ? "  REGRESSION" : "");
+		}
+		
+		return ok;
+	}
+	
+	private static double change(double before, double after)
+	{
+		if (before == 0. || Double.isNaN(before) || Double.isNaN(after))
+			return 0.;
+		return (after - before) / before;
+	}
+	
+	// =========================================================================
+	
+	private static Map<String, Score> load(File file) throws IOException
+	{
+		Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try
+		{
+			Map<String, Score> scores = new LinkedHashMap<String, Score>();
+			
+			JsonArray results = new JsonParser().parse(in).getAsJsonArray();
+			for (JsonElement r : results)
+			{
+				JsonObject result = r.getAsJsonObject();
+				
+				JsonObject primary = result.getAsJsonObject("primaryMetric");
+				
+				Score score = new Score();
+				score.score = primary.get("score").getAsDouble();
+				score.unit = primary.get("scoreUnit").getAsString();
+				score.higherIsBetter = "thrpt".equals(result.get("mode").getAsString());
+				
+				JsonObject secondary = result.getAsJsonObject("secondaryMetrics");
+				if (secondary != null)
+				{
+					for (Entry<String, JsonElement> m : secondary.entrySet())
+					{
+						// The GC profiler prefixes its metrics with a middle dot
+						if (m.getKey().endsWith(ALLOC_RATE_NORM))
+							score.allocated = m.getValue().getAsJsonObject().get("score").getAsDouble();
+					}
+				}
+				
+				scores.put(makeKey(result), score);
+			}
+			
+			return scores;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	private static String makeKey(JsonObject result)
+	{
+		String name = result.get("benchmark").getAsString();
+		name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+		
+		JsonObject params = result.getAsJsonObject("params");
+		if (params == null)
+			return name;
+		
+		StringBuilder b = new StringBuilder(name);
+		for (Entry<String, JsonElement> p : params.entrySet())
+			b.append(':').append(p.getValue().getAsString());
+		
+		return b.toString();
+	}
+	
+	// =========================================================================
+	
+	private static final class Score
+	{
+		double score;
+		
+		String unit;
+		
+		/**
+		 * True for throughput, false for modes which measure time per
+		 * operation.
+		 */
+		boolean higherIsBetter;
+		
+		double allocated = Double.NaN;
+	}
+}
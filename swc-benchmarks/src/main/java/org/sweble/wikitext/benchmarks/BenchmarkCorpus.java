@@ -0,0 +1,222 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A set of pages the benchmarks are run on.
+ * 
+ * The corpora called "nopkg-*" are the test inputs of the parser which are
+ * copied into the benchmark jar when the module is built. The corpus called
+ * {@link #SYNTHETIC_TEMPLATES} is generated and consists of pages that make
+ * heavy use of templates and parser functions.
+ */
+public final class BenchmarkCorpus
+{
+	public static final String SYNTHETIC_TEMPLATES = "synthetic-templates";
+	
+	private static final String CORPORA_DIR = "corpora/";
+	
+	private static final String EXTENSION = ".wikitext";
+	
+	// =========================================================================
+	
+	private final String name;
+	
+	private final List<Page> pages;
+	
+	private final Map<String, String> templates;
+	
+	// =========================================================================
+	
+	BenchmarkCorpus(
+			String name,
+			List<Page> pages,
+			Map<String, String> templates)
+	{
+		this.name = name;
+		this.pages = Collections.unmodifiableList(pages);
+		this.templates = Collections.unmodifiableMap(templates);
+	}
+	
+	// =========================================================================
+	
+	public static BenchmarkCorpus load(String name) throws IOException
+	{
+		if (SYNTHETIC_TEMPLATES.equals(name))
+			return SyntheticTemplateCorpus.generate(name);
+		
+		List<Page> pages = new ArrayList<Page>();
+		
+		String dir = CORPORA_DIR + name + "/";
+		URL url = BenchmarkCorpus.class.getClassLoader().getResource(dir);
+		if (url == null)
+			throw new IOException("Corpus `" + name + "' not found on classpath");
+		
+		if ("jar".equals(url.getProtocol()))
+		{
+			JarURLConnection conn = (JarURLConnection) url.openConnection();
+			JarFile jar = conn.getJarFile();
+			
+			Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements())
+			{
+				JarEntry entry = entries.nextElement();
+				if (entry.getName().startsWith(dir) && entry.getName().endsWith(EXTENSION))
+					pages.add(readPage(entry.getName(), jar.getInputStream(entry)));
+			}
+		}
+		else
+		{
+			gatherFiles(new File(URLDecoder.decode(url.getPath(), "UTF-8")), pages);
+		}
+		
+		if (pages.isEmpty())
+			throw new IOException("Corpus `" + name + "' is empty");
+		
+		// Jar and file system list entries in no particular order
+		Collections.sort(pages);
+		
+		return new BenchmarkCorpus(name, pages, new HashMap<String, String>());
+	}
+	
+	private static void gatherFiles(File dir, List<Page> pages) throws IOException
+	{
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		
+		for (File f : files)
+		{
+			if (f.isDirectory())
+				gatherFiles(f, pages);
+			else if (f.getName().endsWith(EXTENSION))
+				pages.add(readPage(f.getPath(), new FileInputStream(f)));
+		}
+	}
+	
+	private static Page readPage(String path, InputStream in) throws IOException
+	{
+		try
+		{
+			String fileName = path.substring(path.lastIndexOf('/') + 1);
+			String title = URLDecoder.decode(
+					fileName.substring(0, fileName.length() - EXTENSION.length()),
+					"UTF-8");
+			
+			return new Page(title, IOUtils.toString(in, "UTF-8"));
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	// =========================================================================
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	public List<Page> getPages()
+	{
+		return pages;
+	}
+	
+	/**
+	 * @return A map from full template titles (including the namespace) to
+	 *         the wikitext of the template.
+	 */
+	public Map<String, String> getTemplates()
+	{
+		return templates;
+	}
+	
+	/**
+	 * @return The size of all pages in characters.
+	 */
+	public long getSize()
+	{
+		long size = 0;
+		for (Page page : pages)
+			size += page.getWikitext().length();
+		return size;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"%s (%d pages, %d templates, %d characters)",
+				name,
+				pages.size(),
+				templates.size(),
+				getSize());
+	}
+	
+	// =========================================================================
+	
+	public static final class Page
+			implements
+				Comparable<Page>
+	{
+		private final String title;
+		
+		private final String wikitext;
+		
+		public Page(String title, String wikitext)
+		{
+			this.title = title;
+			this.wikitext = wikitext;
+		}
+		
+		public String getTitle()
+		{
+			return title;
+		}
+		
+		public String getWikitext()
+		{
+			return wikitext;
+		}
+		
+		@Override
+		public int compareTo(Page o)
+		{
+			return title.compareTo(o.title);
+		}
+	}
+}
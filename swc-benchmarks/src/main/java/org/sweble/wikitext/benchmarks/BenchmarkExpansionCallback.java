@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.util.Map;
+
+import org.sweble.wikitext.engine.ExpansionCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.FullPreprocessedPage;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+
+/**
+ * Serves the templates of a benchmark corpus. Preprocessed pages are not
+ * cached so that every expansion performs the same amount of work.
+ */
+public class BenchmarkExpansionCallback
+		implements
+			ExpansionCallback
+{
+	private final Map<String, String> templates;
+	
+	// =========================================================================
+	
+	public BenchmarkExpansionCallback(Map<String, String> templates)
+	{
+		this.templates = templates;
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public FullPage retrieveWikitext(
+			ExpansionFrame expansionFrame,
+			PageTitle pageTitle) throws Exception
+	{
+		String text = templates.get(pageTitle.getDenormalizedFullTitle());
+		if (text == null)
+			return null;
+		
+		return new FullPage(new PageId(pageTitle, -1), text);
+	}
+	
+	@Override
+	public String fileUrl(PageTitle pageTitle, int width, int height) throws Exception
+	{
+		return null;
+	}
+	
+	@Override
+	public FullPreprocessedPage retrievePreprocessedPage(
+			ExpansionFrame expansionFrame,
+			PageId pageId,
+			boolean forInclusion) throws Exception
+	{
+		return null;
+	}
+	
+	@Override
+	public void cachePreprocessedPage(
+			ExpansionFrame expansionFrame,
+			FullPreprocessedPage page) throws Exception
+	{
+	}
+}
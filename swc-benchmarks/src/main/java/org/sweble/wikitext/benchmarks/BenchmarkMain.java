@@ -0,0 +1,95 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, stores the results as
+ * JSON and optionally compares them against the results of an earlier run.
+ * 
+ * <pre>
+ * Usage: BenchmarkMain [--result FILE] [--baseline FILE] [--tolerance PERCENT] [REGEX]
+ * </pre>
+ * 
+ * The program terminates with exit code 1 if the comparison with the
+ * baseline revealed a regression.
+ */
+public class BenchmarkMain
+{
+	private static final String DEFAULT_RESULT_FILE = "swc-benchmarks-result.json";
+	
+	private static final double DEFAULT_TOLERANCE = 5.;
+	
+	// =========================================================================
+	
+	public static void main(String[] args) throws Exception
+	{
+		String include = ".*";
+		File result = new File(DEFAULT_RESULT_FILE);
+		File baseline = null;
+		double tolerance = DEFAULT_TOLERANCE;
+		
+		for (int i = 0; i < args.length; ++i)
+		{
+			if (args[i].equals("--result") && i + 1 < args.length)
+			{
+				result = new File(args[++i]);
+			}
+			else if (args[i].equals("--baseline") && i + 1 < args.length)
+			{
+				baseline = new File(args[++i]);
+			}
+			else if (args[i].equals("--tolerance") && i + 1 < args.length)
+			{
+				tolerance = Double.parseDouble(args[++i]);
+			}
+			else if (args[i].startsWith("--"))
+			{
+				System.err.println("Usage: java -jar benchmarks.jar [--result FILE] [--baseline FILE] [--tolerance PERCENT] [REGEX]");
+				System.exit(2);
+			}
+			else
+			{
+				include = args[i];
+			}
+		}
+		
+		Options options = new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result.getPath())
+				.build();
+		
+		new Runner(options).run();
+		
+		if (baseline != null)
+		{
+			BaselineComparison cmp = new BaselineComparison(tolerance / 100.);
+			if (!cmp.compare(baseline, result, System.out))
+				System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sweble.wikitext.benchmarks.BenchmarkCorpus.Page;
+import org.sweble.wikitext.engine.EngineOptions;
+import org.sweble.wikitext.engine.ExpansionCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.WtEngineImpl;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.parser.ParserConfig;
+import org.sweble.wikitext.parser.WikitextEncodingValidator;
+import org.sweble.wikitext.parser.WikitextParser;
+import org.sweble.wikitext.parser.WikitextPostprocessor;
+import org.sweble.wikitext.parser.WikitextPreprocessor;
+import org.sweble.wikitext.parser.WtEntityMapImpl;
+import org.sweble.wikitext.parser.encval.ValidatedWikitext;
+import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
+import org.sweble.wikitext.parser.nodes.WtPreproWikitextPage;
+import org.sweble.wikitext.parser.parser.PreprocessorToParserTransformer;
+import org.sweble.wikitext.parser.preprocessor.PreprocessedWikitext;
+
+import de.fau.cs.osr.ptk.common.Warning;
+
+/**
+ * Holds a corpus and the result of every pipeline stage for every page of the
+ * corpus. A benchmark of a stage takes the results of the previous stage as
+ * input.
+ * 
+ * The stage methods mirror the private stages of {@link WtEngineImpl} minus
+ * logging and error handling.
+ */
+@State(Scope.Benchmark)
+public class CorpusState
+{
+	@Param({
+			"nopkg-basic",
+			"nopkg-complex",
+			"nopkg-regression",
+			BenchmarkCorpus.SYNTHETIC_TEMPLATES })
+	public String corpusName;
+	
+	// =========================================================================
+	
+	private WikiConfig wikiConfig;
+	
+	private ParserConfig parserConfig;
+	
+	private WtEngineImpl engine;
+	
+	private ExpansionCallback callback;
+	
+	private WikitextEncodingValidator validator;
+	
+	private WikitextPreprocessor preprocessor;
+	
+	private WikitextParser parser;
+	
+	private WikitextPostprocessor postprocessor;
+	
+	// =========================================================================
+	
+	private BenchmarkCorpus corpus;
+	
+	private PageTitle[] titles;
+	
+	private String[] wikitext;
+	
+	private ValidatedWikitext[] validated;
+	
+	private WtPreproWikitextPage[] preprocessed;
+	
+	private PreprocessedWikitext[] transformed;
+	
+	private WtParsedWikitextPage[] postprocessed;
+	
+	// =========================================================================
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		wikiConfig = DefaultConfigEnWp.generate();
+		parserConfig = wikiConfig.getParserConfig();
+		engine = new WtEngineImpl(wikiConfig);
+		
+		validator = new WikitextEncodingValidator();
+		preprocessor = new WikitextPreprocessor(parserConfig);
+		parser = new WikitextParser(parserConfig);
+		postprocessor = new WikitextPostprocessor(parserConfig);
+		
+		corpus = BenchmarkCorpus.load(corpusName);
+		callback = new BenchmarkExpansionCallback(corpus.getTemplates());
+		
+		List<Page> pages = corpus.getPages();
+		
+		List<PageTitle> titles = new ArrayList<PageTitle>();
+		List<String> wikitext = new ArrayList<String>();
+		List<ValidatedWikitext> validated = new ArrayList<ValidatedWikitext>();
+		List<WtPreproWikitextPage> preprocessed = new ArrayList<WtPreproWikitextPage>();
+		List<PreprocessedWikitext> transformed = new ArrayList<PreprocessedWikitext>();
+		List<WtParsedWikitextPage> postprocessed = new ArrayList<WtParsedWikitextPage>();
+		
+		for (Page page : pages)
+		{
+			try
+			{
+				PageTitle title = PageTitle.make(wikiConfig, page.getTitle());
+				
+				ValidatedWikitext v = validate(title, page.getWikitext());
+				WtPreproWikitextPage ppAst = preprocess(title, v);
+				WtPreproWikitextPage pprAst = expand(
+						title,
+						(WtPreproWikitextPage) ppAst.deepCloneWrapException());
+				PreprocessedWikitext t = transform(pprAst);
+				WtParsedWikitextPage pAst = postprocess(parse(t, title), title);
+				
+				titles.add(title);
+				wikitext.add(page.getWikitext());
+				validated.add(v);
+				preprocessed.add(ppAst);
+				transformed.add(t);
+				postprocessed.add(pAst);
+			}
+			catch (Exception e)
+			{
+				// Some test inputs are meant to break the pipeline
+				System.err.println("Skipping page `" + page.getTitle() + "': " + e);
+			}
+		}
+		
+		int n = titles.size();
+		this.titles = titles.toArray(new PageTitle[n]);
+		this.wikitext = wikitext.toArray(new String[n]);
+		this.validated = validated.toArray(new ValidatedWikitext[n]);
+		this.preprocessed = preprocessed.toArray(new WtPreproWikitextPage[n]);
+		this.transformed = transformed.toArray(new PreprocessedWikitext[n]);
+		this.postprocessed = postprocessed.toArray(new WtParsedWikitextPage[n]);
+	}
+	
+	// =========================================================================
+	
+	public int size()
+	{
+		return titles.length;
+	}
+	
+	public BenchmarkCorpus getCorpus()
+	{
+		return corpus;
+	}
+	
+	public WikiConfig getWikiConfig()
+	{
+		return wikiConfig;
+	}
+	
+	public PageTitle getTitle(int i)
+	{
+		return titles[i];
+	}
+	
+	public String getWikitext(int i)
+	{
+		return wikitext[i];
+	}
+	
+	public ValidatedWikitext getValidated(int i)
+	{
+		return validated[i];
+	}
+	
+	/**
+	 * Expansion alters the AST in place. Each expansion therefore needs its
+	 * own copy of the preprocessed page.
+	 */
+	public WtPreproWikitextPage copyOfPreprocessed(int i)
+	{
+		return (WtPreproWikitextPage) preprocessed[i].deepCloneWrapException();
+	}
+	
+	public PreprocessedWikitext getTransformed(int i)
+	{
+		return transformed[i];
+	}
+	
+	public WtParsedWikitextPage getPostprocessed(int i)
+	{
+		return postprocessed[i];
+	}
+	
+	// =========================================================================
+	
+	public ValidatedWikitext validate(PageTitle title, String wikitext) throws Exception
+	{
+		return validator.validate(
+				parserConfig,
+				new WtEntityMapImpl(),
+				title.getDenormalizedFullTitle(),
+				wikitext);
+	}
+	
+	public WtPreproWikitextPage preprocess(
+			PageTitle title,
+			ValidatedWikitext validated) throws Exception
+	{
+		return (WtPreproWikitextPage) preprocessor.parseArticle(
+				validated,
+				title.getDenormalizedFullTitle(),
+				false);
+	}
+	
+	/**
+	 * Validates the wikitext while the preprocessor reads it.
+	 */
+	public WtPreproWikitextPage preprocessSinglePass(PageTitle title, String wikitext) throws Exception
+	{
+		return (WtPreproWikitextPage) preprocessor.parseArticle(
+				wikitext,
+				new WtEntityMapImpl(),
+				title.getDenormalizedFullTitle(),
+				false);
+	}
+	
+	public WtPreproWikitextPage expand(
+			PageTitle title,
+			WtPreproWikitextPage ppAst) throws Exception
+	{
+		ExpansionFrame frame = new ExpansionFrame(
+				engine,
+				callback,
+				EngineOptions.DEFAULT,
+				title,
+				ppAst.getEntityMap(),
+				new LinkedList<Warning>(ppAst.getWarnings()),
+				engine.nf().logExpansionPass());
+		
+		return (WtPreproWikitextPage) frame.expand(ppAst);
+	}
+	
+	/**
+	 * Turns an expanded page back into text for the parser. The transformation
+	 * registers entities in the page's entity map and is therefore performed
+	 * only once per page and not as part of the parser benchmark.
+	 */
+	public PreprocessedWikitext transform(WtPreproWikitextPage pprAst)
+	{
+		return PreprocessorToParserTransformer.transform(
+				pprAst,
+				wikiConfig.getEngineConfig().isTrimTransparentBeforeParsing());
+	}
+	
+	public WtParsedWikitextPage parse(
+			PreprocessedWikitext preprocessed,
+			PageTitle title) throws Exception
+	{
+		return (WtParsedWikitextPage) parser.parseArticle(
+				preprocessed,
+				title.getTitle());
+	}
+	
+	public WtParsedWikitextPage postprocess(
+			WtParsedWikitextPage pAst,
+			PageTitle title)
+	{
+		return (WtParsedWikitextPage) postprocessor.postprocess(
+				pAst,
+				title.getTitle());
+	}
+}
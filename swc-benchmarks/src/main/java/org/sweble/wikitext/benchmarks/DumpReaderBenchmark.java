@@ -0,0 +1,165 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sweble.wikitext.dumpreader.DumpField;
+import org.sweble.wikitext.dumpreader.DumpReader;
+import org.sweble.wikitext.dumpreader.FastDumpReader;
+import org.sweble.wikitext.dumpreader.model.DumpConverter;
+import org.sweble.wikitext.dumpreader.model.Page;
+
+/**
+ * Compares the JAXB based {@link DumpReader} with the {@link FastDumpReader}
+ * on a synthetic export 0.10 dump. One operation reads the whole dump and
+ * turns every page into a model {@link Page}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DumpReaderBenchmark
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private static final int PAGE_COUNT = 500;
+	
+	private static final int REVISIONS_PER_PAGE = 3;
+	
+	private static final int PARAGRAPHS_PER_TEXT = 20;
+	
+	private byte[] dump;
+	
+	private Logger logger;
+	
+	// =========================================================================
+	
+	@Setup
+	public void setUp()
+	{
+		logger = Logger.getLogger(getClass());
+		logger.setLevel(Level.WARN);
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append("<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" version=\"0.10\" xml:lang=\"en\">\n");
+		sb.append("  <siteinfo>\n");
+		sb.append("    <sitename>Benchmark</sitename>\n");
+		sb.append("  </siteinfo>\n");
+		
+		int revId = 1;
+		for (int i = 1; i <= PAGE_COUNT; ++i)
+		{
+			sb.append("  <page>\n");
+			sb.append("    <title>Page " + i + "</title>\n");
+			sb.append("    <ns>0</ns>\n");
+			sb.append("    <id>" + i + "</id>\n");
+			for (int j = 0; j < REVISIONS_PER_PAGE; ++j, ++revId)
+			{
+				sb.append("    <revision>\n");
+				sb.append("      <id>" + revId + "</id>\n");
+				if (j > 0)
+					sb.append("      <parentid>" + (revId - 1) + "</parentid>\n");
+				sb.append("      <timestamp>2012-05-21T11:11:11Z</timestamp>\n");
+				sb.append("      <contributor>\n");
+				sb.append("        <username>User " + (revId % 17) + "</username>\n");
+				sb.append("        <id>" + (revId % 17) + "</id>\n");
+				sb.append("      </contributor>\n");
+				sb.append("      <comment>Revision " + revId + " &amp; more</comment>\n");
+				sb.append("      <model>wikitext</model>\n");
+				sb.append("      <format>text/x-wiki</format>\n");
+				sb.append("      <text xml:space=\"preserve\">");
+				for (int k = 0; k < PARAGRAPHS_PER_TEXT; ++k)
+				{
+					sb.append("== Section " + k + " ==\n");
+					sb.append("Some '''bold''' text with a [[Link|link]] and a {{Template|arg=&lt;b&gt;}}.\n\n");
+				}
+				sb.append("</text>\n");
+				sb.append("      <sha1>abcdfeghijklmnopqrstuvwxyz01234</sha1>\n");
+				sb.append("    </revision>\n");
+			}
+			sb.append("  </page>\n");
+		}
+		sb.append("</mediawiki>\n");
+		
+		dump = sb.toString().getBytes(UTF8);
+	}
+	
+	// =========================================================================
+	
+	@Benchmark
+	public void jaxb(final Blackhole bh) throws Exception
+	{
+		final DumpConverter converter = new DumpConverter();
+		
+		DumpReader dr = new DumpReader(new ByteArrayInputStream(dump), UTF8, "dump.xml", logger, false)
+		{
+			@Override
+			protected void processPage(Object mediaWiki, Object page) throws Exception
+			{
+				bh.consume(converter.convertPage(page));
+			}
+		};
+		
+		dr.unmarshal();
+	}
+	
+	@Benchmark
+	public void fastAllFields(Blackhole bh) throws Exception
+	{
+		readFast(DumpField.ALL, bh);
+	}
+	
+	@Benchmark
+	public void fastTitleNsIdText(Blackhole bh) throws Exception
+	{
+		readFast(DumpField.TITLE_NS_ID_TEXT, bh);
+	}
+	
+	private void readFast(Set<DumpField> fields, final Blackhole bh) throws Exception
+	{
+		FastDumpReader dr = new FastDumpReader(new ByteArrayInputStream(dump), UTF8, "dump.xml", logger, fields)
+		{
+			@Override
+			protected void processPage(Page page) throws Exception
+			{
+				bh.consume(page);
+			}
+		};
+		
+		dr.read();
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
+import org.sweble.wikitext.parser.nodes.WtPreproWikitextPage;
+
+/**
+ * Benchmarks the individual stages of the engine's pipeline. One operation
+ * processes every page of the corpus once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class EnginePipelineBenchmark
+{
+	@Benchmark
+	public void validate(CorpusState s, Blackhole bh) throws Exception
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(s.validate(s.getTitle(i), s.getWikitext(i)));
+	}
+	
+	@Benchmark
+	public void preprocess(CorpusState s, Blackhole bh) throws Exception
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(s.preprocess(s.getTitle(i), s.getValidated(i)));
+	}
+	
+	/**
+	 * Validation and preprocessing as two separate passes. Compare with
+	 * {@link #validateAndPreprocessSinglePass(CorpusState, Blackhole)}.
+	 */
+	@Benchmark
+	public void validateAndPreprocess(CorpusState s, Blackhole bh) throws Exception
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(s.preprocess(s.getTitle(i), s.validate(s.getTitle(i), s.getWikitext(i))));
+	}
+	
+	@Benchmark
+	public void validateAndPreprocessSinglePass(CorpusState s, Blackhole bh) throws Exception
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(s.preprocessSinglePass(s.getTitle(i), s.getWikitext(i)));
+	}
+	
+	@Benchmark
+	public void expand(
+			CorpusState s,
+			ExpansionInput in,
+			Blackhole bh) throws Exception
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(s.expand(s.getTitle(i), in.ppAsts[i]));
+	}
+	
+	@Benchmark
+	public void parse(CorpusState s, Blackhole bh) throws Exception
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(s.parse(s.getTransformed(i), s.getTitle(i)));
+	}
+	
+	@Benchmark
+	public void postprocess(
+			CorpusState s,
+			PostprocessingInput in,
+			Blackhole bh) throws Exception
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(s.postprocess(in.pAsts[i], s.getTitle(i)));
+	}
+	
+	/**
+	 * All stages in a row, the way WtEngineImpl.postprocess() runs them.
+	 */
+	@Benchmark
+	public void pipeline(CorpusState s, Blackhole bh) throws Exception
+	{
+		for (int i = 0; i < s.size(); ++i)
+		{
+			WtPreproWikitextPage pprAst = s.expand(
+					s.getTitle(i),
+					s.preprocess(
+							s.getTitle(i),
+							s.validate(s.getTitle(i), s.getWikitext(i))));
+			
+			bh.consume(s.postprocess(
+					s.parse(s.transform(pprAst), s.getTitle(i)),
+					s.getTitle(i)));
+		}
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Expansion alters the preprocessed AST, every invocation needs fresh
+	 * copies. Since one invocation processes a whole corpus the overhead of
+	 * an invocation level setup is negligible.
+	 */
+	@State(Scope.Thread)
+	public static class ExpansionInput
+	{
+		WtPreproWikitextPage[] ppAsts;
+		
+		@Setup(Level.Invocation)
+		public void setUp(CorpusState s)
+		{
+			ppAsts = new WtPreproWikitextPage[s.size()];
+			for (int i = 0; i < ppAsts.length; ++i)
+				ppAsts[i] = s.copyOfPreprocessed(i);
+		}
+	}
+	
+	/**
+	 * Postprocessing alters the parsed AST. Parsed ASTs cannot be cloned
+	 * (link targets are immutable nodes), so the pages are parsed again
+	 * before each invocation.
+	 */
+	@State(Scope.Thread)
+	public static class PostprocessingInput
+	{
+		WtParsedWikitextPage[] pAsts;
+		
+		@Setup(Level.Invocation)
+		public void setUp(CorpusState s) throws Exception
+		{
+			pAsts = new WtParsedWikitextPage[s.size()];
+			for (int i = 0; i < pAsts.length; ++i)
+				pAsts[i] = s.parse(s.getTransformed(i), s.getTitle(i));
+		}
+	}
+}
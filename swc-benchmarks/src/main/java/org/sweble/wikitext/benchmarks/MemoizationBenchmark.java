@@ -0,0 +1,175 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sweble.wikitext.engine.config.WikiConfigImpl;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.parser.MemoizationPolicy;
+import org.sweble.wikitext.parser.WikitextParser;
+import org.sweble.wikitext.parser.WtEntityMapImpl;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+/**
+ * Parses large synthetic list and table pages with different memoization
+ * policies. Besides the parse time the peak heap usage of each iteration is
+ * printed. The peak includes garbage that was not collected yet, so compare
+ * it between policies rather than reading it as an absolute number.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class MemoizationBenchmark
+{
+	@Benchmark
+	public WtNode parse(LargePage p) throws Exception
+	{
+		return p.parser.parseArticle(p.wikitext, new WtEntityMapImpl(), "Large page");
+	}
+	
+	// =========================================================================
+	
+	@State(Scope.Thread)
+	public static class LargePage
+	{
+		@Param({ "list", "table" })
+		String pageKind;
+		
+		@Param({ "512", "2048" })
+		int sizeKb;
+		
+		@Param({ "unbounded", "window-65536", "window-4096", "hot-only" })
+		String policy;
+		
+		String wikitext;
+		
+		WikitextParser parser;
+		
+		@Setup(Level.Trial)
+		public void setUp()
+		{
+			wikitext = "list".equals(pageKind) ?
+					makeListPage(sizeKb * 1024) :
+					makeTablePage(sizeKb * 1024);
+			
+			WikiConfigImpl config = DefaultConfigEnWp.generate();
+			config.getParserConfig().setMemoizationPolicy(makePolicy(policy));
+			parser = new WikitextParser(config.getParserConfig());
+		}
+		
+		@Setup(Level.Iteration)
+		public void resetPeakHeap()
+		{
+			System.gc();
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			{
+				if (pool.getType() == MemoryType.HEAP)
+					pool.resetPeakUsage();
+			}
+		}
+		
+		@TearDown(Level.Iteration)
+		public void printPeakHeap()
+		{
+			long peak = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			{
+				if (pool.getType() == MemoryType.HEAP)
+					peak += pool.getPeakUsage().getUsed();
+			}
+			System.out.println(String.format(
+					"%s/%dkB/%s: peak heap %.1f MB",
+					pageKind,
+					sizeKb,
+					policy,
+					peak / (1024. * 1024.)));
+		}
+	}
+	
+	// =========================================================================
+	
+	static MemoizationPolicy makePolicy(String name)
+	{
+		if ("unbounded".equals(name))
+		{
+			return MemoizationPolicy.UNBOUNDED;
+		}
+		else if (name.startsWith("window-"))
+		{
+			return MemoizationPolicy.bounded(
+					Integer.parseInt(name.substring("window-".length())));
+		}
+		else if ("hot-only".equals(name))
+		{
+			return MemoizationPolicy.UNBOUNDED.withMemoizedProductions(
+					"pExtWsStar",
+					"pExtWsPlus",
+					"Paragraph");
+		}
+		throw new IllegalArgumentException("Unknown policy: " + name);
+	}
+	
+	static String makeListPage(int size)
+	{
+		StringBuilder b = new StringBuilder(size + 256);
+		for (int i = 0; b.length() < size; ++i)
+		{
+			b.append("* Item ").append(i).append(" with a [[Link ").append(i).append("]]\n");
+			b.append("** Nested ''item'' with [http://example.org/").append(i).append(" a link]\n");
+			b.append("*** <span>Deep</span> item '''").append(i).append("'''\n");
+			if (i % 20 == 19)
+				b.append("\n# Numbered\n#: definition\n; term : description\n\n");
+		}
+		return b.toString();
+	}
+	
+	static String makeTablePage(int size)
+	{
+		StringBuilder b = new StringBuilder(size + 256);
+		b.append("{| class=\"wikitable\"\n");
+		b.append("|+ Caption\n");
+		b.append("! Header 1 !! Header 2 !! Header 3\n");
+		for (int i = 0; b.length() < size; ++i)
+		{
+			b.append("|-\n");
+			b.append("| [[Cell ").append(i).append("]] || ''value'' ").append(i);
+			b.append(" || style=\"color: red\" | [http://example.org/").append(i).append(" link]\n");
+		}
+		b.append("|}\n");
+		return b.toString();
+	}
+}
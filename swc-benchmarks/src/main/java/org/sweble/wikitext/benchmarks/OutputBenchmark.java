@@ -0,0 +1,191 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.output.HtmlRenderer;
+import org.sweble.wikitext.engine.output.HtmlRendererCallback;
+import org.sweble.wikitext.engine.output.MediaInfo;
+import org.sweble.wikitext.engine.serialization.EngineAstNodeConverter;
+import org.sweble.wikitext.engine.utils.UrlEncoding;
+import org.sweble.wikitext.parser.WtRtData;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtUrl;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import de.fau.cs.osr.ptk.common.ast.RtData;
+import de.fau.cs.osr.ptk.common.json.AstNodeJsonTypeAdapter;
+import de.fau.cs.osr.ptk.common.json.AstRtDataJsonTypeAdapter;
+import de.fau.cs.osr.ptk.common.xml.AstNodeXmlConverter;
+
+/**
+ * Benchmarks the consumers of the engine's output: the HTML renderer and the
+ * JSON and XML serialization of postprocessed ASTs. One operation processes
+ * every page of the corpus once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class OutputBenchmark
+{
+	@Benchmark
+	public void renderHtml(
+			CorpusState s,
+			Serializers ser,
+			Blackhole bh)
+	{
+		for (int i = 0; i < s.size(); ++i)
+		{
+			bh.consume(HtmlRenderer.print(
+					ser.rendererCallback,
+					s.getWikiConfig(),
+					s.getTitle(i),
+					s.getPostprocessed(i)));
+		}
+	}
+	
+	@Benchmark
+	public void serializeJson(
+			CorpusState s,
+			Serializers ser,
+			Blackhole bh)
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(ser.gson.toJson(s.getPostprocessed(i)));
+	}
+	
+	@Benchmark
+	public void serializeXml(
+			CorpusState s,
+			Serializers ser,
+			Blackhole bh)
+	{
+		for (int i = 0; i < s.size(); ++i)
+			bh.consume(ser.xstream.toXML(s.getPostprocessed(i)));
+	}
+	
+	// =========================================================================
+	
+	@State(Scope.Benchmark)
+	public static class Serializers
+	{
+		HtmlRendererCallback rendererCallback;
+		
+		Gson gson;
+		
+		XStream xstream;
+		
+		@Setup(Level.Trial)
+		public void setUp(CorpusState s)
+		{
+			rendererCallback = new RendererCallback();
+			
+			AstNodeJsonTypeAdapter<WtNode> nodeConverter =
+					AstNodeJsonTypeAdapter.forNodeType(WtNode.class);
+			EngineAstNodeConverter.setup(s.getWikiConfig(), nodeConverter);
+			
+			// GSON does not handle the polymorphic warnings list
+			nodeConverter.suppressProperty("warnings");
+			
+			AstRtDataJsonTypeAdapter<WtRtData> rtdConverter =
+					new AstRtDataJsonTypeAdapter<WtRtData>(WtRtData.class);
+			EngineAstNodeConverter.setup(rtdConverter);
+			
+			GsonBuilder builder = new GsonBuilder();
+			builder.registerTypeHierarchyAdapter(RtData.class, rtdConverter);
+			builder.registerTypeHierarchyAdapter(AstNode.class, nodeConverter);
+			builder.serializeNulls();
+			gson = builder.create();
+			
+			AstNodeXmlConverter<WtNode> xmlConverter =
+					AstNodeXmlConverter.forNodeType(WtNode.class);
+			EngineAstNodeConverter.setup(s.getWikiConfig(), xmlConverter);
+			
+			xstream = new XStream(new DomDriver());
+			xstream.registerConverter(xmlConverter);
+			xstream.setMode(XStream.NO_REFERENCES);
+		}
+	}
+	
+	// =========================================================================
+	
+	private static final class RendererCallback
+			implements
+				HtmlRendererCallback
+	{
+		protected static final String LOCAL_URL = "";
+		
+		@Override
+		public boolean resourceExists(PageTitle target)
+		{
+			return false;
+		}
+		
+		@Override
+		public MediaInfo getMediaInfo(String title, int width, int height) throws Exception
+		{
+			return null;
+		}
+		
+		@Override
+		public String makeUrl(PageTitle target)
+		{
+			String page = UrlEncoding.WIKI.encode(target.getNormalizedFullTitle());
+			String f = target.getFragment();
+			String url = page;
+			if (f != null && !f.isEmpty())
+				url = page + "#" + UrlEncoding.WIKI.encode(f);
+			return LOCAL_URL + "/" + url;
+		}
+		
+		@Override
+		public String makeUrl(WtUrl target)
+		{
+			if (target.getProtocol() == "")
+				return target.getPath();
+			return target.getProtocol() + ":" + target.getPath();
+		}
+		
+		@Override
+		public String makeUrlMissingTarget(String path)
+		{
+			return LOCAL_URL + "?title=" + path + "&amp;action=edit&amp;redlink=1";
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sweble.wikitext.benchmarks.BenchmarkCorpus.Page;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.parser.WikitextParser;
+import org.sweble.wikitext.parser.WtEntityMapImpl;
+import org.sweble.wikitext.parser.utils.CharSequenceReader;
+
+/**
+ * Measures how the parsers' input is prepared on the largest pages of the
+ * nopkg-* corpora. Run with the GC profiler to see the bytes allocated per
+ * operation.
+ * 
+ * The parsers used to size their buffers with
+ * <code>wikitext.getBytes().length</code> and read the wikitext through a
+ * {@link StringReader}. {@link #sizeByBytes(Pages, Blackhole)} reproduces
+ * that, {@link #sizeByChars(Pages, Blackhole)} is what the parsers do now.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class ParserInputBenchmark
+{
+	private static final String[] CORPORA = {
+			"nopkg-basic",
+			"nopkg-complex",
+			"nopkg-regression",
+			"nopkg-scopes",
+			"nopkg-tree" };
+	
+	private static final int PAGE_COUNT = 5;
+	
+	// =========================================================================
+	
+	@Benchmark
+	public void sizeByBytes(Pages p, Blackhole bh) throws IOException
+	{
+		for (String wikitext : p.wikitext)
+		{
+			int size = wikitext.getBytes().length;
+			bh.consume(size);
+			drain(new StringReader(wikitext), p.buffer, bh);
+		}
+	}
+	
+	@Benchmark
+	public void sizeByChars(Pages p, Blackhole bh) throws IOException
+	{
+		for (String wikitext : p.wikitext)
+		{
+			int size = wikitext.length();
+			bh.consume(size);
+			drain(new CharSequenceReader(wikitext), p.buffer, bh);
+		}
+	}
+	
+	@Benchmark
+	public void parse(Pages p, Blackhole bh) throws Exception
+	{
+		for (String wikitext : p.wikitext)
+			bh.consume(p.parser.parseArticle(wikitext, new WtEntityMapImpl(), "Benchmark"));
+	}
+	
+	private static void drain(Reader in, char[] buffer, Blackhole bh) throws IOException
+	{
+		int read;
+		while ((read = in.read(buffer, 0, buffer.length)) != -1)
+			bh.consume(read);
+	}
+	
+	// =========================================================================
+	
+	@State(Scope.Thread)
+	public static class Pages
+	{
+		List<String> wikitext;
+		
+		WikitextParser parser;
+		
+		char[] buffer = new char[4096];
+		
+		@Setup(Level.Trial)
+		public void setUp() throws IOException
+		{
+			List<Page> pages = new ArrayList<Page>();
+			for (String corpus : CORPORA)
+				pages.addAll(BenchmarkCorpus.load(corpus).getPages());
+			
+			Collections.sort(pages, new Comparator<Page>()
+			{
+				@Override
+				public int compare(Page a, Page b)
+				{
+					return b.getWikitext().length() - a.getWikitext().length();
+				}
+			});
+			
+			wikitext = new ArrayList<String>(PAGE_COUNT);
+			for (Page page : pages.subList(0, Math.min(PAGE_COUNT, pages.size())))
+				wikitext.add(page.getWikitext());
+			
+			WikiConfig config = DefaultConfigEnWp.generate();
+			parser = new WikitextParser(config.getParserConfig());
+		}
+	}
+}
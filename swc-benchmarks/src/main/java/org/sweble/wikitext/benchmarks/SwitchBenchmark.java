@@ -0,0 +1,196 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sweble.wikitext.engine.ExpansionCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.FullPreprocessedPage;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.WtEngineImpl;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+
+/**
+ * Expands a page which looks up keys in a template with a large #switch
+ * statement, like the country code tables found in Wikipedia. If the
+ * revision of the template is known, the switch statement is compiled into
+ * a jump table once. Otherwise each lookup compares the key with one case
+ * after the other.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class SwitchBenchmark
+{
+	@Benchmark
+	public EngProcessedPage expand(LookupPage p) throws Exception
+	{
+		return p.engine.expand(p.pageId, p.wikitext, p.callback);
+	}
+	
+	// =========================================================================
+	
+	@State(Scope.Thread)
+	public static class LookupPage
+	{
+		@Param({ "500" })
+		int cases;
+		
+		@Param({ "200" })
+		int lookups;
+		
+		@Param({ "scan", "jump" })
+		String mode;
+		
+		WtEngineImpl engine;
+		
+		PageId pageId;
+		
+		String wikitext;
+		
+		ExpansionCallback callback;
+		
+		@Setup(Level.Trial)
+		public void setUp() throws Exception
+		{
+			WikiConfig config = DefaultConfigEnWp.generate();
+			engine = new WtEngineImpl(config);
+			pageId = new PageId(PageTitle.make(config, "Lookups"), 1);
+			wikitext = makeLookupPage(cases, lookups);
+			
+			Map<String, String> templates = new HashMap<String, String>();
+			templates.put("Template:Lookup", makeSwitchTemplate(cases));
+			
+			// The jump table is keyed by revision, templates with an unknown
+			// revision are always scanned.
+			long revision = "jump".equals(mode) ? 1 : -1;
+			callback = new LookupCallback(templates, revision);
+		}
+	}
+	
+	// =========================================================================
+	
+	static String makeSwitchTemplate(int cases)
+	{
+		StringBuilder b = new StringBuilder(cases * 24);
+		b.append("{{#switch:{{{1}}}\n");
+		for (int i = 0; i < cases; ++i)
+			b.append("| K").append(i).append(" = Value ").append(i).append('\n');
+		b.append("| #default = Unknown\n");
+		b.append("}}");
+		return b.toString();
+	}
+	
+	static String makeLookupPage(int cases, int lookups)
+	{
+		StringBuilder b = new StringBuilder(lookups * 16);
+		for (int i = 0; i < lookups; ++i)
+		{
+			// Every tenth key misses and falls back to the default
+			int key = (i % 10 == 9) ? cases + i : (i * 37) % cases;
+			b.append("* {{Lookup|K").append(key).append("}}\n");
+		}
+		return b.toString();
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Serves the templates with a fixed revision. Preprocessed templates are
+	 * cached so that the benchmark measures the evaluation of the switch
+	 * statement rather than the preprocessing of the template.
+	 */
+	private static final class LookupCallback
+			implements
+				ExpansionCallback
+	{
+		private final Map<String, String> templates;
+		
+		private final long revision;
+		
+		private final Map<String, FullPreprocessedPage> preprocessed =
+				new HashMap<String, FullPreprocessedPage>();
+		
+		public LookupCallback(Map<String, String> templates, long revision)
+		{
+			this.templates = templates;
+			this.revision = revision;
+		}
+		
+		@Override
+		public FullPage retrieveWikitext(
+				ExpansionFrame expansionFrame,
+				PageTitle pageTitle) throws Exception
+		{
+			String text = templates.get(pageTitle.getDenormalizedFullTitle());
+			if (text == null)
+				return null;
+			
+			return new FullPage(new PageId(pageTitle, revision), text);
+		}
+		
+		@Override
+		public String fileUrl(PageTitle pageTitle, int width, int height) throws Exception
+		{
+			return null;
+		}
+		
+		@Override
+		public FullPreprocessedPage retrievePreprocessedPage(
+				ExpansionFrame expansionFrame,
+				PageId pageId,
+				boolean forInclusion) throws Exception
+		{
+			return preprocessed.get(key(pageId, forInclusion));
+		}
+		
+		@Override
+		public void cachePreprocessedPage(
+				ExpansionFrame expansionFrame,
+				FullPreprocessedPage page) throws Exception
+		{
+			preprocessed.put(key(page.getId(), page.isForInclusion()), page);
+		}
+		
+		private static String key(PageId pageId, boolean forInclusion)
+		{
+			return pageId.getTitle().getDenormalizedFullTitle() + (forInclusion ? "#incl" : "#view");
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.sweble.wikitext.benchmarks.BenchmarkCorpus.Page;
+
+/**
+ * Generates a corpus of pages which resemble template-heavy articles:
+ * infoboxes, citations, flag icons and a chain of nested templates. The
+ * generator is seeded, so every run produces the same corpus.
+ */
+final class SyntheticTemplateCorpus
+{
+	private static final long SEED = 0x5eb1eL;
+	
+	private static final int PAGE_COUNT = 40;
+	
+	private static final int PARAGRAPH_COUNT = 24;
+	
+	private static final int NESTING_DEPTH = 6;
+	
+	private static final String[] COUNTRIES = {
+			"DE", "FR", "GB", "US", "IT", "ES", "PL", "NL" };
+	
+	private static final String[] CITATION_TYPES = {
+			"web", "book", "journal", "news" };
+	
+	// =========================================================================
+	
+	private SyntheticTemplateCorpus()
+	{
+	}
+	
+	// =========================================================================
+	
+	public static BenchmarkCorpus generate(String name)
+	{
+		Random random = new Random(SEED);
+		
+		Map<String, String> templates = new HashMap<String, String>();
+		addTemplates(templates);
+		
+		List<Page> pages = new ArrayList<Page>(PAGE_COUNT);
+		for (int i = 0; i < PAGE_COUNT; ++i)
+			pages.add(new Page("Synthetic page " + i, makePage(i, random)));
+		
+		return new BenchmarkCorpus(name, pages, templates);
+	}
+	
+	// =========================================================================
+	
+	private static void addTemplates(Map<String, String> templates)
+	{
+		StringBuilder b = new StringBuilder();
+		b.append("{| class=\"infobox\"\n");
+		b.append("! colspan=\"2\" | {{{name|{{PAGENAME}}}}}\n");
+		for (int i = 1; i <= 8; ++i)
+		{
+			b.append(String.format(
+					"{{#if:{{{data%d|}}}|\n|-\n! {{{label%d|Label %d}}}\n| {{{data%d}}}\n}}",
+					i, i, i, i));
+		}
+		b.append("\n|}<noinclude>Documentation of the infobox.</noinclude>");
+		templates.put("Template:Infobox", b.toString());
+		
+		templates.put("Template:Cite", ""
+				+ "{{#switch:{{{type|web}}}"
+				+ "|web=[{{{url}}} {{{title}}}], retrieved {{{accessdate|unknown}}}"
+				+ "|book={{{author}}}: ''{{{title}}}''. {{{publisher|}}} {{{year}}}"
+				+ "|journal={{{author}}}: \"{{{title}}}\". ''{{{journal}}}'' {{{year}}}"
+				+ "|#default={{{title}}}"
+				+ "}}");
+		
+		StringBuilder flags = new StringBuilder("{{#switch:{{{1}}}");
+		for (String c : COUNTRIES)
+			flags.append("|" + c + "=[[File:Flag of " + c + ".svg|20px]] {{Abbr|" + c + "|Country " + c + "}}");
+		flags.append("|#default={{{1}}}}}");
+		templates.put("Template:Flag", flags.toString());
+		
+		templates.put("Template:Abbr", "<abbr title=\"{{{2}}}\">{{{1}}}</abbr>");
+		
+		for (int i = 1; i < NESTING_DEPTH; ++i)
+		{
+			templates.put(
+					"Template:Nested" + i,
+					"<span class=\"n" + i + "\">{{{1}}} {{Nested" + (i + 1) + "|{{{1}}}}}</span>");
+		}
+		templates.put("Template:Nested" + NESTING_DEPTH, "'''{{{1}}}'''");
+	}
+	
+	private static String makePage(int index, Random random)
+	{
+		StringBuilder b = new StringBuilder();
+		
+		b.append("{{Infobox\n| name = Synthetic page ").append(index);
+		for (int i = 1; i <= 8; ++i)
+		{
+			if (random.nextInt(4) != 0)
+				b.append(String.format("\n| label%d = Field %d\n| data%d = Value %d", i, i, i, random.nextInt(1000)));
+		}
+		b.append("\n}}\n\n");
+		
+		for (int p = 0; p < PARAGRAPH_COUNT; ++p)
+		{
+			if (p % 6 == 0)
+				b.append("== Section ").append(p / 6).append(" ==\n");
+			
+			b.append("Lorem ipsum dolor sit amet {{Flag|")
+					.append(COUNTRIES[random.nextInt(COUNTRIES.length)])
+					.append("}}, consectetur adipisici elit [[Link ").append(random.nextInt(100))
+					.append("|link]].");
+			
+			int citations = 1 + random.nextInt(3);
+			for (int c = 0; c < citations; ++c)
+			{
+				String type = CITATION_TYPES[random.nextInt(CITATION_TYPES.length)];
+				b.append("<ref>{{Cite|type=").append(type)
+						.append("|title=Title ").append(random.nextInt(10000))
+						.append("|author=Author ").append(random.nextInt(100))
+						.append("|url=http://example.org/").append(random.nextInt(10000))
+						.append("|journal=Journal|year=").append(1900 + random.nextInt(120))
+						.append("}}</ref>");
+			}
+			
+			if (random.nextInt(3) == 0)
+				b.append(" {{Nested1|nested ").append(p).append("}}");
+			
+			b.append("\n\n");
+		}
+		
+		b.append("== References ==\n<references/>\n");
+		
+		return b.toString();
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields of a page and its revisions that the {@link StaxPageReader} can
+ * extract from a dump. Elements of fields that are not part of a projection
+ * are skipped without materializing their content.
+ */
+public enum DumpField
+{
+	PAGE_ID,
+	PAGE_NAMESPACE,
+	PAGE_TITLE,
+	PAGE_REDIRECT,
+	
+	REVISION_ID,
+	REVISION_PARENT_ID,
+	REVISION_TIMESTAMP,
+	REVISION_MINOR,
+	REVISION_CONTRIBUTOR,
+	REVISION_COMMENT,
+	REVISION_TEXT,
+	REVISION_SHA1,
+	REVISION_FORMAT,
+	REVISION_MODEL;
+	
+	// =========================================================================
+	
+	/**
+	 * Everything the {@link org.sweble.wikitext.dumpreader.model.DumpConverter}
+	 * would extract.
+	 */
+	public static final Set<DumpField> ALL =
+			Collections.unmodifiableSet(EnumSet.allOf(DumpField.class));
+	
+	/**
+	 * Title, namespace, id and the text of each revision; what most consumers
+	 * of a dump actually look at.
+	 */
+	public static final Set<DumpField> TITLE_NS_ID_TEXT =
+			Collections.unmodifiableSet(EnumSet.of(
+					PAGE_TITLE,
+					PAGE_NAMESPACE,
+					PAGE_ID,
+					REVISION_TEXT));
+	
+	// =========================================================================
+	
+	public boolean isRevisionField()
+	{
+		return ordinal() >= REVISION_ID.ordinal();
+	}
+}
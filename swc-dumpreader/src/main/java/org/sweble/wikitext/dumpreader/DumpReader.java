@@ -27,6 +27,7 @@ import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -74,8 +75,20 @@ public abstract class DumpReader
 	
 	private boolean decompress;
 	
+	private final int decompressionThreads;
+	
 	private static final int LOOKAHEAD = 4096;
 	
+	/**
+	 * Creating contexts and schemas is expensive. Both are thread-safe and
+	 * shared by all readers.
+	 */
+	private static final ConcurrentHashMap<String, JAXBContext> contexts =
+			new ConcurrentHashMap<String, JAXBContext>();
+	
+	private static final ConcurrentHashMap<String, Schema> schemas =
+			new ConcurrentHashMap<String, Schema>();
+	
 	// =========================================================================
 	
 	/**
@@ -124,9 +137,30 @@ public abstract class DumpReader
 			Logger logger,
 			boolean useSchema) throws Exception
 	{
+		this(is, encoding, url, logger, useSchema, 1);
+	}
+	
+	/**
+	 * @param decompressionThreads
+	 *            The number of threads used to decompress a bzip2 compressed
+	 *            dump. With a single thread the dump is decompressed
+	 *            sequentially by the thread that reads the dump.
+	 */
+	public DumpReader(
+			InputStream is,
+			Charset encoding,
+			String url,
+			Logger logger,
+			boolean useSchema,
+			int decompressionThreads) throws Exception
+	{
+		if (decompressionThreads < 1)
+			throw new IllegalArgumentException("decompressionThreads must be positive");
+		
 		this.dumpInputStream = is;
 		this.dumpUri = url;
 		this.logger = logger;
+		this.decompressionThreads = decompressionThreads;
 		
 		logger.info("Setting up parser for file " + dumpUri);
 		
@@ -249,21 +283,16 @@ public abstract class DumpReader
 	private void getDumpInputStream() throws Exception
 	{
 		InputStream decomp;
-		if (dumpUri.endsWith(".bz2"))
-		{
-			decompress = true;
-			
-			compressedInputStream = new CountingInputStream(dumpInputStream);
-			
-			decomp = new BZip2CompressorInputStream(compressedInputStream, true);
-		}
-		else if (dumpUri.endsWith(".gz"))
+		if (isCompressed(dumpUri))
 		{
 			decompress = true;
 			
 			compressedInputStream = new CountingInputStream(dumpInputStream);
 			
-			decomp = new GzipCompressorInputStream(compressedInputStream);
+			decomp = openDecompressor(
+					compressedInputStream,
+					dumpUri,
+					decompressionThreads);
 		}
 		else
 		{
@@ -276,6 +305,37 @@ public abstract class DumpReader
 				new BufferedInputStream(decomp, LOOKAHEAD));
 	}
 	
+	static boolean isCompressed(String url)
+	{
+		return url.endsWith(".bz2") || url.endsWith(".gz");
+	}
+	
+	static InputStream openDecompressor(
+			InputStream compressed,
+			String url,
+			int threads) throws IOException
+	{
+		if (url.endsWith(".bz2"))
+		{
+			if (threads > 1)
+			{
+				return new ParallelBZip2InputStream(compressed, threads);
+			}
+			else
+			{
+				return new BZip2CompressorInputStream(compressed, true);
+			}
+		}
+		else if (url.endsWith(".gz"))
+		{
+			return new GzipCompressorInputStream(compressed);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown compression: " + url);
+		}
+	}
+	
 	private ExportSchemaVersion determineExportVersion() throws Exception
 	{
 		byte[] b = new byte[LOOKAHEAD];
@@ -346,12 +406,18 @@ public abstract class DumpReader
 	
 	private void setSchema(URL schemaUrl) throws Exception
 	{
-		SchemaFactory sf = SchemaFactory.newInstance(
-				javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI);
-		
-		sf.setResourceResolver(new LSResourceResolverImplementation());
-		
-		Schema schema = sf.newSchema(schemaUrl);
+		Schema schema = schemas.get(schemaUrl.toString());
+		if (schema == null)
+		{
+			SchemaFactory sf = SchemaFactory.newInstance(
+					javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI);
+			
+			sf.setResourceResolver(new LSResourceResolverImplementation());
+			
+			schema = sf.newSchema(schemaUrl);
+			
+			schemas.putIfAbsent(schemaUrl.toString(), schema);
+		}
 		
 		unmarshaller.setSchema(schema);
 		
@@ -433,7 +499,12 @@ public abstract class DumpReader
 	
 	private Unmarshaller createUnmarshaller(String contextPath) throws JAXBException
 	{
-		JAXBContext context = JAXBContext.newInstance(contextPath);
+		JAXBContext context = contexts.get(contextPath);
+		if (context == null)
+		{
+			context = JAXBContext.newInstance(contextPath);
+			contexts.putIfAbsent(contextPath, context);
+		}
 		
 		return context.createUnmarshaller();
 	}
@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.Reader;
 import java.net.URL;
+import java.util.Set;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
@@ -32,6 +33,7 @@ import javax.xml.bind.ValidationEventHandler;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 import javax.xml.bind.attachment.AttachmentUnmarshaller;
 import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
 import javax.xml.validation.Schema;
@@ -58,6 +60,8 @@ public class DumpUnmarshaller
 	
 	private DumpConverter converter;
 	
+	private StaxPageReader pageReader;
+	
 	// =========================================================================
 	
 	public DumpUnmarshaller(ExportSchemaVersion version, boolean enableSchema) throws JAXBException, SAXException
@@ -176,6 +180,33 @@ public class DumpUnmarshaller
 	
 	// =========================================================================
 	
+	/**
+	 * Reads a page fragment without JAXB and without validation, extracting
+	 * only the given fields. See {@link StaxPageReader}.
+	 */
+	public Page readPage(XMLStreamReader reader, Set<DumpField> fields) throws XMLStreamException
+	{
+		return getPageReader(fields).readPage(reader);
+	}
+	
+	/**
+	 * Reads a revision fragment without JAXB and without validation,
+	 * extracting only the given fields. See {@link StaxPageReader}.
+	 */
+	public Revision readRevision(XMLStreamReader reader, Set<DumpField> fields) throws XMLStreamException
+	{
+		return getPageReader(fields).readRevision(reader);
+	}
+	
+	private StaxPageReader getPageReader(Set<DumpField> fields)
+	{
+		if (pageReader == null || !pageReader.getFields().equals(fields))
+			pageReader = new StaxPageReader(fields);
+		return pageReader;
+	}
+	
+	// =========================================================================
+	
 	public <T> T unmarshalToRevisionType(Node node, Class<T> revisionType) throws JAXBException
 	{
 		if (revisionType != version.getRevisionType())
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.sweble.wikitext.dumpreader.StaxPageReader.RevisionHandler;
+import org.sweble.wikitext.dumpreader.model.Page;
+import org.sweble.wikitext.dumpreader.model.Revision;
+
+/**
+ * Reads a MediaWiki export without JAXB and without schema validation.
+ * 
+ * Pages are read by a {@link StaxPageReader} straight into the model classes
+ * and only the projected fields are extracted. Use the {@link DumpReader} if
+ * the dump has to be validated or if the generated JAXB types are needed.
+ */
+public abstract class FastDumpReader
+		implements
+			Closeable
+{
+	private static final String EXPORT_NAMESPACE_PREFIX =
+			"http://www.mediawiki.org/xml/export-";
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private final InputStream dumpInputStream;
+	
+	private final String dumpUri;
+	
+	private final XMLStreamReader xmlStreamReader;
+	
+	private final StaxPageReader pageReader;
+	
+	private final RevisionHandler revisionHandler = new RevisionHandler()
+	{
+		@Override
+		public boolean handleRevision(Page page, Revision revision) throws Exception
+		{
+			return processRevision(page, revision);
+		}
+	};
+	
+	private CountingInputStream decompressedInputStream;
+	
+	private CountingInputStream compressedInputStream;
+	
+	private long fileLength;
+	
+	private long parsedCount;
+	
+	private boolean decompress;
+	
+	// =========================================================================
+	
+	public FastDumpReader(
+			File dumpFile,
+			Charset encoding,
+			Logger logger,
+			Set<DumpField> fields) throws Exception
+	{
+		this(new FileInputStream(dumpFile), encoding, dumpFile.getAbsolutePath(), logger, fields);
+		
+		fileLength = dumpFile.length();
+	}
+	
+	public FastDumpReader(
+			InputStream is,
+			Charset encoding,
+			String url,
+			Logger logger,
+			Set<DumpField> fields) throws Exception
+	{
+		this.dumpInputStream = is;
+		this.dumpUri = url;
+		
+		logger.info("Setting up fast parser for file " + dumpUri);
+		
+		getDumpInputStream();
+		
+		pageReader = new StaxPageReader(fields);
+		
+		xmlStreamReader = getXmlStreamReader(encoding);
+		
+		fileLength = -1;
+		parsedCount = 0;
+	}
+	
+	// =========================================================================
+	
+	public void read() throws Exception
+	{
+		try
+		{
+			readMediaWiki();
+		}
+		finally
+		{
+			closeStreams();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		closeStreams();
+	}
+	
+	private void closeStreams()
+	{
+		try
+		{
+			xmlStreamReader.close();
+		}
+		catch (XMLStreamException e)
+		{
+			// Ignore, we're closing the underlying streams anyway
+		}
+		
+		IOUtils.closeQuietly(decompressedInputStream);
+		IOUtils.closeQuietly(compressedInputStream);
+		IOUtils.closeQuietly(dumpInputStream);
+	}
+	
+	public Set<DumpField> getFields()
+	{
+		return pageReader.getFields();
+	}
+	
+	/**
+	 * Lets the reader decode revision texts into buffers of the given pool.
+	 * The texts of the revisions handed to {@link #processPage(Page)} are then
+	 * {@link PooledText} instances which have to be released by the consumer.
+	 */
+	public void setTextBufferPool(TextBufferPool textBufferPool)
+	{
+		pageReader.setTextBufferPool(textBufferPool);
+	}
+	
+	public long getFileSize()
+	{
+		return fileLength;
+	}
+	
+	public long getDecompressedBytesRead() throws IOException
+	{
+		return decompressedInputStream.getCount();
+	}
+	
+	public long getCompressedBytesRead() throws IOException
+	{
+		if (decompress)
+		{
+			return compressedInputStream.getCount();
+		}
+		else
+		{
+			return getDecompressedBytesRead();
+		}
+	}
+	
+	public long getParsedCount()
+	{
+		return parsedCount;
+	}
+	
+	// =========================================================================
+	
+	protected abstract void processPage(Page page) throws Exception;
+	
+	/**
+	 * Called for each revision as soon as it was read, before the page is
+	 * handed to {@link #processPage(Page)}.
+	 * 
+	 * @return Return true to add the revision to the page's list or false if
+	 *         you handled it yourself.
+	 */
+	protected boolean processRevision(Page page, Revision revision) throws Exception
+	{
+		// Add by default
+		return true;
+	}
+	
+	// =========================================================================
+	
+	private void readMediaWiki() throws Exception
+	{
+		XMLStreamReader reader = xmlStreamReader;
+		
+		reader.nextTag();
+		reader.require(XMLStreamConstants.START_ELEMENT, null, "mediawiki");
+		
+		String ns = reader.getNamespaceURI();
+		if (ns == null || !ns.startsWith(EXPORT_NAMESPACE_PREFIX))
+			throw new IllegalArgumentException("Unknown xmlns");
+		
+		while (true)
+		{
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				if ("page".equals(reader.getLocalName()))
+				{
+					Page page = pageReader.readPage(reader, revisionHandler);
+					
+					++parsedCount;
+					
+					processPage(page);
+				}
+				else
+				{
+					// We're ignoring:
+					// - siteinfo
+					// - logitem
+					StaxPageReader.skipElement(reader);
+				}
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				break;
+			}
+			else if (event == XMLStreamConstants.END_DOCUMENT)
+			{
+				throw new XMLStreamException(
+						"Unexpected end of document",
+						reader.getLocation());
+			}
+		}
+	}
+	
+	// =========================================================================
+	
+	private void getDumpInputStream() throws Exception
+	{
+		InputStream decomp;
+		if (DumpReader.isCompressed(dumpUri))
+		{
+			decompress = true;
+			
+			compressedInputStream = new CountingInputStream(dumpInputStream);
+			
+			decomp = DumpReader.openDecompressor(compressedInputStream, dumpUri);
+		}
+		else
+		{
+			decompress = false;
+			
+			decomp = dumpInputStream;
+		}
+		
+		decompressedInputStream = new CountingInputStream(
+				new BufferedInputStream(decomp, BUFFER_SIZE));
+	}
+	
+	/**
+	 * See DumpReader.getXmlStreamReader() on why an encoding should be given.
+	 */
+	private XMLStreamReader getXmlStreamReader(Charset encoding) throws XMLStreamException
+	{
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		
+		// Dumps have neither DTDs nor entities of their own
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		
+		// Let the parser report text in chunks; skipped elements never get
+		// their text assembled that way
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		
+		if (encoding != null)
+		{
+			InputStreamReader isr = new InputStreamReader(decompressedInputStream, encoding);
+			return xmlInputFactory.createXMLStreamReader(isr);
+		}
+		else
+		{
+			return xmlInputFactory.createXMLStreamReader(decompressedInputStream);
+		}
+	}
+}
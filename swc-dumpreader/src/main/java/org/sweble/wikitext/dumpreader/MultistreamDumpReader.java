@@ -0,0 +1,360 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.log4j.Logger;
+import org.sweble.wikitext.dumpreader.model.DumpConverter;
+import org.sweble.wikitext.dumpreader.model.Page;
+
+/**
+ * Reads multistream dumps (<code>pages-articles-multistream.xml.bz2</code>)
+ * with the help of their index.
+ * 
+ * A multistream dump is a concatenation of bzip2 streams. The first stream
+ * contains the <code>&lt;mediawiki&gt;</code> start tag and the site info,
+ * each following stream contains a number of complete pages. The streams can
+ * therefore be decompressed and parsed independently: the reader completes
+ * each stream to a dump of its own by putting the header of the dump in front
+ * of the pages.
+ * 
+ * Pages are handed to a {@link DumpReaderListener} like
+ * {@link DumpReaderWithHandler} does. When several streams are read
+ * concurrently, the listener is called from several threads.
+ */
+public class MultistreamDumpReader
+		implements
+			Closeable
+{
+	private static final byte[] FOOTER = bytes("</mediawiki>");
+	
+	// =========================================================================
+	
+	private final RandomAccessFile file;
+	
+	private final String dumpUri;
+	
+	private final MultistreamIndex index;
+	
+	private final Charset encoding;
+	
+	private final Logger logger;
+	
+	private final boolean useSchema;
+	
+	private final byte[] header;
+	
+	// =========================================================================
+	
+	public MultistreamDumpReader(
+			File dumpFile,
+			MultistreamIndex index,
+			Charset encoding,
+			Logger logger,
+			boolean useSchema) throws IOException
+	{
+		if (index.getStreamCount() == 0)
+			throw new IllegalArgumentException("The index is empty");
+		
+		this.file = new RandomAccessFile(dumpFile, "r");
+		this.dumpUri = dumpFile.getAbsolutePath();
+		this.index = index;
+		this.encoding = encoding;
+		this.logger = logger;
+		this.useSchema = useSchema;
+		
+		try
+		{
+			this.header = decompress(0, index.getStreamOffset(0));
+		}
+		catch (IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+	
+	public MultistreamIndex getIndex()
+	{
+		return index;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Reads all pages of the dump.
+	 * 
+	 * @param threads
+	 *            The number of streams that are read concurrently.
+	 */
+	public void readAll(int threads, DumpReaderListener listener) throws Exception
+	{
+		read(0, index.getStreamCount(), threads, listener);
+	}
+	
+	/**
+	 * Reads the pages of the streams <code>fromStream</code> (inclusive) to
+	 * <code>toStream</code> (exclusive). Several readers can process disjoint
+	 * ranges of streams of the same dump.
+	 * 
+	 * @param threads
+	 *            The number of streams that are read concurrently.
+	 */
+	public void read(
+			int fromStream,
+			int toStream,
+			int threads,
+			final DumpReaderListener listener) throws Exception
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			List<Future<Void>> results = new ArrayList<Future<Void>>(toStream - fromStream);
+			for (int i = fromStream; i < toStream; ++i)
+			{
+				final int stream = i;
+				results.add(executor.submit(new Callable<Void>()
+				{
+					@Override
+					public Void call() throws Exception
+					{
+						readStream(stream, listener);
+						return null;
+					}
+				}));
+			}
+			
+			for (Future<Void> result : results)
+			{
+				try
+				{
+					result.get();
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Reads all pages of a single stream on the calling thread.
+	 */
+	public void readStream(int stream, DumpReaderListener listener) throws Exception
+	{
+		byte[] pages = decompress(
+				index.getStreamOffset(stream),
+				index.getStreamEnd(stream));
+		
+		InputStream in = new SequenceInputStream(
+				new SequenceInputStream(
+						new ByteArrayInputStream(header),
+						new ByteArrayInputStream(pages, 0, withoutFooter(pages))),
+				new ByteArrayInputStream(FOOTER));
+		
+		DumpReader reader = new DumpReaderWithHandler(
+				in,
+				encoding,
+				listener,
+				dumpUri + "#" + stream,
+				logger,
+				useSchema);
+		
+		try
+		{
+			reader.unmarshal();
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * @return The page with the given id or null if the index does not know
+	 *         the page.
+	 */
+	public Page getPageById(long pageId) throws Exception
+	{
+		int stream = index.getStreamByPageId(pageId);
+		if (stream < 0)
+			return null;
+		
+		return findPage(stream, BigInteger.valueOf(pageId), null);
+	}
+	
+	/**
+	 * @return The page with the given title or null if the index does not
+	 *         know the page.
+	 */
+	public Page getPageByTitle(String title) throws Exception
+	{
+		int stream = index.getStreamByTitle(title);
+		if (stream < 0)
+			return null;
+		
+		return findPage(stream, null, title);
+	}
+	
+	private Page findPage(int stream, final BigInteger id, final String title) throws Exception
+	{
+		final DumpConverter converter = new DumpConverter();
+		final Page[] found = new Page[1];
+		
+		readStream(stream, new DumpReaderListener()
+		{
+			@Override
+			public void handlePage(Object mediaWiki, Object page)
+			{
+				if (found[0] != null)
+					return;
+				
+				Page p;
+				try
+				{
+					p = converter.convertPage(page);
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+				
+				if ((id != null && id.equals(p.getId())) ||
+						(title != null && title.equals(p.getTitle())))
+					found[0] = p;
+			}
+			
+			@Override
+			public boolean handleRevisionOrUploadOrLogitem(Object page, Object revision)
+			{
+				return true;
+			}
+		});
+		
+		return found[0];
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Decompresses the stream between the given offsets.
+	 * 
+	 * @param end
+	 *            The offset following the stream or -1 to read until the end
+	 *            of the file.
+	 */
+	private byte[] decompress(long start, long end) throws IOException
+	{
+		byte[] compressed;
+		synchronized (file)
+		{
+			if (end < 0)
+				end = file.length();
+			
+			compressed = new byte[(int) (end - start)];
+			file.seek(start);
+			file.readFully(compressed);
+		}
+		
+		BZip2CompressorInputStream in = new BZip2CompressorInputStream(
+				new ByteArrayInputStream(compressed),
+				false);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream(8 * compressed.length);
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	/**
+	 * The last stream of a dump ends with the end tag of the dump, which
+	 * the reader appends to every stream.
+	 * 
+	 * @return The length of the given pages without the end tag.
+	 */
+	private static int withoutFooter(byte[] pages)
+	{
+		int end = pages.length;
+		while (end > 0 && Character.isWhitespace((char) pages[end - 1]))
+			--end;
+		
+		int start = end - FOOTER.length;
+		if (start >= 0 && Arrays.equals(FOOTER, Arrays.copyOfRange(pages, start, end)))
+			return start;
+		
+		return pages.length;
+	}
+	
+	private static byte[] bytes(String s)
+	{
+		try
+		{
+			return s.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The index of a multistream dump. Every line of the index has the form
+ * <code>offset:page id:title</code> where offset is the position of the
+ * bzip2 stream in the dump which contains the page.
+ */
+public final class MultistreamIndex
+{
+	/**
+	 * The offsets of all streams in ascending order.
+	 */
+	private final long[] streamOffsets;
+	
+	/**
+	 * The ids of all pages in ascending order.
+	 */
+	private final long[] pageIds;
+	
+	/**
+	 * The stream of the page at the same position in <code>pageIds</code>.
+	 */
+	private final int[] pageIdStreams;
+	
+	private final Map<String, Integer> titleStreams;
+	
+	// =========================================================================
+	
+	private MultistreamIndex(
+			long[] streamOffsets,
+			long[] pageIds,
+			int[] pageIdStreams,
+			Map<String, Integer> titleStreams)
+	{
+		this.streamOffsets = streamOffsets;
+		this.pageIds = pageIds;
+		this.pageIdStreams = pageIdStreams;
+		this.titleStreams = titleStreams;
+	}
+	
+	/**
+	 * Loads an index file. Files ending in <code>.bz2</code> are decompressed.
+	 */
+	public static MultistreamIndex load(File indexFile) throws IOException
+	{
+		InputStream in = new FileInputStream(indexFile);
+		try
+		{
+			if (indexFile.getName().endsWith(".bz2"))
+				in = new BZip2CompressorInputStream(in, true);
+			
+			return load(in);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+	
+	/**
+	 * Reads an uncompressed index. The stream is not closed.
+	 */
+	public static MultistreamIndex load(InputStream in) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		
+		List<Entry> entries = new ArrayList<Entry>();
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			if (line.isEmpty())
+				continue;
+			
+			int colon1 = line.indexOf(':');
+			int colon2 = (colon1 < 0) ? -1 : line.indexOf(':', colon1 + 1);
+			if (colon2 < 0)
+				throw new IOException("Malformed index line: " + line);
+			
+			try
+			{
+				entries.add(new Entry(
+						Long.parseLong(line.substring(0, colon1)),
+						Long.parseLong(line.substring(colon1 + 1, colon2)),
+						line.substring(colon2 + 1)));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IOException("Malformed index line: " + line);
+			}
+		}
+		
+		return build(entries);
+	}
+	
+	private static MultistreamIndex build(List<Entry> entries)
+	{
+		long[] offsets = new long[entries.size()];
+		for (int i = 0; i < offsets.length; ++i)
+			offsets[i] = entries.get(i).offset;
+		
+		Arrays.sort(offsets);
+		
+		int count = 0;
+		for (int i = 0; i < offsets.length; ++i)
+		{
+			if (count == 0 || offsets[count - 1] != offsets[i])
+				offsets[count++] = offsets[i];
+		}
+		long[] streamOffsets = Arrays.copyOf(offsets, count);
+		
+		long[] pageIds = new long[entries.size()];
+		for (int i = 0; i < pageIds.length; ++i)
+			pageIds[i] = entries.get(i).pageId;
+		Arrays.sort(pageIds);
+		
+		int[] pageIdStreams = new int[pageIds.length];
+		Map<String, Integer> titleStreams =
+				new HashMap<String, Integer>(2 * entries.size());
+		
+		for (Entry e : entries)
+		{
+			int stream = Arrays.binarySearch(streamOffsets, e.offset);
+			pageIdStreams[Arrays.binarySearch(pageIds, e.pageId)] = stream;
+			titleStreams.put(e.title, stream);
+		}
+		
+		return new MultistreamIndex(streamOffsets, pageIds, pageIdStreams, titleStreams);
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * The number of streams which contain pages. The stream with the header
+	 * of the dump is not counted.
+	 */
+	public int getStreamCount()
+	{
+		return streamOffsets.length;
+	}
+	
+	public long getStreamOffset(int stream)
+	{
+		return streamOffsets[stream];
+	}
+	
+	/**
+	 * @return The offset of the stream following the given stream or -1 if
+	 *         the given stream is the last stream of the dump.
+	 */
+	public long getStreamEnd(int stream)
+	{
+		return (stream + 1 < streamOffsets.length) ? streamOffsets[stream + 1] : -1;
+	}
+	
+	/**
+	 * @return The stream containing the page with the given id or -1 if the
+	 *         page is not in the index.
+	 */
+	public int getStreamByPageId(long pageId)
+	{
+		int i = Arrays.binarySearch(pageIds, pageId);
+		return (i >= 0) ? pageIdStreams[i] : -1;
+	}
+	
+	/**
+	 * @return The stream containing the page with the given title or -1 if
+	 *         the page is not in the index.
+	 */
+	public int getStreamByTitle(String title)
+	{
+		Integer stream = titleStreams.get(title);
+		return (stream != null) ? stream : -1;
+	}
+	
+	// =========================================================================
+	
+	private static final class Entry
+	{
+		private final long offset;
+		
+		private final long pageId;
+		
+		private final String title;
+		
+		public Entry(long offset, long pageId, String title)
+		{
+			this.offset = offset;
+			this.pageId = pageId;
+			this.title = title;
+		}
+	}
+}
@@ -0,0 +1,608 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Decompresses bzip2 compressed data on a pool of worker threads.
+ * 
+ * The blocks of a bzip2 stream are independent of each other. This stream
+ * scans the compressed input for the bit patterns that start a block or end
+ * a stream, wraps each block into a bzip2 stream of its own and hands it to a
+ * worker thread. The decompressed blocks are returned in their original
+ * order. Concatenated streams (like the multistream dumps) are supported.
+ * 
+ * The block start and stream end patterns can also occur by chance inside a
+ * block. The input is therefore cut into contiguous ranges at every pattern
+ * and no bits are dropped. If a block fails to decompress, the ranges that
+ * follow it are appended one at a time and the block is decompressed again.
+ * 
+ * The compressed input is read by the thread reading from this stream and
+ * only a limited number of blocks are read ahead.
+ */
+public class ParallelBZip2InputStream
+		extends
+			InputStream
+{
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+	
+	private static final long EOS_MAGIC = 0x177245385090L;
+	
+	private static final long MAGIC_MASK = 0xFFFFFFFFFFFFL;
+	
+	private static final int MAGIC_BITS = 48;
+	
+	private static final int CRC_BITS = 32;
+	
+	private static final byte[] STREAM_HEADER = { 'B', 'Z', 'h', '9' };
+	
+	private static final int READ_SIZE = 64 * 1024;
+	
+	/**
+	 * How many ranges are appended to a block that failed to decompress
+	 * before giving up.
+	 */
+	private static final int MAX_MERGED_RANGES = 8;
+	
+	static final int NO_MARKER = 0;
+	
+	static final int BLOCK_MARKER = 1;
+	
+	static final int EOS_MARKER = 2;
+	
+	private static final AtomicInteger poolNumber = new AtomicInteger();
+	
+	// =========================================================================
+	
+	private final InputStream in;
+	
+	private final ExecutorService executor;
+	
+	private final int maxBlocksAhead;
+	
+	private final LinkedList<Block> blocks = new LinkedList<Block>();
+	
+	private boolean closed = false;
+	
+	// =========================================================================
+	
+	/**
+	 * Compressed bytes which have been read but which might still be needed
+	 * to build a block. The first byte is at bit <code>bufferBit</code> of
+	 * the input.
+	 */
+	private byte[] buffer = new byte[4 * READ_SIZE];
+	
+	private int bufferLength = 0;
+	
+	private long bufferBit = 0;
+	
+	/**
+	 * The index of the next byte in the buffer that has not been scanned.
+	 */
+	private int scanIndex = 0;
+	
+	private long window = 0;
+	
+	/**
+	 * Where the range that is currently scanned starts. The range is a gap
+	 * if it was started by a stream end pattern.
+	 */
+	private long blockStart = -1;
+	
+	private boolean blockIsGap = false;
+	
+	private boolean headerChecked = false;
+	
+	private boolean inputExhausted = false;
+	
+	// =========================================================================
+	
+	private byte[] current = null;
+	
+	private int currentPos = 0;
+	
+	// =========================================================================
+	
+	/**
+	 * Decompresses the given input with one worker thread per available
+	 * processor.
+	 */
+	public ParallelBZip2InputStream(InputStream in)
+	{
+		this(in, Runtime.getRuntime().availableProcessors());
+	}
+	
+	public ParallelBZip2InputStream(InputStream in, int threads)
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		
+		this.in = in;
+		this.maxBlocksAhead = 2 * threads;
+		this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public int read() throws IOException
+	{
+		if (!fill())
+			return -1;
+		return current[currentPos++] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (off < 0 || len < 0 || off + len > b.length)
+			throw new IndexOutOfBoundsException();
+		
+		if (len == 0)
+			return 0;
+		
+		if (!fill())
+			return -1;
+		
+		int count = Math.min(len, current.length - currentPos);
+		System.arraycopy(current, currentPos, b, off, count);
+		currentPos += count;
+		return count;
+	}
+	
+	@Override
+	public int available() throws IOException
+	{
+		return (current != null) ? current.length - currentPos : 0;
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+			return;
+		
+		closed = true;
+		executor.shutdownNow();
+		for (Block block : blocks)
+		{
+			if (block.future != null)
+				block.future.cancel(true);
+		}
+		blocks.clear();
+		current = null;
+		
+		in.close();
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Makes sure that there are bytes left in the current block.
+	 * 
+	 * @return False if the end of the input has been reached.
+	 */
+	private boolean fill() throws IOException
+	{
+		if (closed)
+			throw new IOException("Stream closed");
+		
+		while (current == null || currentPos == current.length)
+		{
+			scan();
+			
+			if (blocks.isEmpty())
+				return false;
+			
+			Block block = blocks.removeFirst();
+			if (block.gap)
+				continue;
+			
+			current = decompressed(block);
+			currentPos = 0;
+		}
+		return true;
+	}
+	
+	private byte[] decompressed(Block block) throws IOException
+	{
+		if (block.failure != null)
+			throw block.failure;
+		
+		try
+		{
+			return block.future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e)
+		{
+			// The block might have been cut short by a pattern that occurred
+			// by chance. Try again with the following ranges appended.
+			Block merged = block;
+			for (int i = 0; i < MAX_MERGED_RANGES; ++i)
+			{
+				scan();
+				Block next = blocks.isEmpty() ? null : blocks.getFirst();
+				if (next == null || next.failure != null || next.startBit != merged.endBit)
+					break;
+				
+				blocks.removeFirst();
+				if (next.future != null)
+					next.future.cancel(true);
+				
+				merged = merged.merge(next);
+				try
+				{
+					return new BlockDecompressor(merged.stream).call();
+				}
+				catch (IOException e2)
+				{
+					// Try again with the next range
+				}
+			}
+			
+			// Report the original problem
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException("Decompressing bzip2 block failed", cause);
+		}
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Scans the compressed input until enough blocks have been found or the
+	 * input is exhausted.
+	 */
+	private void scan() throws IOException
+	{
+		while (blocks.size() < maxBlocksAhead && !inputExhausted)
+		{
+			if (scanIndex == bufferLength && !readInput())
+			{
+				inputExhausted = true;
+				if (blockStart >= 0 && !blockIsGap)
+					addBlock(new Block(new IOException("Unexpected end of bzip2 stream")));
+				break;
+			}
+			
+			if (!headerChecked)
+			{
+				if (bufferLength < 3)
+				{
+					if (!readInput())
+						throw new IOException("Stream is not in the BZip2 format");
+					continue;
+				}
+				
+				if (buffer[0] != 'B' || buffer[1] != 'Z' || buffer[2] != 'h')
+					throw new IOException("Stream is not in the BZip2 format");
+				
+				headerChecked = true;
+			}
+			
+			scanByte();
+		}
+	}
+	
+	private void scanByte()
+	{
+		int b = buffer[scanIndex++];
+		for (int i = 7; i >= 0; --i)
+		{
+			window = ((window << 1) | ((b >>> i) & 1)) & MAGIC_MASK;
+			
+			long endBit = bufferBit + 8L * scanIndex - i;
+			int marker = marker(window, endBit);
+			if (marker != NO_MARKER)
+			{
+				// The bits after a stream end are kept as a gap. If the
+				// pattern occurred by chance the gap belongs to a block.
+				long markerStart = endBit - MAGIC_BITS;
+				if (blockStart >= 0)
+					addBlock(new Block(blockStart, markerStart, blockIsGap));
+				
+				blockStart = markerStart;
+				blockIsGap = (marker == EOS_MARKER);
+			}
+		}
+	}
+	
+	/**
+	 * Determines whether the last bits scanned form a block start or stream
+	 * end pattern.
+	 * 
+	 * @param window
+	 *            The last 48 bits scanned.
+	 * @param endBit
+	 *            The position in the input that follows the last bit scanned.
+	 * @return One of NO_MARKER, BLOCK_MARKER or EOS_MARKER. Tests override
+	 *         this method to simulate patterns that occur by chance.
+	 */
+	int marker(long window, long endBit)
+	{
+		if (window == BLOCK_MAGIC)
+			return BLOCK_MARKER;
+		if (window == EOS_MAGIC)
+			return EOS_MARKER;
+		return NO_MARKER;
+	}
+	
+	private void addBlock(Block block)
+	{
+		if (block.failure == null && !block.gap)
+			block.future = executor.submit(new BlockDecompressor(block.stream));
+		blocks.addLast(block);
+	}
+	
+	/**
+	 * Reads more compressed input. Bytes which are no longer needed are
+	 * discarded first.
+	 */
+	private boolean readInput() throws IOException
+	{
+		// Keep the bytes of the current range and enough bytes to detect a
+		// range that started in the last bytes already scanned.
+		long keepBit = bufferBit + 8L * scanIndex - MAGIC_BITS;
+		if (blockStart >= 0)
+			keepBit = Math.min(keepBit, blockStart);
+		
+		int discard = (int) Math.max(0, (keepBit - bufferBit) >> 3);
+		if (discard > 0)
+		{
+			System.arraycopy(buffer, discard, buffer, 0, bufferLength - discard);
+			bufferLength -= discard;
+			scanIndex -= discard;
+			bufferBit += 8L * discard;
+		}
+		
+		if (buffer.length - bufferLength < READ_SIZE)
+		{
+			byte[] larger = new byte[2 * buffer.length];
+			System.arraycopy(buffer, 0, larger, 0, bufferLength);
+			buffer = larger;
+		}
+		
+		int read = in.read(buffer, bufferLength, READ_SIZE);
+		if (read == -1)
+			return false;
+		
+		bufferLength += read;
+		return true;
+	}
+	
+	// =========================================================================
+	
+	private static int getByte(byte[] src, long bit)
+	{
+		int i = (int) (bit >>> 3);
+		int shift = (int) (bit & 7);
+		int hi = src[i] & 0xFF;
+		int lo = (i + 1 < src.length) ? src[i + 1] & 0xFF : 0;
+		return (((hi << 8) | lo) >>> (8 - shift)) & 0xFF;
+	}
+	
+	private static void putByte(byte[] dest, long bit, int value)
+	{
+		int i = (int) (bit >>> 3);
+		int shift = (int) (bit & 7);
+		dest[i] |= value >>> shift;
+		if (shift > 0 && i + 1 < dest.length)
+			dest[i + 1] |= value << (8 - shift);
+	}
+	
+	/**
+	 * Copies bits into a zero initialized destination.
+	 */
+	private static void copyBits(
+			byte[] src,
+			long srcBit,
+			byte[] dest,
+			long destBit,
+			long count)
+	{
+		for (; count >= 8; count -= 8, srcBit += 8, destBit += 8)
+			putByte(dest, destBit, getByte(src, srcBit));
+		
+		if (count > 0)
+			putByte(dest, destBit, getByte(src, srcBit) & (0xFF00 >>> count));
+	}
+	
+	private static void putLong(byte[] dest, long destBit, long value, int bits)
+	{
+		for (int i = bits - 8; i >= 0; i -= 8, destBit += 8)
+			putByte(dest, destBit, (int) (value >>> i) & 0xFF);
+	}
+	
+	/**
+	 * Wraps the bits of a block into a stream of its own.
+	 */
+	private static byte[] makeStream(
+			byte[] src,
+			long srcBit,
+			long blockBits,
+			int crc)
+	{
+		long headerBits = 8L * STREAM_HEADER.length;
+		long totalBits = headerBits + blockBits + MAGIC_BITS + CRC_BITS;
+		
+		byte[] stream = new byte[(int) ((totalBits + 7) >>> 3)];
+		System.arraycopy(STREAM_HEADER, 0, stream, 0, STREAM_HEADER.length);
+		
+		copyBits(src, srcBit, stream, headerBits, blockBits);
+		
+		// A stream with a single block has the block's CRC as combined CRC
+		long bit = headerBits + blockBits;
+		putLong(stream, bit, EOS_MAGIC, MAGIC_BITS);
+		putLong(stream, bit + MAGIC_BITS, crc & 0xFFFFFFFFL, CRC_BITS);
+		return stream;
+	}
+	
+	private static int getCrc(byte[] src, long blockBit)
+	{
+		long bit = blockBit + MAGIC_BITS;
+		int crc = 0;
+		for (int i = 0; i < 4; ++i, bit += 8)
+			crc = (crc << 8) | getByte(src, bit);
+		return crc;
+	}
+	
+	// =========================================================================
+	
+	private final class Block
+	{
+		private final long startBit;
+		
+		private final long endBit;
+		
+		private final byte[] stream;
+		
+		/**
+		 * Whether this range follows a stream end pattern. Gaps are only
+		 * decompressed as part of the block they follow.
+		 */
+		private final boolean gap;
+		
+		private final IOException failure;
+		
+		private Future<byte[]> future;
+		
+		public Block(long startBit, long endBit, boolean gap)
+		{
+			long bit = startBit - bufferBit;
+			this.startBit = startBit;
+			this.endBit = endBit;
+			this.stream = makeStream(buffer, bit, endBit - startBit, getCrc(buffer, bit));
+			this.gap = gap;
+			this.failure = null;
+		}
+		
+		private Block(long startBit, long endBit, byte[] stream)
+		{
+			this.startBit = startBit;
+			this.endBit = endBit;
+			this.stream = stream;
+			this.gap = false;
+			this.failure = null;
+		}
+		
+		public Block(IOException failure)
+		{
+			this.startBit = -1;
+			this.endBit = -1;
+			this.stream = null;
+			this.gap = false;
+			this.failure = failure;
+		}
+		
+		/**
+		 * Creates a block which contains the bits of this block followed by
+		 * the bits of the given range.
+		 */
+		public Block merge(Block next)
+		{
+			long headerBits = 8L * STREAM_HEADER.length;
+			long bits = endBit - startBit;
+			long nextBits = next.endBit - next.startBit;
+			
+			byte[] joined = new byte[(int) ((bits + nextBits + 7) >>> 3)];
+			copyBits(stream, headerBits, joined, 0, bits);
+			copyBits(next.stream, headerBits, joined, bits, nextBits);
+			
+			return new Block(
+					startBit,
+					next.endBit,
+					makeStream(joined, 0, bits + nextBits, getCrc(joined, 0)));
+		}
+	}
+	
+	private static final class BlockDecompressor
+			implements
+				Callable<byte[]>
+	{
+		private final byte[] stream;
+		
+		public BlockDecompressor(byte[] stream)
+		{
+			this.stream = stream;
+		}
+		
+		@Override
+		public byte[] call() throws IOException
+		{
+			BZip2CompressorInputStream in = new BZip2CompressorInputStream(
+					new ByteArrayInputStream(stream),
+					false);
+			try
+			{
+				ByteArrayOutputStream out =
+						new ByteArrayOutputStream(8 * stream.length);
+				
+				byte[] b = new byte[READ_SIZE];
+				int read;
+				while ((read = in.read(b)) != -1)
+					out.write(b, 0, read);
+				
+				return out.toByteArray();
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+	}
+	
+	private static final class DaemonThreadFactory
+			implements
+				ThreadFactory
+	{
+		private final String prefix =
+				"bzip2-pool-" + poolNumber.incrementAndGet() + "-thread-";
+		
+		private final AtomicInteger threadNumber = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, prefix + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
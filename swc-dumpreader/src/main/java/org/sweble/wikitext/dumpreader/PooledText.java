@@ -0,0 +1,136 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * A text held in a buffer of a {@link TextBufferPool}.
+ * 
+ * The text can be handed to the engine as it is; no string copy is needed.
+ * Once the text is not needed any more, {@link #release()} must be called to
+ * return its buffer to the pool. After that the text must not be accessed any
+ * more. A text is serialized as a plain string.
+ */
+public final class PooledText
+		implements
+			CharSequence,
+			Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	private final transient TextBufferPool pool;
+	
+	private transient char[] buffer;
+	
+	private transient int length;
+	
+	// =========================================================================
+	
+	PooledText(TextBufferPool pool, char[] buffer)
+	{
+		this.pool = pool;
+		this.buffer = buffer;
+		this.length = 0;
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public int length()
+	{
+		checkNotReleased();
+		return length;
+	}
+	
+	@Override
+	public char charAt(int index)
+	{
+		checkNotReleased();
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException();
+		return buffer[index];
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end)
+	{
+		checkNotReleased();
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException();
+		return new String(buffer, start, end - start);
+	}
+	
+	@Override
+	public String toString()
+	{
+		checkNotReleased();
+		return new String(buffer, 0, length);
+	}
+	
+	/**
+	 * Returns the buffer to the pool. Calling this method more than once has
+	 * no effect.
+	 */
+	public void release()
+	{
+		if (buffer != null)
+		{
+			char[] buffer = this.buffer;
+			this.buffer = null;
+			this.length = 0;
+			pool.give(buffer);
+		}
+	}
+	
+	public boolean isReleased()
+	{
+		return buffer == null;
+	}
+	
+	// =========================================================================
+	
+	void append(char[] chars, int offset, int count)
+	{
+		checkNotReleased();
+		
+		int required = length + count;
+		if (required > buffer.length)
+		{
+			char[] larger = pool.take(Math.max(required, buffer.length * 2));
+			System.arraycopy(buffer, 0, larger, 0, length);
+			pool.give(buffer);
+			buffer = larger;
+		}
+		
+		System.arraycopy(chars, offset, buffer, length, count);
+		length = required;
+	}
+	
+	private void checkNotReleased()
+	{
+		if (buffer == null)
+			throw new IllegalStateException("Text was already released");
+	}
+	
+	private Object writeReplace() throws ObjectStreamException
+	{
+		return toString();
+	}
+}
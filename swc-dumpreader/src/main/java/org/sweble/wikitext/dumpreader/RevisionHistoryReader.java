@@ -0,0 +1,165 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.sweble.wikitext.dumpreader.model.Page;
+import org.sweble.wikitext.dumpreader.model.Revision;
+
+/**
+ * Streams the revisions of a full-history dump page by page.
+ * 
+ * Consecutive revisions of a page are usually almost identical. This reader
+ * hands each revision to {@link #processRevisionDelta} together with the
+ * preceding revision of the same page, the result that was computed for the
+ * preceding revision and the {@link TextDelta} between both texts. A consumer
+ * can use that to skip unchanged regions, e.g. by passing the previous result
+ * to the engine's <code>postprocessIncrementally()</code> method, or to reuse
+ * the previous result as it is if the text did not change.
+ * 
+ * Revisions are not collected: only the current and the preceding revision
+ * of the current page are held in memory. Revisions are processed in the
+ * order in which they appear in the dump. If a {@link TextBufferPool} is
+ * set, the text of a revision is released once the next revision of the
+ * page (or the end of the page) was processed.
+ */
+public abstract class RevisionHistoryReader<T>
+		extends
+			FastDumpReader
+{
+	private Page currentPage;
+	
+	private Revision previous;
+	
+	private T previousResult;
+	
+	// =========================================================================
+	
+	public RevisionHistoryReader(
+			File dumpFile,
+			Charset encoding,
+			Logger logger,
+			Set<DumpField> fields) throws Exception
+	{
+		super(dumpFile, encoding, logger, fields);
+	}
+	
+	public RevisionHistoryReader(
+			InputStream is,
+			Charset encoding,
+			String url,
+			Logger logger,
+			Set<DumpField> fields) throws Exception
+	{
+		super(is, encoding, url, logger, fields);
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Processes a revision of a page.
+	 * 
+	 * @param page
+	 *            The page the revision belongs to. Its revision list is empty.
+	 * @param previous
+	 *            The preceding revision of the same page or null if this is
+	 *            the first revision of the page.
+	 * @param previousResult
+	 *            The value returned for the preceding revision or null if
+	 *            this is the first revision of the page.
+	 * @param delta
+	 *            The delta between the text of the preceding revision and the
+	 *            text of this revision. For the first revision of a page the
+	 *            delta is computed against an empty text.
+	 * @return The result for this revision which will be passed on with the
+	 *         next revision of the same page.
+	 */
+	protected abstract T processRevisionDelta(
+			Page page,
+			Revision revision,
+			Revision previous,
+			T previousResult,
+			TextDelta delta) throws Exception;
+	
+	/**
+	 * Called once all revisions of a page were processed. Does nothing by
+	 * default.
+	 */
+	protected void processPageEnd(Page page) throws Exception
+	{
+	}
+	
+	// =========================================================================
+	
+	@Override
+	protected final boolean processRevision(Page page, Revision revision) throws Exception
+	{
+		if (page != currentPage)
+		{
+			finishPage();
+			currentPage = page;
+		}
+		
+		TextDelta delta = TextDelta.compute(
+				(previous != null) ? previous.getTextAsCharSequence() : null,
+				revision.getTextAsCharSequence());
+		
+		T result = processRevisionDelta(
+				page,
+				revision,
+				previous,
+				previousResult,
+				delta);
+		
+		release(previous);
+		
+		previous = revision;
+		previousResult = result;
+		
+		// Revisions are not collected
+		return false;
+	}
+	
+	@Override
+	protected final void processPage(Page page) throws Exception
+	{
+		finishPage();
+		
+		processPageEnd(page);
+	}
+	
+	private void finishPage()
+	{
+		release(previous);
+		
+		currentPage = null;
+		previous = null;
+		previousResult = null;
+	}
+	
+	private static void release(Revision revision)
+	{
+		if (revision != null && revision.getTextAsCharSequence() instanceof PooledText)
+			((PooledText) revision.getTextAsCharSequence()).release();
+	}
+}
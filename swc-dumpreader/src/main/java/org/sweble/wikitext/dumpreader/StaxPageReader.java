@@ -0,0 +1,544 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.sweble.wikitext.dumpreader.model.Contributor;
+import org.sweble.wikitext.dumpreader.model.Page;
+import org.sweble.wikitext.dumpreader.model.Revision;
+
+import de.fau.cs.osr.utils.WrappedException;
+
+/**
+ * Reads page elements from a StAX stream straight into the model classes.
+ * 
+ * This is the fast path for dump processing. It neither needs JAXB nor
+ * validates the input against the export schema. Elements are matched by
+ * their local name, which works for all export versions from 0.5 to 0.10.
+ * Only the fields of the projection given at construction time are extracted;
+ * the elements of all other fields are skipped without reading their text.
+ * The resulting pages are equal to what the
+ * {@link org.sweble.wikitext.dumpreader.model.DumpConverter} produces for the
+ * same input, except that unprojected fields are <code>null</code> (or
+ * <code>false</code>) and the revision list is empty if no revision field was
+ * requested.
+ * 
+ * If a {@link TextBufferPool} is set, revision texts are decoded into pooled
+ * buffers and handed out as {@link PooledText} instead of strings.
+ * 
+ * Instances are not thread-safe.
+ */
+public class StaxPageReader
+{
+	private static final String DELETED = "deleted";
+	
+	private static final int MAX_POOLED_STRINGS = 64;
+	
+	private final EnumSet<DumpField> fields;
+	
+	private final boolean readRevisions;
+	
+	private final DateTimeFormatter timestampParser =
+			ISODateTimeFormat.dateTimeParser().withOffsetParsed();
+	
+	private final StringBuilder buffer = new StringBuilder();
+	
+	/**
+	 * Formats and content models take very few distinct values.
+	 */
+	private final Map<String, String> stringPool = new HashMap<String, String>();
+	
+	private TextBufferPool textBufferPool;
+	
+	// =========================================================================
+	
+	public StaxPageReader(Set<DumpField> fields)
+	{
+		this.fields = fields.isEmpty() ?
+				EnumSet.noneOf(DumpField.class) :
+				EnumSet.copyOf(fields);
+		
+		boolean readRevisions = false;
+		for (DumpField f : this.fields)
+			readRevisions |= f.isRevisionField();
+		this.readRevisions = readRevisions;
+	}
+	
+	// =========================================================================
+	
+	public Set<DumpField> getFields()
+	{
+		return fields;
+	}
+	
+	public TextBufferPool getTextBufferPool()
+	{
+		return textBufferPool;
+	}
+	
+	/**
+	 * @param textBufferPool
+	 *            The pool to decode revision texts into or null if revision
+	 *            texts shall be read as strings.
+	 */
+	public void setTextBufferPool(TextBufferPool textBufferPool)
+	{
+		this.textBufferPool = textBufferPool;
+	}
+	
+	/**
+	 * Reads a page element.
+	 * 
+	 * @param reader
+	 *            A reader positioned on the start tag of a page element. When
+	 *            this method returns, the reader is positioned on the
+	 *            corresponding end tag.
+	 */
+	public Page readPage(XMLStreamReader reader) throws XMLStreamException
+	{
+		return readPage(reader, null);
+	}
+	
+	/**
+	 * Reads a page element and hands each revision to the given handler as
+	 * soon as it was read.
+	 * 
+	 * The page passed to the handler carries all page fields, since the
+	 * export schema demands that they precede the revisions. Its revision
+	 * list contains the revisions read so far that the handler decided to
+	 * keep.
+	 * 
+	 * @param handler
+	 *            Receives the revisions or null if all revisions shall be
+	 *            added to the page.
+	 */
+	public Page readPage(XMLStreamReader reader, RevisionHandler handler) throws XMLStreamException
+	{
+		reader.require(XMLStreamConstants.START_ELEMENT, null, "page");
+		
+		BigInteger id = null;
+		BigInteger namespace = null;
+		String title = null;
+		String redirectTitle = null;
+		List<Revision> revisions = new ArrayList<Revision>();
+		Page page = null;
+		
+		while (nextChild(reader))
+		{
+			String name = reader.getLocalName();
+			if ("title".equals(name) && want(DumpField.PAGE_TITLE))
+			{
+				title = readText(reader);
+			}
+			else if ("ns".equals(name) && want(DumpField.PAGE_NAMESPACE))
+			{
+				namespace = readInteger(reader);
+			}
+			else if ("id".equals(name) && want(DumpField.PAGE_ID))
+			{
+				id = readInteger(reader);
+			}
+			else if ("redirect".equals(name) && want(DumpField.PAGE_REDIRECT))
+			{
+				// Before 0.6 the redirect element did not name its target
+				String target = reader.getAttributeValue(null, "title");
+				redirectTitle = (target != null) ? target : "";
+				skipElement(reader);
+			}
+			else if ("revision".equals(name) && readRevisions)
+			{
+				Revision revision = readRevision(reader);
+				
+				if (page == null)
+					page = new Page(id, namespace, title, redirectTitle, revisions);
+				
+				if (handler == null || handleRevision(handler, page, revision))
+					revisions.add(revision);
+			}
+			else
+			{
+				// We're ignoring:
+				// - restrictions
+				// - upload
+				// - logitem
+				// - discussionthreadinginfo
+				skipElement(reader);
+			}
+		}
+		
+		if (page == null)
+			page = new Page(id, namespace, title, redirectTitle, revisions);
+		
+		return page;
+	}
+	
+	/**
+	 * Reads a revision element.
+	 * 
+	 * @param reader
+	 *            A reader positioned on the start tag of a revision element.
+	 *            When this method returns, the reader is positioned on the
+	 *            corresponding end tag.
+	 */
+	public Revision readRevision(XMLStreamReader reader) throws XMLStreamException
+	{
+		reader.require(XMLStreamConstants.START_ELEMENT, null, "revision");
+		
+		BigInteger id = null;
+		BigInteger parentId = null;
+		DateTime timestamp = null;
+		boolean minor = false;
+		Contributor contributor = null;
+		String contributorIp = null;
+		String commentText = null;
+		boolean commentDeleted = false;
+		CharSequence text = null;
+		String textSha1 = null;
+		boolean textDeleted = false;
+		String format = null;
+		String model = null;
+		
+		while (nextChild(reader))
+		{
+			String name = reader.getLocalName();
+			if ("text".equals(name) && want(DumpField.REVISION_TEXT))
+			{
+				// We ignore the bytes, id and space attributes
+				textDeleted = isDeleted(reader);
+				text = (textBufferPool != null) ?
+						readPooledText(reader) :
+						readText(reader);
+			}
+			else if ("id".equals(name) && want(DumpField.REVISION_ID))
+			{
+				id = readInteger(reader);
+			}
+			else if ("parentid".equals(name) && want(DumpField.REVISION_PARENT_ID))
+			{
+				parentId = readInteger(reader);
+			}
+			else if ("timestamp".equals(name) && want(DumpField.REVISION_TIMESTAMP))
+			{
+				timestamp = timestampParser.parseDateTime(readText(reader).trim());
+			}
+			else if ("minor".equals(name) && want(DumpField.REVISION_MINOR))
+			{
+				minor = true;
+				skipElement(reader);
+			}
+			else if ("contributor".equals(name) && want(DumpField.REVISION_CONTRIBUTOR))
+			{
+				boolean deleted = isDeleted(reader);
+				BigInteger contributorId = null;
+				String username = null;
+				String ip = null;
+				while (nextChild(reader))
+				{
+					String childName = reader.getLocalName();
+					if ("username".equals(childName))
+					{
+						username = readText(reader);
+					}
+					else if ("id".equals(childName))
+					{
+						contributorId = readInteger(reader);
+					}
+					else if ("ip".equals(childName))
+					{
+						ip = readText(reader);
+					}
+					else
+					{
+						skipElement(reader);
+					}
+				}
+				
+				if (ip == null)
+				{
+					contributor = new Contributor(contributorId, deleted, username);
+				}
+				else
+				{
+					contributorIp = ip;
+				}
+			}
+			else if ("comment".equals(name) && want(DumpField.REVISION_COMMENT))
+			{
+				commentDeleted = isDeleted(reader);
+				commentText = readText(reader);
+			}
+			else if ("sha1".equals(name) && want(DumpField.REVISION_SHA1))
+			{
+				textSha1 = readText(reader);
+			}
+			else if ("format".equals(name) && want(DumpField.REVISION_FORMAT))
+			{
+				format = pool(readText(reader));
+			}
+			else if ("model".equals(name) && want(DumpField.REVISION_MODEL))
+			{
+				model = pool(readText(reader));
+			}
+			else
+			{
+				skipElement(reader);
+			}
+		}
+		
+		return new Revision(
+				id,
+				parentId,
+				timestamp,
+				minor,
+				contributor,
+				contributorIp,
+				commentText,
+				commentDeleted,
+				text,
+				textSha1,
+				textDeleted,
+				format,
+				model);
+	}
+	
+	// =========================================================================
+	
+	private static boolean handleRevision(
+			RevisionHandler handler,
+			Page page,
+			Revision revision)
+	{
+		try
+		{
+			return handler.handleRevision(page, revision);
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new WrappedException(e);
+		}
+	}
+	
+	private boolean want(DumpField field)
+	{
+		return fields.contains(field);
+	}
+	
+	private static boolean isDeleted(XMLStreamReader reader)
+	{
+		return DELETED.equals(reader.getAttributeValue(null, DELETED));
+	}
+	
+	/**
+	 * Advances to the start tag of the next child element of the current
+	 * element or to the end tag of the current element. Text, comments and
+	 * processing instructions in between are passed over.
+	 * 
+	 * @return True if the reader is positioned on the start tag of a child
+	 *         element, false if it is positioned on the end tag of the
+	 *         current element.
+	 */
+	private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException
+	{
+		while (true)
+		{
+			switch (reader.next())
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					return true;
+				case XMLStreamConstants.END_ELEMENT:
+					return false;
+				case XMLStreamConstants.END_DOCUMENT:
+					throw new XMLStreamException(
+							"Unexpected end of document",
+							reader.getLocation());
+			}
+		}
+	}
+	
+	/**
+	 * Skips the element on whose start tag the reader is positioned, including
+	 * all its content. The text of the element is never requested from the
+	 * reader and therefore never turned into strings.
+	 */
+	static void skipElement(XMLStreamReader reader) throws XMLStreamException
+	{
+		int depth = 1;
+		while (depth > 0)
+		{
+			switch (reader.next())
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					++depth;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					--depth;
+					break;
+				case XMLStreamConstants.END_DOCUMENT:
+					throw new XMLStreamException(
+							"Unexpected end of document",
+							reader.getLocation());
+			}
+		}
+	}
+	
+	private String readText(XMLStreamReader reader) throws XMLStreamException
+	{
+		String first = null;
+		buffer.setLength(0);
+		while (true)
+		{
+			switch (reader.next())
+			{
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					if (first == null && buffer.length() == 0)
+					{
+						// Most elements are delivered in a single event
+						first = reader.getText();
+					}
+					else
+					{
+						if (first != null)
+						{
+							buffer.append(first);
+							first = null;
+						}
+						buffer.append(
+								reader.getTextCharacters(),
+								reader.getTextStart(),
+								reader.getTextLength());
+					}
+					break;
+					
+				case XMLStreamConstants.START_ELEMENT:
+					skipElement(reader);
+					break;
+					
+				case XMLStreamConstants.END_ELEMENT:
+					if (first != null)
+						return first;
+					return buffer.toString();
+					
+				case XMLStreamConstants.END_DOCUMENT:
+					throw new XMLStreamException(
+							"Unexpected end of document",
+							reader.getLocation());
+			}
+		}
+	}
+	
+	private PooledText readPooledText(XMLStreamReader reader) throws XMLStreamException
+	{
+		PooledText text = textBufferPool.allocate();
+		try
+		{
+			while (true)
+			{
+				switch (reader.next())
+				{
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						text.append(
+								reader.getTextCharacters(),
+								reader.getTextStart(),
+								reader.getTextLength());
+						break;
+						
+					case XMLStreamConstants.START_ELEMENT:
+						skipElement(reader);
+						break;
+						
+					case XMLStreamConstants.END_ELEMENT:
+						return text;
+						
+					case XMLStreamConstants.END_DOCUMENT:
+						throw new XMLStreamException(
+								"Unexpected end of document",
+								reader.getLocation());
+				}
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			text.release();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			text.release();
+			throw e;
+		}
+	}
+	
+	private BigInteger readInteger(XMLStreamReader reader) throws XMLStreamException
+	{
+		String value = readText(reader).trim();
+		try
+		{
+			return new BigInteger(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new XMLStreamException(
+					"Not an integer: " + value,
+					reader.getLocation(),
+					e);
+		}
+	}
+	
+	private String pool(String value)
+	{
+		String pooled = stringPool.get(value);
+		if (pooled != null)
+			return pooled;
+		if (stringPool.size() < MAX_POOLED_STRINGS)
+			stringPool.put(value, value);
+		return value;
+	}
+	
+	// =========================================================================
+	
+	public static interface RevisionHandler
+	{
+		/**
+		 * @return Return true to add the revision to the page's list or false
+		 *         if you handled it yourself.
+		 */
+		boolean handleRevision(Page page, Revision revision) throws Exception;
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * A pool of character buffers for revision texts.
+ * 
+ * Revision texts are the bulk of a dump. Instead of turning the text of each
+ * revision into a new string, the {@link StaxPageReader} can decode it into a
+ * buffer from this pool and hand out a {@link PooledText} view on that
+ * buffer. Once the consumer of the revision is done with the text it calls
+ * {@link PooledText#release()} and the buffer is used for the next revision.
+ * 
+ * A pool is thread-safe. Texts can be released by other threads than the one
+ * that read them.
+ */
+public class TextBufferPool
+{
+	private static final int MIN_CAPACITY = 4096;
+	
+	private final int maxPooledBuffers;
+	
+	private final int maxPooledCapacity;
+	
+	private final LinkedList<char[]> free = new LinkedList<char[]>();
+	
+	// =========================================================================
+	
+	/**
+	 * @param maxPooledBuffers
+	 *            The maximum number of buffers kept for reuse. Should be
+	 *            about the number of texts that are in flight at once.
+	 * @param maxPooledCapacity
+	 *            Buffers larger than this (in characters) are not kept for
+	 *            reuse. Prevents a few huge pages from pinning lots of memory.
+	 */
+	public TextBufferPool(int maxPooledBuffers, int maxPooledCapacity)
+	{
+		if (maxPooledBuffers < 0 || maxPooledCapacity < 0)
+			throw new IllegalArgumentException();
+		
+		this.maxPooledBuffers = maxPooledBuffers;
+		this.maxPooledCapacity = maxPooledCapacity;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Returns a new empty text backed by a buffer from this pool.
+	 */
+	public PooledText allocate()
+	{
+		return new PooledText(this, take(MIN_CAPACITY));
+	}
+	
+	/**
+	 * Returns the number of buffers currently available for reuse.
+	 */
+	public synchronized int getFreeCount()
+	{
+		return free.size();
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Takes the smallest free buffer that holds at least the given number of
+	 * characters or allocates a new one.
+	 */
+	synchronized char[] take(int minCapacity)
+	{
+		char[] best = null;
+		Iterator<char[]> i = free.iterator();
+		while (i.hasNext())
+		{
+			char[] buffer = i.next();
+			if (buffer.length >= minCapacity &&
+					(best == null || buffer.length < best.length))
+				best = buffer;
+		}
+		
+		if (best != null)
+		{
+			free.remove(best);
+			return best;
+		}
+		
+		int capacity = MIN_CAPACITY;
+		while (capacity < minCapacity && capacity > 0)
+			capacity <<= 1;
+		
+		return new char[(capacity > 0) ? capacity : minCapacity];
+	}
+	
+	synchronized void give(char[] buffer)
+	{
+		if (buffer.length <= maxPooledCapacity && free.size() < maxPooledBuffers)
+			free.add(buffer);
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+/**
+ * The difference between the texts of two neighbouring revisions.
+ * 
+ * Most edits change a single region of a page. A delta therefore describes
+ * the change as the longest common prefix and the longest common suffix of
+ * both texts; everything in between was replaced. Computing a delta takes
+ * time linear in the size of the unchanged regions and allocates nothing.
+ */
+public final class TextDelta
+{
+	private final int previousLength;
+	
+	private final int currentLength;
+	
+	private final int prefixLength;
+	
+	private final int suffixLength;
+	
+	// =========================================================================
+	
+	private TextDelta(
+			int previousLength,
+			int currentLength,
+			int prefixLength,
+			int suffixLength)
+	{
+		this.previousLength = previousLength;
+		this.currentLength = currentLength;
+		this.prefixLength = prefixLength;
+		this.suffixLength = suffixLength;
+	}
+	
+	/**
+	 * Computes the delta between two texts. A text that is <code>null</code>
+	 * is treated like an empty text.
+	 */
+	public static TextDelta compute(CharSequence previous, CharSequence current)
+	{
+		int previousLength = (previous != null) ? previous.length() : 0;
+		int currentLength = (current != null) ? current.length() : 0;
+		int maxCommon = Math.min(previousLength, currentLength);
+		
+		int prefix = 0;
+		while (prefix < maxCommon && previous.charAt(prefix) == current.charAt(prefix))
+			++prefix;
+		
+		// The suffix must not overlap with the prefix
+		int suffix = 0;
+		int maxSuffix = maxCommon - prefix;
+		while (suffix < maxSuffix &&
+				previous.charAt(previousLength - 1 - suffix) == current.charAt(currentLength - 1 - suffix))
+			++suffix;
+		
+		return new TextDelta(previousLength, currentLength, prefix, suffix);
+	}
+	
+	// =========================================================================
+	
+	public int getPreviousLength()
+	{
+		return previousLength;
+	}
+	
+	public int getCurrentLength()
+	{
+		return currentLength;
+	}
+	
+	/**
+	 * The number of characters at the start of both texts that are equal.
+	 */
+	public int getPrefixLength()
+	{
+		return prefixLength;
+	}
+	
+	/**
+	 * The number of characters at the end of both texts that are equal.
+	 */
+	public int getSuffixLength()
+	{
+		return suffixLength;
+	}
+	
+	/**
+	 * The offset of the changed region in both texts.
+	 */
+	public int getChangeStart()
+	{
+		return prefixLength;
+	}
+	
+	/**
+	 * The end of the changed region in the previous text (exclusive).
+	 */
+	public int getPreviousChangeEnd()
+	{
+		return previousLength - suffixLength;
+	}
+	
+	/**
+	 * The end of the changed region in the current text (exclusive).
+	 */
+	public int getCurrentChangeEnd()
+	{
+		return currentLength - suffixLength;
+	}
+	
+	public int getRemovedLength()
+	{
+		return getPreviousChangeEnd() - prefixLength;
+	}
+	
+	public int getInsertedLength()
+	{
+		return getCurrentChangeEnd() - prefixLength;
+	}
+	
+	/**
+	 * Returns the text that replaced the changed region of the previous text.
+	 * 
+	 * @param current
+	 *            The current text this delta was computed for.
+	 */
+	public CharSequence getInserted(CharSequence current)
+	{
+		return current.subSequence(prefixLength, getCurrentChangeEnd());
+	}
+	
+	public boolean isUnchanged()
+	{
+		return previousLength == currentLength && prefixLength == currentLength;
+	}
+	
+	/**
+	 * The share of the current text that was taken over unchanged from the
+	 * previous text. Between 0 and 1.
+	 */
+	public double getUnchangedRatio()
+	{
+		if (currentLength == 0)
+			return (previousLength == 0) ? 1. : 0.;
+		return (prefixLength + suffixLength) / (double) currentLength;
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public String toString()
+	{
+		return "TextDelta [prefix=" + prefixLength + ", suffix=" + suffixLength + ", removed=" + getRemovedLength() + ", inserted=" + getInsertedLength() + "]";
+	}
+}
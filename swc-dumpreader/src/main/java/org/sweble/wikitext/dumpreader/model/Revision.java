@@ -43,7 +43,7 @@ public class Revision
 	
 	private final boolean commentDeleted;
 	
-	private final String text;
+	private final CharSequence text;
 	
 	private final String textSha1;
 	
@@ -64,7 +64,7 @@ public class Revision
 			String contributorIp,
 			String commentText,
 			boolean commentDeleted,
-			String text,
+			CharSequence text,
 			String textSha1,
 			boolean textDeleted,
 			String format,
@@ -127,7 +127,22 @@ public class Revision
 		return commentDeleted;
 	}
 	
+	/**
+	 * Returns the text of the revision as string. If the text is held in a
+	 * pooled buffer (see {@link #getTextAsCharSequence()}) a copy is made.
+	 */
 	public String getText()
+	{
+		return (text != null) ? text.toString() : null;
+	}
+	
+	/**
+	 * Returns the text of the revision as it was handed to the constructor.
+	 * A reader might hand out a view on a pooled buffer (see
+	 * {@link org.sweble.wikitext.dumpreader.PooledText}) which must not be
+	 * used any more once it was released.
+	 */
+	public CharSequence getTextAsCharSequence()
 	{
 		return text;
 	}
@@ -0,0 +1,281 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import org.sweble.wikitext.dumpreader.model.DumpConverter;
+import org.sweble.wikitext.dumpreader.model.Page;
+import org.sweble.wikitext.dumpreader.model.Revision;
+
+import de.fau.cs.osr.utils.StringUtils;
+
+public class TestFastDumpReader
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private Logger logger;
+	
+	@Before
+	public void setUp()
+	{
+		logger = Logger.getLogger(getClass());
+	}
+	
+	// =========================================================================
+	
+	@Test
+	public void testFastPathYieldsSameModelAsJaxbPath() throws Exception
+	{
+		String[] versions = { "0.5", "0.6", "0.8", "0.9", "0.10" };
+		for (String version : versions)
+		{
+			File file = getResource("/input-" + version + ".xml");
+			
+			List<Page> expected = readWithJaxb(file);
+			List<Page> actual = readFast(file, DumpField.ALL);
+			
+			assertFalse(expected.isEmpty());
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); ++i)
+				assertPageEquals(expected.get(i), actual.get(i));
+		}
+	}
+	
+	@Test
+	public void testProjectionOnlyExtractsRequestedFields() throws Exception
+	{
+		File file = getResource("/input-0.10.xml");
+		
+		List<Page> pages = readFast(file, DumpField.TITLE_NS_ID_TEXT);
+		assertEquals(1, pages.size());
+		
+		Page page = pages.get(0);
+		assertEquals("TITLE", page.getTitle());
+		assertEquals(BigInteger.valueOf(0), page.getNamespace());
+		assertEquals(BigInteger.valueOf(10), page.getId());
+		assertNull(page.getRedirectTitle());
+		
+		assertEquals(1, page.getRevisions().size());
+		Revision rev = page.getRevisions().get(0);
+		assertEquals("TEXT", rev.getText());
+		assertNull(rev.getId());
+		assertNull(rev.getTimestamp());
+		assertNull(rev.getContributor());
+		assertNull(rev.getCommentText());
+		assertNull(rev.getTextSha1());
+		assertFalse(rev.isMinor());
+	}
+	
+	@Test
+	public void testPagesWithoutRevisionFieldsHaveNoRevisions() throws Exception
+	{
+		File file = getResource("/input-0.10.xml");
+		
+		List<Page> pages = readFast(file, EnumSet.of(DumpField.PAGE_TITLE));
+		assertEquals(1, pages.size());
+		assertEquals("TITLE", pages.get(0).getTitle());
+		assertTrue(pages.get(0).getRevisions().isEmpty());
+	}
+	
+	@Test
+	public void testRevisionTextsCanBeReadIntoPooledBuffers() throws Exception
+	{
+		File file = getResource("/input-0.10.xml");
+		
+		final List<Page> pages = new ArrayList<Page>();
+		TextBufferPool pool = new TextBufferPool(4, 1024 * 1024);
+		
+		FastDumpReader dr = new FastDumpReader(file, UTF8, logger, DumpField.ALL)
+		{
+			@Override
+			protected void processPage(Page page) throws Exception
+			{
+				pages.add(page);
+			}
+		};
+		dr.setTextBufferPool(pool);
+		
+		try
+		{
+			dr.read();
+		}
+		finally
+		{
+			dr.close();
+		}
+		
+		Revision rev = pages.get(0).getRevisions().get(0);
+		CharSequence text = rev.getTextAsCharSequence();
+		assertTrue(text instanceof PooledText);
+		assertEquals("TEXT", text.toString());
+		assertEquals("TEXT", rev.getText());
+		assertEquals(0, pool.getFreeCount());
+		
+		PooledText pooled = (PooledText) text;
+		pooled.release();
+		pooled.release();
+		assertTrue(pooled.isReleased());
+		assertEquals(1, pool.getFreeCount());
+		
+		try
+		{
+			pooled.charAt(0);
+			fail("Released text must not be accessible");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected
+		}
+	}
+	
+	@Test
+	public void testFragmentsCanBeReadThroughUnmarshaller() throws Exception
+	{
+		DumpUnmarshaller um = new DumpUnmarshaller(ExportSchemaVersion.V0_10, false);
+		
+		File file = getResource("/input-0.10-page.xml");
+		InputStream is = new FileInputStream(file);
+		try
+		{
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+			reader.nextTag();
+			
+			Page actual = um.readPage(reader, DumpField.ALL);
+			Page expected = um.unmarshalToPage(
+					new StreamSource(file));
+			
+			assertPageEquals(expected, actual);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+	
+	// =========================================================================
+	
+	private File getResource(String name)
+	{
+		String path = StringUtils.decodeUsingDefaultCharset(
+				getClass().getResource(name).getFile());
+		return new File(path);
+	}
+	
+	private List<Page> readWithJaxb(File file) throws Exception
+	{
+		final List<Page> pages = new ArrayList<Page>();
+		final DumpConverter converter = new DumpConverter();
+		
+		DumpReader dr = new DumpReader(new FileInputStream(file), UTF8, file.getAbsolutePath(), logger, false)
+		{
+			@Override
+			protected void processPage(Object mediaWiki, Object page) throws Exception
+			{
+				pages.add(converter.convertPage(page));
+			}
+		};
+		
+		try
+		{
+			dr.unmarshal();
+		}
+		finally
+		{
+			dr.close();
+		}
+		
+		return pages;
+	}
+	
+	private List<Page> readFast(File file, Set<DumpField> fields) throws Exception
+	{
+		final List<Page> pages = new ArrayList<Page>();
+		
+		FastDumpReader dr = new FastDumpReader(file, UTF8, logger, fields)
+		{
+			@Override
+			protected void processPage(Page page) throws Exception
+			{
+				pages.add(page);
+			}
+		};
+		
+		try
+		{
+			dr.read();
+		}
+		finally
+		{
+			dr.close();
+		}
+		
+		assertEquals(pages.size(), dr.getParsedCount());
+		return pages;
+	}
+	
+	private static void assertPageEquals(Page expected, Page actual)
+	{
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getTitle(), actual.getTitle());
+		assertEquals(expected.getRedirectTitle(), actual.getRedirectTitle());
+		
+		// Export 0.5 has no namespace element
+		if (expected.getNamespace() != null)
+			assertEquals(expected.getNamespace(), actual.getNamespace());
+		
+		assertEquals(expected.getRevisions().size(), actual.getRevisions().size());
+		for (int i = 0; i < expected.getRevisions().size(); ++i)
+		{
+			Revision e = expected.getRevisions().get(i);
+			Revision a = actual.getRevisions().get(i);
+			
+			assertEquals(e.getId(), a.getId());
+			assertEquals(e.getParentId(), a.getParentId());
+			assertEquals(e.getTimestamp().getMillis(), a.getTimestamp().getMillis());
+			assertEquals(e.getTimestamp().getZone(), a.getTimestamp().getZone());
+			assertEquals(e.isMinor(), a.isMinor());
+			assertEquals(String.valueOf(e.getContributor()), String.valueOf(a.getContributor()));
+			assertEquals(e.getContributorIp(), a.getContributorIp());
+			assertEquals(e.getCommentText(), a.getCommentText());
+			assertEquals(e.isCommentDeleted(), a.isCommentDeleted());
+			assertEquals(e.getText(), a.getText());
+			assertEquals(e.getTextSha1(), a.getTextSha1());
+			assertEquals(e.isTextDeleted(), a.isTextDeleted());
+			assertEquals(e.getFormat(), a.getFormat());
+			assertEquals(e.getModel(), a.getModel());
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sweble.wikitext.dumpreader.model.DumpConverter;
+import org.sweble.wikitext.dumpreader.model.Page;
+
+public class TestMultistreamDumpReader
+{
+	private static final int PAGES_PER_STREAM = 3;
+	
+	private static final int STREAMS = 4;
+	
+	private File dumpFile;
+	
+	private MultistreamIndex index;
+	
+	private MultistreamDumpReader reader;
+	
+	// =========================================================================
+	
+	@Before
+	public void setUp() throws Exception
+	{
+		StringBuilder indexText = new StringBuilder();
+		ByteArrayOutputStream dump = new ByteArrayOutputStream();
+		
+		dump.write(compress("" +
+				"<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" version=\"0.10\" xml:lang=\"en\">\n" +
+				"  <siteinfo>\n" +
+				"    <sitename>SITENAME</sitename>\n" +
+				"  </siteinfo>\n"));
+		
+		int id = 1;
+		for (int i = 0; i < STREAMS; ++i)
+		{
+			int offset = dump.size();
+			
+			StringBuilder pages = new StringBuilder();
+			for (int j = 0; j < PAGES_PER_STREAM; ++j, ++id)
+			{
+				pages.append(page(id));
+				indexText.append(offset + ":" + id + ":Title: " + id + "\n");
+			}
+			if (i == STREAMS - 1)
+				pages.append("</mediawiki>\n");
+			
+			dump.write(compress(pages.toString()));
+		}
+		
+		dumpFile = File.createTempFile("multistream", ".xml.bz2");
+		FileOutputStream out = new FileOutputStream(dumpFile);
+		try
+		{
+			dump.writeTo(out);
+		}
+		finally
+		{
+			out.close();
+		}
+		
+		index = MultistreamIndex.load(
+				new ByteArrayInputStream(indexText.toString().getBytes("UTF-8")));
+		
+		reader = new MultistreamDumpReader(
+				dumpFile,
+				index,
+				null,
+				Logger.getLogger(getClass()),
+				false);
+	}
+	
+	@After
+	public void tearDown() throws Exception
+	{
+		reader.close();
+		dumpFile.delete();
+	}
+	
+	// =========================================================================
+	
+	@Test
+	public void testIndexKnowsStreamsOfPages() throws Exception
+	{
+		assertEquals(STREAMS, index.getStreamCount());
+		assertEquals(0, index.getStreamByPageId(1));
+		assertEquals(1, index.getStreamByPageId(PAGES_PER_STREAM + 1));
+		assertEquals(STREAMS - 1, index.getStreamByTitle("Title: " + (STREAMS * PAGES_PER_STREAM)));
+		assertEquals(-1, index.getStreamByPageId(4711));
+		assertEquals(-1, index.getStreamEnd(STREAMS - 1));
+	}
+	
+	@Test
+	public void testReadsAllPagesConcurrently() throws Exception
+	{
+		final Set<BigInteger> ids = Collections.synchronizedSet(new HashSet<BigInteger>());
+		final DumpConverter converter = new DumpConverter();
+		
+		reader.readAll(3, new DumpReaderListener()
+		{
+			@Override
+			public void handlePage(Object mediaWiki, Object page)
+			{
+				try
+				{
+					assertTrue(ids.add(converter.convertPage(page).getId()));
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+			
+			@Override
+			public boolean handleRevisionOrUploadOrLogitem(Object page, Object revision)
+			{
+				return true;
+			}
+		});
+		
+		assertEquals(STREAMS * PAGES_PER_STREAM, ids.size());
+	}
+	
+	@Test
+	public void testFindsSinglePages() throws Exception
+	{
+		Page byId = reader.getPageById(5);
+		assertEquals("Title: 5", byId.getTitle());
+		assertEquals("Text of page 5", byId.getRevisions().get(0).getText());
+		
+		Page byTitle = reader.getPageByTitle("Title: " + (STREAMS * PAGES_PER_STREAM));
+		assertEquals(BigInteger.valueOf(STREAMS * PAGES_PER_STREAM), byTitle.getId());
+		
+		assertNull(reader.getPageById(4711));
+		assertNull(reader.getPageByTitle("Unknown"));
+	}
+	
+	// =========================================================================
+	
+	private static String page(int id)
+	{
+		return "" +
+				"  <page>\n" +
+				"    <title>Title: " + id + "</title>\n" +
+				"    <ns>0</ns>\n" +
+				"    <id>" + id + "</id>\n" +
+				"    <revision>\n" +
+				"      <id>" + (1000 + id) + "</id>\n" +
+				"      <timestamp>2012-05-21T11:11:11Z</timestamp>\n" +
+				"      <contributor>\n" +
+				"        <username>USERNAME</username>\n" +
+				"        <id>1</id>\n" +
+				"      </contributor>\n" +
+				"      <model>wikitext</model>\n" +
+				"      <format>text/x-wiki</format>\n" +
+				"      <text xml:space=\"preserve\">Text of page " + id + "</text>\n" +
+				"      <sha1>abcdfeghijklmnopqrstuvwxyz01234</sha1>\n" +
+				"    </revision>\n" +
+				"  </page>\n";
+	}
+	
+	private static byte[] compress(String text) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BZip2CompressorOutputStream bz2 = new BZip2CompressorOutputStream(out);
+		bz2.write(text.getBytes("UTF-8"));
+		bz2.close();
+		return out.toByteArray();
+	}
+}
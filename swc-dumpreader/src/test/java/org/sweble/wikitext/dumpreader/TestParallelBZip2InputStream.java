@@ -0,0 +1,251 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+public class TestParallelBZip2InputStream
+{
+	@Test
+	public void testDecompressesBlocksInOrder() throws Exception
+	{
+		byte[] data = makeData(1200000);
+		
+		// Level 1 uses blocks of 100k, which yields many blocks
+		byte[] compressed = compress(data, 1);
+		
+		assertArrayEquals(data, decompress(compressed, 4));
+	}
+	
+	@Test
+	public void testDecompressesConcatenatedStreams() throws Exception
+	{
+		byte[] data = makeData(900000);
+		
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		for (int i = 0; i < 3; ++i)
+		{
+			byte[] part = Arrays.copyOfRange(data, i * 300000, (i + 1) * 300000);
+			compressed.write(compress(part, i + 1));
+		}
+		
+		assertArrayEquals(data, decompress(compressed.toByteArray(), 3));
+	}
+	
+	@Test
+	public void testSingleThreadProducesSameResult() throws Exception
+	{
+		byte[] data = makeData(250000);
+		assertArrayEquals(data, decompress(compress(data, 1), 1));
+	}
+	
+	@Test
+	public void testRecoversFromFalseBlockStart() throws Exception
+	{
+		byte[] data = makeData(250000);
+		assertArrayEquals(data, decompress(compress(data, 1), 2, -1, 5000));
+	}
+	
+	@Test
+	public void testRecoversFromFalseStreamEnd() throws Exception
+	{
+		byte[] data = makeData(250000);
+		assertArrayEquals(data, decompress(compress(data, 1), 2, 5000, -1));
+	}
+	
+	@Test
+	public void testRecoversFromBothFalseMarkersInOneBlock() throws Exception
+	{
+		byte[] data = makeData(250000);
+		byte[] compressed = compress(data, 1);
+		
+		assertArrayEquals(data, decompress(compressed, 2, 3000, 7000));
+		assertArrayEquals(data, decompress(compressed, 2, 7000, 3000));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testTruncatedStreamFails() throws Exception
+	{
+		byte[] compressed = compress(makeData(250000), 1);
+		decompress(Arrays.copyOf(compressed, compressed.length / 2), 2);
+	}
+	
+	@Test(expected = IOException.class)
+	public void testRejectsDataThatIsNotCompressed() throws Exception
+	{
+		decompress("<mediawiki/>".getBytes("UTF-8"), 2);
+	}
+	
+	@Test
+	public void testDumpReaderCountsCompressedBytes() throws Exception
+	{
+		readDump(1);
+	}
+	
+	@Test
+	public void testDumpReaderCountsCompressedBytesInParallel() throws Exception
+	{
+		readDump(4);
+	}
+	
+	// =========================================================================
+	
+	private void readDump(int threads) throws Exception
+	{
+		InputStream xml = getClass().getResourceAsStream("/input-0.10.xml");
+		byte[] compressed;
+		try
+		{
+			compressed = compress(IOUtils.toByteArray(xml), 9);
+		}
+		finally
+		{
+			xml.close();
+		}
+		
+		DumpReader dr = new DumpReader(
+				new ByteArrayInputStream(compressed),
+				null,
+				"input-0.10.xml.bz2",
+				Logger.getLogger(getClass()),
+				false,
+				threads)
+		{
+			@Override
+			protected void processPage(Object mediaWiki, Object page)
+			{
+			}
+		};
+		
+		try
+		{
+			dr.unmarshal();
+		}
+		finally
+		{
+			dr.close();
+		}
+		
+		assertEquals(1, dr.getParsedCount());
+		assertEquals(compressed.length, dr.getCompressedBytesRead());
+	}
+	
+	private static byte[] makeData(int size) throws IOException
+	{
+		Random random = new Random(42);
+		
+		StringBuilder sb = new StringBuilder(size + 64);
+		while (sb.length() < size)
+		{
+			sb.append("<page><id>");
+			sb.append(random.nextInt(100000));
+			sb.append("</id><text>");
+			sb.append(Long.toString(random.nextLong(), 36));
+			sb.append("</text></page>\n");
+		}
+		sb.setLength(size);
+		
+		return sb.toString().getBytes("UTF-8");
+	}
+	
+	private static byte[] compress(byte[] data, int blockSize) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BZip2CompressorOutputStream bz2 = new BZip2CompressorOutputStream(out, blockSize);
+		bz2.write(data);
+		bz2.close();
+		return out.toByteArray();
+	}
+	
+	private static byte[] decompress(byte[] compressed, int threads) throws IOException
+	{
+		return read(new ParallelBZip2InputStream(
+				new ByteArrayInputStream(compressed),
+				threads));
+	}
+	
+	/**
+	 * Decompresses the input and pretends that a stream end and a block
+	 * start pattern occur inside the first block. The offsets are counted
+	 * from the end of the first block start pattern, -1 disables a pattern.
+	 */
+	private static byte[] decompress(
+			byte[] compressed,
+			int threads,
+			final long falseEosOffset,
+			final long falseBlockOffset) throws IOException
+	{
+		return read(new ParallelBZip2InputStream(
+				new ByteArrayInputStream(compressed),
+				threads)
+		{
+			private long firstBlockEnd = -1;
+			
+			@Override
+			int marker(long window, long endBit)
+			{
+				int marker = super.marker(window, endBit);
+				if (firstBlockEnd < 0)
+				{
+					if (marker == BLOCK_MARKER)
+						firstBlockEnd = endBit;
+				}
+				else if (endBit == firstBlockEnd + falseEosOffset)
+				{
+					assertEquals(NO_MARKER, marker);
+					return EOS_MARKER;
+				}
+				else if (endBit == firstBlockEnd + falseBlockOffset)
+				{
+					assertEquals(NO_MARKER, marker);
+					return BLOCK_MARKER;
+				}
+				return marker;
+			}
+		});
+	}
+	
+	private static byte[] read(InputStream in) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] b = new byte[1000];
+			int read;
+			while ((read = in.read(b)) != -1)
+				out.write(b, 0, read);
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.dumpreader;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+import org.sweble.wikitext.dumpreader.model.Page;
+import org.sweble.wikitext.dumpreader.model.Revision;
+
+public class TestRevisionHistoryReader
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private static final String[][] HISTORY = {
+			{
+					"Intro.\n== A ==\nFirst.\n",
+					"Intro.\n== A ==\nFirst, edited.\n",
+					"Intro.\n== A ==\nFirst, edited.\n" },
+			{
+					"Other page.\n",
+					"Other page, rewritten entirely?" } };
+	
+	// =========================================================================
+	
+	@Test
+	public void testDeltaOfNeighbouringTexts() throws Exception
+	{
+		TextDelta d = TextDelta.compute("abcXYdef", "abcZdef");
+		assertEquals(3, d.getPrefixLength());
+		assertEquals(3, d.getSuffixLength());
+		assertEquals(2, d.getRemovedLength());
+		assertEquals(1, d.getInsertedLength());
+		assertEquals("Z", d.getInserted("abcZdef").toString());
+		assertFalse(d.isUnchanged());
+		
+		// Prefix and suffix must not overlap
+		d = TextDelta.compute("aaa", "aaaa");
+		assertEquals(3, d.getPrefixLength());
+		assertEquals(0, d.getSuffixLength());
+		assertEquals("a", d.getInserted("aaaa").toString());
+		
+		d = TextDelta.compute("same", "same");
+		assertTrue(d.isUnchanged());
+		assertEquals(1., d.getUnchangedRatio(), 0.);
+		
+		d = TextDelta.compute(null, "new");
+		assertEquals(0, d.getPrefixLength());
+		assertEquals(3, d.getInsertedLength());
+	}
+	
+	@Test
+	public void testRevisionsAreHandedOnWithPreviousResultAndDelta() throws Exception
+	{
+		final List<String> log = new ArrayList<String>();
+		
+		TextBufferPool pool = new TextBufferPool(4, 1024);
+		
+		RevisionHistoryReader<Integer> reader = new RevisionHistoryReader<Integer>(
+				new ByteArrayInputStream(makeDump().getBytes(UTF8)),
+				UTF8,
+				"history.xml",
+				Logger.getLogger(getClass()),
+				DumpField.ALL)
+		{
+			@Override
+			protected Integer processRevisionDelta(
+					Page page,
+					Revision revision,
+					Revision previous,
+					Integer previousResult,
+					TextDelta delta) throws Exception
+			{
+				assertTrue(page.getRevisions().isEmpty());
+				if (previous == null)
+				{
+					assertNull(previousResult);
+				}
+				else
+				{
+					assertEquals(previous.getId(), revision.getParentId());
+					assertFalse(((PooledText) previous.getTextAsCharSequence()).isReleased());
+				}
+				
+				int index = (previousResult == null) ? 0 : previousResult + 1;
+				log.add(page.getTitle() + ":" + index + ":" + delta.isUnchanged() + ":" + delta.getPrefixLength());
+				return index;
+			}
+			
+			@Override
+			protected void processPageEnd(Page page) throws Exception
+			{
+				log.add(page.getTitle() + ":end");
+			}
+		};
+		reader.setTextBufferPool(pool);
+		
+		try
+		{
+			reader.read();
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		List<String> expected = new ArrayList<String>();
+		expected.add("P0:0:false:0");
+		expected.add("P0:1:false:20");
+		expected.add("P0:2:true:30");
+		expected.add("P0:end");
+		expected.add("P1:0:false:0");
+		expected.add("P1:1:false:10");
+		expected.add("P1:end");
+		assertEquals(expected, log);
+		
+		// All texts went back to the pool
+		assertTrue(pool.getFreeCount() > 0);
+		assertEquals(2, reader.getParsedCount());
+	}
+	
+	// =========================================================================
+	
+	private static String makeDump()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" version=\"0.10\" xml:lang=\"en\">\n");
+		
+		int revId = 1;
+		for (int i = 0; i < HISTORY.length; ++i)
+		{
+			sb.append("<page><title>P" + i + "</title><ns>0</ns><id>" + (i + 1) + "</id>\n");
+			for (int j = 0; j < HISTORY[i].length; ++j, ++revId)
+			{
+				sb.append("<revision><id>" + revId + "</id>");
+				if (j > 0)
+					sb.append("<parentid>" + (revId - 1) + "</parentid>");
+				sb.append("<timestamp>2012-05-21T11:11:11Z</timestamp>");
+				sb.append("<text xml:space=\"preserve\">" + HISTORY[i][j] + "</text>");
+				sb.append("</revision>\n");
+			}
+			sb.append("</page>\n");
+		}
+		
+		sb.append("</mediawiki>\n");
+		return sb.toString();
+	}
+}
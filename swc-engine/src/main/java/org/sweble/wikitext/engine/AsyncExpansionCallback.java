@@ -0,0 +1,43 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.util.concurrent.Future;
+
+/**
+ * An expansion callback that can retrieve pages without blocking the
+ * expansion thread. If template prefetching is enabled in the
+ * {@link EngineOptions}, the engine scans each page for transclusions before
+ * expanding it and requests all of them at once using
+ * {@link #retrieveWikitextAsync(ExpansionFrame, PageTitle)}. The expansion
+ * itself still consumes the pages one after another in document order.
+ */
+public interface AsyncExpansionCallback
+		extends
+			ExpansionCallback
+{
+	/**
+	 * Starts retrieving the latest revision of the article.
+	 * 
+	 * @return A future which yields the requested article or null if no such
+	 *         article could be found. If the future fails, the failure is
+	 *         reported as if {@link #retrieveWikitext(ExpansionFrame, PageTitle)}
+	 *         had thrown the cause.
+	 */
+	Future<FullPage> retrieveWikitextAsync(ExpansionFrame expansionFrame, PageTitle pageTitle) throws Exception;
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import org.sweble.wikitext.engine.utils.UrlService;
+
+/**
+ * Immutable options which control a single processing request of the
+ * {@link WtEngine}. Since an options object cannot be altered, it can be
+ * shared by any number of concurrent requests.
+ */
+public final class EngineOptions
+{
+	public static final EngineOptions DEFAULT = new EngineOptions();
+	
+	// =========================================================================
+	
+	private final ExpansionDebugHooks hooks;
+	
+	private final boolean noRedirect;
+	
+	private final boolean timingEnabled;
+	
+	private final boolean catchAll;
+	
+	private final UrlService urlService;
+	
+	private final boolean singlePassValidation;
+	
+	private final boolean templatePrefetch;
+	
+	private final boolean templateMemoization;
+	
+	private final TemplateInvocationCache templateCache;
+	
+	private final ExpansionLimits limits;
+	
+	private final boolean retainSegments;
+	
+	// =========================================================================
+	
+	/**
+	 * Creates the default options. Use the <code>withX()</code> methods to
+	 * derive options which differ from the defaults.
+	 */
+	public EngineOptions()
+	{
+		this(null, false, false, true, new UrlService(), false, false, false, null, null, false);
+	}
+	
+	private EngineOptions(
+			ExpansionDebugHooks hooks,
+			boolean noRedirect,
+			boolean timingEnabled,
+			boolean catchAll,
+			UrlService urlService,
+			boolean singlePassValidation,
+			boolean templatePrefetch,
+			boolean templateMemoization,
+			TemplateInvocationCache templateCache,
+			ExpansionLimits limits,
+			boolean retainSegments)
+	{
+		if (urlService == null)
+			throw new NullPointerException();
+		
+		this.hooks = hooks;
+		this.noRedirect = noRedirect;
+		this.timingEnabled = timingEnabled;
+		this.catchAll = catchAll;
+		this.urlService = urlService;
+		this.singlePassValidation = singlePassValidation;
+		this.templatePrefetch = templatePrefetch;
+		this.templateMemoization = templateMemoization;
+		this.templateCache = templateCache;
+		this.limits = limits;
+		this.retainSegments = retainSegments;
+	}
+	
+	// =========================================================================
+	
+	public ExpansionDebugHooks getDebugHooks()
+	{
+		return hooks;
+	}
+	
+	public boolean isNoRedirect()
+	{
+		return noRedirect;
+	}
+	
+	public boolean isTimingEnabled()
+	{
+		return timingEnabled;
+	}
+	
+	public boolean isCatchAll()
+	{
+		return catchAll;
+	}
+	
+	public UrlService getUrlService()
+	{
+		return urlService;
+	}
+	
+	/**
+	 * If enabled, the encoding validation is performed while the preprocessor
+	 * reads its input instead of in a separate pass that produces a validated
+	 * copy of the wikitext. The result is the same; a single pass saves one
+	 * scan and one copy of the wikitext. The time needed for validation is
+	 * then included in the time logged for the preprocessor pass.
+	 */
+	public boolean isSinglePassValidation()
+	{
+		return singlePassValidation;
+	}
+	
+	/**
+	 * If enabled and the expansion callback is an
+	 * {@link AsyncExpansionCallback}, the engine requests all pages
+	 * transcluded by a page before it starts expanding the page. The pages
+	 * are then retrieved concurrently instead of one after another. The
+	 * result of the expansion does not change.
+	 */
+	public boolean isTemplatePrefetch()
+	{
+		return templatePrefetch;
+	}
+	
+	/**
+	 * If enabled, the result of a transclusion is reused when the same page
+	 * is transcluded again with the same arguments, unless the result depends
+	 * on volatile parser functions. Arguments are expanded before the
+	 * transcluded page instead of on demand, and only invocations whose
+	 * arguments expand to plain text are memoized. Pages with an unknown
+	 * revision (a negative revision id) are never memoized. Memoization is
+	 * not performed if debug hooks are set.
+	 */
+	public boolean isTemplateMemoization()
+	{
+		return templateMemoization;
+	}
+	
+	/**
+	 * The cache that memoized transclusions are stored in. If null, each
+	 * processing request uses a cache of its own. A shared cache reuses
+	 * transclusion results across pages.
+	 */
+	public TemplateInvocationCache getTemplateCache()
+	{
+		return templateCache;
+	}
+	
+	/**
+	 * The resource limits enforced while expanding a page. If null, no limits
+	 * are enforced and no limits report is added to the log.
+	 */
+	public ExpansionLimits getLimits()
+	{
+		return limits;
+	}
+	
+	/**
+	 * If enabled,
+	 * {@link WtEngineImpl#postprocessIncrementally(PageId, org.sweble.wikitext.engine.nodes.EngProcessedPage, CharSequence, ExpansionCallback, EngineOptions)}
+	 * attaches the segments of a page to the processed page, so that the next
+	 * call for the same page can reuse the segments that did not change. The
+	 * segments keep a copy of the page's AST and of its wikitext. If
+	 * disabled, every call processes all segments.
+	 */
+	public boolean isRetainSegments()
+	{
+		return retainSegments;
+	}
+	
+	// =========================================================================
+	
+	public EngineOptions withDebugHooks(ExpansionDebugHooks hooks)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withNoRedirect(boolean noRedirect)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withTimingEnabled(boolean timingEnabled)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withCatchAll(boolean catchAll)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withUrlService(UrlService urlService)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withSinglePassValidation(boolean singlePassValidation)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withTemplatePrefetch(boolean templatePrefetch)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withTemplateMemoization(boolean templateMemoization)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withTemplateCache(TemplateInvocationCache templateCache)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withLimits(ExpansionLimits limits)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	public EngineOptions withRetainSegments(boolean retainSegments)
+	{
+		return new EngineOptions(hooks, noRedirect, timingEnabled, catchAll, urlService, singlePassValidation, templatePrefetch, templateMemoization, templateCache, limits, retainSegments);
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public String toString()
+	{
+		return "EngineOptions [hooks=" + hooks + ", noRedirect=" + noRedirect + ", timingEnabled=" + timingEnabled + ", catchAll=" + catchAll + ", urlService=" + urlService + ", singlePassValidation=" + singlePassValidation + ", templatePrefetch=" + templatePrefetch + ", templateMemoization=" + templateMemoization + ", templateCache=" + templateCache + ", limits=" + limits + ", retainSegments=" + retainSegments + "]";
+	}
+}
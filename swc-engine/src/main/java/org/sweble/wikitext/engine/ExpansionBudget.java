@@ -0,0 +1,315 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.sweble.wikitext.engine.nodes.EngLogLimitsReport;
+import org.sweble.wikitext.engine.nodes.EngineNodeFactory;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtStringNode;
+
+/**
+ * Keeps track of the resources used by the expansion of a single page and
+ * compares them against the {@link ExpansionLimits}. One budget is shared by
+ * all frames of an expansion request.
+ */
+final class ExpansionBudget
+{
+	private final ExpansionLimits limits;
+	
+	private final long startTime;
+	
+	private final Set<String> exceededLimits = new LinkedHashSet<String>();
+	
+	private int nodeCount;
+	
+	private long postExpandIncludeSize;
+	
+	private long templateArgumentSize;
+	
+	private int expansionDepth;
+	
+	private int expensiveFunctionCount;
+	
+	/**
+	 * The sizes of all expansion results and arguments that were charged so
+	 * far. Results become part of the results of enclosing transclusions and
+	 * are not measured again when those are charged.
+	 */
+	private final Map<WtNode, Long> sizes = new IdentityHashMap<WtNode, Long>();
+	
+	// =========================================================================
+	
+	public ExpansionBudget(ExpansionLimits limits)
+	{
+		this.limits = limits;
+		this.startTime = System.currentTimeMillis();
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Counts a visited node.
+	 * 
+	 * @return False if the node count limit has been exceeded.
+	 */
+	public boolean chargeNode()
+	{
+		if (++nodeCount > limits.getMaxNodeCount())
+			return exceeded("node count");
+		return true;
+	}
+	
+	/**
+	 * @return False if the node count limit has been exceeded before.
+	 */
+	public boolean hasNodesLeft()
+	{
+		return nodeCount <= limits.getMaxNodeCount();
+	}
+	
+	/**
+	 * @return False if the expansion has taken longer than permitted.
+	 */
+	public boolean hasTimeLeft()
+	{
+		if (getTimeNeeded() > limits.getMaxExpansionTimeMillis())
+			return exceeded("expansion time");
+		return true;
+	}
+	
+	/**
+	 * Records the depth of a transclusion that is about to be expanded.
+	 * 
+	 * @return False if the depth exceeds the expansion depth limit. The depth
+	 *         is not recorded in that case.
+	 */
+	public boolean enterDepth(int depth)
+	{
+		if (depth > limits.getMaxExpansionDepth())
+			return exceeded("expansion depth");
+		if (depth > expansionDepth)
+			expansionDepth = depth;
+		return true;
+	}
+	
+	/**
+	 * Counts the invocation of an expensive parser function.
+	 * 
+	 * @return False if the invocation exceeds the limit. The invocation is not
+	 *         counted in that case.
+	 */
+	public boolean chargeExpensiveFunction()
+	{
+		if (expensiveFunctionCount >= limits.getMaxExpensiveFunctionCount())
+			return exceeded("expensive parser function count");
+		++expensiveFunctionCount;
+		return true;
+	}
+	
+	/**
+	 * Adds the size of a result that is included into the expanded page.
+	 * 
+	 * @return False if the result exceeds the limit. The size is not added in
+	 *         that case.
+	 */
+	public boolean chargeIncludeSize(WtNode result)
+	{
+		long size = measure(result);
+		if (postExpandIncludeSize + size > limits.getMaxPostExpandIncludeSize())
+			return exceeded("post-expand include size");
+		postExpandIncludeSize += size;
+		return true;
+	}
+	
+	/**
+	 * Adds the size of an expanded template argument.
+	 * 
+	 * @return False if the argument exceeds the limit. The size is not added
+	 *         in that case.
+	 */
+	public boolean chargeArgumentSize(WtNode argument)
+	{
+		long size = measure(argument);
+		if (templateArgumentSize + size > limits.getMaxTemplateArgumentSize())
+			return exceeded("template argument size");
+		templateArgumentSize += size;
+		return true;
+	}
+	
+	/**
+	 * Starts recording the resources used by the expansion of a
+	 * transclusion. Every snapshot must be ended with
+	 * {@link #endSnapshot(Snapshot, int)}, also if the expansion fails.
+	 */
+	public Snapshot startSnapshot()
+	{
+		Snapshot snapshot = new Snapshot(this);
+		expansionDepth = 0;
+		return snapshot;
+	}
+	
+	/**
+	 * Stores the resources used since the snapshot was started in the
+	 * snapshot.
+	 * 
+	 * @param depth The depth of the frame of the transcluded page.
+	 */
+	public void endSnapshot(Snapshot snapshot, int depth)
+	{
+		snapshot.nodeCount = nodeCount - snapshot.nodeCount;
+		snapshot.postExpandIncludeSize = postExpandIncludeSize - snapshot.postExpandIncludeSize;
+		snapshot.templateArgumentSize = templateArgumentSize - snapshot.templateArgumentSize;
+		snapshot.expensiveFunctionCount = expensiveFunctionCount - snapshot.expensiveFunctionCount;
+		
+		int outerDepth = snapshot.expansionDepth;
+		snapshot.expansionDepth = Math.max(expansionDepth - depth, 0);
+		expansionDepth = Math.max(expansionDepth, outerDepth);
+	}
+	
+	/**
+	 * Charges the resources that the expansion of a memoized transclusion
+	 * used when it was first expanded. Either all resources are charged or
+	 * none.
+	 * 
+	 * @param depth The depth of the frame of the transcluded page.
+	 * @return False if one of the limits would be exceeded. Nothing is charged
+	 *         and no limit is reported as exceeded in that case.
+	 */
+	public boolean chargeMemoized(MemoizedTransclusion memoized, int depth)
+	{
+		int reachedDepth = depth + memoized.getExpansionDepth();
+		
+		if (nodeCount + memoized.getNodeCount() > limits.getMaxNodeCount() ||
+				postExpandIncludeSize + memoized.getPostExpandIncludeSize() > limits.getMaxPostExpandIncludeSize() ||
+				templateArgumentSize + memoized.getTemplateArgumentSize() > limits.getMaxTemplateArgumentSize() ||
+				reachedDepth > limits.getMaxExpansionDepth() ||
+				expensiveFunctionCount + memoized.getExpensiveFunctionCount() > limits.getMaxExpensiveFunctionCount())
+			return false;
+		
+		nodeCount += memoized.getNodeCount();
+		postExpandIncludeSize += memoized.getPostExpandIncludeSize();
+		templateArgumentSize += memoized.getTemplateArgumentSize();
+		expensiveFunctionCount += memoized.getExpensiveFunctionCount();
+		if (reachedDepth > expansionDepth)
+			expansionDepth = reachedDepth;
+		return true;
+	}
+	
+	public long getTimeNeeded()
+	{
+		return System.currentTimeMillis() - startTime;
+	}
+	
+	public Set<String> getExceededLimits()
+	{
+		return exceededLimits;
+	}
+	
+	// =========================================================================
+	
+	public EngLogLimitsReport makeReport(EngineNodeFactory nf)
+	{
+		EngLogLimitsReport report = nf.logLimitsReport();
+		report.setNodeCount(nodeCount);
+		report.setPostExpandIncludeSize(postExpandIncludeSize);
+		report.setTemplateArgumentSize(templateArgumentSize);
+		report.setExpansionDepth(expansionDepth);
+		report.setExpensiveFunctionCount(expensiveFunctionCount);
+		report.setTimeNeeded(getTimeNeeded());
+		
+		StringBuilder sb = new StringBuilder();
+		for (String limit : exceededLimits)
+		{
+			if (sb.length() > 0)
+				sb.append(", ");
+			sb.append(limit);
+		}
+		report.setExceededLimits(sb.toString());
+		
+		return report;
+	}
+	
+	// =========================================================================
+	
+	private boolean exceeded(String limit)
+	{
+		exceededLimits.add(limit);
+		return false;
+	}
+	
+	/**
+	 * Approximates the size of an expanded AST by the length of its text
+	 * content. Subtrees that were measured before are not walked again.
+	 */
+	private long measure(WtNode n)
+	{
+		Long size = sizes.get(n);
+		if (size == null)
+		{
+			size = sizeOf(n);
+			sizes.put(n, size);
+		}
+		return size;
+	}
+	
+	private long sizeOf(WtNode n)
+	{
+		long size = 0;
+		if (n instanceof WtStringNode)
+			size += ((WtStringNode) n).getContent().length();
+		for (WtNode c : n)
+		{
+			Long known = sizes.get(c);
+			size += (known != null) ? known : sizeOf(c);
+		}
+		return size;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * The resources charged up to the start of a snapshot and, once the
+	 * snapshot has ended, the resources charged while it was taken.
+	 */
+	static final class Snapshot
+	{
+		int nodeCount;
+		
+		long postExpandIncludeSize;
+		
+		long templateArgumentSize;
+		
+		int expansionDepth;
+		
+		int expensiveFunctionCount;
+		
+		private Snapshot(ExpansionBudget budget)
+		{
+			this.nodeCount = budget.nodeCount;
+			this.postExpandIncludeSize = budget.postExpandIncludeSize;
+			this.templateArgumentSize = budget.templateArgumentSize;
+			this.expansionDepth = budget.expansionDepth;
+			this.expensiveFunctionCount = budget.expensiveFunctionCount;
+		}
+	}
+}
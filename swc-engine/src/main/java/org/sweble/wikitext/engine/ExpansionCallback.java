@@ -53,11 +53,36 @@ public interface ExpansionCallback
 	 */
 	String fileUrl(PageTitle pageTitle, int width, int height) throws Exception;
 	
+	/**
+	 * Retrieves a page that was preprocessed earlier and handed to
+	 * {@link #cachePreprocessedPage(ExpansionFrame, FullPreprocessedPage)}.
+	 * 
+	 * The engine will not modify the returned AST but expand a clone of it.
+	 * 
+	 * @param pageId
+	 *            The title and revision of the requested page.
+	 * @param forInclusion
+	 *            Whether the page was preprocessed for inclusion or for
+	 *            viewing.
+	 * @return The cached page or null if the page is not cached.
+	 */
+	FullPreprocessedPage retrievePreprocessedPage(
+			ExpansionFrame expansionFrame,
+			PageId pageId,
+			boolean forInclusion) throws Exception;
+	
+	/**
+	 * Called by the engine after a page was validated and preprocessed for
+	 * transclusion or redirection. Implementations can store the page (e.g.
+	 * in a {@link PreprocessedPageCache}) or simply ignore the call.
+	 */
+	void cachePreprocessedPage(
+			ExpansionFrame expansionFrame,
+			FullPreprocessedPage page) throws Exception;
+	
 	/*
 	 * Retrieves the specified revision of the article.
 	 *
 	String retrieveWikitext(ExpansionFrame expansionFrame, PageId pageId) throws Exception;
-	void cachePreprocessedPage(ExpansionFrame expansionFrame, FullPreprocessedPage page);
-	FullPreprocessedPage retrievePreprocessedPage(ExpansionFrame expansionFrame, PageTitle pageTitle, boolean forInclusion);
 	 */
 }
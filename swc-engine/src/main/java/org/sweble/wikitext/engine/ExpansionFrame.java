@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.EngLogContainer;
+import org.sweble.wikitext.engine.utils.LruTemplateInvocationCache;
 import org.sweble.wikitext.engine.utils.UrlService;
 import org.sweble.wikitext.parser.WtEntityMap;
 import org.sweble.wikitext.parser.nodes.WtNode;
@@ -39,7 +40,7 @@ public class ExpansionFrame
 	
 	private final ExpansionFrame parentFrame;
 	
-	private final PageTitle title;
+	private final PageId pageId;
 	
 	private final Map<String, WtNodeList> arguments;
 	
@@ -53,82 +54,162 @@ public class ExpansionFrame
 	
 	private final WtEntityMap entityMap;
 	
-	private final boolean noRedirect;
+	private final EngineOptions options;
 	
-	private ExpansionVisitor expansionVisitor;
+	private final TemplatePrefetcher prefetcher;
+	
+	private final TemplateInvocationCache templateCache;
+	
+	private final ExpansionBudget budget;
 	
-	// FIXME: That should have been initialized from a request!
-	//        And only once for the whole expansion process!
-	private UrlService urlService = new UrlService();
+	private final int depth;
+	
+	/**
+	 * Only used in the root frame.
+	 */
+	private int volatileInvocationCount = 0;
+	
+	private ExpansionVisitor expansionVisitor;
 	
 	// =========================================================================
 	
 	public ExpansionFrame(
 			WtEngineImpl engine,
 			ExpansionCallback callback,
-			ExpansionDebugHooks hooks,
+			EngineOptions options,
 			PageTitle title,
 			WtEntityMap entityMap,
-			boolean noRedirect,
 			List<Warning> warnings,
-			EngLogContainer frameLog,
-			boolean timingEnabled,
-			boolean catchAll)
+			EngLogContainer frameLog)
+	{
+		this(
+				engine,
+				callback,
+				options,
+				new PageId(title, -1),
+				entityMap,
+				warnings,
+				frameLog);
+	}
+	
+	public ExpansionFrame(
+			WtEngineImpl engine,
+			ExpansionCallback callback,
+			EngineOptions options,
+			PageId pageId,
+			WtEntityMap entityMap,
+			List<Warning> warnings,
+			EngLogContainer frameLog)
 	{
 		this.engine = engine;
 		this.callback = callback;
-		this.title = title;
+		this.pageId = pageId;
 		this.entityMap = entityMap;
 		this.arguments = new HashMap<String, WtNodeList>();
 		this.forInclusion = false;
-		this.noRedirect = noRedirect;
+		this.options = options;
 		this.warnings = warnings;
 		this.frameLog = frameLog;
 		this.rootFrame = this;
 		this.parentFrame = null;
 		
+		if (options.isTemplatePrefetch() && (callback instanceof AsyncExpansionCallback))
+			this.prefetcher = new TemplatePrefetcher((AsyncExpansionCallback) callback);
+		else
+			this.prefetcher = null;
+		
+		if (options.isTemplateMemoization() && (options.getDebugHooks() == null))
+		{
+			TemplateInvocationCache cache = options.getTemplateCache();
+			this.templateCache = (cache != null) ? cache : new LruTemplateInvocationCache();
+		}
+		else
+		{
+			this.templateCache = null;
+		}
+		
+		/**
+		 * Memoized transclusions record the resources they used so that a
+		 * later request can charge them to its budget, whatever limits that
+		 * request enforces.
+		 */
+		ExpansionLimits limits = options.getLimits();
+		if (limits == null && this.templateCache != null)
+			limits = ExpansionLimits.UNLIMITED;
+		
+		this.budget = (limits != null) ? new ExpansionBudget(limits) : null;
+		this.depth = 0;
+		
 		expansionVisitor = new ExpansionVisitor(
 				this,
 				frameLog,
-				hooks,
-				timingEnabled,
-				catchAll);
+				options.getDebugHooks(),
+				options.isTimingEnabled(),
+				options.isCatchAll());
 	}
 	
 	public ExpansionFrame(
 			WtEngineImpl engine,
 			ExpansionCallback callback,
-			ExpansionDebugHooks hooks,
+			EngineOptions options,
 			PageTitle title,
 			WtEntityMap entityMap,
 			Map<String, WtNodeList> arguments,
 			boolean forInclusion,
-			boolean noRedirect,
 			ExpansionFrame rootFrame,
 			ExpansionFrame parentFrame,
 			List<Warning> warnings,
-			EngLogContainer frameLog,
-			boolean timingEnabled,
-			boolean catchAll)
+			EngLogContainer frameLog)
+	{
+		this(
+				engine,
+				callback,
+				options,
+				new PageId(title, -1),
+				entityMap,
+				arguments,
+				forInclusion,
+				rootFrame,
+				parentFrame,
+				warnings,
+				frameLog);
+	}
+	
+	public ExpansionFrame(
+			WtEngineImpl engine,
+			ExpansionCallback callback,
+			EngineOptions options,
+			PageId pageId,
+			WtEntityMap entityMap,
+			Map<String, WtNodeList> arguments,
+			boolean forInclusion,
+			ExpansionFrame rootFrame,
+			ExpansionFrame parentFrame,
+			List<Warning> warnings,
+			EngLogContainer frameLog)
 	{
 		this.engine = engine;
 		this.callback = callback;
-		this.title = title;
+		this.pageId = pageId;
 		this.entityMap = entityMap;
 		this.arguments = arguments;
 		this.forInclusion = forInclusion;
-		this.noRedirect = noRedirect;
+		this.options = options;
 		this.warnings = warnings;
 		this.frameLog = frameLog;
 		this.rootFrame = rootFrame;
 		this.parentFrame = parentFrame;
+		this.prefetcher = rootFrame.prefetcher;
+		this.templateCache = rootFrame.templateCache;
+		this.budget = rootFrame.budget;
+		this.depth = (parentFrame != null) ? parentFrame.depth + 1 : 1;
 		
 		expansionVisitor = new ExpansionVisitor(
 				this,
 				frameLog,
-				hooks,
-				timingEnabled,
-				catchAll);
+				options.getDebugHooks(),
+				options.isTimingEnabled(),
+				options.isCatchAll());
 	}
 	
 	// =========================================================================
@@ -150,7 +231,16 @@ public class ExpansionFrame
 	
 	public PageTitle getTitle()
 	{
-		return title;
+		return pageId.getTitle();
+	}
+	
+	/**
+	 * The title and revision of the page expanded in this frame. The revision
+	 * is -1 if it is not known.
+	 */
+	public PageId getPageId()
+	{
+		return pageId;
 	}
 	
 	public Map<String, WtNodeList> getArguments()
@@ -163,6 +253,14 @@ public class ExpansionFrame
 		return forInclusion;
 	}
 	
+	/**
+	 * The number of frames above this frame. The root frame has depth 0.
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+	
 	public EngLogContainer getFrameLog()
 	{
 		return frameLog;
@@ -198,14 +296,57 @@ public class ExpansionFrame
 		return callback;
 	}
 	
+	public EngineOptions getOptions()
+	{
+		return options;
+	}
+	
 	public boolean isNoRedirect()
 	{
-		return noRedirect;
+		return options.isNoRedirect();
 	}
 	
 	public UrlService getUrlService()
 	{
-		return urlService;
+		return options.getUrlService();
+	}
+	
+	/**
+	 * Returns the cache for memoized transclusions or null if memoization is
+	 * disabled.
+	 */
+	public TemplateInvocationCache getTemplateCache()
+	{
+		return templateCache;
+	}
+	
+	/**
+	 * Records that the expansion produced a result which depends on more
+	 * than the expanded page and its arguments, e.g. because a volatile parser
+	 * function was invoked. Transclusions that were being expanded at that
+	 * time will not be memoized.
+	 */
+	public void markVolatile()
+	{
+		rootFrame.volatileInvocationCount++;
+	}
+	
+	/**
+	 * Returns how often {@link #markVolatile()} was called during the whole
+	 * expansion request.
+	 */
+	public int getVolatileInvocationCount()
+	{
+		return rootFrame.volatileInvocationCount;
+	}
+	
+	/**
+	 * Returns the resource budget of the expansion request or null if no
+	 * limits are enforced and transclusions are not memoized.
+	 */
+	ExpansionBudget getBudget()
+	{
+		return budget;
 	}
 	
 	// =========================================================================
@@ -226,7 +367,47 @@ public class ExpansionFrame
 	
 	public boolean existsPage(PageTitle pageTitle) throws Exception
 	{
-		return (callback.retrieveWikitext(this, pageTitle) != null) ||
+		return (retrieveWikitext(pageTitle) != null) ||
 				(callback.fileUrl(pageTitle, -1, -1) != null);
 	}
+	
+	/**
+	 * Retrieves a page for transclusion or redirection. If template
+	 * prefetching is enabled, the page may already have been requested
+	 * when this frame started expanding.
+	 */
+	public FullPage retrieveWikitext(PageTitle pageTitle) throws Exception
+	{
+		if (prefetcher != null)
+			return prefetcher.retrieveWikitext(this, pageTitle);
+		return callback.retrieveWikitext(this, pageTitle);
+	}
+	
+	/**
+	 * Requests the pages transcluded by the given AST in advance. Does
+	 * nothing if template prefetching is disabled.
+	 */
+	public void prefetchTemplates(WtNode ppAst)
+	{
+		if (prefetcher != null)
+			prefetcher.prefetch(this, ppAst);
+	}
+	
+	/**
+	 * Returns the number of pages requested in advance by all frames of this
+	 * expansion request.
+	 */
+	public int getPrefetchCount()
+	{
+		return (prefetcher != null) ? prefetcher.getPrefetchCount() : 0;
+	}
+	
+	/**
+	 * Called on the root frame when the expansion request is done.
+	 */
+	void finishPrefetching()
+	{
+		if (prefetcher != null)
+			prefetcher.cancelPending();
+	}
 }
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+/**
+ * Immutable resource limits for the expansion of a single page, similar to
+ * the limits enforced by MediaWiki's parser. A transclusion, parser function
+ * or argument that would exceed a limit is replaced by a soft error and the
+ * usage of all resources is reported in the log of the processing pass.
+ * 
+ * All sizes are measured in characters.
+ */
+public final class ExpansionLimits
+{
+	public static final ExpansionLimits UNLIMITED = new ExpansionLimits(
+			Integer.MAX_VALUE,
+			Long.MAX_VALUE,
+			Long.MAX_VALUE,
+			Integer.MAX_VALUE,
+			Integer.MAX_VALUE,
+			Long.MAX_VALUE);
+	
+	/**
+	 * The default limits of MediaWiki, plus a time limit of ten seconds.
+	 */
+	public static final ExpansionLimits MEDIAWIKI_DEFAULTS = new ExpansionLimits(
+			1000000,
+			2 * 1024 * 1024,
+			2 * 1024 * 1024,
+			40,
+			500,
+			10 * 1000);
+	
+	// =========================================================================
+	
+	private final int maxNodeCount;
+	
+	private final long maxPostExpandIncludeSize;
+	
+	private final long maxTemplateArgumentSize;
+	
+	private final int maxExpansionDepth;
+	
+	private final int maxExpensiveFunctionCount;
+	
+	private final long maxExpansionTimeMillis;
+	
+	// =========================================================================
+	
+	public ExpansionLimits(
+			int maxNodeCount,
+			long maxPostExpandIncludeSize,
+			long maxTemplateArgumentSize,
+			int maxExpansionDepth,
+			int maxExpensiveFunctionCount,
+			long maxExpansionTimeMillis)
+	{
+		if (maxNodeCount < 0 ||
+				maxPostExpandIncludeSize < 0 ||
+				maxTemplateArgumentSize < 0 ||
+				maxExpansionDepth < 0 ||
+				maxExpensiveFunctionCount < 0 ||
+				maxExpansionTimeMillis < 0)
+			throw new IllegalArgumentException("Limits must not be negative");
+		
+		this.maxNodeCount = maxNodeCount;
+		this.maxPostExpandIncludeSize = maxPostExpandIncludeSize;
+		this.maxTemplateArgumentSize = maxTemplateArgumentSize;
+		this.maxExpansionDepth = maxExpansionDepth;
+		this.maxExpensiveFunctionCount = maxExpensiveFunctionCount;
+		this.maxExpansionTimeMillis = maxExpansionTimeMillis;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * The maximum number of nodes the expansion visits, including the nodes
+	 * of transcluded pages.
+	 */
+	public int getMaxNodeCount()
+	{
+		return maxNodeCount;
+	}
+	
+	/**
+	 * The maximum size of all transclusion and parser function results that
+	 * are included into the expanded page itself.
+	 */
+	public long getMaxPostExpandIncludeSize()
+	{
+		return maxPostExpandIncludeSize;
+	}
+	
+	/**
+	 * The maximum size of all template arguments that get expanded.
+	 */
+	public long getMaxTemplateArgumentSize()
+	{
+		return maxTemplateArgumentSize;
+	}
+	
+	/**
+	 * The maximum number of nested transclusions.
+	 */
+	public int getMaxExpansionDepth()
+	{
+		return maxExpansionDepth;
+	}
+	
+	/**
+	 * The maximum number of invocations of expensive parser functions (see
+	 * {@link ParserFunctionBase#isExpensive()}).
+	 */
+	public int getMaxExpensiveFunctionCount()
+	{
+		return maxExpensiveFunctionCount;
+	}
+	
+	/**
+	 * The maximum wall-clock time the expansion of a page may take. Once the
+	 * time is up, all further transclusions and parser functions are replaced
+	 * by soft errors.
+	 */
+	public long getMaxExpansionTimeMillis()
+	{
+		return maxExpansionTimeMillis;
+	}
+	
+	// =========================================================================
+	
+	public ExpansionLimits withMaxNodeCount(int maxNodeCount)
+	{
+		return new ExpansionLimits(maxNodeCount, maxPostExpandIncludeSize, maxTemplateArgumentSize, maxExpansionDepth, maxExpensiveFunctionCount, maxExpansionTimeMillis);
+	}
+	
+	public ExpansionLimits withMaxPostExpandIncludeSize(long maxPostExpandIncludeSize)
+	{
+		return new ExpansionLimits(maxNodeCount, maxPostExpandIncludeSize, maxTemplateArgumentSize, maxExpansionDepth, maxExpensiveFunctionCount, maxExpansionTimeMillis);
+	}
+	
+	public ExpansionLimits withMaxTemplateArgumentSize(long maxTemplateArgumentSize)
+	{
+		return new ExpansionLimits(maxNodeCount, maxPostExpandIncludeSize, maxTemplateArgumentSize, maxExpansionDepth, maxExpensiveFunctionCount, maxExpansionTimeMillis);
+	}
+	
+	public ExpansionLimits withMaxExpansionDepth(int maxExpansionDepth)
+	{
+		return new ExpansionLimits(maxNodeCount, maxPostExpandIncludeSize, maxTemplateArgumentSize, maxExpansionDepth, maxExpensiveFunctionCount, maxExpansionTimeMillis);
+	}
+	
+	public ExpansionLimits withMaxExpensiveFunctionCount(int maxExpensiveFunctionCount)
+	{
+		return new ExpansionLimits(maxNodeCount, maxPostExpandIncludeSize, maxTemplateArgumentSize, maxExpansionDepth, maxExpensiveFunctionCount, maxExpansionTimeMillis);
+	}
+	
+	public ExpansionLimits withMaxExpansionTimeMillis(long maxExpansionTimeMillis)
+	{
+		return new ExpansionLimits(maxNodeCount, maxPostExpandIncludeSize, maxTemplateArgumentSize, maxExpansionDepth, maxExpensiveFunctionCount, maxExpansionTimeMillis);
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public String toString()
+	{
+		return "ExpansionLimits [maxNodeCount=" + maxNodeCount + ", maxPostExpandIncludeSize=" + maxPostExpandIncludeSize + ", maxTemplateArgumentSize=" + maxTemplateArgumentSize + ", maxExpansionDepth=" + maxExpansionDepth + ", maxExpensiveFunctionCount=" + maxExpensiveFunctionCount + ", maxExpansionTimeMillis=" + maxExpansionTimeMillis + "]";
+	}
+}
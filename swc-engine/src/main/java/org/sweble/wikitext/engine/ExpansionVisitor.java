@@ -19,11 +19,14 @@ package org.sweble.wikitext.engine;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,10 +36,12 @@ import org.sweble.wikitext.engine.nodes.EngLogContainer;
 import org.sweble.wikitext.engine.nodes.EngLogMagicWordResolution;
 import org.sweble.wikitext.engine.nodes.EngLogParameterResolution;
 import org.sweble.wikitext.engine.nodes.EngLogParserFunctionResolution;
+import org.sweble.wikitext.engine.nodes.EngLogProcessingPass;
 import org.sweble.wikitext.engine.nodes.EngLogRedirectResolution;
 import org.sweble.wikitext.engine.nodes.EngLogTagExtensionResolution;
 import org.sweble.wikitext.engine.nodes.EngLogTransclusionResolution;
 import org.sweble.wikitext.engine.nodes.EngNode;
+import org.sweble.wikitext.engine.nodes.EngPage;
 import org.sweble.wikitext.engine.nodes.EngProcessedPage;
 import org.sweble.wikitext.engine.nodes.EngineNodeFactory;
 import org.sweble.wikitext.engine.utils.EngineAstTextUtils;
@@ -60,6 +65,7 @@ import org.sweble.wikitext.parser.parser.LinkTargetException;
 import org.sweble.wikitext.parser.utils.AstTextUtils.PartialConversion;
 import org.sweble.wikitext.parser.utils.StringConversionException;
 
+import de.fau.cs.osr.ptk.common.Warning;
 import de.fau.cs.osr.utils.StopWatch;
 
 public final class ExpansionVisitor
@@ -87,6 +93,8 @@ public final class ExpansionVisitor
 	
 	private final EngineAstTextUtils tu;
 	
+	private final ExpansionBudget budget;
+	
 	private boolean hadNewlineGlobal;
 	
 	// =========================================================================
@@ -105,6 +113,7 @@ public final class ExpansionVisitor
 		this.catchAll = catchAll;
 		this.nf = expFrame.getWikiConfig().getNodeFactory();
 		this.tu = expFrame.getWikiConfig().getAstTextUtils();
+		this.budget = expFrame.getBudget();
 	}
 	
 	// =========================================================================
@@ -126,6 +135,9 @@ public final class ExpansionVisitor
 	@Override
 	protected Object resolveAndVisit(WtNode n, int type) throws ExpansionException
 	{
+		if (budget != null)
+			budget.chargeNode();
+		
 		switch (type)
 		{
 		// -- These set the hadNewline flag --
@@ -377,6 +389,14 @@ public final class ExpansionVisitor
 		if (skip(n))
 			return n;
 		
+		if (budget != null)
+		{
+			if (!budget.hasNodesLeft())
+				return limitExceeded("Node count");
+			if (!budget.hasTimeLeft())
+				return limitExceeded("Expansion time");
+		}
+		
 		// Safe newline state!
 		boolean hadNewline = this.hadNewlineGlobal;
 		
@@ -422,9 +442,16 @@ public final class ExpansionVisitor
 		}
 		
 		if (result == null)
+		{
 			result = markError(n);
+		}
 		else if (result != n)
+		{
+			if (budget != null && !budget.chargeIncludeSize(result))
+				result = limitExceeded("Post-expand include size");
+			
 			this.hadNewlineGlobal = endedWithNewline(result);
+		}
 		
 		return result;
 	}
@@ -639,6 +666,12 @@ public final class ExpansionVisitor
 				return cont;
 		}
 		
+		if (pfn.isVolatile())
+			expFrame.markVolatile();
+		
+		if (pfn.isExpensive() && budget != null && !budget.chargeExpensiveFunction())
+			return limitExceeded("Expensive parser function count");
+		
 		EngLogParserFunctionResolution log = null;
 		if (frameLog != null)
 		{
@@ -728,6 +761,10 @@ public final class ExpansionVisitor
 		}
 		catch (Exception e)
 		{
+			// The failure might not happen again (e.g. if the page could not
+			// be retrieved) or depend on the transclusion stack (recursion).
+			expFrame.markVolatile();
+			
 			result = markError(n, e);
 			
 			if (log != null)
@@ -781,25 +818,22 @@ public final class ExpansionVisitor
 		
 		checkTransclusionRecursion(title);
 		
+		if (budget != null && !budget.enterDepth(expFrame.getDepth() + 1))
+			return limitExceeded("Expansion depth");
+		
 		log.setCanonical(title.getDenormalizedFullTitle());
 		
 		FullPage page = getWikitext(title);
 		if (page != null)
 		{
-			// EXPANDS ARGUMENTS!
-			Map<String, WtNodeList> tmplArgs = prepareTransclusionArguments(args, log);
+			// EXPANDS ARGUMENT NAMES, VALUES ARE EXPANDED ON DEMAND!
+			TemplateArguments tmplArgs = prepareTransclusionArguments(args, log);
 			
-			EngProcessedPage processedPage = getEngine().preprocessAndExpand(
-					expFrame.getCallback(),
-					page.getId(),
-					page.getText(),
-					true,
-					expFrame.getEntityMap(),
-					tmplArgs,
-					expFrame.getRootFrame(),
-					expFrame);
+			EngProcessedPage processedPage = expandTransclusion(page, tmplArgs, log);
 			
 			log.setSuccess(true);
+			log.setArgumentCount(tmplArgs.getArgumentCount());
+			log.setUnexpandedArgumentCount(tmplArgs.getUnexpandedArgumentCount());
 			
 			WtNode tResult = mergeLogsAndWarnings(log, processedPage);
 			
@@ -813,6 +847,108 @@ public final class ExpansionVisitor
 		}
 	}
 	
+	/**
+	 * Preprocesses and expands a page for transclusion. If memoization is
+	 * enabled, the result is taken from or put into the template invocation
+	 * cache. Memoization requires that all arguments are expanded in advance.
+	 * Pages with an unknown revision are never memoized since a cached result
+	 * could not be told apart from the result of an older revision.
+	 */
+	private EngProcessedPage expandTransclusion(
+			FullPage page,
+			TemplateArguments tmplArgs,
+			EngLogTransclusionResolution log) throws Exception
+	{
+		TemplateInvocationCache cache = expFrame.getTemplateCache();
+		
+		TemplateInvocation invocation = null;
+		if (cache != null && page.getId().getRevision() >= 0)
+		{
+			Map<String, String> argsText = tmplArgs.expandToText();
+			if (argsText != null)
+				invocation = new TemplateInvocation(page.getId(), true, argsText);
+		}
+		
+		int depth = expFrame.getDepth() + 1;
+		
+		/**
+		 * A memoized result is only reused if the resources that its
+		 * expansion used still fit into the budget. Otherwise the page is
+		 * expanded again and runs into the limit at the same place as it
+		 * would without memoization.
+		 */
+		if (invocation != null)
+		{
+			MemoizedTransclusion cached = cache.get(invocation);
+			if (cached != null && (budget == null || budget.chargeMemoized(cached, depth)))
+			{
+				if (log != null)
+					log.setMemoized(true);
+				return (EngProcessedPage) cached.getResult().deepCloneWrapException();
+			}
+		}
+		
+		int volatileCount = expFrame.getVolatileInvocationCount();
+		int entityCount = expFrame.getEntityMap().getMap().size();
+		
+		ExpansionBudget.Snapshot charged = null;
+		if (invocation != null && budget != null)
+			charged = budget.startSnapshot();
+		
+		EngProcessedPage processedPage;
+		try
+		{
+			processedPage = getEngine().preprocessAndExpand(
+					expFrame.getCallback(),
+					page.getId(),
+					page.getText(),
+					true,
+					expFrame.getEntityMap(),
+					tmplArgs,
+					expFrame.getRootFrame(),
+					expFrame);
+		}
+		finally
+		{
+			if (charged != null)
+				budget.endSnapshot(charged, depth);
+		}
+		
+		/**
+		 * If the transcluded page registered entities, the result refers to
+		 * entity ids in the entity map of the page that is currently being
+		 * expanded and cannot be reused in a different context.
+		 */
+		if (charged != null &&
+				volatileCount == expFrame.getVolatileInvocationCount() &&
+				entityCount == expFrame.getEntityMap().getMap().size())
+		{
+			cache.put(invocation, new MemoizedTransclusion(
+					copyWithoutLog(processedPage),
+					charged));
+		}
+		
+		return processedPage;
+	}
+	
+	/**
+	 * Creates a pristine copy of a transclusion result for the template
+	 * invocation cache. The log describes how the result was computed the
+	 * first time (e.g. how long it took) and is replaced by an empty
+	 * processing pass.
+	 */
+	private EngProcessedPage copyWithoutLog(EngProcessedPage processedPage) throws Exception
+	{
+		EngLogProcessingPass log = nf.logProcessingPass();
+		log.setTitle(processedPage.getLog().getTitle());
+		log.setRevision(processedPage.getLog().getRevision());
+		
+		return nf.processedPage(
+				(EngPage) processedPage.getPage().deepCloneWrapException(),
+				log,
+				new ArrayList<Warning>(processedPage.getWarnings()));
+	}
+	
 	/**
 	 * Check if a page transcludes itself more than once (directly or
 	 * indirectly).
@@ -836,31 +972,33 @@ public final class ExpansionVisitor
 	
 	/**
 	 * Prepares the template argument list for transclusion. This encompasses
-	 * the expansion of name and value of each argument.
+	 * the expansion of the name of each argument. The value of an argument is
+	 * only expanded when the transcluded page refers to it for the first time.
 	 * 
 	 * Each argument is added to the mapping with its one-based index as key.
 	 * 
 	 * If an argument has a name which can be resolved to a string, the argument
 	 * will additionally be put into the mapping with the resolved name as key.
 	 */
-	private Map<String, WtNodeList> prepareTransclusionArguments(
+	private TemplateArguments prepareTransclusionArguments(
 			List<WtTemplateArgument> args,
 			EngLogTransclusionResolution log)
 	{
-		HashMap<String, WtNodeList> transclArgs = new HashMap<String, WtNodeList>();
+		TemplateArguments transclArgs = new TemplateArguments(args.size());
 		
 		int index = 1;
 		for (WtTemplateArgument arg : args)
 		{
-			// EXPAND VALUE!
-			WtValue value = (WtValue) dispatch(arg.getValue());
+			// DO NOT EXPAND VALUE (YET)!
+			// ONLY TRIM NAMED VALUES!
+			LazyArgument value = new LazyArgument(
+					transclArgs,
+					arg.getValue(),
+					arg.hasName());
 			
 			boolean named = false;
 			if (arg.hasName())
 			{
-				// ONLY TRIM NAMED VALUES!
-				value = (WtValue) tu.trim(value);
-				
 				// EXPAND NAME!
 				WtName name = (WtName) dispatch(arg.getName());
 				
@@ -870,7 +1008,7 @@ public final class ExpansionVisitor
 					
 					if (!nameStr.isEmpty())
 					{
-						transclArgs.put(nameStr, nf.toList(value));
+						transclArgs.put(nameStr, value);
 						named = true;
 					}
 				}
@@ -887,10 +1025,9 @@ public final class ExpansionVisitor
 			{
 				String id = String.valueOf(index);
 				
-				WtNodeList prev = transclArgs.put(id, nf.toList(value));
 				// Automatic indices never overwrite!
-				if (prev != null)
-					transclArgs.put(id, prev);
+				if (!transclArgs.containsKey(id))
+					transclArgs.put(id, value);
 				
 				// Only unnamed arguments increase the index
 				index++;
@@ -900,6 +1037,166 @@ public final class ExpansionVisitor
 		return transclArgs;
 	}
 	
+	/**
+	 * The value of a template argument which is expanded on first access.
+	 * Expansion takes place in the frame which contains the template
+	 * statement, not in the frame of the transcluded page.
+	 */
+	private final class LazyArgument
+	{
+		private final TemplateArguments owner;
+		
+		private final boolean trim;
+		
+		private WtValue value;
+		
+		private WtNodeList expanded;
+		
+		public LazyArgument(TemplateArguments owner, WtValue value, boolean trim)
+		{
+			this.owner = owner;
+			this.value = value;
+			this.trim = trim;
+		}
+		
+		public WtNodeList get()
+		{
+			if (expanded == null)
+			{
+				// EXPAND VALUE!
+				WtValue v = (WtValue) dispatch(value);
+				
+				if (trim)
+					v = (WtValue) tu.trim(v);
+				
+				expanded = nf.toList(v);
+				value = null;
+				
+				if (budget != null && !budget.chargeArgumentSize(expanded))
+					expanded = nf.list(limitExceeded("Template argument size"));
+				
+				owner.expandedArgumentCount++;
+			}
+			return expanded;
+		}
+	}
+	
+	/**
+	 * Maps argument names and indices to lazily expanded argument values.
+	 */
+	private static final class TemplateArguments
+			extends
+				AbstractMap<String, WtNodeList>
+	{
+		private final HashMap<String, LazyArgument> arguments =
+				new HashMap<String, LazyArgument>();
+		
+		private final int argumentCount;
+		
+		private int expandedArgumentCount;
+		
+		public TemplateArguments(int argumentCount)
+		{
+			this.argumentCount = argumentCount;
+		}
+		
+		public int getArgumentCount()
+		{
+			return argumentCount;
+		}
+		
+		public int getUnexpandedArgumentCount()
+		{
+			return argumentCount - expandedArgumentCount;
+		}
+		
+		/**
+		 * Expands all arguments and converts them to text.
+		 * 
+		 * @return The arguments as text or null if an argument expanded to
+		 *         something other than plain text.
+		 */
+		public Map<String, String> expandToText()
+		{
+			HashMap<String, String> text = new HashMap<String, String>();
+			
+			StringBuilder sb = new StringBuilder();
+			for (Entry<String, LazyArgument> e : arguments.entrySet())
+			{
+				sb.setLength(0);
+				if (!appendPlainText(e.getValue().get(), sb))
+					return null;
+				text.put(e.getKey(), sb.toString());
+			}
+			
+			return text;
+		}
+		
+		private static boolean appendPlainText(WtNode n, StringBuilder sb)
+		{
+			if (n instanceof WtText)
+			{
+				sb.append(((WtText) n).getContent());
+			}
+			else if (n instanceof WtNodeList)
+			{
+				for (WtNode c : (WtNodeList) n)
+				{
+					if (!appendPlainText(c, sb))
+						return false;
+				}
+			}
+			else
+			{
+				return false;
+			}
+			return true;
+		}
+		
+		public void put(String name, LazyArgument value)
+		{
+			arguments.put(name, value);
+		}
+		
+		@Override
+		public WtNodeList get(Object name)
+		{
+			LazyArgument value = arguments.get(name);
+			return (value != null) ? value.get() : null;
+		}
+		
+		@Override
+		public boolean containsKey(Object name)
+		{
+			return arguments.containsKey(name);
+		}
+		
+		@Override
+		public int size()
+		{
+			return arguments.size();
+		}
+		
+		/**
+		 * Iterating over the entries expands all arguments.
+		 */
+		@Override
+		public Set<Entry<String, WtNodeList>> entrySet()
+		{
+			Set<Entry<String, WtNodeList>> entries =
+					new HashSet<Entry<String, WtNodeList>>();
+			
+			for (Entry<String, LazyArgument> e : arguments.entrySet())
+			{
+				entries.add(new SimpleImmutableEntry<String, WtNodeList>(
+						e.getKey(),
+						e.getValue().get()));
+			}
+			
+			return Collections.unmodifiableSet(entries);
+		}
+	}
+	
 	// =========================================================================
 	// ==
 	// ==  T e m p l a t e  P a r a m e t e r
@@ -1281,7 +1578,7 @@ public final class ExpansionVisitor
 	
 	private FullPage getWikitext(PageTitle title) throws Exception
 	{
-		return expFrame.getCallback().retrieveWikitext(expFrame, title);
+		return expFrame.retrieveWikitext(title);
 	}
 	
 	private void logUnhandledException(EngLogContainer log, Exception e)
@@ -1426,4 +1723,15 @@ public final class ExpansionVisitor
 		n.setAttribute(SKIP_ATTR_NAME, e);
 		return n;
 	}
+	
+	/**
+	 * Called when a template, parser function or argument is not expanded
+	 * because a resource limit was exceeded. Since the result depends on the
+	 * budget of the whole expansion request, the frame is marked volatile.
+	 */
+	private WtNode limitExceeded(String limit)
+	{
+		expFrame.markVolatile();
+		return nf.softError(limit + " limit exceeded");
+	}
 }
@@ -17,22 +17,28 @@
 
 package org.sweble.wikitext.engine;
 
-import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.parser.nodes.WtPreproWikitextPage;
 
+/**
+ * A page after validation and preprocessing but before expansion. Instances
+ * are handed to and retrieved from a preprocessed page cache (see
+ * {@link ExpansionCallback#cachePreprocessedPage}). The AST wrapped by this
+ * object must not be modified since the engine expands a clone of it.
+ */
 public class FullPreprocessedPage
 {
 	private final PageId id;
 	
 	private final boolean forInclusion;
 	
-	private final EngProcessedPage page;
+	private final WtPreproWikitextPage page;
 	
 	// =========================================================================
 	
 	public FullPreprocessedPage(
 			PageId pageId,
 			boolean forInclusion,
-			EngProcessedPage page)
+			WtPreproWikitextPage page)
 	{
 		super();
 		this.id = pageId;
@@ -52,7 +58,7 @@ public class FullPreprocessedPage
 		return forInclusion;
 	}
 	
-	public EngProcessedPage getPage()
+	public WtPreproWikitextPage getPage()
 	{
 		return page;
 	}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+
+/**
+ * A transclusion result in the {@link TemplateInvocationCache} together with
+ * the resources that its expansion used below the transcluded page. When the
+ * result is reused, these resources are charged to the budget of the
+ * expansion request again (see {@link ExpansionLimits}).
+ */
+public final class MemoizedTransclusion
+{
+	private final EngProcessedPage result;
+	
+	private final int nodeCount;
+	
+	private final long postExpandIncludeSize;
+	
+	private final long templateArgumentSize;
+	
+	private final int expansionDepth;
+	
+	private final int expensiveFunctionCount;
+	
+	// =========================================================================
+	
+	MemoizedTransclusion(
+			EngProcessedPage result,
+			ExpansionBudget.Snapshot charged)
+	{
+		this.result = result;
+		this.nodeCount = charged.nodeCount;
+		this.postExpandIncludeSize = charged.postExpandIncludeSize;
+		this.templateArgumentSize = charged.templateArgumentSize;
+		this.expansionDepth = charged.expansionDepth;
+		this.expensiveFunctionCount = charged.expensiveFunctionCount;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * The pristine result of the transclusion. The log of the result is
+	 * empty.
+	 */
+	public EngProcessedPage getResult()
+	{
+		return result;
+	}
+	
+	public int getNodeCount()
+	{
+		return nodeCount;
+	}
+	
+	public long getPostExpandIncludeSize()
+	{
+		return postExpandIncludeSize;
+	}
+	
+	public long getTemplateArgumentSize()
+	{
+		return templateArgumentSize;
+	}
+	
+	/**
+	 * The number of levels of transclusion below the transcluded page.
+	 */
+	public int getExpansionDepth()
+	{
+		return expansionDepth;
+	}
+	
+	public int getExpensiveFunctionCount()
+	{
+		return expensiveFunctionCount;
+	}
+}
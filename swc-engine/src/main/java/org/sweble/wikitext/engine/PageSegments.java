@@ -0,0 +1,417 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.parser.nodes.WtName;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtNodeList;
+import org.sweble.wikitext.parser.nodes.WtTemplate;
+import org.sweble.wikitext.parser.parser.SectionStitcher;
+
+import de.fau.cs.osr.ptk.common.AstVisitor;
+import de.fau.cs.osr.ptk.common.Warning;
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+
+/**
+ * The top-level segments of a page processed by
+ * {@link WtEngineImpl#postprocessIncrementally(PageId, EngProcessedPage, CharSequence, ExpansionCallback)}
+ * . Each segment but the first starts with a top-level heading. If
+ * {@link EngineOptions#isRetainSegments()} is enabled, the segments are
+ * attached to the processed page so that the next incremental run can reuse
+ * the segments whose wikitext did not change.
+ * 
+ * The nodes of a segment are never handed out, the processed page is built
+ * from copies of them. Processed pages therefore never share nodes.
+ */
+final class PageSegments
+		implements
+			Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	public static final String ATTRIBUTE_NAME = "segments";
+	
+	// =========================================================================
+	
+	private final List<Segment> segments;
+	
+	// =========================================================================
+	
+	public PageSegments(List<Segment> segments)
+	{
+		this.segments = segments;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Returns the segments attached to the given page or null if the page was
+	 * not processed incrementally.
+	 */
+	public static PageSegments get(EngProcessedPage page)
+	{
+		Object segments = page.getAttribute(ATTRIBUTE_NAME);
+		return (segments instanceof PageSegments) ? (PageSegments) segments : null;
+	}
+	
+	public void attachTo(EngProcessedPage page)
+	{
+		page.setAttribute(ATTRIBUTE_NAME, this);
+	}
+	
+	public List<Segment> getSegments()
+	{
+		return segments;
+	}
+	
+	public List<Warning> getWarnings()
+	{
+		List<Warning> warnings = new ArrayList<Warning>();
+		for (Segment segment : segments)
+			warnings.addAll(segment.getWarnings());
+		return warnings;
+	}
+	
+	/**
+	 * Builds the content of the page from copies of the segments.
+	 * 
+	 * @return The content or null if the segments cannot be stitched together
+	 *         because a segment following the first segment does not consist
+	 *         of sections only.
+	 */
+	public WtNodeList stitch(WtNodeList content)
+	{
+		if (segments.isEmpty())
+			return content;
+		
+		content.addAll(segments.get(0).copyContent());
+		
+		SectionStitcher stitcher = new SectionStitcher(content);
+		for (Segment segment : segments.subList(1, segments.size()))
+		{
+			if (!stitcher.append(segment.copyContent()))
+				return null;
+		}
+		return content;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Indexes the reusable segments by their wikitext.
+	 */
+	public Map<String, LinkedList<Segment>> bySource()
+	{
+		Map<String, LinkedList<Segment>> index =
+				new HashMap<String, LinkedList<Segment>>();
+		
+		for (Segment segment : segments)
+		{
+			if (!segment.isReusable())
+				continue;
+			
+			LinkedList<Segment> same = index.get(segment.getSource());
+			if (same == null)
+			{
+				same = new LinkedList<Segment>();
+				index.put(segment.getSource(), same);
+			}
+			same.add(segment);
+		}
+		return index;
+	}
+	
+	/**
+	 * Takes a segment with the given wikitext out of the index and moves it
+	 * to the given lines.
+	 * 
+	 * @return The moved segment or null if no segment with the given wikitext
+	 *         exists or if the segment cannot be moved.
+	 */
+	public static Segment reuse(
+			Map<String, LinkedList<Segment>> index,
+			String source,
+			int firstLine,
+			int parsedFirstLine,
+			PageTitle title)
+	{
+		LinkedList<Segment> same = index.get(source);
+		if (same == null || same.isEmpty())
+			return null;
+		
+		Segment segment = same.getFirst();
+		
+		int delta = firstLine - segment.getFirstLine();
+		if (delta == 0 && parsedFirstLine == segment.getParsedFirstLine())
+		{
+			same.removeFirst();
+			return segment;
+		}
+		
+		// Nodes created by the preprocessor carry locations in the wikitext
+		// while nodes created by the parser carry locations in the
+		// preprocessed wikitext. Both can only be moved if they move by the
+		// same number of lines. Warnings cannot be moved at all.
+		if (parsedFirstLine - segment.getParsedFirstLine() != delta ||
+				!segment.getWarnings().isEmpty())
+			return null;
+		
+		same.removeFirst();
+		return segment.moveBy(delta, title);
+	}
+	
+	/**
+	 * Checks whether the given preprocessed wikitext uses magic words whose
+	 * value changes over time, like <code>{{CURRENTTIME}}</code>,
+	 * <code>{{REVISIONID}}</code> or <code>{{#time:...}}</code>. Volatile
+	 * parser functions are also detected during expansion, but not all of
+	 * these magic words are implemented by the engine.
+	 */
+	public static boolean usesVolatileMagicWords(WtNode ppAst)
+	{
+		VolatileMagicWordFinder finder = new VolatileMagicWordFinder();
+		finder.go(ppAst);
+		return finder.found;
+	}
+	
+	/**
+	 * Counts the line breaks the same way the Rats! parsers do.
+	 */
+	public static int countLineBreaks(CharSequence text)
+	{
+		int count = 0;
+		int len = text.length();
+		for (int i = 0; i < len; ++i)
+		{
+			char ch = text.charAt(i);
+			if (ch == '\n')
+			{
+				++count;
+			}
+			else if (ch == '\r')
+			{
+				++count;
+				if (i + 1 < len && text.charAt(i + 1) == '\n')
+					++i;
+			}
+		}
+		return count;
+	}
+	
+	// =========================================================================
+	
+	public static final class Segment
+			implements
+				Serializable
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final String source;
+		
+		private final int firstLine;
+		
+		private final int parsedFirstLine;
+		
+		private final int parsedLineCount;
+		
+		private final WtNodeList content;
+		
+		private final List<Warning> warnings;
+		
+		private final boolean reusable;
+		
+		/**
+		 * @param source
+		 *            The wikitext of the segment.
+		 * @param firstLine
+		 *            The line the segment starts at in the wikitext of the
+		 *            page.
+		 * @param parsedFirstLine
+		 *            The line the segment starts at in the preprocessed
+		 *            wikitext of the page.
+		 * @param parsedLineCount
+		 *            The number of line breaks in the preprocessed wikitext of
+		 *            the segment.
+		 * @param content
+		 *            The postprocessed top-level nodes of the segment.
+		 * @param reusable
+		 *            False if the expansion of the segment invoked volatile
+		 *            parser functions (e.g. <code>{{CURRENTTIME}}</code>).
+		 *            Such segments are processed again on every run.
+		 */
+		public Segment(
+				String source,
+				int firstLine,
+				int parsedFirstLine,
+				int parsedLineCount,
+				WtNodeList content,
+				List<Warning> warnings,
+				boolean reusable)
+		{
+			this.source = source;
+			this.firstLine = firstLine;
+			this.parsedFirstLine = parsedFirstLine;
+			this.parsedLineCount = parsedLineCount;
+			this.content = content;
+			this.warnings = Collections.unmodifiableList(new ArrayList<Warning>(warnings));
+			this.reusable = reusable;
+		}
+		
+		public String getSource()
+		{
+			return source;
+		}
+		
+		public int getFirstLine()
+		{
+			return firstLine;
+		}
+		
+		public int getParsedFirstLine()
+		{
+			return parsedFirstLine;
+		}
+		
+		public int getParsedLineCount()
+		{
+			return parsedLineCount;
+		}
+		
+		public List<Warning> getWarnings()
+		{
+			return warnings;
+		}
+		
+		public boolean isReusable()
+		{
+			return reusable;
+		}
+		
+		public WtNodeList copyContent()
+		{
+			return (WtNodeList) content.deepCloneWrapException();
+		}
+		
+		private Segment moveBy(int delta, PageTitle title)
+		{
+			WtNodeList moved = copyContent();
+			new MoveVisitor(delta, title).go(moved);
+			
+			return new Segment(
+					source,
+					firstLine + delta,
+					parsedFirstLine + delta,
+					parsedLineCount,
+					moved,
+					warnings,
+					reusable);
+		}
+	}
+	
+	// =========================================================================
+	
+	private static final class VolatileMagicWordFinder
+			extends
+				AstVisitor<WtNode>
+	{
+		private static final String[] PREFIXES = {
+				"CURRENT",
+				"LOCALDAY",
+				"LOCALDOW",
+				"LOCALHOUR",
+				"LOCALMONTH",
+				"LOCALTIME",
+				"LOCALWEEK",
+				"LOCALYEAR",
+				"REVISION",
+				"#TIME" };
+		
+		private boolean found = false;
+		
+		public void visit(WtNode n)
+		{
+			if (!found)
+				iterate(n);
+		}
+		
+		public void visit(WtTemplate n)
+		{
+			WtName name = n.getName();
+			if (name.isResolved())
+			{
+				String word = name.getAsString().trim().toUpperCase();
+				for (String prefix : PREFIXES)
+				{
+					if (word.startsWith(prefix))
+						found = true;
+				}
+			}
+			
+			visit((WtNode) n);
+		}
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Moves the locations of all nodes that stem from the page itself.
+	 * Transcluded nodes keep their locations.
+	 */
+	private static final class MoveVisitor
+			extends
+				AstVisitor<WtNode>
+	{
+		private final int delta;
+		
+		private final String preprocessorFile;
+		
+		private final String parserFile;
+		
+		public MoveVisitor(int delta, PageTitle title)
+		{
+			this.delta = delta;
+			this.preprocessorFile = title.getDenormalizedFullTitle();
+			this.parserFile = title.getTitle();
+		}
+		
+		public void visit(WtNode n)
+		{
+			AstLocation location = n.getNativeLocation();
+			if (location != null && (
+					preprocessorFile.equals(location.getFile()) ||
+					parserFile.equals(location.getFile())))
+			{
+				n.setNativeLocation(new AstLocation(
+						location.getFile(),
+						location.getLine() + delta,
+						location.getColumn()));
+			}
+			
+			iterate(n);
+		}
+	}
+}
@@ -147,6 +147,28 @@ public abstract class ParserFunctionBase
 		return pageSwitch;
 	}
 	
+	/**
+	 * Whether the result of this function depends on more than its
+	 * arguments, e.g. on the current time, the title of the page that is
+	 * being expanded or the existence of other pages. Transclusions which
+	 * invoke a volatile function, directly or through other transclusions,
+	 * are never memoized.
+	 */
+	public boolean isVolatile()
+	{
+		return false;
+	}
+	
+	/**
+	 * Whether an invocation of this function is costly, e.g. because it has
+	 * to look up other pages. The number of invocations of expensive
+	 * functions per page can be limited (see {@link ExpansionLimits}).
+	 */
+	public boolean isExpensive()
+	{
+		return false;
+	}
+	
 	protected EngineNodeFactory nf()
 	{
 		return nf;
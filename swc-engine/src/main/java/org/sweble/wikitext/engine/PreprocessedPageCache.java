@@ -0,0 +1,47 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+/**
+ * A cache for pages that were validated and preprocessed but not yet
+ * expanded. Entries are identified by the page's id (title and revision) and
+ * the for-inclusion flag that was used during preprocessing.
+ * 
+ * Implementations must be thread-safe since a single cache is usually shared
+ * by all expansion callbacks of a wiki.
+ */
+public interface PreprocessedPageCache
+{
+	/**
+	 * @return The cached page or null if no page with the given id was
+	 *         preprocessed with the given for-inclusion flag.
+	 */
+	public FullPreprocessedPage get(PageId pageId, boolean forInclusion);
+	
+	public void put(FullPreprocessedPage page);
+	
+	public void clear();
+	
+	public int size();
+	
+	public long getHitCount();
+	
+	public long getMissCount();
+	
+	public long getEvictionCount();
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Identifies the expansion of a transclusion: The transcluded page (title and
+ * revision), the for-inclusion flag and the expanded arguments. Two
+ * invocations with equal identifiers expand to the same result unless the
+ * transcluded page invokes a volatile parser function.
+ * 
+ * The arguments are stored as text under their name or one-based index,
+ * ordered by name, so that the order in which the arguments were written does
+ * not matter.
+ */
+public final class TemplateInvocation
+{
+	private final PageId pageId;
+	
+	private final boolean forInclusion;
+	
+	private final SortedMap<String, String> arguments;
+	
+	private final int hashCode;
+	
+	// =========================================================================
+	
+	public TemplateInvocation(
+			PageId pageId,
+			boolean forInclusion,
+			Map<String, String> arguments)
+	{
+		if (pageId == null || arguments == null)
+			throw new NullPointerException();
+		
+		this.pageId = pageId;
+		this.forInclusion = forInclusion;
+		this.arguments = Collections.unmodifiableSortedMap(
+				new TreeMap<String, String>(arguments));
+		
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + this.arguments.hashCode();
+		result = prime * result + (forInclusion ? 1231 : 1237);
+		result = prime * result + pageId.hashCode();
+		this.hashCode = result;
+	}
+	
+	// =========================================================================
+	
+	public PageId getPageId()
+	{
+		return pageId;
+	}
+	
+	public boolean isForInclusion()
+	{
+		return forInclusion;
+	}
+	
+	public SortedMap<String, String> getArguments()
+	{
+		return arguments;
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public int hashCode()
+	{
+		return hashCode;
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		TemplateInvocation other = (TemplateInvocation) obj;
+		if (hashCode != other.hashCode)
+			return false;
+		if (forInclusion != other.forInclusion)
+			return false;
+		if (!pageId.equals(other.pageId))
+			return false;
+		if (!arguments.equals(other.arguments))
+			return false;
+		return true;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "TemplateInvocation [pageId=" + pageId + ", forInclusion=" + forInclusion + ", arguments=" + arguments + "]";
+	}
+}
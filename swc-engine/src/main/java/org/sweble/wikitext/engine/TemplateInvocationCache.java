@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+/**
+ * A cache for the results of transclusions, identified by the transcluded
+ * page and the expanded arguments. The engine only hands pristine results to
+ * the cache and never modifies a result it retrieved from the cache but
+ * expands a clone of it. Cached results carry an empty log; a transclusion
+ * that was taken from the cache is flagged as memoized in the log instead.
+ * 
+ * Results are only cached if the revision of the transcluded page is known
+ * and if they do not depend on volatile parser functions (see
+ * {@link ParserFunctionBase#isVolatile()}). However, the identifier of
+ * an invocation only contains the revision of the transcluded page, not the
+ * revisions of the pages it transcludes in turn. A cache which is shared by
+ * the expansion of many pages should therefore be cleared when templates
+ * change.
+ * 
+ * Implementations must be thread-safe if the cache is shared by concurrent
+ * requests.
+ */
+public interface TemplateInvocationCache
+{
+	/**
+	 * @return The cached result or null if the invocation was not cached.
+	 */
+	public MemoizedTransclusion get(TemplateInvocation invocation);
+	
+	public void put(TemplateInvocation invocation, MemoizedTransclusion result);
+	
+	public void clear();
+	
+	public int size();
+	
+	public long getHitCount();
+	
+	public long getMissCount();
+	
+	public long getEvictionCount();
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.sweble.wikitext.engine.config.Namespace;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtTemplate;
+import org.sweble.wikitext.parser.parser.LinkTargetException;
+import org.sweble.wikitext.parser.utils.AstTextUtils.PartialConversion;
+
+import de.fau.cs.osr.ptk.common.AstVisitor;
+
+/**
+ * Fetches the pages transcluded by a page before the page is expanded.
+ * 
+ * One prefetcher is shared by all frames of an expansion request. Before a
+ * frame expands its preprocessed AST, the AST is scanned for transclusions
+ * whose name does not depend on expansion and all of them are requested from
+ * the {@link AsyncExpansionCallback} at once. When the expansion reaches a
+ * transclusion, it waits for the prefetched page instead of retrieving it.
+ * Since each transcluded page is scanned in turn before it gets expanded,
+ * prefetching proceeds level by level down the transclusion tree.
+ * 
+ * The expansion still consumes the pages in the same order and sees the same
+ * pages as without prefetching, only the retrieval overlaps. Prefetching is
+ * purely speculative: pages which end up not being transcluded (e.g. in the
+ * branch of an #if that is not taken) are fetched in vain.
+ * 
+ * A prefetcher is only used by the thread that performs the expansion.
+ */
+final class TemplatePrefetcher
+{
+	private static final Logger logger = Logger.getLogger(TemplatePrefetcher.class);
+	
+	private final AsyncExpansionCallback callback;
+	
+	private final Map<PageTitle, Future<FullPage>> pages =
+			new HashMap<PageTitle, Future<FullPage>>();
+	
+	private int prefetchCount = 0;
+	
+	// =========================================================================
+	
+	public TemplatePrefetcher(AsyncExpansionCallback callback)
+	{
+		this.callback = callback;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Returns the number of pages that were requested in advance.
+	 */
+	public int getPrefetchCount()
+	{
+		return prefetchCount;
+	}
+	
+	/**
+	 * Requests all pages transcluded by the given AST which were not requested
+	 * before.
+	 */
+	public void prefetch(ExpansionFrame frame, WtNode ppAst)
+	{
+		new TransclusionScanner(frame).go(ppAst);
+	}
+	
+	/**
+	 * Returns the prefetched page or retrieves the page synchronously if it
+	 * was not prefetched.
+	 */
+	public FullPage retrieveWikitext(ExpansionFrame frame, PageTitle title) throws Exception
+	{
+		Future<FullPage> page = pages.get(title);
+		if (page == null)
+			return callback.retrieveWikitext(frame, title);
+		
+		try
+		{
+			return page.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw e;
+		}
+	}
+	
+	/**
+	 * Cancels the retrieval of pages which were prefetched but never
+	 * transcluded.
+	 */
+	public void cancelPending()
+	{
+		for (Future<FullPage> page : pages.values())
+			page.cancel(false);
+	}
+	
+	// =========================================================================
+	
+	private void request(ExpansionFrame frame, PageTitle title)
+	{
+		if (pages.containsKey(title))
+			return;
+		
+		Future<FullPage> page;
+		try
+		{
+			page = callback.retrieveWikitextAsync(frame, title);
+		}
+		catch (Exception e)
+		{
+			// The expansion will retrieve the page synchronously and report
+			// the error at the point where the page is actually needed.
+			logger.debug("Prefetching " + title + " failed", e);
+			return;
+		}
+		
+		if (page != null)
+		{
+			pages.put(title, page);
+			++prefetchCount;
+		}
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Finds transclusions that the {@link ExpansionVisitor} would resolve
+	 * without expanding anything first: The name must consist of text only
+	 * and it must not name a parser function or a magic word.
+	 */
+	private final class TransclusionScanner
+			extends
+				AstVisitor<WtNode>
+	{
+		private final ExpansionFrame frame;
+		
+		private final WikiConfig wikiConfig;
+		
+		private final Namespace tmplNs;
+		
+		// =====================================================================
+		
+		public TransclusionScanner(ExpansionFrame frame)
+		{
+			this.frame = frame;
+			this.wikiConfig = frame.getWikiConfig();
+			this.tmplNs = wikiConfig.getTemplateNamespace();
+		}
+		
+		// =====================================================================
+		
+		public void visit(WtNode n)
+		{
+			iterate(n);
+		}
+		
+		public void visit(WtTemplate n)
+		{
+			PartialConversion nameConv =
+					wikiConfig.getAstTextUtils().astToTextPartial(n.getName());
+			
+			if (nameConv.getTail().isEmpty())
+			{
+				String name = nameConv.getText();
+				if (!isParserFunction(name, n.getArgs().isEmpty()))
+				{
+					try
+					{
+						request(frame, PageTitle.make(wikiConfig, name, tmplNs));
+					}
+					catch (LinkTargetException e)
+					{
+						// The expansion will report the invalid name
+					}
+				}
+			}
+			
+			// Templates in arguments will probably be expanded as well
+			iterate(n.getArgs());
+		}
+		
+		private boolean isParserFunction(String name, boolean noArgs)
+		{
+			int i = name.indexOf(':');
+			if (i != -1 && wikiConfig.getParserFunction(name.substring(0, i).trim() + ":") != null)
+				return true;
+			
+			return noArgs && (wikiConfig.getParserFunction(name) != null);
+		}
+	}
+}
@@ -43,6 +43,14 @@ public interface WtEngine
 	
 	public boolean isCatchAll();
 	
+	/**
+	 * Sets the options which are used by all methods that do not take an
+	 * {@link EngineOptions} argument.
+	 */
+	public void setDefaultOptions(EngineOptions defaultOptions);
+	
+	public EngineOptions getDefaultOptions();
+	
 	public EngineNodeFactory nf();
 	
 	/**
@@ -57,11 +65,23 @@ public interface WtEngine
 	 */
 	public EngProcessedPage preprocess(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			boolean forInclusion,
 			ExpansionCallback callback)
 			throws EngineException;
 	
+	/**
+	 * Like {@link #preprocess(PageId, CharSequence, boolean, ExpansionCallback)} but
+	 * uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage preprocess(
+			PageId pageId,
+			CharSequence wikitext,
+			boolean forInclusion,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException;
+	
 	/**
 	 * Takes wikitext and expands the wikitext. The following steps are
 	 * performed:
@@ -74,10 +94,21 @@ public interface WtEngine
 	 */
 	public EngProcessedPage expand(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			ExpansionCallback callback)
 			throws EngineException;
 	
+	/**
+	 * Like {@link #expand(PageId, CharSequence, ExpansionCallback)} but uses the
+	 * given options instead of the engine's default options.
+	 */
+	public EngProcessedPage expand(
+			PageId pageId,
+			CharSequence wikitext,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException;
+	
 	/**
 	 * Takes wikitext and expands the wikitext. The following steps are
 	 * performed:
@@ -90,11 +121,23 @@ public interface WtEngine
 	 */
 	public EngProcessedPage expand(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			boolean forInclusion,
 			ExpansionCallback callback)
 			throws EngineException;
 	
+	/**
+	 * Like {@link #expand(PageId, CharSequence, boolean, ExpansionCallback)} but
+	 * uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage expand(
+			PageId pageId,
+			CharSequence wikitext,
+			boolean forInclusion,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException;
+	
 	/**
 	 * Takes wikitext and parses the wikitext for viewing. The following steps
 	 * are performed:
@@ -109,10 +152,21 @@ public interface WtEngine
 	 */
 	public EngProcessedPage parse(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			ExpansionCallback callback)
 			throws EngineException;
 	
+	/**
+	 * Like {@link #parse(PageId, CharSequence, ExpansionCallback)} but
+	 * uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage parse(
+			PageId pageId,
+			CharSequence wikitext,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException;
+	
 	/**
 	 * Takes wikitext and parses the wikitext for viewing. The following steps
 	 * are performed:
@@ -125,13 +179,29 @@ public interface WtEngine
 	 * <li>Entity substitution</li>
 	 * <li>Postprocessing</li>
 	 * </ul>
+	 * 
+	 * The wikitext is only read while the engine processes it and is not
+	 * referenced by the result. It can therefore be a view on a buffer that
+	 * is reused once this method returns. With single pass validation (see
+	 * {@link EngineOptions}) no String copy of the wikitext is made.
 	 */
 	public EngProcessedPage postprocess(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			ExpansionCallback callback)
 			throws EngineException;
 	
+	/**
+	 * Like {@link #postprocess(PageId, CharSequence, ExpansionCallback)} but
+	 * uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage postprocess(
+			PageId pageId,
+			CharSequence wikitext,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException;
+	
 	/**
 	 * Takes an AST after preprocessing or after expansion and performs the
 	 * following steps:
@@ -19,14 +19,17 @@ package org.sweble.wikitext.engine;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.apache.log4j.Logger;
+import org.sweble.wikitext.engine.PageSegments.Segment;
 import org.sweble.wikitext.engine.config.EngineConfig;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.EngLogContainer;
@@ -47,14 +50,27 @@ import org.sweble.wikitext.parser.WtEntityMap;
 import org.sweble.wikitext.parser.WtEntityMapImpl;
 import org.sweble.wikitext.parser.encval.ValidatedWikitext;
 import org.sweble.wikitext.parser.nodes.WtNodeList;
+import org.sweble.wikitext.parser.nodes.WtPage;
 import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
 import org.sweble.wikitext.parser.nodes.WtPreproWikitextPage;
 import org.sweble.wikitext.parser.parser.PreprocessorToParserTransformer;
+import org.sweble.wikitext.parser.parser.SectionSplitter;
+import org.sweble.wikitext.parser.parser.SectionSplitter.Chunk;
 import org.sweble.wikitext.parser.preprocessor.PreprocessedWikitext;
 
 import de.fau.cs.osr.ptk.common.Warning;
 import de.fau.cs.osr.utils.StopWatch;
 
+/**
+ * The default engine implementation.
+ * 
+ * An engine is thread-safe and can be shared by any number of threads. The
+ * engine does not keep any state specific to a processing request. All
+ * request specific settings are passed in as {@link EngineOptions} (or taken
+ * from the engine's default options if no options are given) and the
+ * validator, preprocessor, parser and postprocessor instances used by the
+ * engine are stateless.
+ */
 public class WtEngineImpl
 		implements
 			WtEngine
@@ -63,50 +79,93 @@ public class WtEngineImpl
 	
 	// =========================================================================
 	
-	private WikiConfig wikiConfig;
+	private final WikiConfig wikiConfig;
+	
+	private final ParserConfig parserConfig;
 	
-	private ParserConfig parserConfig;
+	private final EngineConfig engineConfig;
 	
-	private EngineConfig engineConfig;
+	private final WikitextEncodingValidator validator;
 	
-	private ExpansionDebugHooks hooks;
+	private final WikitextPreprocessor preprocessor;
 	
-	private boolean noRedirect = false;
+	private final WikitextParser parser;
 	
-	private boolean timingEnabled = false;
+	private final WikitextPostprocessor postprocessor;
 	
-	private boolean catchAll = true;
+	private volatile EngineOptions defaultOptions = EngineOptions.DEFAULT;
 	
 	// =========================================================================
 	
 	public WtEngineImpl(WikiConfig wikiConfig)
+	{
+		this(wikiConfig, null, 0);
+	}
+	
+	/**
+	 * Creates an engine which parses the sections of long articles
+	 * concurrently.
+	 * 
+	 * @param sectionExecutor
+	 *            Parses the parts of long articles. If null, all articles are
+	 *            parsed sequentially.
+	 * @param minChunkLength
+	 *            The minimum length of a part of an article.
+	 * @see WikitextParser#WikitextParser(org.sweble.wikitext.parser.ParserConfig,
+	 *      Executor, int)
+	 */
+	public WtEngineImpl(
+			WikiConfig wikiConfig,
+			Executor sectionExecutor,
+			int minChunkLength)
 	{
 		super();
 		this.wikiConfig = wikiConfig;
 		this.parserConfig = wikiConfig.getParserConfig();
 		this.engineConfig = wikiConfig.getEngineConfig();
+		
+		this.validator = new WikitextEncodingValidator();
+		this.preprocessor = new WikitextPreprocessor(parserConfig);
+		this.parser = new WikitextParser(parserConfig, sectionExecutor, minChunkLength);
+		this.postprocessor = new WikitextPostprocessor(parserConfig);
 	}
 	
 	// =========================================================================
 	
+	/**
+	 * Sets the options which are used by all methods that do not take an
+	 * {@link EngineOptions} argument.
+	 */
+	public void setDefaultOptions(EngineOptions defaultOptions)
+	{
+		if (defaultOptions == null)
+			throw new NullPointerException();
+		this.defaultOptions = defaultOptions;
+	}
+	
+	public EngineOptions getDefaultOptions()
+	{
+		return defaultOptions;
+	}
+	
 	public void setDebugHooks(ExpansionDebugHooks hooks)
 	{
-		this.hooks = hooks;
+		this.defaultOptions = defaultOptions.withDebugHooks(hooks);
 	}
 	
 	public void setNoRedirect(boolean noRedirect)
 	{
-		this.noRedirect = noRedirect;
+		this.defaultOptions = defaultOptions.withNoRedirect(noRedirect);
 	}
 	
 	public void setTimingEnabled(boolean timingEnabled)
 	{
-		this.timingEnabled = timingEnabled;
+		this.defaultOptions = defaultOptions.withTimingEnabled(timingEnabled);
 	}
 	
 	public void setCatchAll(boolean catchAll)
 	{
-		this.catchAll = catchAll;
+		this.defaultOptions = defaultOptions.withCatchAll(catchAll);
 	}
 	
 	public WikiConfig getWikiConfig()
@@ -116,22 +175,22 @@ public class WtEngineImpl
 	
 	public ExpansionDebugHooks getDebugHooks()
 	{
-		return hooks;
+		return defaultOptions.getDebugHooks();
 	}
 	
 	public boolean isNoRedirect()
 	{
-		return noRedirect;
+		return defaultOptions.isNoRedirect();
 	}
 	
 	public boolean isTimingEnabled()
 	{
-		return timingEnabled;
+		return defaultOptions.isTimingEnabled();
 	}
 	
 	public boolean isCatchAll()
 	{
-		return catchAll;
+		return defaultOptions.isCatchAll();
 	}
 	
 	public EngineNodeFactory nf()
@@ -153,12 +212,32 @@ public class WtEngineImpl
 	 */
 	public EngProcessedPage preprocess(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			boolean forInclusion,
 			ExpansionCallback callback)
 			throws EngineException
 	{
-		if (pageId == null)
+		return preprocess(
+				pageId,
+				wikitext,
+				forInclusion,
+				callback,
+				defaultOptions);
+	}
+	
+	/**
+	 * Like {@link #preprocess(PageId, CharSequence, boolean, ExpansionCallback)} but
+	 * uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage preprocess(
+			PageId pageId,
+			CharSequence wikitext,
+			boolean forInclusion,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException
+	{
+		if (pageId == null || options == null)
 			throw new NullPointerException();
 		
 		PageTitle title = pageId.getTitle();
@@ -170,15 +249,24 @@ public class WtEngineImpl
 		WtPreproWikitextPage pprAst;
 		try
 		{
-			ValidatedWikitext validatedWikitext =
-					validate(title, wikitext, log, null);
-			
-			WtPreproWikitextPage ppAst =
-					preprocess(title, validatedWikitext, forInclusion, log);
+			WtPreproWikitextPage ppAst = validateAndPreprocess(
+					title,
+					wikitext,
+					forInclusion,
+					null,
+					options,
+					log);
 			
 			pprAst = ppAst;
 			if (callback != null)
-				pprAst = expand(callback, title, ppAst, null, false, log);
+				pprAst = expand(
+						callback,
+						pageId,
+						ppAst,
+						null,
+						false,
+						options,
+						log);
 		}
 		catch (EngineException e)
 		{
@@ -208,11 +296,25 @@ public class WtEngineImpl
 	 */
 	public EngProcessedPage expand(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			ExpansionCallback callback)
 			throws EngineException
 	{
-		return expand(pageId, wikitext, false, callback);
+		return expand(pageId, wikitext, false, callback, defaultOptions);
+	}
+	
+	/**
+	 * Like {@link #expand(PageId, CharSequence, ExpansionCallback)} but uses the
+	 * given options instead of the engine's default options.
+	 */
+	public EngProcessedPage expand(
+			PageId pageId,
+			CharSequence wikitext,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException
+	{
+		return expand(pageId, wikitext, false, callback, options);
 	}
 	
 	/**
@@ -227,12 +329,32 @@ public class WtEngineImpl
 	 */
 	public EngProcessedPage expand(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			boolean forInclusion,
 			ExpansionCallback callback)
 			throws EngineException
 	{
-		if (pageId == null || callback == null)
+		return expand(
+				pageId,
+				wikitext,
+				forInclusion,
+				callback,
+				defaultOptions);
+	}
+	
+	/**
+	 * Like {@link #expand(PageId, CharSequence, boolean, ExpansionCallback)} but
+	 * uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage expand(
+			PageId pageId,
+			CharSequence wikitext,
+			boolean forInclusion,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException
+	{
+		if (pageId == null || callback == null || options == null)
 			throw new NullPointerException();
 		
 		PageTitle title = pageId.getTitle();
@@ -244,14 +366,23 @@ public class WtEngineImpl
 		WtPreproWikitextPage pAst;
 		try
 		{
-			ValidatedWikitext validatedWikitext =
-					validate(title, wikitext, log, null);
-			
-			WtPreproWikitextPage ppAst =
-					preprocess(title, validatedWikitext, forInclusion, log);
+			WtPreproWikitextPage ppAst = validateAndPreprocess(
+					title,
+					wikitext,
+					forInclusion,
+					null,
+					options,
+					log);
 			
 			WtPreproWikitextPage pprAst = ppAst;
-			pprAst = expand(callback, title, ppAst, null, forInclusion, log);
+			pprAst = expand(
+					callback,
+					pageId,
+					ppAst,
+					null,
+					forInclusion,
+					options,
+					log);
 			
 			pAst = pprAst;
 		}
@@ -286,11 +417,25 @@ public class WtEngineImpl
 	 */
 	public EngProcessedPage parse(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			ExpansionCallback callback)
 			throws EngineException
 	{
-		if (pageId == null)
+		return parse(pageId, wikitext, callback, defaultOptions);
+	}
+	
+	/**
+	 * Like {@link #parse(PageId, CharSequence, ExpansionCallback)} but
+	 * uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage parse(
+			PageId pageId,
+			CharSequence wikitext,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException
+	{
+		if (pageId == null || options == null)
 			throw new NullPointerException();
 		
 		PageTitle title = pageId.getTitle();
@@ -302,15 +447,24 @@ public class WtEngineImpl
 		WtParsedWikitextPage pAst;
 		try
 		{
-			ValidatedWikitext validatedWikitext =
-					validate(title, wikitext, log, null);
-			
-			WtPreproWikitextPage ppAst =
-					preprocess(title, validatedWikitext, false, log);
+			WtPreproWikitextPage ppAst = validateAndPreprocess(
+					title,
+					wikitext,
+					false,
+					null,
+					options,
+					log);
 			
 			WtPreproWikitextPage pprAst = ppAst;
 			if (callback != null)
-				pprAst = expand(callback, title, ppAst, null, false, log);
+				pprAst = expand(
+						callback,
+						pageId,
+						ppAst,
+						null,
+						false,
+						options,
+						log);
 			
 			pAst = parse(title, pprAst, log);
 		}
@@ -340,7 +494,7 @@ public class WtEngineImpl
 	 */
 	public EngProcessedPage parseAndPostprocess(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			ExpansionCallback callback)
 			throws EngineException
 	{
@@ -388,14 +542,33 @@ public class WtEngineImpl
 	 * <li>Entity substitution</li>
 	 * <li>Postprocessing</li>
 	 * </ul>
+	 * 
+	 * The wikitext is only read while the engine processes it and is not
+	 * referenced by the result. It can therefore be a view on a buffer that
+	 * is reused once this method returns. With single pass validation (see
+	 * {@link EngineOptions}) no String copy of the wikitext is made.
 	 */
 	public EngProcessedPage postprocess(
 			PageId pageId,
-			String wikitext,
+			CharSequence wikitext,
 			ExpansionCallback callback)
 			throws EngineException
 	{
-		if (pageId == null)
+		return postprocess(pageId, wikitext, callback, defaultOptions);
+	}
+	
+	/**
+	 * Like {@link #postprocess(PageId, CharSequence, ExpansionCallback)} but
+	 * uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage postprocess(
+			PageId pageId,
+			CharSequence wikitext,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException
+	{
+		if (pageId == null || options == null)
 			throw new NullPointerException();
 		
 		PageTitle title = pageId.getTitle();
@@ -407,15 +580,24 @@ public class WtEngineImpl
 		WtParsedWikitextPage pAst;
 		try
 		{
-			ValidatedWikitext validatedWikitext =
-					validate(title, wikitext, log, null);
-			
-			WtPreproWikitextPage ppAst =
-					preprocess(title, validatedWikitext, false, log);
+			WtPreproWikitextPage ppAst = validateAndPreprocess(
+					title,
+					wikitext,
+					false,
+					null,
+					options,
+					log);
 			
 			WtPreproWikitextPage pprAst = ppAst;
 			if (callback != null)
-				pprAst = expand(callback, title, ppAst, null, false, log);
+				pprAst = expand(
+						callback,
+						pageId,
+						ppAst,
+						null,
+						false,
+						options,
+						log);
 			
 			pAst = parse(title, pprAst, log);
 			
@@ -437,6 +619,108 @@ public class WtEngineImpl
 				pAst.getWarnings());
 	}
 	
+	/**
+	 * Like {@link #postprocess(PageId, CharSequence, ExpansionCallback)} but only
+	 * processes the parts of the page that changed since the given previous
+	 * result.
+	 * 
+	 * The wikitext is split in front of top-level headings (see
+	 * {@link SectionSplitter}). Each segment is validated, preprocessed,
+	 * expanded, parsed and postprocessed on its own and the sections of all
+	 * segments are stitched together afterwards. Segments whose wikitext did
+	 * not change are taken from the previous result. If an unchanged segment
+	 * moved up or down, the locations of its nodes are moved as well. If that
+	 * is not possible (e.g. because the segment has warnings attached) the
+	 * segment is processed again.
+	 * 
+	 * The segments of a page are only attached to the returned page if
+	 * {@link EngineOptions#isRetainSegments()} is enabled. If a page cannot be
+	 * processed segment by segment, it is processed as a whole by
+	 * {@link #postprocess(PageId, CharSequence, ExpansionCallback, EngineOptions)}
+	 * and no segments are attached. That is the case if the expanded
+	 * wikitext of a segment leaves a table or an element open or closes one
+	 * it did not open (e.g. templates like <code>{{Col-begin}}</code> and
+	 * <code>{{Col-end}}</code> in different sections).
+	 * 
+	 * Expanded segments are reused as well, unless their expansion invoked
+	 * volatile parser functions or magic words. If other pages transcluded by
+	 * the page changed, the page has to be processed without a previous
+	 * result.
+	 * 
+	 * @param previous
+	 *            The result of a previous call for the same page or null. The
+	 *            previous result is not modified.
+	 */
+	public EngProcessedPage postprocessIncrementally(
+			PageId pageId,
+			EngProcessedPage previous,
+			CharSequence wikitext,
+			ExpansionCallback callback)
+			throws EngineException
+	{
+		return postprocessIncrementally(pageId, previous, wikitext, callback, defaultOptions);
+	}
+	
+	/**
+	 * Like
+	 * {@link #postprocessIncrementally(PageId, EngProcessedPage, CharSequence, ExpansionCallback)}
+	 * but uses the given options instead of the engine's default options.
+	 */
+	public EngProcessedPage postprocessIncrementally(
+			PageId pageId,
+			EngProcessedPage previous,
+			CharSequence wikitext,
+			ExpansionCallback callback,
+			EngineOptions options)
+			throws EngineException
+	{
+		if (pageId == null || options == null)
+			throw new NullPointerException();
+		
+		PageTitle title = pageId.getTitle();
+		
+		EngLogProcessingPass log = nf().logProcessingPass();
+		log.setTitle(title.getDenormalizedFullTitle());
+		log.setRevision(pageId.getRevision());
+		
+		PageSegments segments;
+		WtNodeList content;
+		try
+		{
+			segments = processSegments(
+					pageId,
+					(previous != null) ? PageSegments.get(previous) : null,
+					wikitext,
+					callback,
+					options,
+					log);
+			
+			content = (segments != null) ? segments.stitch(nf().list()) : null;
+		}
+		catch (EngineException e)
+		{
+			e.attachLog(log);
+			throw e;
+		}
+		catch (Throwable e)
+		{
+			throw new EngineException(title, "Compilation failed!", e, log);
+		}
+		
+		if (content == null)
+			return postprocess(pageId, wikitext, callback, options);
+		
+		EngProcessedPage page = nf().processedPage(
+				nf().page(content),
+				log,
+				segments.getWarnings());
+		
+		if (options.isRetainSegments())
+			segments.attachTo(page);
+		
+		return page;
+	}
+	
 	/**
 	 * Takes an AST after preprocessing or after expansion and performs the
 	 * following steps:
@@ -519,23 +803,57 @@ public class WtEngineImpl
 		log.setTitle(title.getDenormalizedFullTitle());
 		log.setRevision(pageId.getRevision());
 		
+		EngineOptions options = getOptions(rootFrame);
+		
 		WtPreproWikitextPage pprAst;
 		try
 		{
-			ValidatedWikitext validatedWikitext =
-					validate(title, wikitext, log, entityMap);
+			WtPreproWikitextPage ppAst = retrievePreprocessedPage(
+					callback,
+					parentFrame,
+					pageId,
+					forInclusion,
+					entityMap);
 			
-			WtPreproWikitextPage ppAst =
-					preprocess(title, validatedWikitext, forInclusion, log);
+			if (ppAst == null)
+			{
+				int entityCount = (entityMap != null) ? entityMap.getMap().size() : 0;
+				
+				ppAst = validateAndPreprocess(
+						title,
+						wikitext,
+						forInclusion,
+						entityMap,
+						options,
+						log);
+				
+				/**
+				 * If the validator registered entities, the preprocessed AST
+				 * refers to entity ids in the entity map of the page that is
+				 * currently being expanded. Such an AST cannot be reused in a
+				 * different context.
+				 */
+				if (ppAst.getEntityMap().getMap().size() == entityCount)
+				{
+					cachePreprocessedPage(
+							callback,
+							parentFrame,
+							pageId,
+							forInclusion,
+							ppAst);
+				}
+			}
 			
 			pprAst = expand(
 					callback,
-					title,
+					pageId,
 					ppAst,
 					arguments,
 					forInclusion,
+					options,
 					rootFrame,
 					parentFrame,
+					null,
 					log);
 		}
 		catch (EngineException e)
@@ -582,12 +900,14 @@ public class WtEngineImpl
 		{
 			pprAst = expand(
 					callback,
-					title,
+					pageId,
 					ppAst,
 					arguments,
 					forInclusion,
+					getOptions(rootFrame),
 					rootFrame,
 					parentFrame,
+					null,
 					log);
 		}
 		catch (EngineException e)
@@ -608,12 +928,244 @@ public class WtEngineImpl
 	
 	// =========================================================================
 	
+	/**
+	 * Transcluded pages are expanded with the options of the request that
+	 * started the expansion process.
+	 */
+	private EngineOptions getOptions(ExpansionFrame rootFrame)
+	{
+		return (rootFrame != null) ? rootFrame.getOptions() : defaultOptions;
+	}
+	
+	/**
+	 * Asks the callback for a cached preprocessed version of the given page.
+	 * 
+	 * @return A clone of the cached AST which can safely be expanded or null if
+	 *         the page was not cached.
+	 */
+	private WtPreproWikitextPage retrievePreprocessedPage(
+			ExpansionCallback callback,
+			ExpansionFrame frame,
+			PageId pageId,
+			boolean forInclusion,
+			WtEntityMap entityMap)
+			throws Exception
+	{
+		FullPreprocessedPage cached =
+				callback.retrievePreprocessedPage(frame, pageId, forInclusion);
+		
+		if (cached == null)
+			return null;
+		
+		// Expansion alters the AST in place, the cached AST must stay pristine.
+		WtPreproWikitextPage ppAst =
+				(WtPreproWikitextPage) cached.getPage().deepCloneWrapException();
+		
+		if (entityMap == null)
+			entityMap = new WtEntityMapImpl();
+		
+		ppAst.setEntityMap(entityMap);
+		
+		if (!ppAst.getWarnings().isEmpty())
+			ppAst.setWarnings(new ArrayList<Warning>(ppAst.getWarnings()));
+		
+		return ppAst;
+	}
+	
+	/**
+	 * Hands a pristine copy of a freshly preprocessed page to the callback.
+	 * The copy does not keep the entity map of the page that is currently
+	 * being expanded; a page taken from the cache is given the entity map of
+	 * its new context in retrievePreprocessedPage().
+	 */
+	private void cachePreprocessedPage(
+			ExpansionCallback callback,
+			ExpansionFrame frame,
+			PageId pageId,
+			boolean forInclusion,
+			WtPreproWikitextPage ppAst)
+			throws Exception
+	{
+		WtPreproWikitextPage copy =
+				(WtPreproWikitextPage) ppAst.deepCloneWrapException();
+		
+		copy.setEntityMap(WtPage.NO_ENTITIES);
+		
+		callback.cachePreprocessedPage(
+				frame,
+				new FullPreprocessedPage(pageId, forInclusion, copy));
+	}
+	
+	/**
+	 * Splits the wikitext into segments and processes all segments which
+	 * cannot be taken from the previous result.
+	 * 
+	 * @return The segments or null if a segment cannot be processed on its
+	 *         own.
+	 */
+	private PageSegments processSegments(
+			PageId pageId,
+			PageSegments previous,
+			CharSequence wikitext,
+			ExpansionCallback callback,
+			EngineOptions options,
+			EngLogProcessingPass log)
+			throws EngineException
+	{
+		PageTitle title = pageId.getTitle();
+		
+		Map<String, LinkedList<Segment>> unchanged = (previous != null) ?
+				previous.bySource() :
+				Collections.<String, LinkedList<Segment>> emptyMap();
+		
+		List<Chunk> chunks = SectionSplitter.split(wikitext, 0);
+		List<Segment> segments = new ArrayList<Segment>(chunks.size());
+		
+		int parsedFirstLine = 1;
+		for (Chunk chunk : chunks)
+		{
+			String source = wikitext.subSequence(chunk.getStart(), chunk.getEnd()).toString();
+			
+			Segment segment = PageSegments.reuse(
+					unchanged,
+					source,
+					chunk.getFirstLine(),
+					parsedFirstLine,
+					title);
+			
+			if (segment == null)
+			{
+				segment = processSegment(
+						pageId,
+						source,
+						chunk.getFirstLine(),
+						parsedFirstLine,
+						chunks.size() > 1,
+						callback,
+						options,
+						log);
+				
+				if (segment == null)
+					return null;
+			}
+			
+			segments.add(segment);
+			parsedFirstLine += segment.getParsedLineCount();
+		}
+		
+		return new PageSegments(segments);
+	}
+	
+	/**
+	 * Processes a single segment of a page. The segment is always validated
+	 * while it is preprocessed since the validator lexer cannot start counting
+	 * lines in the middle of a page.
+	 * 
+	 * @param split
+	 *            Whether the page was split into more than one segment.
+	 * @return The segment or null if the page was split and the expanded
+	 *         wikitext of the segment is not balanced (see
+	 *         {@link SectionSplitter#isBalanced(CharSequence)}). The segment
+	 *         would then be parsed differently than as part of the whole
+	 *         page.
+	 */
+	private Segment processSegment(
+			PageId pageId,
+			String source,
+			int firstLine,
+			int parsedFirstLine,
+			boolean split,
+			ExpansionCallback callback,
+			EngineOptions options,
+			EngLogProcessingPass log)
+			throws EngineException
+	{
+		PageTitle title = pageId.getTitle();
+		
+		WtPreproWikitextPage ppAst = validateWhilePreprocessing(
+				title,
+				source,
+				false,
+				null,
+				firstLine,
+				log);
+		
+		boolean reusable = !PageSegments.usesVolatileMagicWords(ppAst);
+		
+		WtPreproWikitextPage pprAst = ppAst;
+		if (callback != null)
+		{
+			boolean[] isVolatile = new boolean[1];
+			pprAst = expand(
+					callback,
+					pageId,
+					ppAst,
+					null,
+					false,
+					options,
+					null,
+					null,
+					isVolatile,
+					log);
+			
+			reusable &= !isVolatile[0];
+		}
+		
+		PreprocessedWikitext preprocessedWikitext = transform(pprAst);
+		
+		if (split && !SectionSplitter.isBalanced(preprocessedWikitext.getWikitext()))
+			return null;
+		
+		WtParsedWikitextPage pAst = parse(
+				title,
+				pprAst,
+				preprocessedWikitext,
+				parsedFirstLine,
+				log);
+		
+		pAst = postprocess(title, pAst, log);
+		
+		WtNodeList content = nf().list();
+		content.addAll(pAst);
+		
+		return new Segment(
+				source,
+				firstLine,
+				parsedFirstLine,
+				PageSegments.countLineBreaks(preprocessedWikitext.getWikitext()),
+				content,
+				pAst.getWarnings(),
+				reusable);
+	}
+	
+	/**
+	 * Validates and preprocesses wikitext either in two separate passes or in
+	 * a single pass, depending on the given options.
+	 */
+	private WtPreproWikitextPage validateAndPreprocess(
+			PageTitle title,
+			CharSequence wikitext,
+			boolean forInclusion,
+			WtEntityMap entityMap,
+			EngineOptions options,
+			EngLogContainer parentLog)
+			throws EngineException
+	{
+		if (options.isSinglePassValidation())
+			return validateWhilePreprocessing(title, wikitext, forInclusion, entityMap, 1, parentLog);
+		
+		ValidatedWikitext validatedWikitext =
+				validate(title, wikitext, parentLog, entityMap);
+		
+		return preprocess(title, validatedWikitext, forInclusion, parentLog);
+	}
+	
 	/**
 	 * Validates wikitext.
 	 */
 	private ValidatedWikitext validate(
 			PageTitle title,
-			String wikitext,
+			CharSequence wikitext,
 			EngLogContainer parentLog,
 			WtEntityMap entityMap)
 			throws EngineException
@@ -626,8 +1178,6 @@ public class WtEngineImpl
 		
 		try
 		{
-			WikitextEncodingValidator validator = new WikitextEncodingValidator();
-			
 			if (entityMap == null)
 				entityMap = new WtEntityMapImpl();
 			
@@ -676,8 +1226,6 @@ public class WtEngineImpl
 		
 		try
 		{
-			WikitextPreprocessor preprocessor = new WikitextPreprocessor(parserConfig);
-			
 			/**
 			 * Entities generated and inserted into the source by the encoding
 			 * validator are recognized by the preprocessor parser and replaced
@@ -720,25 +1268,91 @@ public class WtEngineImpl
 		}
 	}
 	
+	/**
+	 * Validates wikitext while the preprocessor reads it and substitutes
+	 * entities. No validator pass is logged.
+	 * 
+	 * @param firstLine
+	 *            The line the wikitext starts at if it is only a part of the
+	 *            page.
+	 */
+	private WtPreproWikitextPage validateWhilePreprocessing(
+			PageTitle title,
+			CharSequence wikitext,
+			boolean forInclusion,
+			WtEntityMap entityMap,
+			int firstLine,
+			EngLogContainer parentLog)
+			throws EngineException
+	{
+		EngLogPreprocessorPass log = nf().logPreprocessorPass();
+		parentLog.add(log);
+		
+		log.setForInclusion(forInclusion);
+		
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		
+		try
+		{
+			if (entityMap == null)
+				entityMap = new WtEntityMapImpl();
+			
+			WtPreproWikitextPage preprocessedAst =
+					(WtPreproWikitextPage) preprocessor.parseArticle(
+							wikitext,
+							entityMap,
+							title.getDenormalizedFullTitle(),
+							forInclusion,
+							firstLine);
+			
+			return preprocessedAst;
+		}
+		catch (xtc.parser.ParseException e)
+		{
+			log.add(nf().logParserError(e.getMessage()));
+			
+			throw new EngineException(title, "Preprocessing failed!", e);
+		}
+		catch (Exception e)
+		{
+			logger.error("Preprocessing failed!", e);
+			
+			StringWriter w = new StringWriter();
+			e.printStackTrace(new PrintWriter(w));
+			log.add(nf().logUnhandledError(e, w.toString()));
+			
+			throw new EngineException(title, "Preprocessing failed!", e);
+		}
+		finally
+		{
+			stopWatch.stop();
+			log.setTimeNeeded(stopWatch.getElapsedTime());
+		}
+	}
+	
 	/**
 	 * Starts the expansion process of a preprocessed page with the preprocessed
 	 * page as root of the expansion process.
 	 */
 	private WtPreproWikitextPage expand(
 			ExpansionCallback callback,
-			PageTitle title,
+			PageId pageId,
 			WtPreproWikitextPage ppAst,
 			LinkedHashMap<String, WtNodeList> arguments,
 			boolean forInclusion,
+			EngineOptions options,
 			EngLogContainer parentLog)
 			throws EngineException
 	{
 		return expand(
 				callback,
-				title,
+				pageId,
 				ppAst,
 				arguments,
 				forInclusion,
+				options,
+				null,
 				null,
 				null,
 				parentLog);
@@ -746,18 +1360,27 @@ public class WtEngineImpl
 	
 	/**
 	 * Starts the expansion process of a preprocessed page.
+	 * 
+	 * @param isVolatile
+	 *            If not null and the page is the root of the expansion
+	 *            process, the first element is set to true if the expansion
+	 *            invoked volatile parser functions.
 	 */
 	private WtPreproWikitextPage expand(
 			ExpansionCallback callback,
-			PageTitle title,
+			PageId pageId,
 			WtPreproWikitextPage ppAst,
 			Map<String, WtNodeList> arguments,
 			boolean forInclusion,
+			EngineOptions options,
 			ExpansionFrame rootFrame,
 			ExpansionFrame parentFrame,
+			boolean[] isVolatile,
 			EngLogContainer parentLog)
 			throws EngineException
 	{
+		PageTitle title = pageId.getTitle();
+		
 		EngLogExpansionPass log = nf().logExpansionPass();
 		parentLog.add(log);
 		
@@ -779,36 +1402,49 @@ public class WtEngineImpl
 				frame = new ExpansionFrame(
 						this,
 						callback,
-						hooks,
-						title,
+						options,
+						pageId,
 						ppAst.getEntityMap(),
 						arguments,
 						forInclusion,
-						noRedirect,
 						rootFrame,
 						parentFrame,
 						warnings,
-						log,
-						timingEnabled,
-						catchAll);
+						log);
 			}
 			else
 			{
 				frame = new ExpansionFrame(
 						this,
 						callback,
-						hooks,
-						title,
+						options,
+						pageId,
 						ppAst.getEntityMap(),
-						noRedirect,
 						warnings,
-						log,
-						timingEnabled,
-						catchAll);
+						log);
 			}
 			
-			WtPreproWikitextPage expanded =
-					(WtPreproWikitextPage) frame.expand(ppAst);
+			frame.prefetchTemplates(ppAst);
+			
+			WtPreproWikitextPage expanded;
+			try
+			{
+				expanded = (WtPreproWikitextPage) frame.expand(ppAst);
+			}
+			finally
+			{
+				if (rootFrame == null)
+				{
+					frame.finishPrefetching();
+					
+					if (isVolatile != null)
+						isVolatile[0] = frame.getVolatileInvocationCount() > 0;
+					
+					ExpansionBudget budget = frame.getBudget();
+					if (budget != null && frame.getOptions().getLimits() != null)
+						parentLog.add(budget.makeReport(nf()));
+				}
+			}
 			
 			if (!warnings.isEmpty())
 				ppAst.setWarnings(warnings);
@@ -837,7 +1473,7 @@ public class WtEngineImpl
 	 */
 	private WtParsedWikitextPage parse(
 			PageTitle title,
-			String wikitext,
+			CharSequence wikitext,
 			EngLogContainer parentLog)
 			throws EngineException
 	{
@@ -849,11 +1485,10 @@ public class WtEngineImpl
 		
 		try
 		{
-			WikitextParser parser = new WikitextParser(parserConfig);
-			
 			WtParsedWikitextPage parsedAst =
 					(WtParsedWikitextPage) parser.parseArticle(
 							wikitext,
+							new WtEntityMapImpl(),
 							title.getTitle());
 			
 			return parsedAst;
@@ -890,6 +1525,28 @@ public class WtEngineImpl
 			WtPreproWikitextPage ppAst,
 			EngLogContainer parentLog)
 			throws EngineException
+	{
+		return parse(title, ppAst, null, 1, parentLog);
+	}
+	
+	/**
+	 * Parses a preprocessed page (wikitext+entities) and substitutes entities
+	 * afterwards.
+	 * 
+	 * @param preprocessedWikitext
+	 *            The preprocessed page transformed for the parser or null if
+	 *            the page still has to be transformed.
+	 * @param firstLine
+	 *            The line the preprocessed wikitext starts at if it is only a
+	 *            part of the page.
+	 */
+	private WtParsedWikitextPage parse(
+			PageTitle title,
+			WtPreproWikitextPage ppAst,
+			PreprocessedWikitext preprocessedWikitext,
+			int firstLine,
+			EngLogContainer parentLog)
+			throws EngineException
 	{
 		EngLogParserPass log = nf().logParserPass();
 		parentLog.add(log);
@@ -899,17 +1556,15 @@ public class WtEngineImpl
 		
 		try
 		{
-			PreprocessedWikitext preprocessedWikitext =
-					PreprocessorToParserTransformer.transform(
-							ppAst,
-							engineConfig.isTrimTransparentBeforeParsing());
-			
-			WikitextParser parser = new WikitextParser(parserConfig);
+			if (preprocessedWikitext == null)
+				preprocessedWikitext = transform(ppAst);
 			
 			WtParsedWikitextPage parsedAst =
 					(WtParsedWikitextPage) parser.parseArticle(
-							preprocessedWikitext,
-							title.getTitle());
+							preprocessedWikitext.getWikitext(),
+							preprocessedWikitext.getEntityMap(),
+							title.getTitle(),
+							firstLine);
 			
 			// if there were no warnings we would try to add to the EMPTY_LIST
 			if (parsedAst.getWarnings() == Collections.EMPTY_LIST)
@@ -946,6 +1601,13 @@ public class WtEngineImpl
 		}
 	}
 	
+	private PreprocessedWikitext transform(WtPreproWikitextPage ppAst)
+	{
+		return PreprocessorToParserTransformer.transform(
+				ppAst,
+				engineConfig.isTrimTransparentBeforeParsing());
+	}
+	
 	private WtParsedWikitextPage postprocess(
 			PageTitle title,
 			WtParsedWikitextPage pAst,
@@ -960,9 +1622,7 @@ public class WtEngineImpl
 		
 		try
 		{
-			WikitextPostprocessor lpp = new WikitextPostprocessor(parserConfig);
-			
-			pAst = (WtParsedWikitextPage) lpp.postprocess(pAst, title.getTitle());
+			pAst = (WtParsedWikitextPage) postprocessor.postprocess(pAst, title.getTitle());
 			
 			return pAst;
 		}
@@ -35,6 +35,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
 
 import org.sweble.wikitext.engine.nodes.EngineNodeFactory;
+import org.sweble.wikitext.parser.MemoizationPolicy;
 import org.sweble.wikitext.parser.NonStandardElementBehavior;
 import org.sweble.wikitext.parser.ParserConfig;
 import org.sweble.wikitext.parser.WikitextWarning.WarningSeverity;
@@ -92,6 +93,8 @@ public class ParserConfigImpl
 	
 	private final Map<String, String> lctVariantMap = new HashMap<String, String>();
 	
+	private MemoizationPolicy memoizationPolicy = MemoizationPolicy.UNBOUNDED;
+	
 	// =========================================================================
 	
 	/**
@@ -186,6 +189,25 @@ public class ParserConfigImpl
 		return gatherRtData;
 	}
 	
+	// ==[ Parser resources ]===================================================
+	
+	/**
+	 * The memoization policy is a runtime setting and is not part of the
+	 * serialized configuration.
+	 */
+	public void setMemoizationPolicy(MemoizationPolicy memoizationPolicy)
+	{
+		if (memoizationPolicy == null)
+			throw new IllegalArgumentException();
+		this.memoizationPolicy = memoizationPolicy;
+	}
+	
+	@Override
+	public MemoizationPolicy getMemoizationPolicy()
+	{
+		return memoizationPolicy;
+	}
+	
 	// ==[ AST creation ]=======================================================
 	
 	@Override
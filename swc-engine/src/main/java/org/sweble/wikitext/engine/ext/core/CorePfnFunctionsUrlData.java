@@ -96,6 +96,12 @@ public class CorePfnFunctionsUrlData
 			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "fullurl");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		public WtNode invoke(
 				WtTemplate pfn,
@@ -255,6 +261,18 @@ public class CorePfnFunctionsUrlData
 			super(wikiConfig, "filepath");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
+		@Override
+		public boolean isExpensive()
+		{
+			return true;
+		}
+		
 		@Override
 		public WtNode invoke(
 				WtTemplate pfn,
@@ -72,6 +72,12 @@ public class CorePfnVariablesDateAndTime
 			super(wikiConfig, "currentyear");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -105,6 +111,12 @@ public class CorePfnVariablesDateAndTime
 			super(wikiConfig, "currentmonth");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -146,6 +158,12 @@ public class CorePfnVariablesDateAndTime
 			super(wikiConfig, "currentday");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
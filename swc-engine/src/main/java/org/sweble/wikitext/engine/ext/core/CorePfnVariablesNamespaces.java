@@ -76,6 +76,12 @@ public class CorePfnVariablesNamespaces
 			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "namespace");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		public WtNode invoke(
 				WtTemplate var,
@@ -143,6 +149,12 @@ public class CorePfnVariablesNamespaces
 			super(wikiConfig, "subjectspace");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -186,6 +198,12 @@ public class CorePfnVariablesNamespaces
 			super(wikiConfig, "talkspace");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -81,6 +81,12 @@ public class CorePfnVariablesPageNames
 			super(wikiConfig, "fullpagename");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -113,6 +119,12 @@ public class CorePfnVariablesPageNames
 			super(wikiConfig, "fullpagenamee");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -145,6 +157,12 @@ public class CorePfnVariablesPageNames
 			super(wikiConfig, "pagename");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -179,6 +197,12 @@ public class CorePfnVariablesPageNames
 			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "pagenamee");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		public WtNode invoke(
 				WtTemplate var,
@@ -235,6 +259,12 @@ public class CorePfnVariablesPageNames
 			super(wikiConfig, "basepagename");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -275,6 +305,12 @@ public class CorePfnVariablesPageNames
 			super(wikiConfig, "subjectpagename");
 		}
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
@@ -344,6 +380,12 @@ public class CorePfnVariablesPageNames
 		}
 		*/
 		
+		@Override
+		public boolean isVolatile()
+		{
+			return true;
+		}
+		
 		@Override
 		public WtNode invoke(
 				WtTemplate var,
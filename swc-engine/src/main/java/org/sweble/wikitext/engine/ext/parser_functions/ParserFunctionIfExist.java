@@ -55,6 +55,18 @@ public class ParserFunctionIfExist
 		super(wikiConfig, "ifexist", 1 /* thenArgIndex */);
 	}
 	
+	@Override
+	public boolean isVolatile()
+	{
+		return true;
+	}
+	
+	@Override
+	public boolean isExpensive()
+	{
+		return true;
+	}
+	
 	@Override
 	protected boolean evaluateCondition(
 			WtTemplate pfn,
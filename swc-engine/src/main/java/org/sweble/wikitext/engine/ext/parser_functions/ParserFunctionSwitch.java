@@ -17,9 +17,13 @@
 
 package org.sweble.wikitext.engine.ext.parser_functions;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PageId;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtNodeList;
@@ -27,12 +31,28 @@ import org.sweble.wikitext.parser.nodes.WtTemplate;
 import org.sweble.wikitext.parser.nodes.WtText;
 import org.sweble.wikitext.parser.utils.StringConversionException;
 
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+
 public class ParserFunctionSwitch
 		extends
 			ParserFunctionsExtPfn.CtrlStmt
 {
 	private static final long serialVersionUID = 1L;
 	
+	/**
+	 * The maximum number of compiled switch statements that are kept.
+	 */
+	private static final int MAX_JUMP_TABLES = 1024;
+	
+	/**
+	 * Marks switch statements whose case labels are not static text.
+	 */
+	private static final JumpTable NOT_COMPILABLE = new JumpTable(0);
+	
+	private transient Map<SwitchId, JumpTable> jumpTables;
+	
+	// =========================================================================
+	
 	/**
 	 * For un-marshaling only.
 	 */
@@ -55,11 +75,67 @@ public class ParserFunctionSwitch
 		if (args.size() < 1)
 			return nf().list();
 		
-		return new Evaluator(frame, args).evaluate();
+		return new Evaluator(pfn, frame, args).evaluate();
 	}
 	
+	// =========================================================================
+	
+	/**
+	 * Returns the number of compiled switch statements that are currently
+	 * kept.
+	 */
+	public int getJumpTableCount()
+	{
+		Map<SwitchId, JumpTable> tables = getJumpTables();
+		synchronized (tables)
+		{
+			return tables.size();
+		}
+	}
+	
+	private synchronized Map<SwitchId, JumpTable> getJumpTables()
+	{
+		if (jumpTables == null)
+		{
+			jumpTables = new LinkedHashMap<SwitchId, JumpTable>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<SwitchId, JumpTable> eldest)
+				{
+					return size() > MAX_JUMP_TABLES;
+				}
+			};
+		}
+		return jumpTables;
+	}
+	
+	private JumpTable getJumpTable(SwitchId id)
+	{
+		Map<SwitchId, JumpTable> tables = getJumpTables();
+		synchronized (tables)
+		{
+			return tables.get(id);
+		}
+	}
+	
+	private void putJumpTable(SwitchId id, JumpTable table)
+	{
+		Map<SwitchId, JumpTable> tables = getJumpTables();
+		synchronized (tables)
+		{
+			tables.put(id, table);
+		}
+	}
+	
+	// =========================================================================
+	
 	private final class Evaluator
 	{
+		private WtTemplate pfn;
+		
 		private ExpansionFrame frame;
 		
 		private List<? extends WtNode> args;
@@ -70,8 +146,12 @@ public class ParserFunctionSwitch
 		
 		private WtNode result;
 		
-		public Evaluator(ExpansionFrame frame, List<? extends WtNode> args)
+		public Evaluator(
+				WtTemplate pfn,
+				ExpansionFrame frame,
+				List<? extends WtNode> args)
 		{
+			this.pfn = pfn;
 			this.frame = frame;
 			this.args = args;
 		}
@@ -93,6 +173,28 @@ public class ParserFunctionSwitch
 				// FIXME: Do recursive equality check
 			}
 			
+			SwitchId id = SwitchId.make(pfn, frame);
+			if (id != null && args.size() > 1)
+			{
+				JumpTable table = getJumpTable(id);
+				if (table == null)
+				{
+					table = compile();
+					putJumpTable(id, table);
+				}
+				
+				if (table != NOT_COMPILABLE && table.getArgCount() == args.size())
+					return jump(table, cmp, icmp);
+			}
+			
+			return scan(cmp, icmp);
+		}
+		
+		/**
+		 * Compares the test string with one case after the other.
+		 */
+		private WtNode scan(String cmp, Double icmp)
+		{
 			boolean found = false;
 			
 			result = null;
@@ -100,18 +202,7 @@ public class ParserFunctionSwitch
 			{
 				// Process each argument of the switch (after the test string)
 				
-				after = null;
-				before = nf().list();
-				if (args.get(i).isNodeType(WtNode.NT_NODE_LIST))
-				{
-					splitNodeListAtEquals(i);
-				}
-				else
-				{
-					WtNode c = args.get(i);
-					if (c.isNodeType(WtNode.NT_TEXT))
-						splitTextAtEquals(c);
-				}
+				split(i);
 				
 				// Now before holds the stuff in front of the "=" and after
 				// contains everything after the "=". If no "=" was found, 
@@ -144,6 +235,132 @@ public class ParserFunctionSwitch
 			return result;
 		}
 		
+		/**
+		 * Looks up the case that matches the test string in a compiled switch
+		 * statement. The result is the same as the one of
+		 * {@link #scan(String, Double)}.
+		 */
+		private WtNode jump(JumpTable table, String cmp, Double icmp)
+		{
+			int last = args.size() - 1;
+			
+			WtNodeList implicitDefault = null;
+			
+			int defaultCase;
+			
+			int match = table.find(cmp, icmp);
+			if (match != -1)
+			{
+				// Fall through to the next case that has a value
+				int target = table.getValueCase(match);
+				if (target != -1)
+				{
+					split(target);
+					return after;
+				}
+				
+				defaultCase = table.getDefaultCaseBefore(match);
+			}
+			else
+			{
+				defaultCase = table.getDefaultCaseBefore(last + 1);
+				
+				if (table.hasDynamicImplicitDefault())
+				{
+					// The scan compares the implicit default with the test 
+					// string as well. If it expands to "#default" it resets 
+					// the result of an explicit #default case.
+					split(last);
+					if ("#default".equals(expandLabel()))
+						return before;
+					
+					implicitDefault = before;
+				}
+			}
+			
+			if (defaultCase != -1)
+			{
+				split(defaultCase);
+				if (after != null)
+					return after;
+			}
+			
+			if (table.hasImplicitDefault())
+			{
+				if (implicitDefault == null)
+				{
+					split(last);
+					implicitDefault = before;
+				}
+				return implicitDefault;
+			}
+			
+			return null;
+		}
+		
+		/**
+		 * Builds the jump table of this switch statement. All case labels
+		 * must be static text. Only the implicit default, which never
+		 * determines which case matches, may have to be expanded.
+		 */
+		private JumpTable compile()
+		{
+			int last = args.size() - 1;
+			
+			JumpTable table = new JumpTable(args.size());
+			
+			boolean[] isDefault = new boolean[args.size()];
+			
+			int valueCase = -1;
+			for (int i = last; i >= 1; --i)
+			{
+				split(i);
+				
+				if (after != null)
+					valueCase = i;
+				table.valueCases[i] = valueCase;
+				
+				if (!isStatic(before))
+				{
+					if (i != last || after != null)
+						return NOT_COMPILABLE;
+					
+					table.dynamicImplicitDefault = true;
+					continue;
+				}
+				
+				String label = expandLabel();
+				if (label == null)
+					continue;
+				
+				if (label.equals("#default"))
+				{
+					isDefault[i] = true;
+					continue;
+				}
+				
+				// Going backwards, earlier cases replace later ones
+				table.byText.put(label, i);
+				
+				Double number = strToDbl(label);
+				if (number != null)
+					table.byNumber.put(number, i);
+			}
+			
+			table.implicitDefault = (table.valueCases[last] == -1);
+			
+			int defaultCase = -1;
+			for (int i = 1; i <= last; ++i)
+			{
+				table.defaultCases[i] = defaultCase;
+				if (isDefault[i])
+					defaultCase = i;
+			}
+			table.defaultCases[last + 1] = defaultCase;
+			
+			return table;
+		}
+		
 		private boolean compare(String cmp, Double icmp)
 		{
 			// See if the case statement matches the test string.
@@ -152,18 +369,9 @@ public class ParserFunctionSwitch
 			// $before part could hold "#default", in which case we only
 			// set the result to the $after part.
 			
-			before = (WtNodeList) frame.expand(before);
-			
-			String cmp2;
-			try
-			{
-				cmp2 = tu().astToText(before).trim();
-			}
-			catch (StringConversionException e)
-			{
-				// FIXME: Do recursive equality check
+			String cmp2 = expandLabel();
+			if (cmp2 == null)
 				return false;
-			}
 			
 			if (cmp2.equals("#default"))
 			{
@@ -181,6 +389,26 @@ public class ParserFunctionSwitch
 			return (cmp != null) && cmp.equals(cmp2);
 		}
 		
+		/**
+		 * Expands the label of the current case and converts it to text.
+		 * 
+		 * @return The label or null if it cannot be converted to text.
+		 */
+		private String expandLabel()
+		{
+			before = (WtNodeList) frame.expand(before);
+			
+			try
+			{
+				return tu().astToText(before).trim();
+			}
+			catch (StringConversionException e)
+			{
+				// FIXME: Do recursive equality check
+				return null;
+			}
+		}
+		
 		private Double strToDbl(String str)
 		{
 			try
@@ -193,6 +421,22 @@ public class ParserFunctionSwitch
 			}
 		}
 		
+		private void split(int i)
+		{
+			after = null;
+			before = nf().list();
+			if (args.get(i).isNodeType(WtNode.NT_NODE_LIST))
+			{
+				splitNodeListAtEquals(i);
+			}
+			else
+			{
+				WtNode c = args.get(i);
+				if (c.isNodeType(WtNode.NT_TEXT))
+					splitTextAtEquals(c);
+			}
+		}
+		
 		private void splitNodeListAtEquals(int i)
 		{
 			for (WtNode c : args.get(i))
@@ -231,4 +475,186 @@ public class ParserFunctionSwitch
 			}
 		}
 	}
+	
+	/**
+	 * Whether a case label expands to itself.
+	 */
+	private static boolean isStatic(WtNodeList label)
+	{
+		for (WtNode c : label)
+		{
+			switch (c.getNodeType())
+			{
+				case WtNode.NT_TEXT:
+				case WtNode.NT_NEWLINE:
+				case WtNode.NT_IGNORED:
+				case WtNode.NT_XML_COMMENT:
+					break;
+				default:
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Identifies a switch statement by its position in a certain revision of
+	 * a page. Switch statements of pages with an unknown revision cannot be
+	 * identified.
+	 */
+	private static final class SwitchId
+	{
+		private final PageId pageId;
+		
+		private final boolean forInclusion;
+		
+		private final AstLocation location;
+		
+		private SwitchId(PageId pageId, boolean forInclusion, AstLocation location)
+		{
+			this.pageId = pageId;
+			this.forInclusion = forInclusion;
+			this.location = location;
+		}
+		
+		public static SwitchId make(WtTemplate pfn, ExpansionFrame frame)
+		{
+			PageId pageId = frame.getPageId();
+			if (pageId.getRevision() < 0)
+				return null;
+			
+			// The statement must stem from the page of the frame and not
+			// from a template argument.
+			AstLocation location = pfn.getNativeLocation();
+			if (location == null || !pageId.getTitle().getDenormalizedFullTitle().equals(location.getFile()))
+				return null;
+			
+			return new SwitchId(pageId, frame.isForInclusion(), location);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (forInclusion ? 1231 : 1237);
+			result = prime * result + location.hashCode();
+			result = prime * result + pageId.hashCode();
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			SwitchId other = (SwitchId) obj;
+			if (forInclusion != other.forInclusion)
+				return false;
+			if (!location.equals(other.location))
+				return false;
+			if (!pageId.equals(other.pageId))
+				return false;
+			return true;
+		}
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * The compiled form of a switch statement. Maps the labels of all cases to
+	 * the index of the first case with that label. Cases are referred to by
+	 * the index of their argument.
+	 */
+	private static final class JumpTable
+	{
+		private final HashMap<String, Integer> byText =
+				new HashMap<String, Integer>();
+		
+		private final HashMap<Double, Integer> byNumber =
+				new HashMap<Double, Integer>();
+		
+		/**
+		 * For each case the first case at or after it which has a value.
+		 */
+		private final int[] valueCases;
+		
+		/**
+		 * For each case the last #default case in front of it. The entry
+		 * after the last case refers to the last #default case.
+		 */
+		private final int[] defaultCases;
+		
+		private boolean implicitDefault;
+		
+		private boolean dynamicImplicitDefault;
+		
+		public JumpTable(int argCount)
+		{
+			this.valueCases = new int[argCount];
+			this.defaultCases = new int[argCount + 1];
+		}
+		
+		public int getArgCount()
+		{
+			return valueCases.length;
+		}
+		
+		/**
+		 * @return The index of the first case that matches the test string
+		 *         textually or numerically or -1 if no case matches.
+		 */
+		public int find(String cmp, Double icmp)
+		{
+			int match = -1;
+			if (cmp != null)
+			{
+				Integer i = byText.get(cmp);
+				if (i != null)
+					match = i;
+			}
+			
+			if (icmp != null)
+			{
+				Integer i = byNumber.get(icmp);
+				if (i != null && (match == -1 || i < match))
+					match = i;
+			}
+			
+			return match;
+		}
+		
+		public int getValueCase(int i)
+		{
+			return valueCases[i];
+		}
+		
+		public int getDefaultCaseBefore(int i)
+		{
+			return defaultCases[i];
+		}
+		
+		/**
+		 * Whether the last case has no value and is returned if no other
+		 * value was found.
+		 */
+		public boolean hasImplicitDefault()
+		{
+			return implicitDefault;
+		}
+		
+		/**
+		 * Whether the implicit default is not static text.
+		 */
+		public boolean hasDynamicImplicitDefault()
+		{
+			return dynamicImplicitDefault;
+		}
+	}
 }
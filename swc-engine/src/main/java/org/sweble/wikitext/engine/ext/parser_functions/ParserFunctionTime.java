@@ -51,6 +51,12 @@ public class ParserFunctionTime
 		super(wikiConfig, "time");
 	}
 	
+	@Override
+	public boolean isVolatile()
+	{
+		return true;
+	}
+	
 	@Override
 	public WtNode invoke(
 			WtTemplate pfn,
@@ -0,0 +1,268 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.nodes;
+
+import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+
+/**
+ * Reports how much of the resources granted by the expansion limits a page
+ * used, similar to MediaWiki's limit report.
+ */
+public class EngLogLimitsReport
+		extends
+			EngLogLeafNode
+{
+	private static final long serialVersionUID = 1L;
+	
+	// =========================================================================
+	
+	protected EngLogLimitsReport()
+	{
+		setExceededLimits("");
+	}
+	
+	// =========================================================================
+	// Properties
+	
+	private int nodeCount;
+	
+	/**
+	 * The number of nodes visited by the expansion.
+	 */
+	public final int getNodeCount()
+	{
+		return this.nodeCount;
+	}
+	
+	public final void setNodeCount(int nodeCount)
+	{
+		this.nodeCount = nodeCount;
+	}
+	
+	private long postExpandIncludeSize;
+	
+	/**
+	 * The size of all results included into the expanded page itself.
+	 */
+	public final long getPostExpandIncludeSize()
+	{
+		return this.postExpandIncludeSize;
+	}
+	
+	public final void setPostExpandIncludeSize(long postExpandIncludeSize)
+	{
+		this.postExpandIncludeSize = postExpandIncludeSize;
+	}
+	
+	private long templateArgumentSize;
+	
+	/**
+	 * The size of all template arguments that got expanded.
+	 */
+	public final long getTemplateArgumentSize()
+	{
+		return this.templateArgumentSize;
+	}
+	
+	public final void setTemplateArgumentSize(long templateArgumentSize)
+	{
+		this.templateArgumentSize = templateArgumentSize;
+	}
+	
+	private int expansionDepth;
+	
+	/**
+	 * The deepest nesting of transclusions.
+	 */
+	public final int getExpansionDepth()
+	{
+		return this.expansionDepth;
+	}
+	
+	public final void setExpansionDepth(int expansionDepth)
+	{
+		this.expansionDepth = expansionDepth;
+	}
+	
+	private int expensiveFunctionCount;
+	
+	/**
+	 * The number of expensive parser function invocations.
+	 */
+	public final int getExpensiveFunctionCount()
+	{
+		return this.expensiveFunctionCount;
+	}
+	
+	public final void setExpensiveFunctionCount(int expensiveFunctionCount)
+	{
+		this.expensiveFunctionCount = expensiveFunctionCount;
+	}
+	
+	private long timeNeeded;
+	
+	/**
+	 * The wall-clock time the expansion took in milliseconds.
+	 */
+	public final long getTimeNeeded()
+	{
+		return this.timeNeeded;
+	}
+	
+	public final void setTimeNeeded(long timeNeeded)
+	{
+		this.timeNeeded = timeNeeded;
+	}
+	
+	private String exceededLimits;
+	
+	/**
+	 * The names of the limits that were exceeded, separated by commas, or
+	 * an empty string if no limit was exceeded.
+	 */
+	public final String getExceededLimits()
+	{
+		return this.exceededLimits;
+	}
+	
+	public final void setExceededLimits(String exceededLimits)
+	{
+		this.exceededLimits = exceededLimits;
+	}
+	
+	@Override
+	public final int getPropertyCount()
+	{
+		return 7;
+	}
+	
+	@Override
+	public final AstNodePropertyIterator propertyIterator()
+	{
+		return new AstNodePropertyIterator()
+		{
+			@Override
+			protected int getPropertyCount()
+			{
+				return 7;
+			}
+			
+			@Override
+			protected String getName(int index)
+			{
+				switch (index)
+				{
+					case 0:
+						return "nodeCount";
+					case 1:
+						return "postExpandIncludeSize";
+					case 2:
+						return "templateArgumentSize";
+					case 3:
+						return "expansionDepth";
+					case 4:
+						return "expensiveFunctionCount";
+					case 5:
+						return "timeNeeded";
+					case 6:
+						return "exceededLimits";
+						
+					default:
+						throw new IndexOutOfBoundsException();
+				}
+			}
+			
+			@Override
+			protected Object getValue(int index)
+			{
+				switch (index)
+				{
+					case 0:
+						return EngLogLimitsReport.this.getNodeCount();
+					case 1:
+						return EngLogLimitsReport.this.getPostExpandIncludeSize();
+					case 2:
+						return EngLogLimitsReport.this.getTemplateArgumentSize();
+					case 3:
+						return EngLogLimitsReport.this.getExpansionDepth();
+					case 4:
+						return EngLogLimitsReport.this.getExpensiveFunctionCount();
+					case 5:
+						return EngLogLimitsReport.this.getTimeNeeded();
+					case 6:
+						return EngLogLimitsReport.this.getExceededLimits();
+						
+					default:
+						throw new IndexOutOfBoundsException();
+				}
+			}
+			
+			@Override
+			protected Object setValue(int index, Object value)
+			{
+				switch (index)
+				{
+					case 0:
+					{
+						int old = EngLogLimitsReport.this.getNodeCount();
+						EngLogLimitsReport.this.setNodeCount((Integer) value);
+						return old;
+					}
+					case 1:
+					{
+						long old = EngLogLimitsReport.this.getPostExpandIncludeSize();
+						EngLogLimitsReport.this.setPostExpandIncludeSize((Long) value);
+						return old;
+					}
+					case 2:
+					{
+						long old = EngLogLimitsReport.this.getTemplateArgumentSize();
+						EngLogLimitsReport.this.setTemplateArgumentSize((Long) value);
+						return old;
+					}
+					case 3:
+					{
+						int old = EngLogLimitsReport.this.getExpansionDepth();
+						EngLogLimitsReport.this.setExpansionDepth((Integer) value);
+						return old;
+					}
+					case 4:
+					{
+						int old = EngLogLimitsReport.this.getExpensiveFunctionCount();
+						EngLogLimitsReport.this.setExpensiveFunctionCount((Integer) value);
+						return old;
+					}
+					case 5:
+					{
+						long old = EngLogLimitsReport.this.getTimeNeeded();
+						EngLogLimitsReport.this.setTimeNeeded((Long) value);
+						return old;
+					}
+					case 6:
+					{
+						String old = EngLogLimitsReport.this.getExceededLimits();
+						EngLogLimitsReport.this.setExceededLimits((String) value);
+						return old;
+					}
+					
+					default:
+						throw new IndexOutOfBoundsException();
+				}
+			}
+		};
+	}
+}
@@ -75,68 +75,72 @@ public abstract class EngLogTargetResolution
 	}
 	
 	@Override
-	public final AstNodePropertyIterator propertyIterator()
+	public AstNodePropertyIterator propertyIterator()
 	{
-		return new EngLogResolutionPropertyIterator()
+		return new EngLogTargetResolutionPropertyIterator();
+	}
+	
+	protected class EngLogTargetResolutionPropertyIterator
+			extends
+				EngLogResolutionPropertyIterator
+	{
+		@Override
+		protected int getPropertyCount()
+		{
+			return EngLogTargetResolution.this.getPropertyCount();
+		}
+		
+		@Override
+		protected String getName(int index)
 		{
-			@Override
-			protected int getPropertyCount()
+			switch (index - getSuperPropertyCount())
 			{
-				return EngLogTargetResolution.this.getPropertyCount();
+				case 0:
+					return "target";
+				case 1:
+					return "canonical";
+					
+				default:
+					return super.getName(index);
 			}
-			
-			@Override
-			protected String getName(int index)
+		}
+		
+		@Override
+		protected Object getValue(int index)
+		{
+			switch (index - getSuperPropertyCount())
 			{
-				switch (index - getSuperPropertyCount())
-				{
-					case 0:
-						return "target";
-					case 1:
-						return "canonical";
-						
-					default:
-						return super.getName(index);
-				}
+				case 0:
+					return EngLogTargetResolution.this.getTarget();
+				case 1:
+					return EngLogTargetResolution.this.getCanonical();
+					
+				default:
+					return super.getValue(index);
 			}
-			
-			@Override
-			protected Object getValue(int index)
+		}
+		
+		@Override
+		protected Object setValue(int index, Object value)
+		{
+			switch (index - getSuperPropertyCount())
 			{
-				switch (index - getSuperPropertyCount())
+				case 0:
 				{
-					case 0:
-						return EngLogTargetResolution.this.getTarget();
-					case 1:
-						return EngLogTargetResolution.this.getCanonical();
-						
-					default:
-						return super.getValue(index);
+					String old = EngLogTargetResolution.this.getTarget();
+					EngLogTargetResolution.this.setTarget((String) value);
+					return old;
 				}
-			}
-			
-			@Override
-			protected Object setValue(int index, Object value)
-			{
-				switch (index - getSuperPropertyCount())
+				case 1:
 				{
-					case 0:
-					{
-						String old = EngLogTargetResolution.this.getTarget();
-						EngLogTargetResolution.this.setTarget((String) value);
-						return old;
-					}
-					case 1:
-					{
-						String old = EngLogTargetResolution.this.getCanonical();
-						EngLogTargetResolution.this.setCanonical((String) value);
-						return old;
-					}
-					
-					default:
-						return super.setValue(index, value);
+					String old = EngLogTargetResolution.this.getCanonical();
+					EngLogTargetResolution.this.setCanonical((String) value);
+					return old;
 				}
+				
+				default:
+					return super.setValue(index, value);
 			}
-		};
+		}
 	}
 }
@@ -16,6 +16,8 @@
  */
 package org.sweble.wikitext.engine.nodes;
 
+import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+
 public class EngLogTransclusionResolution
 		extends
 			EngLogTargetResolution
@@ -32,4 +34,142 @@ public class EngLogTransclusionResolution
 	{
 		super(target, success);
 	}
+	
+	// =========================================================================
+	// Properties
+	
+	private int argumentCount;
+	
+	/**
+	 * The number of arguments passed to the transcluded page.
+	 */
+	public final int getArgumentCount()
+	{
+		return this.argumentCount;
+	}
+	
+	public final void setArgumentCount(int argumentCount)
+	{
+		this.argumentCount = argumentCount;
+	}
+	
+	private int unexpandedArgumentCount;
+	
+	/**
+	 * The number of arguments which were never referenced by the transcluded
+	 * page and therefore never had to be expanded.
+	 */
+	public final int getUnexpandedArgumentCount()
+	{
+		return this.unexpandedArgumentCount;
+	}
+	
+	public final void setUnexpandedArgumentCount(int unexpandedArgumentCount)
+	{
+		this.unexpandedArgumentCount = unexpandedArgumentCount;
+	}
+	
+	private boolean memoized;
+	
+	/**
+	 * Whether the result of the transclusion was taken from the template
+	 * invocation cache. The log of a memoized transclusion only contains an
+	 * empty processing pass for the transcluded page.
+	 */
+	public final boolean isMemoized()
+	{
+		return this.memoized;
+	}
+	
+	public final void setMemoized(boolean memoized)
+	{
+		this.memoized = memoized;
+	}
+	
+	@Override
+	public final int getPropertyCount()
+	{
+		return 3 + getSuperPropertyCount();
+	}
+	
+	private final int getSuperPropertyCount()
+	{
+		return super.getPropertyCount();
+	}
+	
+	@Override
+	public final AstNodePropertyIterator propertyIterator()
+	{
+		return new EngLogTargetResolutionPropertyIterator()
+		{
+			@Override
+			protected int getPropertyCount()
+			{
+				return EngLogTransclusionResolution.this.getPropertyCount();
+			}
+			
+			@Override
+			protected String getName(int index)
+			{
+				switch (index - getSuperPropertyCount())
+				{
+					case 0:
+						return "argumentCount";
+					case 1:
+						return "unexpandedArgumentCount";
+					case 2:
+						return "memoized";
+						
+					default:
+						return super.getName(index);
+				}
+			}
+			
+			@Override
+			protected Object getValue(int index)
+			{
+				switch (index - getSuperPropertyCount())
+				{
+					case 0:
+						return EngLogTransclusionResolution.this.getArgumentCount();
+					case 1:
+						return EngLogTransclusionResolution.this.getUnexpandedArgumentCount();
+					case 2:
+						return EngLogTransclusionResolution.this.isMemoized();
+						
+					default:
+						return super.getValue(index);
+				}
+			}
+			
+			@Override
+			protected Object setValue(int index, Object value)
+			{
+				switch (index - getSuperPropertyCount())
+				{
+					case 0:
+					{
+						int old = EngLogTransclusionResolution.this.getArgumentCount();
+						EngLogTransclusionResolution.this.setArgumentCount((Integer) value);
+						return old;
+					}
+					case 1:
+					{
+						int old = EngLogTransclusionResolution.this.getUnexpandedArgumentCount();
+						EngLogTransclusionResolution.this.setUnexpandedArgumentCount((Integer) value);
+						return old;
+					}
+					case 2:
+					{
+						boolean old = EngLogTransclusionResolution.this.isMemoized();
+						EngLogTransclusionResolution.this.setMemoized((Boolean) value);
+						return old;
+					}
+					
+					default:
+						return super.setValue(index, value);
+				}
+			}
+		};
+	}
 }
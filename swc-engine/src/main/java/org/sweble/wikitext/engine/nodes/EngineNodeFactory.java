@@ -95,6 +95,8 @@ public interface EngineNodeFactory
 	
 	EngLogUnhandledError logUnhandledError(Throwable exception, String dump);
 	
+	EngLogLimitsReport logLimitsReport();
+	
 	// --[ Modification ]-------------------------------------------------------
 	
 	<T extends WtXmlElement> T addCssClass(T elem, String cssClass);
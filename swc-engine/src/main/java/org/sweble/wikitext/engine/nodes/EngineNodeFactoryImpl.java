@@ -212,6 +212,12 @@ public final class EngineNodeFactoryImpl
 		return new EngLogUnhandledError(exception, dump);
 	}
 	
+	@Override
+	public EngLogLimitsReport logLimitsReport()
+	{
+		return new EngLogLimitsReport();
+	}
+	
 	// --[ Modification ]-------------------------------------------------------
 	
 	@Override
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.output;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.sweble.wikitext.engine.PageTitle;
+
+/**
+ * A renderer callback that can look up the existence of many link targets at
+ * once. The {@link HtmlRenderer} collects the targets of a page before
+ * rendering and resolves all of them with a single call to
+ * {@link #resourcesExist(Collection)} instead of calling
+ * {@link #resourceExists(PageTitle)} once per link.
+ */
+public interface BatchHtmlRendererCallback
+		extends
+			HtmlRendererCallback
+{
+	/**
+	 * Determines which of the given targets exist.
+	 * 
+	 * @return A map from target to existence. Targets missing from the map are
+	 *         looked up individually using {@link #resourceExists(PageTitle)}
+	 *         when the renderer encounters them.
+	 */
+	public Map<PageTitle, Boolean> resourcesExist(Collection<PageTitle> targets) throws Exception;
+}
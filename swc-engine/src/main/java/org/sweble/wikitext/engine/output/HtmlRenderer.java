@@ -238,7 +238,7 @@ public class HtmlRenderer
 		PageTitle target;
 		try
 		{
-			target = PageTitle.make(wikiConfig, n.getTarget().getAsString());
+			target = makeTitle(n.getTarget().getAsString());
 		}
 		catch (LinkTargetException e)
 		{
@@ -343,7 +343,7 @@ public class HtmlRenderer
 				{
 					try
 					{
-						linkTarget = PageTitle.make(wikiConfig, pageName.getAsString());
+						linkTarget = makeTitle(pageName.getAsString());
 					}
 					catch (LinkTargetException e)
 					{
@@ -569,7 +569,7 @@ public class HtmlRenderer
 		PageTitle target;
 		try
 		{
-			target = PageTitle.make(wikiConfig, n.getTarget().getAsString());
+			target = makeTitle(n.getTarget().getAsString());
 		}
 		catch (LinkTargetException e)
 		{
@@ -580,7 +580,7 @@ public class HtmlRenderer
 		if (target.getNamespace() == wikiConfig.getNamespace("Category"))
 			return;
 		
-		if (!callback.resourceExists(target))
+		if (!resourceExists(target))
 		{
 			String title = target.getDenormalizedFullTitle();
 			
@@ -1463,6 +1463,32 @@ public class HtmlRenderer
 	
 	// =========================================================================
 	
+	protected PageTitle makeTitle(String target) throws LinkTargetException
+	{
+		PageTitle title = linkTargets.getTitle(target);
+		if (title == null)
+			title = PageTitle.make(wikiConfig, target);
+		return title;
+	}
+	
+	/**
+	 * Looks up the existence of a target in the resolved link targets first.
+	 * Only targets that were not resolved in advance are passed to the
+	 * callback, and each of them only once.
+	 */
+	protected boolean resourceExists(PageTitle target)
+	{
+		Boolean exists = linkTargets.exists(target);
+		if (exists == null)
+		{
+			exists = callback.resourceExists(target);
+			linkTargets.setExists(target, exists);
+		}
+		return exists;
+	}
+	
+	// =========================================================================
+	
 	public static <T extends WtNode> String print(
 			HtmlRendererCallback callback,
 			WikiConfig wikiConfig,
@@ -1479,7 +1505,43 @@ public class HtmlRenderer
 			PageTitle pageTitle,
 			T node)
 	{
-		new HtmlRenderer(callback, wikiConfig, pageTitle, writer).go(node);
+		LinkTargets linkTargets = LinkTargets.collect(wikiConfig, node);
+		try
+		{
+			linkTargets.resolve(callback);
+		}
+		catch (Exception e)
+		{
+			throw new VisitingException(e);
+		}
+		
+		return print(callback, wikiConfig, writer, pageTitle, node, linkTargets);
+	}
+	
+	/**
+	 * Renders a node using link targets which were collected and resolved in
+	 * advance, e.g. using
+	 * {@link LinkTargets#resolveAsync(HtmlRendererCallback, java.util.concurrent.Executor)}.
+	 */
+	public static <T extends WtNode> String print(
+			HtmlRendererCallback callback,
+			WikiConfig wikiConfig,
+			PageTitle pageTitle,
+			T node,
+			LinkTargets linkTargets)
+	{
+		return print(callback, wikiConfig, new StringWriter(), pageTitle, node, linkTargets).toString();
+	}
+	
+	public static <T extends WtNode> Writer print(
+			HtmlRendererCallback callback,
+			WikiConfig wikiConfig,
+			Writer writer,
+			PageTitle pageTitle,
+			T node,
+			LinkTargets linkTargets)
+	{
+		new HtmlRenderer(callback, wikiConfig, pageTitle, writer, linkTargets).go(node);
 		return writer;
 	}
 	
@@ -1499,6 +1561,8 @@ public class HtmlRenderer
 	
 	protected final HtmlRendererCallback callback;
 	
+	protected final LinkTargets linkTargets;
+	
 	protected int inPre = 0;
 	
 	static
@@ -1547,6 +1611,16 @@ public class HtmlRenderer
 			WikiConfig wikiConfig,
 			PageTitle pageTitle,
 			Writer w)
+	{
+		this(callback, wikiConfig, pageTitle, w, LinkTargets.empty());
+	}
+	
+	protected HtmlRenderer(
+			HtmlRendererCallback callback,
+			WikiConfig wikiConfig,
+			PageTitle pageTitle,
+			Writer w,
+			LinkTargets linkTargets)
 	{
 		super(w);
 		this.callback = callback;
@@ -1554,5 +1628,6 @@ public class HtmlRenderer
 		this.pageTitle = pageTitle;
 		this.nf = wikiConfig.getNodeFactory();
 		this.tu = wikiConfig.getAstTextUtils();
+		this.linkTargets = linkTargets;
 	}
 }
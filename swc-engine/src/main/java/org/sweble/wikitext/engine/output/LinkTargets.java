@@ -0,0 +1,299 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.output;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.config.Namespace;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.parser.nodes.WtImageLink;
+import org.sweble.wikitext.parser.nodes.WtInternalLink;
+import org.sweble.wikitext.parser.nodes.WtLinkTarget.LinkTargetType;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtPageName;
+import org.sweble.wikitext.parser.parser.LinkTargetException;
+
+import de.fau.cs.osr.ptk.common.AstVisitor;
+
+/**
+ * The link targets of a page, gathered in a pass over the AST before the page
+ * is rendered. Each distinct target string is parsed into a {@link PageTitle}
+ * only once and the existence of all targets can be resolved with a single
+ * call to a {@link BatchHtmlRendererCallback}.
+ * 
+ * Instances are not thread-safe. Once {@link #resolve(HtmlRendererCallback)}
+ * returned, or the future returned by
+ * {@link #resolveAsync(HtmlRendererCallback, Executor)} completed, the targets
+ * can be handed to another thread for rendering.
+ */
+public final class LinkTargets
+{
+	private final Map<String, PageTitle> titles =
+			new HashMap<String, PageTitle>();
+	
+	private final Set<PageTitle> linkTargets = new LinkedHashSet<PageTitle>();
+	
+	private final Set<PageTitle> categories = new LinkedHashSet<PageTitle>();
+	
+	private final Set<PageTitle> images = new LinkedHashSet<PageTitle>();
+	
+	private final Map<PageTitle, Boolean> exists =
+			new HashMap<PageTitle, Boolean>();
+	
+	// =========================================================================
+	
+	private LinkTargets()
+	{
+	}
+	
+	/**
+	 * Collects the targets of all internal links, category links and image
+	 * links (including the pages images link to) in the given AST. Targets
+	 * which cannot be parsed into a page title are skipped; the renderer
+	 * reports them when it encounters them.
+	 */
+	public static LinkTargets collect(WikiConfig wikiConfig, WtNode node)
+	{
+		LinkTargets targets = new LinkTargets();
+		new LinkTargetCollector(wikiConfig, targets).go(node);
+		return targets;
+	}
+	
+	/**
+	 * Returns an empty set of targets. All lookups will fall through to the
+	 * renderer callback.
+	 */
+	public static LinkTargets empty()
+	{
+		return new LinkTargets();
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Returns the page title for the given link target string or null if the
+	 * target was not collected.
+	 */
+	public PageTitle getTitle(String target)
+	{
+		return titles.get(target);
+	}
+	
+	public Set<PageTitle> getLinkTargets()
+	{
+		return Collections.unmodifiableSet(linkTargets);
+	}
+	
+	public Set<PageTitle> getCategories()
+	{
+		return Collections.unmodifiableSet(categories);
+	}
+	
+	public Set<PageTitle> getImages()
+	{
+		return Collections.unmodifiableSet(images);
+	}
+	
+	/**
+	 * Returns all distinct collected targets.
+	 */
+	public Set<PageTitle> getAll()
+	{
+		Set<PageTitle> all = new LinkedHashSet<PageTitle>(linkTargets);
+		all.addAll(categories);
+		all.addAll(images);
+		return all;
+	}
+	
+	/**
+	 * Returns whether the given target exists or null if its existence has not
+	 * been resolved.
+	 */
+	public Boolean exists(PageTitle target)
+	{
+		return exists.get(target);
+	}
+	
+	/**
+	 * Remembers the existence of a target which was looked up individually.
+	 */
+	void setExists(PageTitle target, boolean exists)
+	{
+		this.exists.put(target, exists);
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Resolves the existence of all collected targets with one call to the
+	 * callback if it is a {@link BatchHtmlRendererCallback}. Otherwise nothing
+	 * is resolved in advance and the renderer will look up each distinct
+	 * target individually.
+	 * 
+	 * @return This object.
+	 */
+	public LinkTargets resolve(HtmlRendererCallback callback) throws Exception
+	{
+		if (!(callback instanceof BatchHtmlRendererCallback))
+			return this;
+		
+		Set<PageTitle> all = getAll();
+		if (all.isEmpty())
+			return this;
+		
+		Map<PageTitle, Boolean> result =
+				((BatchHtmlRendererCallback) callback).resourcesExist(all);
+		
+		if (result != null)
+			exists.putAll(result);
+		
+		return this;
+	}
+	
+	/**
+	 * Resolves the existence of all collected targets on the given executor.
+	 * This allows the caller to overlap the lookup with other work, e.g. the
+	 * processing of the next page.
+	 * 
+	 * @return A future that yields this object once the targets are resolved.
+	 */
+	public Future<LinkTargets> resolveAsync(
+			final HtmlRendererCallback callback,
+			Executor executor)
+	{
+		FutureTask<LinkTargets> task = new FutureTask<LinkTargets>(
+				new Callable<LinkTargets>()
+				{
+					@Override
+					public LinkTargets call() throws Exception
+					{
+						return resolve(callback);
+					}
+				});
+		
+		executor.execute(task);
+		return task;
+	}
+	
+	/**
+	 * Returns the number of resolved targets.
+	 */
+	public int getResolvedCount()
+	{
+		return exists.size();
+	}
+	
+	// =========================================================================
+	
+	protected static final class LinkTargetCollector
+			extends
+				AstVisitor<WtNode>
+	{
+		private final WikiConfig wikiConfig;
+		
+		private final Namespace categoryNamespace;
+		
+		private final LinkTargets targets;
+		
+		// =====================================================================
+		
+		public LinkTargetCollector(WikiConfig wikiConfig, LinkTargets targets)
+		{
+			this.wikiConfig = wikiConfig;
+			this.categoryNamespace = wikiConfig.getNamespace("Category");
+			this.targets = targets;
+		}
+		
+		// =====================================================================
+		
+		public void visit(WtNode n)
+		{
+			iterate(n);
+		}
+		
+		public void visit(WtInternalLink n)
+		{
+			if (n.getTarget().isResolved())
+			{
+				PageTitle target = makeTitle(n.getTarget().getAsString());
+				if (target != null)
+				{
+					if (target.getNamespace() == categoryNamespace)
+						targets.categories.add(target);
+					else
+						targets.linkTargets.add(target);
+				}
+			}
+			
+			iterate(n);
+		}
+		
+		public void visit(WtImageLink n)
+		{
+			if (n.getTarget().isResolved())
+			{
+				PageTitle target = makeTitle(n.getTarget().getAsString());
+				if (target != null)
+					targets.images.add(target);
+			}
+			
+			if (n.getLink().getTargetType() == LinkTargetType.PAGE)
+			{
+				WtPageName pageName = (WtPageName) n.getLink().getTarget();
+				if (pageName.isResolved())
+				{
+					PageTitle target = makeTitle(pageName.getAsString());
+					if (target != null)
+						targets.linkTargets.add(target);
+				}
+			}
+			
+			iterate(n);
+		}
+		
+		private PageTitle makeTitle(String target)
+		{
+			if (targets.titles.containsKey(target))
+				return targets.titles.get(target);
+			
+			PageTitle title;
+			try
+			{
+				title = PageTitle.make(wikiConfig, target);
+			}
+			catch (LinkTargetException e)
+			{
+				// The renderer will report the broken target
+				title = null;
+			}
+			
+			if (title != null)
+				targets.titles.put(target, title);
+			return title;
+		}
+	}
+}
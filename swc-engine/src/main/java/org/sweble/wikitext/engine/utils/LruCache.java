@@ -0,0 +1,143 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe map which evicts the least recently used entry once
+ * the maximum number of entries is exceeded. Lookups are counted as hits or
+ * misses.
+ */
+public class LruCache<K, V>
+{
+	private final int maxEntries;
+	
+	private final LinkedHashMap<K, V> cache;
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	private final AtomicLong evictions = new AtomicLong();
+	
+	// =========================================================================
+	
+	public LruCache(int maxEntries)
+	{
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries must be at least 1");
+		
+		this.maxEntries = maxEntries;
+		
+		this.cache = new LinkedHashMap<K, V>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+			{
+				if (size() > LruCache.this.maxEntries)
+				{
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	// =========================================================================
+	
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+	
+	/**
+	 * @return The cached value or null if the key is not in the cache.
+	 */
+	public V get(K key)
+	{
+		V value;
+		synchronized (cache)
+		{
+			value = cache.get(key);
+		}
+		
+		if (value != null)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		
+		return value;
+	}
+	
+	public void put(K key, V value)
+	{
+		synchronized (cache)
+		{
+			cache.put(key, value);
+		}
+	}
+	
+	public void clear()
+	{
+		synchronized (cache)
+		{
+			cache.clear();
+		}
+	}
+	
+	public int size()
+	{
+		synchronized (cache)
+		{
+			return cache.size();
+		}
+	}
+	
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+	
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+	
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"[size=%d, maxEntries=%d, hits=%d, misses=%d, evictions=%d]",
+				size(),
+				maxEntries,
+				getHitCount(),
+				getMissCount(),
+				getEvictionCount());
+	}
+}
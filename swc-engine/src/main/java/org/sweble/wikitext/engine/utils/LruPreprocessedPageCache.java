@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import org.sweble.wikitext.engine.FullPreprocessedPage;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PreprocessedPageCache;
+
+/**
+ * A bounded, thread-safe preprocessed page cache which evicts the least
+ * recently used page once the maximum number of entries is exceeded.
+ */
+public class LruPreprocessedPageCache
+		implements
+			PreprocessedPageCache
+{
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+	
+	// =========================================================================
+	
+	private final LruCache<CacheKey, FullPreprocessedPage> cache;
+	
+	// =========================================================================
+	
+	public LruPreprocessedPageCache()
+	{
+		this(DEFAULT_MAX_ENTRIES);
+	}
+	
+	public LruPreprocessedPageCache(int maxEntries)
+	{
+		this.cache = new LruCache<CacheKey, FullPreprocessedPage>(maxEntries);
+	}
+	
+	// =========================================================================
+	
+	public int getMaxEntries()
+	{
+		return cache.getMaxEntries();
+	}
+	
+	@Override
+	public FullPreprocessedPage get(PageId pageId, boolean forInclusion)
+	{
+		return cache.get(new CacheKey(pageId, forInclusion));
+	}
+	
+	@Override
+	public void put(FullPreprocessedPage page)
+	{
+		cache.put(new CacheKey(page.getId(), page.isForInclusion()), page);
+	}
+	
+	@Override
+	public void clear()
+	{
+		cache.clear();
+	}
+	
+	@Override
+	public int size()
+	{
+		return cache.size();
+	}
+	
+	@Override
+	public long getHitCount()
+	{
+		return cache.getHitCount();
+	}
+	
+	@Override
+	public long getMissCount()
+	{
+		return cache.getMissCount();
+	}
+	
+	@Override
+	public long getEvictionCount()
+	{
+		return cache.getEvictionCount();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "LruPreprocessedPageCache " + cache;
+	}
+	
+	// =========================================================================
+	
+	private static final class CacheKey
+	{
+		private final PageId pageId;
+		
+		private final boolean forInclusion;
+		
+		public CacheKey(PageId pageId, boolean forInclusion)
+		{
+			this.pageId = pageId;
+			this.forInclusion = forInclusion;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (forInclusion ? 1231 : 1237);
+			result = prime * result + ((pageId == null) ? 0 : pageId.hashCode());
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CacheKey other = (CacheKey) obj;
+			if (forInclusion != other.forInclusion)
+				return false;
+			if (pageId == null)
+			{
+				if (other.pageId != null)
+					return false;
+			}
+			else if (!pageId.equals(other.pageId))
+				return false;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import org.sweble.wikitext.engine.MemoizedTransclusion;
+import org.sweble.wikitext.engine.TemplateInvocation;
+import org.sweble.wikitext.engine.TemplateInvocationCache;
+
+/**
+ * A bounded, thread-safe template invocation cache which evicts the least
+ * recently used result once the maximum number of entries is exceeded.
+ */
+public class LruTemplateInvocationCache
+		implements
+			TemplateInvocationCache
+{
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+	
+	// =========================================================================
+	
+	private final LruCache<TemplateInvocation, MemoizedTransclusion> cache;
+	
+	// =========================================================================
+	
+	public LruTemplateInvocationCache()
+	{
+		this(DEFAULT_MAX_ENTRIES);
+	}
+	
+	public LruTemplateInvocationCache(int maxEntries)
+	{
+		this.cache = new LruCache<TemplateInvocation, MemoizedTransclusion>(maxEntries);
+	}
+	
+	// =========================================================================
+	
+	public int getMaxEntries()
+	{
+		return cache.getMaxEntries();
+	}
+	
+	@Override
+	public MemoizedTransclusion get(TemplateInvocation invocation)
+	{
+		return cache.get(invocation);
+	}
+	
+	@Override
+	public void put(TemplateInvocation invocation, MemoizedTransclusion result)
+	{
+		cache.put(invocation, result);
+	}
+	
+	@Override
+	public void clear()
+	{
+		cache.clear();
+	}
+	
+	@Override
+	public int size()
+	{
+		return cache.size();
+	}
+	
+	@Override
+	public long getHitCount()
+	{
+		return cache.getHitCount();
+	}
+	
+	@Override
+	public long getMissCount()
+	{
+		return cache.getMissCount();
+	}
+	
+	@Override
+	public long getEvictionCount()
+	{
+		return cache.getEvictionCount();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "LruTemplateInvocationCache " + cache;
+	}
+}
@@ -19,6 +19,7 @@ package org.sweble.wikitext.engine.utils;
 import org.sweble.wikitext.engine.ExpansionCallback;
 import org.sweble.wikitext.engine.ExpansionFrame;
 import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.FullPreprocessedPage;
 import org.sweble.wikitext.engine.PageId;
 import org.sweble.wikitext.engine.PageTitle;
 import org.sweble.wikitext.engine.WtEngineImpl;
@@ -125,5 +126,21 @@ public class WtEngineToolbox
 		{
 			return null;
 		}
+		
+		@Override
+		public FullPreprocessedPage retrievePreprocessedPage(
+				ExpansionFrame expansionFrame,
+				PageId pageId,
+				boolean forInclusion) throws Exception
+		{
+			return null;
+		}
+		
+		@Override
+		public void cachePreprocessedPage(
+				ExpansionFrame expansionFrame,
+				FullPreprocessedPage page) throws Exception
+		{
+		}
 	}
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.InMemoryExpansionCallback;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+
+public class ConcurrentProcessingTest
+{
+	private static final String WIKITEXT = "" +
+			"#REDIRECT [[Target]]\n" +
+			"\n" +
+			"== {{Flag|de}} ==\n" +
+			"\n" +
+			"{{Deep1}} {{Flag|fr}} {{Flag|de}} {{#ifexist:Foo|yes|no}}\n" +
+			"\n" +
+			"* {{#if: {{{1|}}} | one | two }} [[Link|{{Flag|it}}]]\n";
+	
+	private static final int ROUNDS = 20;
+	
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	private final InMemoryExpansionCallback callback = new InMemoryExpansionCallback(1)
+			.put("Template:Flag", "flag-{{{1}}}")
+			.put("Template:Deep1", "1 {{Deep2}}")
+			.put("Template:Deep2", "2 {{Deep3}}")
+			.put("Template:Deep3", "3")
+			.put("Target", "target {{Flag|en}}");
+	
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+	
+	// =========================================================================
+	
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void testConcurrentRequestsWithDifferentOptions() throws Exception
+	{
+		List<EngineOptions> options = new ArrayList<EngineOptions>();
+		options.add(EngineOptions.DEFAULT);
+		options.add(EngineOptions.DEFAULT.withNoRedirect(true));
+		options.add(EngineOptions.DEFAULT.withSinglePassValidation(true));
+		options.add(EngineOptions.DEFAULT.withTemplateMemoization(true));
+		options.add(EngineOptions.DEFAULT.withLimits(
+				ExpansionLimits.UNLIMITED.withMaxExpansionDepth(2)));
+		options.add(EngineOptions.DEFAULT
+				.withNoRedirect(true)
+				.withLimits(ExpansionLimits.MEDIAWIKI_DEFAULTS));
+		
+		// Expected results, one request after another
+		List<EngProcessedPage> expected = new ArrayList<EngProcessedPage>();
+		for (EngineOptions o : options)
+			expected.add(process(o));
+		
+		// All requests at once on the same engine, interleaving the options
+		List<Future<EngProcessedPage>> actual = new ArrayList<Future<EngProcessedPage>>();
+		for (int i = 0; i < ROUNDS; ++i)
+		{
+			for (final EngineOptions o : options)
+			{
+				actual.add(executor.submit(new Callable<EngProcessedPage>()
+				{
+					@Override
+					public EngProcessedPage call() throws Exception
+					{
+						return process(o);
+					}
+				}));
+			}
+		}
+		
+		for (int i = 0; i < actual.size(); ++i)
+		{
+			EngProcessedPage e = expected.get(i % options.size());
+			EngProcessedPage a = actual.get(i).get();
+			WtComparer.compareAndThrow(e.getPage(), a.getPage(), false, true);
+		}
+	}
+	
+	// =========================================================================
+	
+	private EngProcessedPage process(EngineOptions options) throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		return engine.postprocess(pageId, WIKITEXT, callback, options);
+	}
+}
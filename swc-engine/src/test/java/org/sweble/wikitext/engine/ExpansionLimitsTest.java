@@ -0,0 +1,260 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngLogLimitsReport;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.nodes.EngSoftErrorNode;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.InMemoryExpansionCallback;
+import org.sweble.wikitext.engine.utils.LruTemplateInvocationCache;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+public class ExpansionLimitsTest
+{
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	private final InMemoryExpansionCallback callback = new InMemoryExpansionCallback(1)
+			.put("Template:Flag", "flag-{{{1}}}")
+			.put("Template:Deep1", "1 {{Deep2}}")
+			.put("Template:Deep2", "2 {{Deep3}}")
+			.put("Template:Deep3", "3")
+			.put("Template:Wrap", "{{Deep1}}")
+			.put("Template:Outer", "<{{Flag|de}}>");
+	
+	// =========================================================================
+	
+	@Test
+	public void testNoReportWithoutLimits() throws Exception
+	{
+		EngProcessedPage page = process("{{Flag|de}}", EngineOptions.DEFAULT);
+		
+		assertNull(findReport(page));
+		assertEquals(0, countSoftErrors(page.getPage()));
+	}
+	
+	@Test
+	public void testReportWithinLimits() throws Exception
+	{
+		EngProcessedPage page = process(
+				"{{Deep1}} {{Flag|de}} {{#ifexist:Foo|yes|no}}",
+				EngineOptions.DEFAULT.withLimits(ExpansionLimits.MEDIAWIKI_DEFAULTS));
+		
+		EngLogLimitsReport report = findReport(page);
+		assertNotNull(report);
+		assertEquals("", report.getExceededLimits());
+		assertEquals(3, report.getExpansionDepth());
+		assertEquals(1, report.getExpensiveFunctionCount());
+		assertTrue(report.getNodeCount() > 0);
+		assertTrue(report.getPostExpandIncludeSize() > 0);
+		assertTrue(report.getTemplateArgumentSize() > 0);
+		assertEquals(0, countSoftErrors(page.getPage()));
+	}
+	
+	@Test
+	public void testExpansionDepthLimit() throws Exception
+	{
+		EngProcessedPage page = process(
+				"{{Deep1}}",
+				EngineOptions.DEFAULT.withLimits(
+						ExpansionLimits.UNLIMITED.withMaxExpansionDepth(2)));
+		
+		EngLogLimitsReport report = findReport(page);
+		assertEquals("expansion depth", report.getExceededLimits());
+		assertEquals(2, report.getExpansionDepth());
+		assertEquals(1, countSoftErrors(page.getPage()));
+	}
+	
+	@Test
+	public void testExpensiveFunctionLimit() throws Exception
+	{
+		EngProcessedPage page = process(
+				"{{#ifexist:A|y|n}} {{#ifexist:B|y|n}} {{#ifexist:C|y|n}}",
+				EngineOptions.DEFAULT.withLimits(
+						ExpansionLimits.UNLIMITED.withMaxExpensiveFunctionCount(2)));
+		
+		EngLogLimitsReport report = findReport(page);
+		assertEquals("expensive parser function count", report.getExceededLimits());
+		assertEquals(2, report.getExpensiveFunctionCount());
+		assertEquals(1, countSoftErrors(page.getPage()));
+	}
+	
+	@Test
+	public void testPostExpandIncludeSizeLimit() throws Exception
+	{
+		// Each flag expands to "flag-xx" (7 characters)
+		EngProcessedPage page = process(
+				"{{Flag|de}} {{Flag|fr}}",
+				EngineOptions.DEFAULT.withLimits(
+						ExpansionLimits.UNLIMITED.withMaxPostExpandIncludeSize(10)));
+		
+		EngLogLimitsReport report = findReport(page);
+		assertEquals("post-expand include size", report.getExceededLimits());
+		assertEquals(7, report.getPostExpandIncludeSize());
+		assertEquals(1, countSoftErrors(page.getPage()));
+	}
+	
+	@Test
+	public void testTemplateArgumentSizeLimit() throws Exception
+	{
+		EngProcessedPage page = process(
+				"{{Flag|de}} {{Flag|a much longer argument}}",
+				EngineOptions.DEFAULT.withLimits(
+						ExpansionLimits.UNLIMITED.withMaxTemplateArgumentSize(10)));
+		
+		EngLogLimitsReport report = findReport(page);
+		assertEquals("template argument size", report.getExceededLimits());
+		assertEquals(2, report.getTemplateArgumentSize());
+		assertEquals(1, countSoftErrors(page.getPage()));
+	}
+	
+	@Test
+	public void testNodeCountLimit() throws Exception
+	{
+		EngProcessedPage page = process(
+				"{{Flag|de}} {{Flag|fr}}",
+				EngineOptions.DEFAULT.withLimits(
+						ExpansionLimits.UNLIMITED.withMaxNodeCount(1)));
+		
+		EngLogLimitsReport report = findReport(page);
+		assertEquals("node count", report.getExceededLimits());
+		assertEquals(2, countSoftErrors(page.getPage()));
+	}
+	
+	@Test
+	public void testMemoizedTransclusionsAreChargedAgain() throws Exception
+	{
+		LruTemplateInvocationCache cache = new LruTemplateInvocationCache();
+		
+		ExpansionLimits limits = ExpansionLimits.MEDIAWIKI_DEFAULTS;
+		String wikitext = "{{Deep1}} {{Outer}} {{Deep1}} {{Outer}}";
+		
+		EngLogLimitsReport expected = findReport(process(
+				wikitext,
+				EngineOptions.DEFAULT.withLimits(limits)));
+		
+		EngLogLimitsReport actual = findReport(process(
+				wikitext,
+				EngineOptions.DEFAULT
+						.withLimits(limits)
+						.withTemplateMemoization(true)
+						.withTemplateCache(cache)));
+		
+		assertEquals(2, cache.getHitCount());
+		assertEquals("", actual.getExceededLimits());
+		assertEquals(expected.getNodeCount(), actual.getNodeCount());
+		assertEquals(expected.getExpansionDepth(), actual.getExpansionDepth());
+		assertEquals(expected.getPostExpandIncludeSize(), actual.getPostExpandIncludeSize());
+		assertEquals(expected.getTemplateArgumentSize(), actual.getTemplateArgumentSize());
+	}
+	
+	@Test
+	public void testMemoizedTransclusionExceedsDepthLimit() throws Exception
+	{
+		// Deep1 is memoized at depth one and needs two more levels. Reused
+		// inside Wrap it would reach depth four.
+		assertMemoizationDoesNotChangeResult(
+				"{{Deep1}} {{Wrap}}",
+				ExpansionLimits.UNLIMITED.withMaxExpansionDepth(3),
+				"expansion depth");
+	}
+	
+	@Test
+	public void testMemoizedTransclusionExceedsIncludeSizeLimit() throws Exception
+	{
+		// Outer includes "flag-de" (7) and "<flag-de>" (9)
+		assertMemoizationDoesNotChangeResult(
+				"{{Outer}} {{Outer}}",
+				ExpansionLimits.UNLIMITED.withMaxPostExpandIncludeSize(20),
+				"post-expand include size");
+	}
+	
+	@Test
+	public void testMemoizationDoesNotReportLimits() throws Exception
+	{
+		EngProcessedPage page = process(
+				"{{Deep1}} {{Deep1}}",
+				EngineOptions.DEFAULT.withTemplateMemoization(true));
+		
+		assertNull(findReport(page));
+	}
+	
+	// =========================================================================
+	
+	private void assertMemoizationDoesNotChangeResult(
+			String wikitext,
+			ExpansionLimits limits,
+			String exceededLimit) throws Exception
+	{
+		LruTemplateInvocationCache cache = new LruTemplateInvocationCache();
+		
+		EngProcessedPage expected = process(
+				wikitext,
+				EngineOptions.DEFAULT.withLimits(limits));
+		
+		EngProcessedPage actual = process(
+				wikitext,
+				EngineOptions.DEFAULT
+						.withLimits(limits)
+						.withTemplateMemoization(true)
+						.withTemplateCache(cache));
+		
+		// The memoized result did not fit and the page was expanded again
+		assertTrue(cache.getHitCount() > 0);
+		
+		assertEquals(exceededLimit, findReport(expected).getExceededLimits());
+		assertEquals(exceededLimit, findReport(actual).getExceededLimits());
+		assertEquals(1, countSoftErrors(actual.getPage()));
+		
+		WtComparer.compareAndThrow(expected.getPage(), actual.getPage(), false, true);
+	}
+	
+	private EngProcessedPage process(String wikitext, EngineOptions options) throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		return engine.postprocess(pageId, wikitext, callback, options);
+	}
+	
+	private static EngLogLimitsReport findReport(EngProcessedPage page)
+	{
+		for (WtNode n : page.getLog())
+		{
+			if (n instanceof EngLogLimitsReport)
+				return (EngLogLimitsReport) n;
+		}
+		return null;
+	}
+	
+	private static int countSoftErrors(WtNode n)
+	{
+		if (n instanceof EngSoftErrorNode)
+			return 1;
+		
+		int count = 0;
+		for (WtNode c : n)
+			count += countSoftErrors(c);
+		return count;
+	}
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.PageSegments.Segment;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.InMemoryExpansionCallback;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+public class IncrementalProcessingTest
+{
+	private static final String WIKITEXT = "" +
+			"Intro with a [[link]].\n" +
+			"\n" +
+			"== First ==\n" +
+			"Some ''text''.\n" +
+			"<!-- a comment\n" +
+			"== Not a heading ==\n" +
+			"-->\n" +
+			"=== Nested ===\n" +
+			"* item\n" +
+			"* item\n" +
+			"== Second ==\n" +
+			"{|\n" +
+			"| cell\n" +
+			"|}\n" +
+			"== Third ==\n" +
+			"The end.\n";
+	
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	private final EngineOptions options = EngineOptions.DEFAULT.withRetainSegments(true);
+	
+	private final InMemoryExpansionCallback callback = new InMemoryExpansionCallback()
+			.put("Template:Col-begin", "{| class=\"multicol\"\n|-\n|")
+			.put("Template:Col-break", "|")
+			.put("Template:Col-end", "|}")
+			.put("Template:S-start", "{| class=\"wikitable succession-box\"")
+			.put("Template:End", "|}")
+			.put("Template:Div col", "<div style=\"column-count:2\">")
+			.put("Template:Div col end", "</div>")
+			.put("Template:Infobox", "{| class=\"infobox\"\n| {{{1}}}\n|}");
+	
+	// =========================================================================
+	
+	@Test
+	public void testFirstRunEqualsFullRun() throws Exception
+	{
+		EngProcessedPage page = process(null, WIKITEXT);
+		
+		List<Segment> segments = PageSegments.get(page).getSegments();
+		assertEquals(5, segments.size());
+		assertEquals(1, segments.get(0).getFirstLine());
+		assertEquals(3, segments.get(1).getFirstLine());
+		assertEquals(8, segments.get(2).getFirstLine());
+		assertEquals(11, segments.get(3).getFirstLine());
+		assertEquals(15, segments.get(4).getFirstLine());
+	}
+	
+	@Test
+	public void testUnchangedSegmentsAreReused() throws Exception
+	{
+		EngProcessedPage previous = process(null, WIKITEXT);
+		EngProcessedPage page = process(previous, WIKITEXT.replace("cell", "other cell"));
+		
+		List<Segment> before = PageSegments.get(previous).getSegments();
+		List<Segment> after = PageSegments.get(page).getSegments();
+		
+		assertSame(before.get(0), after.get(0));
+		assertSame(before.get(1), after.get(1));
+		assertSame(before.get(2), after.get(2));
+		assertNotSame(before.get(3), after.get(3));
+		assertSame(before.get(4), after.get(4));
+	}
+	
+	@Test
+	public void testLocationsOfMovedSegmentsAreUpdated() throws Exception
+	{
+		EngProcessedPage previous = process(null, WIKITEXT);
+		EngProcessedPage page = process(previous, WIKITEXT.replace("Some ''text''.\n", "Some\n''more''\ntext.\n"));
+		
+		List<Segment> before = PageSegments.get(previous).getSegments();
+		List<Segment> after = PageSegments.get(page).getSegments();
+		
+		assertSame(before.get(0), after.get(0));
+		assertNotSame(before.get(1), after.get(1));
+		assertEquals(before.get(4).getFirstLine() + 2, after.get(4).getFirstLine());
+		assertEquals(before.get(4).getSource(), after.get(4).getSource());
+	}
+	
+	@Test
+	public void testSectionsAreNestedAgainWhenHeadingLevelChanges() throws Exception
+	{
+		EngProcessedPage previous = process(null, WIKITEXT);
+		assertEquals(3, countTopLevelSections(previous));
+		
+		// Second is nested in First
+		EngProcessedPage page = process(previous, WIKITEXT.replace("== Second ==", "=== Second ==="));
+		assertEquals(2, countTopLevelSections(page));
+		assertSame(
+				PageSegments.get(previous).getSegments().get(2),
+				PageSegments.get(page).getSegments().get(2));
+		
+		// Nested is no longer nested in First
+		page = process(previous, WIKITEXT.replace("== First ==", "==== First ===="));
+		assertEquals(4, countTopLevelSections(page));
+		assertSame(
+				PageSegments.get(previous).getSegments().get(2),
+				PageSegments.get(page).getSegments().get(2));
+	}
+	
+	@Test
+	public void testPreviousPageIsNotModified() throws Exception
+	{
+		EngProcessedPage previous = process(null, WIKITEXT);
+		process(previous, WIKITEXT.replace("== Second ==", "=== Second ==="));
+		
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		EngProcessedPage full = engine.postprocess(pageId, WIKITEXT, callback);
+		
+		WtComparer.compareAndThrow(full.getPage(), previous.getPage(), false, true);
+	}
+	
+	@Test
+	public void testSegmentsAreOnlyRetainedOnRequest() throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		EngProcessedPage page = engine.postprocessIncrementally(pageId, null, WIKITEXT, callback);
+		
+		assertNull(PageSegments.get(page));
+	}
+	
+	@Test
+	public void testBalancedTemplatesDoNotPreventSplitting() throws Exception
+	{
+		String wikitext = WIKITEXT.replace("Some ''text''.\n", "{{Infobox|Some ''text''.}}\n");
+		
+		EngProcessedPage page = process(null, wikitext);
+		assertEquals(5, PageSegments.get(page).getSegments().size());
+	}
+	
+	@Test
+	public void testTablesOpenedByTemplatesAcrossSectionsAreNotSplit() throws Exception
+	{
+		String wikitext = "" +
+				"Intro\n" +
+				"{{Col-begin}}\n" +
+				"== Left ==\n" +
+				"left\n" +
+				"{{Col-break}}\n" +
+				"== Right ==\n" +
+				"right\n" +
+				"{{Col-end}}\n" +
+				"== After ==\n" +
+				"end\n";
+		
+		assertNull(PageSegments.get(process(null, wikitext)));
+	}
+	
+	@Test
+	public void testTablesClosedByTemplatesInLaterSectionsAreNotSplit() throws Exception
+	{
+		String wikitext = "" +
+				"Intro\n" +
+				"== Succession ==\n" +
+				"{{S-start}}\n" +
+				"| predecessor\n" +
+				"== Not a section ==\n" +
+				"| successor\n" +
+				"{{End}}\n" +
+				"== After ==\n" +
+				"end\n";
+		
+		assertNull(PageSegments.get(process(null, wikitext)));
+	}
+	
+	@Test
+	public void testElementsOpenedByTemplatesAcrossSectionsAreNotSplit() throws Exception
+	{
+		String wikitext = "" +
+				"Intro\n" +
+				"{{Div col}}\n" +
+				"== In columns ==\n" +
+				"* item\n" +
+				"{{Div col end}}\n" +
+				"== After ==\n" +
+				"end\n";
+		
+		assertNull(PageSegments.get(process(null, wikitext)));
+	}
+	
+	@Test
+	public void testVolatileSegmentsAreNotReused() throws Exception
+	{
+		String wikitext = WIKITEXT
+				.replace("Some ''text''.\n", "Year {{CURRENTYEAR}}.\n")
+				.replace("| cell\n", "| {{CURRENTTIME}} {{REVISIONID}}\n");
+		
+		EngProcessedPage previous = process(null, wikitext);
+		EngProcessedPage page = process(previous, wikitext.replace("The end.", "The very end."));
+		
+		List<Segment> before = PageSegments.get(previous).getSegments();
+		List<Segment> after = PageSegments.get(page).getSegments();
+		
+		assertTrue(before.get(0).isReusable());
+		assertFalse(before.get(1).isReusable());
+		assertFalse(before.get(3).isReusable());
+		
+		assertSame(before.get(0), after.get(0));
+		assertNotSame(before.get(1), after.get(1));
+		assertSame(before.get(2), after.get(2));
+		assertNotSame(before.get(3), after.get(3));
+		assertNotSame(before.get(4), after.get(4));
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Processes the wikitext incrementally and checks that the result is the
+	 * same as the result of processing the wikitext as a whole.
+	 */
+	private EngProcessedPage process(
+			EngProcessedPage previous,
+			String wikitext) throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		
+		EngProcessedPage full = engine.postprocess(pageId, wikitext, callback);
+		EngProcessedPage page = engine.postprocessIncrementally(pageId, previous, wikitext, callback, options);
+		
+		WtComparer.compareAndThrow(full.getPage(), page.getPage(), false, true);
+		
+		return page;
+	}
+	
+	private static int countTopLevelSections(EngProcessedPage page)
+	{
+		int count = 0;
+		for (WtNode n : page.getPage())
+		{
+			if (n.getNodeType() == WtNode.NT_SECTION)
+				++count;
+		}
+		return count;
+	}
+}
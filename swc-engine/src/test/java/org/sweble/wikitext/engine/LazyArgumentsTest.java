@@ -0,0 +1,266 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngLogTransclusionResolution;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.InMemoryExpansionCallback;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+import de.fau.cs.osr.ptk.common.Warning;
+
+public class LazyArgumentsTest
+{
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	private final InMemoryExpansionCallback callback = new InMemoryExpansionCallback(1)
+			.put("Template:Flag", "flag-{{{1}}}")
+			.put("Template:Pass", "{{Inner|{{{1}}}}}")
+			.put("Template:Inner", "[{{{1}}}]")
+			.put("Template:If", "{{#if:{{{1|}}}|{{{2}}}|{{{3}}}}}")
+			.put("Template:Switch", "{{#switch:{{{1}}}|a={{{2}}}|b={{{3}}}|#default={{{4}}}}}")
+			.put("Template:Dup", "{{{a}}}")
+			.put("Template:Yes", "yes")
+			.put("Template:No", "no");
+	
+	// =========================================================================
+	
+	@Test
+	public void testNestedPassthroughEqualsEagerExpansion() throws Exception
+	{
+		assertSameAsEager("{{Pass|{{Flag|de}}}} {{Pass|plain}} {{Pass}} {{Pass|{{Pass|x}}}}");
+	}
+	
+	@Test
+	public void testUnusedBranchesEqualEagerExpansion() throws Exception
+	{
+		assertSameAsEager("" +
+				"{{If|1|{{Yes}}|{{No}}}} {{If||{{Yes}}|{{No}}}}\n" +
+				"{{Switch|a|{{Yes}}|{{No}}|{{Flag|x}}}} {{Switch|z|{{Yes}}|{{No}}|{{Flag|x}}}}\n");
+	}
+	
+	@Test
+	public void testDuplicateNamedArgumentsEqualEagerExpansion() throws Exception
+	{
+		assertSameAsEager("{{Dup|a=first|a=second}} {{Dup|a={{Yes}}|a={{No}}}}");
+	}
+	
+	@Test
+	public void testUnusedBranchesAreNotExpanded() throws Exception
+	{
+		EngProcessedPage page = process("{{If|1|{{Yes}}|{{No}}}}", false);
+		
+		EngLogTransclusionResolution ifLog = findResolution(page, "Template:If");
+		assertEquals(3, ifLog.getArgumentCount());
+		assertEquals(1, ifLog.getUnexpandedArgumentCount());
+		
+		// The template in the unused branch was never transcluded
+		assertNotNull(findResolution(page, "Template:Yes"));
+		assertNull(findResolution(page, "Template:No"));
+	}
+	
+	@Test
+	public void testUnusedSwitchCasesAreNotExpanded() throws Exception
+	{
+		EngProcessedPage page = process("{{Switch|b|{{Yes}}|{{No}}|{{Flag|x}}}}", false);
+		
+		EngLogTransclusionResolution switchLog = findResolution(page, "Template:Switch");
+		assertEquals(4, switchLog.getArgumentCount());
+		assertEquals(2, switchLog.getUnexpandedArgumentCount());
+		
+		assertNull(findResolution(page, "Template:Yes"));
+		assertNotNull(findResolution(page, "Template:No"));
+		assertNull(findResolution(page, "Template:Flag"));
+	}
+	
+	@Test
+	public void testOverwrittenDuplicateArgumentIsNotExpanded() throws Exception
+	{
+		EngProcessedPage page = process("{{Dup|a={{Yes}}|a={{No}}}}", false);
+		
+		EngLogTransclusionResolution dupLog = findResolution(page, "Template:Dup");
+		assertEquals(2, dupLog.getArgumentCount());
+		assertEquals(1, dupLog.getUnexpandedArgumentCount());
+		
+		assertNull(findResolution(page, "Template:Yes"));
+		assertNotNull(findResolution(page, "Template:No"));
+	}
+	
+	@Test
+	public void testPassedThroughArgumentIsCountedAsExpanded() throws Exception
+	{
+		EngProcessedPage page = process("{{Pass|{{Flag|de}}}}", false);
+		
+		assertEquals(0, findResolution(page, "Template:Pass").getUnexpandedArgumentCount());
+		assertEquals(0, findResolution(page, "Template:Inner").getUnexpandedArgumentCount());
+		assertEquals(0, findResolution(page, "Template:Flag").getUnexpandedArgumentCount());
+	}
+	
+	@Test
+	public void testWarningsAndLogsAreOrderedAsInEagerExpansion() throws Exception
+	{
+		String wikitext = "" +
+				"{{Pass|{{Missing1}}}} {{Flag|{{Missing2}}}}\n" +
+				"{{Pass|{{Pass|{{Missing3}}}}}} {{Missing4}}\n";
+		
+		EngProcessedPage lazy = process(wikitext, false);
+		EngProcessedPage eager = process(wikitext, true);
+		
+		assertEquals(toStrings(eager.getWarnings()), toStrings(lazy.getWarnings()));
+		assertEquals(4, lazy.getWarnings().size());
+		
+		assertEquals(resolutionOrder(eager), resolutionOrder(lazy));
+	}
+	
+	// =========================================================================
+	
+	private void assertSameAsEager(String wikitext) throws Exception
+	{
+		EngProcessedPage lazy = process(wikitext, false);
+		EngProcessedPage eager = process(wikitext, true);
+		
+		WtComparer.compareAndThrow(eager.getPage(), lazy.getPage(), false, true);
+	}
+	
+	/**
+	 * @param eager If true, all arguments of a transclusion are expanded before
+	 *        the transcluded page. The engine does this when it memoizes
+	 *        transclusions; a cache which never returns a result turns this
+	 *        into plain eager expansion.
+	 */
+	private EngProcessedPage process(String wikitext, boolean eager) throws Exception
+	{
+		EngineOptions options = EngineOptions.DEFAULT;
+		if (eager)
+		{
+			options = options
+					.withTemplateMemoization(true)
+					.withTemplateCache(new ForgetfulCache());
+		}
+		
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		return engine.postprocess(pageId, wikitext, callback, options);
+	}
+	
+	private static EngLogTransclusionResolution findResolution(WtNode n, String canonical)
+	{
+		if (n instanceof EngLogTransclusionResolution)
+		{
+			EngLogTransclusionResolution log = (EngLogTransclusionResolution) n;
+			if (canonical.equals(log.getCanonical()))
+				return log;
+		}
+		
+		for (WtNode c : n)
+		{
+			EngLogTransclusionResolution log = findResolution(c, canonical);
+			if (log != null)
+				return log;
+		}
+		return null;
+	}
+	
+	private static EngLogTransclusionResolution findResolution(
+			EngProcessedPage page,
+			String canonical)
+	{
+		return findResolution(page.getLog(), canonical);
+	}
+	
+	private static List<String> resolutionOrder(EngProcessedPage page)
+	{
+		List<String> order = new ArrayList<String>();
+		collectResolutions(page.getLog(), order);
+		return order;
+	}
+	
+	private static void collectResolutions(WtNode n, List<String> order)
+	{
+		if (n instanceof EngLogTransclusionResolution)
+			order.add(((EngLogTransclusionResolution) n).getCanonical());
+		
+		for (WtNode c : n)
+			collectResolutions(c, order);
+	}
+	
+	private static List<String> toStrings(List<Warning> warnings)
+	{
+		List<String> strings = new ArrayList<String>();
+		for (Warning w : warnings)
+			strings.add(w.toString());
+		return strings;
+	}
+	
+	// =========================================================================
+	
+	private static final class ForgetfulCache
+			implements
+				TemplateInvocationCache
+	{
+		@Override
+		public MemoizedTransclusion get(TemplateInvocation invocation)
+		{
+			return null;
+		}
+		
+		@Override
+		public void put(TemplateInvocation invocation, MemoizedTransclusion result)
+		{
+		}
+		
+		@Override
+		public void clear()
+		{
+		}
+		
+		@Override
+		public int size()
+		{
+			return 0;
+		}
+		
+		@Override
+		public long getHitCount()
+		{
+			return 0;
+		}
+		
+		@Override
+		public long getMissCount()
+		{
+			return 0;
+		}
+		
+		@Override
+		public long getEvictionCount()
+		{
+			return 0;
+		}
+	}
+}
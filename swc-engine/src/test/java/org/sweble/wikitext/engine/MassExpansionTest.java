@@ -512,6 +512,22 @@ public class MassExpansionTest
 			return fileUrls.get(key);
 		}
 		
+		@Override
+		public FullPreprocessedPage retrievePreprocessedPage(
+				ExpansionFrame expansionFrame,
+				PageId pageId,
+				boolean forInclusion) throws Exception
+		{
+			return null;
+		}
+		
+		@Override
+		public void cachePreprocessedPage(
+				ExpansionFrame expansionFrame,
+				FullPreprocessedPage page) throws Exception
+		{
+		}
+		
 	}
 	
 	// =========================================================================
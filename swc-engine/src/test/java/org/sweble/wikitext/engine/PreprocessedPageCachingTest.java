@@ -0,0 +1,74 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.InMemoryExpansionCallback;
+import org.sweble.wikitext.parser.WtEntityMap;
+import org.sweble.wikitext.parser.nodes.WtPage;
+
+public class PreprocessedPageCachingTest
+{
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	// =========================================================================
+	
+	@Test
+	public void testCachedPageDoesNotAliasCallersEntityMap() throws Exception
+	{
+		final List<WtEntityMap> callerMaps = new ArrayList<WtEntityMap>();
+		
+		InMemoryExpansionCallback callback = new InMemoryExpansionCallback()
+		{
+			@Override
+			public void cachePreprocessedPage(
+					ExpansionFrame expansionFrame,
+					FullPreprocessedPage page) throws Exception
+			{
+				callerMaps.add(expansionFrame.getEntityMap());
+				super.cachePreprocessedPage(expansionFrame, page);
+			}
+		};
+		
+		callback.put("Template:Flag", "flag-{{{1}}}");
+		callback.put("Template:Outer", "outer {{Flag|de}}");
+		
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		engine.postprocess(pageId, "{{Outer}} &amp; {{Flag|fr}}", callback);
+		
+		List<FullPreprocessedPage> cached = callback.getCachedPages();
+		assertFalse(cached.isEmpty());
+		assertEquals(callerMaps.size(), cached.size());
+		
+		for (int i = 0; i < cached.size(); ++i)
+		{
+			WtEntityMap cachedMap = cached.get(i).getPage().getEntityMap();
+			assertNotSame(callerMaps.get(i), cachedMap);
+			assertSame(WtPage.NO_ENTITIES, cachedMap);
+		}
+	}
+}
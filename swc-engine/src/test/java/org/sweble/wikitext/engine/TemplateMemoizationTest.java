@@ -0,0 +1,233 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngLogProcessingPass;
+import org.sweble.wikitext.engine.nodes.EngLogTransclusionResolution;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.InMemoryExpansionCallback;
+import org.sweble.wikitext.engine.utils.LruTemplateInvocationCache;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+public class TemplateMemoizationTest
+{
+	private static final String WIKITEXT = "" +
+			"{{Flag|de}} {{Flag|de}} {{Flag|fr}}\n" +
+			"\n" +
+			"{{Info|a=1|b=2}} {{Info|b=2|a=1}}\n" +
+			"\n" +
+			"{{Title}} {{Title}} {{Nested}} {{Nested}}\n";
+	
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	private final InMemoryExpansionCallback callback = new InMemoryExpansionCallback(1)
+			.put("Template:Flag", "flag-{{{1}}}")
+			.put("Template:Info", "a={{{a}}}, b={{{b}}}")
+			.put("Template:Title", "title={{PAGENAME}}")
+			.put("Template:Nested", "nested {{Title}}")
+			.put("Template:Talk", "talk={{TALKPAGENAME}}");
+	
+	// =========================================================================
+	
+	@Test
+	public void testMemoizationDoesNotChangeResult() throws Exception
+	{
+		EngineOptions memoize = EngineOptions.DEFAULT.withTemplateMemoization(true);
+		
+		EngProcessedPage expected = process("Test", EngineOptions.DEFAULT);
+		EngProcessedPage actual = process("Test", memoize);
+		
+		WtComparer.compareAndThrow(expected.getPage(), actual.getPage(), false, true);
+	}
+	
+	@Test
+	public void testIdenticalInvocationsAreExpandedOnce() throws Exception
+	{
+		LruTemplateInvocationCache cache = new LruTemplateInvocationCache();
+		
+		process("Test", EngineOptions.DEFAULT
+				.withTemplateMemoization(true)
+				.withTemplateCache(cache));
+		
+		// Flag|de, Flag|fr and Info; argument order does not matter
+		assertEquals(3, cache.size());
+		assertEquals(2, cache.getHitCount());
+	}
+	
+	@Test
+	public void testVolatileTemplatesAreNotMemoized() throws Exception
+	{
+		LruTemplateInvocationCache cache = new LruTemplateInvocationCache();
+		
+		EngineOptions options = EngineOptions.DEFAULT
+				.withTemplateMemoization(true)
+				.withTemplateCache(cache);
+		
+		process("Test", options);
+		
+		// Title invokes {{PAGENAME}} directly, Nested through Title
+		assertNull(cache.get(invocation("Title")));
+		assertNull(cache.get(invocation("Nested")));
+		assertNotNull(cache.get(invocation("Flag", "1", "de")));
+	}
+	
+	@Test
+	public void testSharedCacheAcrossPages() throws Exception
+	{
+		LruTemplateInvocationCache cache = new LruTemplateInvocationCache();
+		
+		EngineOptions options = EngineOptions.DEFAULT
+				.withTemplateMemoization(true)
+				.withTemplateCache(cache);
+		
+		process("First", options);
+		long hits = cache.getHitCount();
+		
+		EngProcessedPage expected = process("Second", EngineOptions.DEFAULT);
+		EngProcessedPage actual = process("Second", options);
+		
+		WtComparer.compareAndThrow(expected.getPage(), actual.getPage(), false, true);
+		
+		// Every memoizable invocation of the second page is a hit
+		assertEquals(hits + 5, cache.getHitCount());
+	}
+	
+	@Test
+	public void testTalkPageNameIsNotSharedAcrossPages() throws Exception
+	{
+		LruTemplateInvocationCache cache = new LruTemplateInvocationCache();
+		
+		EngineOptions options = EngineOptions.DEFAULT
+				.withTemplateMemoization(true)
+				.withTemplateCache(cache);
+		
+		for (String title : new String[] { "First", "Second" })
+		{
+			PageId pageId = new PageId(PageTitle.make(config, title), -1);
+			
+			EngProcessedPage expected = engine.postprocess(pageId, "{{Talk}}", callback);
+			EngProcessedPage actual = engine.postprocess(pageId, "{{Talk}}", callback, options);
+			
+			WtComparer.compareAndThrow(expected.getPage(), actual.getPage(), false, true);
+		}
+		
+		assertNull(cache.get(invocation("Talk")));
+	}
+	
+	@Test
+	public void testTemplatesWithUnknownRevisionAreNotMemoized() throws Exception
+	{
+		LruTemplateInvocationCache cache = new LruTemplateInvocationCache();
+		
+		InMemoryExpansionCallback unknownRevision = new InMemoryExpansionCallback()
+				.put("Template:Flag", "flag-{{{1}}}");
+		
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		engine.postprocess(
+				pageId,
+				"{{Flag|de}} {{Flag|de}}",
+				unknownRevision,
+				EngineOptions.DEFAULT
+						.withTemplateMemoization(true)
+						.withTemplateCache(cache));
+		
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+	
+	@Test
+	public void testMemoizedTransclusionsDoNotRepeatTheLog() throws Exception
+	{
+		EngProcessedPage page = process(
+				"Test",
+				EngineOptions.DEFAULT.withTemplateMemoization(true));
+		
+		List<EngLogTransclusionResolution> flags = new ArrayList<EngLogTransclusionResolution>();
+		collectResolutions(page.getLog(), "Template:Flag", flags);
+		assertEquals(3, flags.size());
+		
+		// Flag|de, Flag|de (memoized), Flag|fr
+		assertFalse(flags.get(0).isMemoized());
+		assertTrue(flags.get(1).isMemoized());
+		assertFalse(flags.get(2).isMemoized());
+		
+		// The log of the first expansion is not merged again on a hit
+		EngLogProcessingPass memoizedPass = findProcessingPass(flags.get(1));
+		assertNotNull(memoizedPass);
+		assertTrue(memoizedPass.isEmpty());
+		assertFalse(findProcessingPass(flags.get(0)).isEmpty());
+	}
+	
+	// =========================================================================
+	
+	private EngProcessedPage process(String title, EngineOptions options) throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, title), -1);
+		return engine.postprocess(pageId, WIKITEXT, callback, options);
+	}
+	
+	private static void collectResolutions(
+			WtNode n,
+			String canonical,
+			List<EngLogTransclusionResolution> found)
+	{
+		if (n instanceof EngLogTransclusionResolution)
+		{
+			EngLogTransclusionResolution log = (EngLogTransclusionResolution) n;
+			if (canonical.equals(log.getCanonical()))
+				found.add(log);
+		}
+		
+		for (WtNode c : n)
+			collectResolutions(c, canonical, found);
+	}
+	
+	private static EngLogProcessingPass findProcessingPass(EngLogTransclusionResolution log)
+	{
+		for (WtNode c : log)
+		{
+			if (c instanceof EngLogProcessingPass)
+				return (EngLogProcessingPass) c;
+		}
+		return null;
+	}
+	
+	private TemplateInvocation invocation(String name, String... args) throws Exception
+	{
+		Map<String, String> arguments = new HashMap<String, String>();
+		for (int i = 0; i < args.length; i += 2)
+			arguments.put(args[i], args[i + 1]);
+		
+		PageTitle title = PageTitle.make(config, name, config.getTemplateNamespace());
+		return new TemplateInvocation(new PageId(title, 1), true, arguments);
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.InMemoryExpansionCallback;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+
+public class TemplatePrefetchTest
+{
+	private static final String WIKITEXT = "" +
+			"Start {{A}} and {{B|x={{C}}}}.\n" +
+			"\n" +
+			"{{#if: yes | {{D}} }} {{Missing}} {{PAGENAME}} {{A}}\n";
+	
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+	
+	// =========================================================================
+	
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void testPrefetchDoesNotChangeResult() throws Exception
+	{
+		InMemoryCallback sync = new InMemoryCallback();
+		InMemoryCallback async = new InMemoryCallback();
+		
+		EngProcessedPage expected = process(sync, false);
+		EngProcessedPage actual = process(async, true);
+		
+		WtComparer.compareAndThrow(expected.getPage(), actual.getPage(), false, true);
+		
+		assertTrue(sync.asyncRequests.isEmpty());
+		assertFalse(async.asyncRequests.isEmpty());
+	}
+	
+	@Test
+	public void testTransclusionsAreFetchedLevelByLevel() throws Exception
+	{
+		InMemoryCallback callback = new InMemoryCallback();
+		
+		process(callback, true);
+		
+		// Level one: all transclusions of the page, each only once; parser
+		// functions and magic words are not fetched. Level two: the
+		// transclusion of A, requested when A gets expanded.
+		assertEquals(
+				titles("A", "B", "C", "D", "Missing", "E"),
+				callback.asyncRequests);
+		
+		assertTrue(callback.getRequests().isEmpty());
+	}
+	
+	@Test
+	public void testPrefetchIsOptIn() throws Exception
+	{
+		InMemoryCallback callback = new InMemoryCallback();
+		
+		process(callback, false);
+		
+		assertTrue(callback.asyncRequests.isEmpty());
+		assertFalse(callback.getRequests().isEmpty());
+	}
+	
+	// =========================================================================
+	
+	private EngProcessedPage process(
+			InMemoryCallback callback,
+			boolean prefetch) throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		
+		EngineOptions options = EngineOptions.DEFAULT.withTemplatePrefetch(prefetch);
+		
+		return engine.postprocess(pageId, WIKITEXT, callback, options);
+	}
+	
+	private List<PageTitle> titles(String... names) throws Exception
+	{
+		List<PageTitle> titles = new ArrayList<PageTitle>();
+		for (String name : names)
+			titles.add(PageTitle.make(config, name, config.getTemplateNamespace()));
+		return titles;
+	}
+	
+	// =========================================================================
+	
+	private final class InMemoryCallback
+			extends
+				InMemoryExpansionCallback
+			implements
+				AsyncExpansionCallback
+	{
+		private final List<PageTitle> asyncRequests =
+				Collections.synchronizedList(new ArrayList<PageTitle>());
+		
+		public InMemoryCallback()
+		{
+			put("Template:A", "a{{E}}");
+			put("Template:B", "b={{{x}}}");
+			put("Template:C", "c");
+			put("Template:D", "d");
+			put("Template:E", "e");
+		}
+		
+		@Override
+		public Future<FullPage> retrieveWikitextAsync(
+				ExpansionFrame expansionFrame,
+				final PageTitle pageTitle) throws Exception
+		{
+			asyncRequests.add(pageTitle);
+			return executor.submit(new Callable<FullPage>()
+			{
+				@Override
+				public FullPage call() throws Exception
+				{
+					// Simulate a remote store
+					Thread.sleep(10);
+					return lookup(pageTitle);
+				}
+			});
+		}
+	}
+}
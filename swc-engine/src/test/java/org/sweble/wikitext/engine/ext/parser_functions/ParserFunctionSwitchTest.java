@@ -0,0 +1,111 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.ext.parser_functions;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.EngineOptions;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.ParserFunctionBase;
+import org.sweble.wikitext.engine.WtEngineImpl;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.InMemoryExpansionCallback;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+
+public class ParserFunctionSwitchTest
+{
+	private static final String WIKITEXT = "" +
+			"{{Lookup|de}} {{Lookup|fr}} {{Lookup|fra}} {{Lookup|1.0}} {{Lookup|uk}} {{Lookup|xx}}\n" +
+			"\n" +
+			"{{Implicit|a}} {{Implicit|b}} {{Implicit|c}} {{Implicit|x}} {{Implicit|Fallback}}\n" +
+			"\n" +
+			"{{Dynamic|a|fallback}} {{Dynamic|x|fallback}} {{Dynamic|x|#default}} {{Dynamic|fallback|fallback}}\n" +
+			"\n" +
+			"{{NotStatic|b|b}} {{NotStatic|a|b}} {{NotStatic|x|b}}\n";
+	
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	// =========================================================================
+	
+	@Test
+	public void testJumpTableDoesNotChangeResult() throws Exception
+	{
+		// Templates with an unknown revision are always scanned
+		EngProcessedPage expected = process(-1);
+		assertEquals(0, getSwitch().getJumpTableCount());
+		
+		EngProcessedPage compiled = process(1);
+		EngProcessedPage cached = process(1);
+		
+		WtComparer.compareAndThrow(expected.getPage(), compiled.getPage(), false, true);
+		WtComparer.compareAndThrow(expected.getPage(), cached.getPage(), false, true);
+	}
+	
+	@Test
+	public void testJumpTablesAreKeyedByRevision() throws Exception
+	{
+		process(1);
+		assertEquals(4, getSwitch().getJumpTableCount());
+		
+		process(1);
+		assertEquals(4, getSwitch().getJumpTableCount());
+		
+		process(2);
+		assertEquals(8, getSwitch().getJumpTableCount());
+	}
+	
+	// =========================================================================
+	
+	private EngProcessedPage process(long templateRevision) throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		return engine.postprocess(
+				pageId,
+				WIKITEXT,
+				new InMemoryExpansionCallback(templateRevision)
+						.put("Template:Lookup", "{{#switch:{{{1}}}\n" +
+								"| de = Germany\n" +
+								"| fr | fra = France\n" +
+								"| 1 = one\n" +
+								"| 01.0 = never\n" +
+								"| #default = Unknown\n" +
+								"| uk = United Kingdom\n" +
+								"| de = duplicate\n" +
+								"}}")
+						.put("Template:Implicit", "{{#switch:{{{1}}}|a=A|b|c=BC|#default|Fallback}}")
+						.put("Template:Dynamic", "{{#switch:{{{1}}}|a=A|#default=D|{{{2}}}}}")
+						.put("Template:NotStatic", "{{#switch:{{{1}}}|{{{2}}}=Two|a=A|none}}"),
+				EngineOptions.DEFAULT);
+	}
+	
+	private ParserFunctionSwitch getSwitch()
+	{
+		for (ParserFunctionBase pfn : config.getParserFunctions())
+		{
+			if (pfn instanceof ParserFunctionSwitch)
+				return (ParserFunctionSwitch) pfn;
+		}
+		throw new AssertionError("#switch is not registered");
+	}
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.output;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.WtEngineImpl;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.WtEngineToolbox.TestExpansionCallback;
+import org.sweble.wikitext.parser.nodes.WtUrl;
+
+public class LinkTargetsTest
+{
+	private static final String WIKITEXT = "" +
+			"[[Foo]] and [[Bar]] and [[Foo|Foo again]].\n" +
+			"\n" +
+			"[[File:Picture.png|link=Baz]]\n" +
+			"\n" +
+			"[[Category:Things]]\n";
+	
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+	
+	private final WtEngineImpl engine = new WtEngineImpl(config);
+	
+	// =========================================================================
+	
+	@Test
+	public void testCollectsEachTargetOnce() throws Exception
+	{
+		LinkTargets targets = LinkTargets.collect(config, process(WIKITEXT));
+		
+		assertEquals(titles("Foo", "Bar", "Baz"), targets.getLinkTargets());
+		assertEquals(titles("Category:Things"), targets.getCategories());
+		assertEquals(titles("File:Picture.png"), targets.getImages());
+		assertEquals(5, targets.getAll().size());
+		assertSame(targets.getTitle("Foo"), targets.getTitle("Foo"));
+	}
+	
+	@Test
+	public void testBatchCallbackIsAskedOnce() throws Exception
+	{
+		InMemoryCallback callback = new InMemoryCallback(true, "Foo");
+		
+		String html = render(callback, WIKITEXT);
+		
+		assertEquals(1, callback.batches.size());
+		assertEquals(titles("Foo", "Bar", "Baz", "Category:Things", "File:Picture.png"),
+				new HashSet<PageTitle>(callback.batches.get(0)));
+		assertEquals(0, callback.singleLookups);
+		
+		assertTrue(html.contains("title=\"Bar (page does not exist)\""));
+		assertFalse(html.contains("title=\"Foo (page does not exist)\""));
+	}
+	
+	@Test
+	public void testPlainCallbackIsAskedOncePerTarget() throws Exception
+	{
+		InMemoryCallback callback = new InMemoryCallback(false, "Foo");
+		
+		String html = render(callback, WIKITEXT);
+		
+		// Foo and Bar; the second link to Foo is answered from the cache
+		assertEquals(2, callback.singleLookups);
+		
+		assertTrue(html.contains("title=\"Bar (page does not exist)\""));
+		assertFalse(html.contains("title=\"Foo (page does not exist)\""));
+	}
+	
+	@Test
+	public void testAsyncResolution() throws Exception
+	{
+		InMemoryCallback callback = new InMemoryCallback(true, "Foo", "Bar");
+		
+		EngProcessedPage page = process(WIKITEXT);
+		PageTitle pageTitle = PageTitle.make(config, "Test");
+		
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			Future<LinkTargets> future =
+					LinkTargets.collect(config, page).resolveAsync(callback, executor);
+			
+			LinkTargets targets = future.get();
+			assertEquals(Boolean.TRUE, targets.exists(PageTitle.make(config, "Bar")));
+			assertEquals(Boolean.FALSE, targets.exists(PageTitle.make(config, "Baz")));
+			
+			String html = HtmlRenderer.print(callback, config, pageTitle, page, targets);
+			
+			assertFalse(html.contains("(page does not exist)"));
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		
+		assertEquals(1, callback.batches.size());
+		assertEquals(0, callback.singleLookups);
+	}
+	
+	// =========================================================================
+	
+	private EngProcessedPage process(String wikitext) throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		return engine.postprocess(pageId, wikitext, new TestExpansionCallback());
+	}
+	
+	private String render(HtmlRendererCallback callback, String wikitext) throws Exception
+	{
+		PageTitle pageTitle = PageTitle.make(config, "Test");
+		return HtmlRenderer.print(callback, config, pageTitle, process(wikitext));
+	}
+	
+	private Set<PageTitle> titles(String... titles) throws Exception
+	{
+		Set<PageTitle> result = new HashSet<PageTitle>();
+		for (String title : titles)
+			result.add(PageTitle.make(config, title));
+		return result;
+	}
+	
+	// =========================================================================
+	
+	private final class InMemoryCallback
+			implements
+				BatchHtmlRendererCallback
+	{
+		private final boolean batch;
+		
+		private final Set<PageTitle> existing;
+		
+		private final List<Collection<PageTitle>> batches =
+				new ArrayList<Collection<PageTitle>>();
+		
+		private int singleLookups = 0;
+		
+		public InMemoryCallback(boolean batch, String... existing) throws Exception
+		{
+			this.batch = batch;
+			this.existing = titles(existing);
+		}
+		
+		@Override
+		public Map<PageTitle, Boolean> resourcesExist(Collection<PageTitle> targets)
+		{
+			if (!batch)
+				return null;
+			
+			batches.add(new ArrayList<PageTitle>(targets));
+			
+			Map<PageTitle, Boolean> result = new HashMap<PageTitle, Boolean>();
+			for (PageTitle target : targets)
+				result.put(target, existing.contains(target));
+			return result;
+		}
+		
+		@Override
+		public boolean resourceExists(PageTitle target)
+		{
+			++singleLookups;
+			return existing.contains(target);
+		}
+		
+		@Override
+		public MediaInfo getMediaInfo(String title, int width, int height)
+		{
+			return null;
+		}
+		
+		@Override
+		public String makeUrl(PageTitle target)
+		{
+			return "/wiki/" + target.getNormalizedFullTitle();
+		}
+		
+		@Override
+		public String makeUrl(WtUrl target)
+		{
+			return target.getProtocol() + ":" + target.getPath();
+		}
+		
+		@Override
+		public String makeUrlMissingTarget(String path)
+		{
+			return "/wiki/?title=" + path + "&amp;action=edit";
+		}
+	}
+}
@@ -27,6 +27,7 @@ import org.sweble.wikitext.engine.EngineException;
 import org.sweble.wikitext.engine.ExpansionCallback;
 import org.sweble.wikitext.engine.ExpansionFrame;
 import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.FullPreprocessedPage;
 import org.sweble.wikitext.engine.PageId;
 import org.sweble.wikitext.engine.PageTitle;
 import org.sweble.wikitext.engine.WtEngineImpl;
@@ -231,5 +232,21 @@ public abstract class EngineIntegrationTestBase
 		{
 			return null;
 		}
+		
+		@Override
+		public FullPreprocessedPage retrievePreprocessedPage(
+				ExpansionFrame expansionFrame,
+				PageId pageId,
+				boolean forInclusion) throws Exception
+		{
+			return null;
+		}
+		
+		@Override
+		public void cachePreprocessedPage(
+				ExpansionFrame expansionFrame,
+				FullPreprocessedPage page) throws Exception
+		{
+		}
 	}
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sweble.wikitext.engine.ExpansionCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.FullPreprocessedPage;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+
+/**
+ * A map-backed expansion callback for tests. Pages are registered under their
+ * normalized full title (e.g. "Template:Foo") and are all returned with the
+ * same revision. The callback records which pages were requested and which
+ * preprocessed pages the engine offered for caching, but never returns a
+ * cached preprocessed page itself.
+ */
+public class InMemoryExpansionCallback
+		implements
+			ExpansionCallback
+{
+	private final Map<String, String> pages = new ConcurrentHashMap<String, String>();
+	
+	private final List<PageTitle> requests =
+			Collections.synchronizedList(new ArrayList<PageTitle>());
+	
+	private final List<FullPreprocessedPage> cachedPages =
+			Collections.synchronizedList(new ArrayList<FullPreprocessedPage>());
+	
+	private final long revision;
+	
+	// =========================================================================
+	
+	public InMemoryExpansionCallback()
+	{
+		this(-1);
+	}
+	
+	public InMemoryExpansionCallback(long revision)
+	{
+		this.revision = revision;
+	}
+	
+	// =========================================================================
+	
+	public InMemoryExpansionCallback put(String title, String wikitext)
+	{
+		pages.put(title, wikitext);
+		return this;
+	}
+	
+	/**
+	 * Looks up a page without recording the request.
+	 */
+	public FullPage lookup(PageTitle pageTitle)
+	{
+		String text = pages.get(pageTitle.getNormalizedFullTitle());
+		if (text == null)
+			return null;
+		return new FullPage(new PageId(pageTitle, revision), text);
+	}
+	
+	/**
+	 * The titles passed to retrieveWikitext() in the order of the requests.
+	 */
+	public List<PageTitle> getRequests()
+	{
+		return requests;
+	}
+	
+	/**
+	 * The pages passed to cachePreprocessedPage() in the order of the calls.
+	 */
+	public List<FullPreprocessedPage> getCachedPages()
+	{
+		return cachedPages;
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public FullPage retrieveWikitext(
+			ExpansionFrame expansionFrame,
+			PageTitle pageTitle) throws Exception
+	{
+		requests.add(pageTitle);
+		return lookup(pageTitle);
+	}
+	
+	@Override
+	public String fileUrl(PageTitle pageTitle, int width, int height) throws Exception
+	{
+		return null;
+	}
+	
+	@Override
+	public FullPreprocessedPage retrievePreprocessedPage(
+			ExpansionFrame expansionFrame,
+			PageId pageId,
+			boolean forInclusion) throws Exception
+	{
+		return null;
+	}
+	
+	@Override
+	public void cachePreprocessedPage(
+			ExpansionFrame expansionFrame,
+			FullPreprocessedPage page) throws Exception
+	{
+		cachedPages.add(page);
+	}
+}
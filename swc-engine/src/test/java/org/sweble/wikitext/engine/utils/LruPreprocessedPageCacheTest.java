@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.FullPreprocessedPage;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.nodes.EngineNodeFactory;
+
+public class LruPreprocessedPageCacheTest
+{
+	WikiConfig config = DefaultConfigEnWp.generate();
+	
+	EngineNodeFactory nf = config.getNodeFactory();
+	
+	@Test
+	public void testCachedPageIsFoundUnderSameIdAndInclusionMode() throws Exception
+	{
+		LruPreprocessedPageCache cache = new LruPreprocessedPageCache(4);
+		
+		FullPreprocessedPage page = makePage("Template:Foo", 1, true);
+		cache.put(page);
+		
+		assertSame(page, cache.get(makePageId("Template:Foo", 1), true));
+		assertNull(cache.get(makePageId("Template:Foo", 1), false));
+		assertNull(cache.get(makePageId("Template:Foo", 2), true));
+		
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedPageIsEvicted() throws Exception
+	{
+		LruPreprocessedPageCache cache = new LruPreprocessedPageCache(2);
+		
+		cache.put(makePage("Template:A", 1, true));
+		cache.put(makePage("Template:B", 1, true));
+		
+		// Touch A so that B becomes the eldest entry
+		assertNotNull(cache.get(makePageId("Template:A", 1), true));
+		
+		cache.put(makePage("Template:C", 1, true));
+		
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNotNull(cache.get(makePageId("Template:A", 1), true));
+		assertNull(cache.get(makePageId("Template:B", 1), true));
+		assertNotNull(cache.get(makePageId("Template:C", 1), true));
+	}
+	
+	// =========================================================================
+	
+	private PageId makePageId(String title, long revision) throws Exception
+	{
+		return new PageId(PageTitle.make(config, title), revision);
+	}
+	
+	private FullPreprocessedPage makePage(
+			String title,
+			long revision,
+			boolean forInclusion) throws Exception
+	{
+		return new FullPreprocessedPage(
+				makePageId(title, revision),
+				forInclusion,
+				nf.preproPage(nf.list(nf.text(title))));
+	}
+}
@@ -95,6 +95,8 @@ public class MongoStorer
 
             if (!jobTraces.remove(trace))
                 throw new InternalError("Missing job trace");
+
+            job.completed();
         }
     }
 
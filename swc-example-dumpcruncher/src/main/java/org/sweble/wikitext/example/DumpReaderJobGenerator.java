@@ -29,9 +29,11 @@ import org.sweble.wikitext.articlecruncher.JobTrace;
 import org.sweble.wikitext.articlecruncher.JobTraceSet;
 import org.sweble.wikitext.articlecruncher.utils.AbortHandler;
 import org.sweble.wikitext.articlecruncher.utils.WorkerBase;
-import org.sweble.wikitext.dumpreader.DumpReader;
-import org.sweble.wikitext.dumpreader.export_0_10.PageType;
-import org.sweble.wikitext.dumpreader.export_0_10.RevisionType;
+import org.sweble.wikitext.dumpreader.DumpField;
+import org.sweble.wikitext.dumpreader.FastDumpReader;
+import org.sweble.wikitext.dumpreader.TextBufferPool;
+import org.sweble.wikitext.dumpreader.model.Page;
+import org.sweble.wikitext.dumpreader.model.Revision;
 
 import de.fau.cs.osr.utils.WrappedException;
 
@@ -39,13 +41,21 @@ public class DumpReaderJobGenerator
 		extends
 			WorkerBase
 {
+	/**
+	 * Enough buffers for the jobs in the trays. Buffers of huge pages are
+	 * not kept.
+	 */
+	private static final int MAX_POOLED_TEXT_BUFFERS = 64;
+	
+	private static final int MAX_POOLED_TEXT_CAPACITY = 4 * 1024 * 1024;
+	
 	private final BlockingQueue<Job> inTray;
 	
 	private final JobTraceSet jobTraces;
 	
 	private final DumpCruncher dumpCruncher;
 	
-	private final DumpReader dumpReader;
+	private final FastDumpReader dumpReader;
 	
 	private InputStream is;
 	
@@ -67,19 +77,24 @@ public class DumpReaderJobGenerator
 		try
 		{
 			is = new FileInputStream(dumpFile);
-			this.dumpReader = new DumpReader(
+			this.dumpReader = new FastDumpReader(
 					is,
 					Charset.forName("UTF8"),
 					dumpFile.getPath(),
 					getLogger(),
-					false)
+					DumpField.ALL)
 			{
 				@Override
-				protected void processPage(Object mediaWiki, Object page) throws Exception
+				protected void processPage(Page page) throws Exception
 				{
-					DumpReaderJobGenerator.this.processPage(mediaWiki, page);
+					DumpReaderJobGenerator.this.processPage(page);
 				}
 			};
+			
+			// The texts are released by RevisionJob.completed()
+			this.dumpReader.setTextBufferPool(new TextBufferPool(
+					MAX_POOLED_TEXT_BUFFERS,
+					MAX_POOLED_TEXT_CAPACITY));
 		}
 		catch (Exception e)
 		{
@@ -133,31 +148,26 @@ public class DumpReaderJobGenerator
 	@Override
 	protected void work() throws Throwable
 	{
-		dumpReader.unmarshal();
+		dumpReader.read();
 	}
 	
-	protected void processPage(Object mediaWiki, Object page_) throws Exception
+	protected void processPage(Page page) throws Exception
 	{
-		PageType page = (PageType) page_;
-		
-		for (Object o : page.getRevisionOrUpload())
+		for (Revision rev : page.getRevisions())
 		{
-			if (o instanceof RevisionType)
-			{
-				RevisionJob job = new RevisionJob(page, (RevisionType) o);
-				
-				JobTrace trace = job.getTrace();
-				trace.signOff(getClass(), null);
-				
-				jobTraces.add(trace);
-				
-				inTray.put(job);
-				
-				Gui gui = dumpCruncher.getGui();
-				gui.setPageCount((int) getParsedCount());
-				gui.setBytesRead(getCompressedBytesRead());
-				gui.redrawLater();
-			}
+			RevisionJob job = new RevisionJob(page, rev);
+			
+			JobTrace trace = job.getTrace();
+			trace.signOff(getClass(), null);
+			
+			jobTraces.add(trace);
+			
+			inTray.put(job);
+			
+			Gui gui = dumpCruncher.getGui();
+			gui.setPageCount((int) getParsedCount());
+			gui.setBytesRead(getCompressedBytesRead());
+			gui.redrawLater();
 		}
 	}
 }
@@ -22,14 +22,10 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
-import javax.xml.datatype.XMLGregorianCalendar;
-
 import org.sweble.wikitext.articlecruncher.Job;
-import org.sweble.wikitext.dumpreader.export_0_10.CommentType;
-import org.sweble.wikitext.dumpreader.export_0_10.ContributorType;
-import org.sweble.wikitext.dumpreader.export_0_10.PageType;
-import org.sweble.wikitext.dumpreader.export_0_10.RevisionType;
-import org.sweble.wikitext.dumpreader.export_0_10.TextType;
+import org.sweble.wikitext.dumpreader.PooledText;
+import org.sweble.wikitext.dumpreader.model.Page;
+import org.sweble.wikitext.dumpreader.model.Revision;
 
 public class RevisionJob
 		extends
@@ -55,83 +51,33 @@ public class RevisionJob
 	
 	// -- text info --
 	
-	private final String textText;
+	private final CharSequence textText;
 	
 	private final boolean isTextDeleted;
 	
 	// =========================================================================
 	
-	public RevisionJob(PageType page, RevisionType rev)
+	public RevisionJob(Page page, Revision rev)
 	{
-		page.getDiscussionthreadinginfo();
-		
 		this.pageId = page.getId();
 		
-		this.pageNamespace = page.getNs();
+		this.pageNamespace = page.getNamespace();
 		
-		if (page.getRedirect() != null)
-		{
-			this.pageRedirect = page.getRedirect().getTitle();
-		}
-		else
-		{
-			this.pageRedirect = null;
-		}
-		
-		page.getRestrictions();
-		rev.getSha1();
+		this.pageRedirect = page.getRedirectTitle();
 		
 		this.pageTitle = page.getTitle();
 		
-		if (rev.getComment() != null)
-		{
-			CommentType comment = rev.getComment();
-			comment.getDeleted();
-			comment.getValue();
-		}
-		
-		if (rev.getContributor() != null)
-		{
-			ContributorType contributor = rev.getContributor();
-			contributor.getDeleted();
-			contributor.getId();
-			contributor.getIp();
-			contributor.getUsername();
-		}
-		
 		this.id = rev.getId();
 		
-		this.minor = (rev.getMinor() != null);
-		
-		rev.getSha1();
+		this.minor = rev.isMinor();
 		
-		if (rev.getText() != null)
-		{
-			TextType text = rev.getText();
-			text.getBytes();
-			this.isTextDeleted = text.getDeleted() != null;
-			text.getSpace();
-			this.textText = text.getValue();
-		}
-		else
-		{
-			this.isTextDeleted = false;
-			this.textText = null;
-		}
+		// The text is not copied, it may be a view on a pooled buffer
+		this.isTextDeleted = rev.isTextDeleted();
+		this.textText = rev.getTextAsCharSequence();
 		
 		if (rev.getTimestamp() != null)
 		{
-			XMLGregorianCalendar ts = rev.getTimestamp();
-			
-			this.timestamp = new GregorianCalendar();
-			this.timestamp.setTimeZone(ts.getTimeZone(0));
-			this.timestamp.set(
-					ts.getYear(),
-					ts.getMonth(),
-					ts.getDay(),
-					ts.getHour(),
-					ts.getMinute(),
-					ts.getSecond());
+			this.timestamp = rev.getTimestamp().toGregorianCalendar();
 		}
 		else
 		{
@@ -185,7 +131,7 @@ public class RevisionJob
 	// =========================================================================
 	// text
 	
-	public String getTextText()
+	public CharSequence getTextText()
 	{
 		return textText;
 	}
@@ -194,4 +140,16 @@ public class RevisionJob
 	{
 		return isTextDeleted;
 	}
+	
+	// =========================================================================
+	
+	/**
+	 * Returns the buffer of the text to the pool once the job is done.
+	 */
+	@Override
+	public void completed()
+	{
+		if (textText instanceof PooledText)
+			((PooledText) textText).release();
+	}
 }
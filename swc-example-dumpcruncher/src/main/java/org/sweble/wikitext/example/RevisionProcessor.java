@@ -57,7 +57,7 @@ public class RevisionProcessor
 		
 		PageId pageId = new PageId(pageTitle, revJob.getId().longValue());
 		
-		String wikitext = revJob.getTextText();
+		CharSequence wikitext = revJob.getTextText();
 		
 		// Compile the retrieved page
 		EngProcessedPage cp = engine.postprocess(pageId, wikitext, null);
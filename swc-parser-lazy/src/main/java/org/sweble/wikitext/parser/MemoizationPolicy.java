@@ -0,0 +1,179 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Controls how much the wikitext parser memoizes. By default the packrat
+ * parser keeps every intermediate result for the whole page, so its memory
+ * grows with the size of the input. A policy can bound that memory in two
+ * ways:
+ * 
+ * <ul>
+ * <li>By limiting the number of input positions (columns) for which
+ * intermediate results are kept. Results for positions further behind the
+ * current position are discarded and are re-parsed if the parser ever
+ * backtracks that far.</li>
+ * <li>By memoizing only selected state aware productions (see
+ * {@link #STATE_AWARE_PRODUCTIONS}). All other state aware productions are
+ * parsed again whenever they are tried.</li>
+ * </ul>
+ * 
+ * Instances are immutable.
+ */
+public final class MemoizationPolicy
+{
+	/**
+	 * The names of the productions whose memoization can be switched off
+	 * individually.
+	 */
+	public static final Set<String> STATE_AWARE_PRODUCTIONS =
+			Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+					"ExternalLink",
+					"HorizontalRule",
+					"InternalLink",
+					"List",
+					"Paragraph",
+					"SectionHeading",
+					"Sections",
+					"SemiPre",
+					"Table",
+					"TableCaption",
+					"TableCell",
+					"TableHeader",
+					"TableRow",
+					"pExtWsPlus",
+					"pExtWsStar")));
+	
+	/**
+	 * Memoize everything for the whole page. This is the default.
+	 */
+	public static final MemoizationPolicy UNBOUNDED =
+			new MemoizationPolicy(0, null);
+	
+	// =========================================================================
+	
+	private final int maxMemoizedColumns;
+	
+	private final Set<String> memoizedProductions;
+	
+	// =========================================================================
+	
+	private MemoizationPolicy(
+			int maxMemoizedColumns,
+			Set<String> memoizedProductions)
+	{
+		if (maxMemoizedColumns < 0)
+			throw new IllegalArgumentException("maxMemoizedColumns must not be negative");
+		
+		this.maxMemoizedColumns = maxMemoizedColumns;
+		this.memoizedProductions = memoizedProductions;
+	}
+	
+	/**
+	 * Creates a policy that keeps intermediate results only for the last
+	 * <code>maxMemoizedColumns</code> input positions.
+	 */
+	public static MemoizationPolicy bounded(int maxMemoizedColumns)
+	{
+		return UNBOUNDED.withMaxMemoizedColumns(maxMemoizedColumns);
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * @param maxMemoizedColumns
+	 *            The number of input positions behind the current position for
+	 *            which intermediate results are kept or 0 to keep all results.
+	 */
+	public MemoizationPolicy withMaxMemoizedColumns(int maxMemoizedColumns)
+	{
+		return new MemoizationPolicy(maxMemoizedColumns, memoizedProductions);
+	}
+	
+	/**
+	 * @param productions
+	 *            The state aware productions which shall be memoized or null to
+	 *            memoize all of them.
+	 */
+	public MemoizationPolicy withMemoizedProductions(Collection<String> productions)
+	{
+		Set<String> memoized = null;
+		if (productions != null)
+		{
+			for (String p : productions)
+			{
+				if (!STATE_AWARE_PRODUCTIONS.contains(p))
+					throw new IllegalArgumentException("Unknown production: " + p);
+			}
+			memoized = Collections.unmodifiableSet(new HashSet<String>(productions));
+		}
+		return new MemoizationPolicy(maxMemoizedColumns, memoized);
+	}
+	
+	public MemoizationPolicy withMemoizedProductions(String... productions)
+	{
+		return withMemoizedProductions(Arrays.asList(productions));
+	}
+	
+	// =========================================================================
+	
+	public boolean isBounded()
+	{
+		return maxMemoizedColumns > 0;
+	}
+	
+	public int getMaxMemoizedColumns()
+	{
+		return maxMemoizedColumns;
+	}
+	
+	public boolean isMemoizingAllProductions()
+	{
+		return memoizedProductions == null;
+	}
+	
+	/**
+	 * @return The productions which are memoized or null if all productions
+	 *         are memoized.
+	 */
+	public Set<String> getMemoizedProductions()
+	{
+		return memoizedProductions;
+	}
+	
+	public boolean isMemoized(String production)
+	{
+		return (memoizedProductions == null) ||
+				memoizedProductions.contains(production);
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public String toString()
+	{
+		return "MemoizationPolicy [maxMemoizedColumns=" + maxMemoizedColumns
+				+ ", memoizedProductions=" + memoizedProductions + "]";
+	}
+}
@@ -40,6 +40,13 @@ public interface ParserConfig
 	
 	boolean isGatherRtData();
 	
+	// ==[ Parser resources ]===================================================
+	
+	/**
+	 * Determines how many intermediate results the parser memoizes.
+	 */
+	MemoizationPolicy getMemoizationPolicy();
+	
 	// ==[ AST creation/processing ]============================================
 	
 	WikitextNodeFactory getNodeFactory();
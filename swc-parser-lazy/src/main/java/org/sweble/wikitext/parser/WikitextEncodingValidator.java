@@ -19,10 +19,10 @@ package org.sweble.wikitext.parser;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 
 import org.sweble.wikitext.parser.encval.EncodingValidatorLexer;
 import org.sweble.wikitext.parser.encval.ValidatedWikitext;
+import org.sweble.wikitext.parser.utils.CharSequenceReader;
 
 public class WikitextEncodingValidator
 {
@@ -30,10 +30,10 @@ public class WikitextEncodingValidator
 			ParserConfig parserConfig,
 			WtEntityMap entityMap,
 			String title,
-			String source)
+			CharSequence source)
 			throws IOException
 	{
-		StringReader in = new StringReader(source);
+		Reader in = new CharSequenceReader(source);
 		EncodingValidatorLexer lexer = new EncodingValidatorLexer(in);
 		
 		lexer.setFile(title);
@@ -69,7 +69,7 @@ public class WikitextEncodingValidator
 	
 	public ValidatedWikitext validate(
 			ParserConfig parserConfig,
-			String source,
+			CharSequence source,
 			String title) throws IOException
 	{
 		return validate(parserConfig, new WtEntityMapImpl(), title, source);
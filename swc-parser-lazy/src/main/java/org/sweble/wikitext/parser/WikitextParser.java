@@ -18,13 +18,25 @@
 package org.sweble.wikitext.parser;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
-import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
 import org.sweble.wikitext.parser.parser.RatsWikitextParser;
+import org.sweble.wikitext.parser.parser.SectionSplitter;
+import org.sweble.wikitext.parser.parser.SectionSplitter.Chunk;
+import org.sweble.wikitext.parser.parser.SectionStitcher;
 import org.sweble.wikitext.parser.preprocessor.PreprocessedWikitext;
+import org.sweble.wikitext.parser.utils.CharSequenceReader;
+import org.sweble.wikitext.parser.utils.ParserStatsListener;
 
 import xtc.parser.ParseError;
 import xtc.parser.ParseException;
@@ -32,19 +44,54 @@ import xtc.parser.Result;
 import xtc.parser.SemanticValue;
 import de.fau.cs.osr.ptk.common.ParserCommon;
 
+/**
+ * Instances of this class do not keep any state between calls to
+ * parseArticle() and can therefore be shared by multiple threads. Each call
+ * creates its own Rats! parser which is released (together with its memo
+ * tables) as soon as the call returns.
+ * 
+ * If an executor is given, long articles are split in front of top-level
+ * headings and the parts are parsed concurrently. The sections of the parts
+ * are then stitched together into the same tree a sequential parse would
+ * have produced. If the article cannot be split safely or parsing a part
+ * fails, the article is parsed sequentially.
+ */
 public class WikitextParser
 		extends
 			ParserCommon<WtNode>
 {
 	private final ParserConfig config;
 	
-	private RatsWikitextParser parser;
+	private final Executor executor;
+	
+	private final int minChunkLength;
 	
 	// =========================================================================
 	
 	public WikitextParser(ParserConfig config)
 	{
+		this(config, null, 0);
+	}
+	
+	/**
+	 * @param executor
+	 *            Parses the parts of long articles. If null, all articles are
+	 *            parsed sequentially.
+	 * @param minChunkLength
+	 *            The minimum length of a part. Articles shorter than two parts
+	 *            are always parsed sequentially.
+	 */
+	public WikitextParser(
+			ParserConfig config,
+			Executor executor,
+			int minChunkLength)
+	{
+		if (executor != null && minChunkLength <= 0)
+			throw new IllegalArgumentException("minChunkLength must be positive");
+		
 		this.config = config;
+		this.executor = executor;
+		this.minChunkLength = minChunkLength;
 	}
 	
 	// =========================================================================
@@ -68,24 +115,89 @@ public class WikitextParser
 	
 	public WtNode parseArticle(PreprocessedWikitext wikitext, String title) throws IOException, ParseException
 	{
-		Reader in = new StringReader(wikitext.getWikitext());
-		
-		int inputSize = wikitext.getWikitext().getBytes().length;
-		
-		parser = new RatsWikitextParser(in, title, inputSize);
-		
-		parser.getState().init(config, wikitext.getEntityMap());
+		return parseArticle(wikitext.getWikitext(), wikitext.getEntityMap(), title);
+	}
+	
+	/**
+	 * Parses preprocessed wikitext. The source is read directly and the
+	 * parser's buffers are sized by the number of characters in the source.
+	 * 
+	 * @param entityMap
+	 *            The entities referenced by the preprocessed wikitext.
+	 */
+	public WtNode parseArticle(
+			CharSequence wikitext,
+			WtEntityMap entityMap,
+			String title) throws IOException, ParseException
+	{
+		return parseArticle(wikitext, entityMap, title, null);
+	}
+	
+	/**
+	 * Parses preprocessed wikitext and reports statistics about the memoized
+	 * grammar productions to the given listener. Articles are always parsed
+	 * sequentially if statistics are gathered.
+	 * 
+	 * @param statsListener
+	 *            Receives the statistics of this parse or null if no
+	 *            statistics shall be gathered. The listener is only called
+	 *            from the current thread.
+	 */
+	public WtNode parseArticle(
+			CharSequence wikitext,
+			WtEntityMap entityMap,
+			String title,
+			ParserStatsListener statsListener) throws IOException, ParseException
+	{
+		return parse(wikitext, entityMap, title, statsListener, 1);
+	}
+	
+	/**
+	 * Parses a part of a larger article.
+	 * 
+	 * @param firstLine
+	 *            The line number (starting at 1) of the first line of the
+	 *            part in the complete article. All locations are relative to
+	 *            the complete article.
+	 */
+	public WtNode parseArticle(
+			CharSequence wikitext,
+			WtEntityMap entityMap,
+			String title,
+			int firstLine) throws IOException, ParseException
+	{
+		return parse(wikitext, entityMap, title, null, firstLine);
+	}
+	
+	// =========================================================================
+	
+	private WtNode parse(
+			CharSequence wikitext,
+			WtEntityMap entityMap,
+			String title,
+			ParserStatsListener statsListener,
+			int firstLine) throws IOException, ParseException
+	{
+		if (executor != null &&
+				statsListener == null &&
+				wikitext.length() >= 2 * minChunkLength)
+		{
+			List<Chunk> chunks = SectionSplitter.split(wikitext, minChunkLength);
+			if (chunks.size() > 1)
+			{
+				WtParsedWikitextPage page =
+						parseChunks(wikitext, chunks, entityMap, title, firstLine);
+				if (page != null)
+					return (WtNode) process(page);
+			}
+		}
 		
-		parser.setNodeFactory(config.getNodeFactory());
+		RatsWikitextParser parser =
+				createParser(wikitext, entityMap, title, statsListener);
 		
-		Result r = null;
+		parser.setFirstLine(firstLine);
 		
-		//RatsWikitextParser.enableStats();
-		{
-			r = this.parser.pArticle(0);
-		}
-		if (RatsWikitextParser.isStatsEnabled())
-			RatsWikitextParser.getStats().dump(System.err);
+		Result r = parser.pArticle(0);
 		
 		if (r.hasValue())
 		{
@@ -119,4 +231,175 @@ public class WikitextParser
 			}
 		}
 	}
+	
+	private RatsWikitextParser createParser(
+			CharSequence wikitext,
+			WtEntityMap entityMap,
+			String title,
+			ParserStatsListener statsListener)
+	{
+		Reader in = new CharSequenceReader(wikitext);
+		
+		RatsWikitextParser parser =
+				new RatsWikitextParser(in, title, wikitext.length());
+		
+		parser.getState().init(config, entityMap);
+		
+		parser.setNodeFactory(config.getNodeFactory());
+		
+		parser.setMemoizationPolicy(config.getMemoizationPolicy());
+		
+		parser.setStatsListener(statsListener);
+		
+		return parser;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Parses all chunks, the first one on the calling thread. Chunks which
+	 * the executor has not started yet when the calling thread needs them are
+	 * parsed by the calling thread as well. This way the calling thread never
+	 * blocks on a saturated executor.
+	 * 
+	 * @return The stitched page or null if a chunk could not be parsed.
+	 */
+	private WtParsedWikitextPage parseChunks(
+			CharSequence wikitext,
+			List<Chunk> chunks,
+			WtEntityMap entityMap,
+			String title,
+			int firstLine) throws IOException
+	{
+		List<FutureTask<WtParsedWikitextPage>> tasks =
+				new ArrayList<FutureTask<WtParsedWikitextPage>>(chunks.size() - 1);
+		
+		for (Chunk chunk : chunks.subList(1, chunks.size()))
+		{
+			FutureTask<WtParsedWikitextPage> task =
+					new FutureTask<WtParsedWikitextPage>(
+							new ChunkParser(wikitext, chunk, entityMap, title, firstLine));
+			tasks.add(task);
+			try
+			{
+				executor.execute(task);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The task will be run by the calling thread
+			}
+		}
+		
+		try
+		{
+			WtParsedWikitextPage first =
+					new ChunkParser(wikitext, chunks.get(0), entityMap, title, firstLine).call();
+			if (first == null)
+				return null;
+			
+			List<WtParsedWikitextPage> pages =
+					new ArrayList<WtParsedWikitextPage>(tasks.size());
+			for (FutureTask<WtParsedWikitextPage> task : tasks)
+			{
+				// Does nothing if the executor already started the task
+				task.run();
+				
+				WtParsedWikitextPage page = task.get();
+				if (page == null)
+					return null;
+				pages.add(page);
+			}
+			
+			return stitch(first, pages);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e)
+		{
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			return null;
+		}
+		finally
+		{
+			for (FutureTask<WtParsedWikitextPage> task : tasks)
+				task.cancel(false);
+		}
+	}
+	
+	/**
+	 * Appends the sections of the following chunks to the first chunk and
+	 * nests them the same way the grammar does.
+	 */
+	private static WtParsedWikitextPage stitch(
+			WtParsedWikitextPage first,
+			List<WtParsedWikitextPage> following)
+	{
+		SectionStitcher stitcher = new SectionStitcher(first);
+		for (WtParsedWikitextPage page : following)
+		{
+			if (!stitcher.append(page))
+				return null;
+		}
+		return first;
+	}
+	
+	// =========================================================================
+	
+	private final class ChunkParser
+			implements
+				Callable<WtParsedWikitextPage>
+	{
+		private final CharSequence wikitext;
+		
+		private final Chunk chunk;
+		
+		private final WtEntityMap entityMap;
+		
+		private final String title;
+		
+		private final int firstLine;
+		
+		public ChunkParser(
+				CharSequence wikitext,
+				Chunk chunk,
+				WtEntityMap entityMap,
+				String title,
+				int firstLine)
+		{
+			this.wikitext = wikitext;
+			this.chunk = chunk;
+			this.entityMap = entityMap;
+			this.title = title;
+			this.firstLine = firstLine;
+		}
+		
+		/**
+		 * @return The parsed chunk or null if the chunk could not be parsed.
+		 */
+		@Override
+		public WtParsedWikitextPage call() throws IOException
+		{
+			CharSequence text = wikitext.subSequence(chunk.getStart(), chunk.getEnd());
+			
+			RatsWikitextParser parser = createParser(text, entityMap, title, null);
+			
+			parser.setFirstLine(firstLine + chunk.getFirstLine() - 1);
+			
+			Result r = parser.pArticle(0);
+			if (!r.hasValue())
+				return null;
+			
+			Object value = ((SemanticValue) r).value;
+			if (!(value instanceof WtParsedWikitextPage))
+				return null;
+			
+			return (WtParsedWikitextPage) value;
+		}
+	}
 }
@@ -19,12 +19,13 @@ package org.sweble.wikitext.parser;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 
+import org.sweble.wikitext.parser.encval.EncodingValidatingReader;
 import org.sweble.wikitext.parser.encval.ValidatedWikitext;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtPreproWikitextPage;
 import org.sweble.wikitext.parser.preprocessor.RatsWikitextPreprocessor;
+import org.sweble.wikitext.parser.utils.CharSequenceReader;
 
 import xtc.parser.ParseError;
 import xtc.parser.ParseException;
@@ -32,12 +33,14 @@ import xtc.parser.Result;
 import xtc.parser.SemanticValue;
 import de.fau.cs.osr.ptk.common.ParserCommon;
 
+/**
+ * Instances of this class do not keep any state between calls to
+ * parseArticle() and can therefore be shared by multiple threads.
+ */
 public class WikitextPreprocessor
 		extends
 			ParserCommon<WtNode>
 {
-	private RatsWikitextPreprocessor preprocessor = null;
-	
 	private final ParserConfig config;
 	
 	// =========================================================================
@@ -68,17 +71,75 @@ public class WikitextPreprocessor
 			String title,
 			boolean forInclusion) throws IOException, ParseException
 	{
-		Reader in = new StringReader(wikitext.getWikitext());
+		String source = wikitext.getWikitext();
+		
+		Reader in = new CharSequenceReader(source);
+		
+		return parse(in, source.length(), wikitext.getEntityMap(), title, forInclusion, 1);
+	}
+	
+	/**
+	 * Validates and preprocesses wikitext in a single pass. The source is
+	 * validated while it is read by the preprocessor (see
+	 * {@link EncodingValidatingReader}) and the validated wikitext is never
+	 * materialized. Illegal code points are registered in the given entity
+	 * map just like {@link WikitextEncodingValidator} would register them.
+	 */
+	public WtNode parseArticle(
+			CharSequence source,
+			WtEntityMap entityMap,
+			String title,
+			boolean forInclusion) throws IOException, ParseException
+	{
+		return parseArticle(source, entityMap, title, forInclusion, 1);
+	}
+	
+	/**
+	 * Like {@link #parseArticle(CharSequence, WtEntityMap, String, boolean)}
+	 * but for a part of a larger article.
+	 * 
+	 * @param firstLine
+	 *            The line number (starting at 1) of the first line of the
+	 *            source in the complete article. All locations are relative
+	 *            to the complete article.
+	 */
+	public WtNode parseArticle(
+			CharSequence source,
+			WtEntityMap entityMap,
+			String title,
+			boolean forInclusion,
+			int firstLine) throws IOException, ParseException
+	{
+		Reader in = new EncodingValidatingReader(
+				config.getNodeFactory(),
+				entityMap,
+				title,
+				source,
+				firstLine - 1);
 		
-		int inputSize = wikitext.getWikitext().getBytes().length;
+		return parse(in, source.length(), entityMap, title, forInclusion, firstLine);
+	}
+	
+	// =========================================================================
+	
+	private WtNode parse(
+			Reader in,
+			int inputSize,
+			WtEntityMap entityMap,
+			String title,
+			boolean forInclusion,
+			int firstLine) throws IOException, ParseException
+	{
+		RatsWikitextPreprocessor preprocessor =
+				new RatsWikitextPreprocessor(in, title, inputSize);
 		
-		preprocessor = new RatsWikitextPreprocessor(in, title, inputSize);
+		preprocessor.setFirstLine(firstLine);
 		
-		preprocessor.getState().init(config, wikitext.getEntityMap(), forInclusion);
+		preprocessor.getState().init(config, entityMap, forInclusion);
 		
 		preprocessor.setNodeFactory(config.getNodeFactory());
 		
-		Result r = this.preprocessor.pArticle(0);
+		Result r = preprocessor.pArticle(0);
 		
 		if (r.hasValue())
 		{
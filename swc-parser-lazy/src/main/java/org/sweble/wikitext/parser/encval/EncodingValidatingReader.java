@@ -0,0 +1,342 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.encval;
+
+import java.io.Reader;
+
+import org.sweble.wikitext.parser.WtEntityMap;
+import org.sweble.wikitext.parser.nodes.WikitextNodeFactory;
+import org.sweble.wikitext.parser.nodes.WtIllegalCodePoint;
+import org.sweble.wikitext.parser.nodes.WtIllegalCodePoint.IllegalCodePointType;
+
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+
+/**
+ * A reader which validates wikitext while it is being read. It follows the
+ * rules of the {@link EncodingValidatorLexer} to the letter: illegal code
+ * points are registered as {@link WtIllegalCodePoint} entities in the given
+ * entity map and replaced by an entity reference in the output.
+ * 
+ * In contrast to the lexer the reader does not build the validated wikitext
+ * as a string. Handing the reader directly to the preprocessor therefore
+ * validates and preprocesses the wikitext in a single pass over the source.
+ */
+public class EncodingValidatingReader
+		extends
+			Reader
+{
+	private static final int NO_CHAR = -1;
+	
+	// =========================================================================
+	
+	private final CharSequence source;
+	
+	private final int length;
+	
+	private final WtEntityMap entityMap;
+	
+	private final String file;
+	
+	private final WikitextNodeFactory nf;
+	
+	private int pos = 0;
+	
+	// =========================================================================
+	
+	private int line = 0;
+	
+	private int column = 0;
+	
+	private boolean afterCr = false;
+	
+	// =========================================================================
+	
+	/**
+	 * Output that was produced by the last token but has not been read yet.
+	 * An entity reference takes at most 12 characters ('\uE000', 10 digits,
+	 * '\uE001') and can be followed by one more character.
+	 */
+	private final char[] pending = new char[16];
+	
+	private int pendingStart = 0;
+	
+	private int pendingEnd = 0;
+	
+	// =========================================================================
+	
+	public EncodingValidatingReader(
+			WikitextNodeFactory nf,
+			WtEntityMap entityMap,
+			String file,
+			CharSequence source)
+	{
+		this(nf, entityMap, file, source, 0);
+	}
+	
+	/**
+	 * @param lineOffset
+	 *            The number of lines preceding the source if it is only a part
+	 *            of a larger document. Added to the line of every illegal code
+	 *            point.
+	 */
+	public EncodingValidatingReader(
+			WikitextNodeFactory nf,
+			WtEntityMap entityMap,
+			String file,
+			CharSequence source,
+			int lineOffset)
+	{
+		this.nf = nf;
+		this.entityMap = entityMap;
+		this.file = file;
+		this.source = source;
+		this.length = source.length();
+		this.line = lineOffset;
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public int read(char[] cbuf, int off, int len)
+	{
+		if (len == 0)
+			return 0;
+		
+		int n = 0;
+		while (n < len)
+		{
+			if (pendingStart < pendingEnd)
+			{
+				int count = Math.min(len - n, pendingEnd - pendingStart);
+				System.arraycopy(pending, pendingStart, cbuf, off + n, count);
+				pendingStart += count;
+				n += count;
+			}
+			else if (pos < length)
+			{
+				n += scan(cbuf, off + n, len - n);
+			}
+			else
+			{
+				break;
+			}
+		}
+		
+		return (n == 0) ? -1 : n;
+	}
+	
+	@Override
+	public void close()
+	{
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Copies valid characters into the buffer until the buffer is full, the
+	 * source is exhausted or an illegal code point was found.
+	 */
+	private int scan(char[] cbuf, int off, int len)
+	{
+		int n = 0;
+		while (n < len && pos < length)
+		{
+			char c = source.charAt(pos);
+			int d = (pos + 1 < length) ? source.charAt(pos + 1) : NO_CHAR;
+			
+			if (isHighSurrogate(c))
+			{
+				if (d != NO_CHAR && !isLowSurrogate(d))
+				{
+					// {IC_HIGH_NO_LOW}: The second character is not validated!
+					wrap(String.valueOf(c), line, column, IllegalCodePointType.ISOLATED_SURROGATE);
+					pending[pendingEnd++] = (char) d;
+					advance(c);
+					advance((char) d);
+					pos += 2;
+					return n;
+				}
+				else if (d != NO_CHAR)
+				{
+					IllegalCodePointType type = classifySurrogatePair(c, (char) d);
+					if (type != null)
+					{
+						wrap(source.subSequence(pos, pos + 2).toString(), line, column, type);
+						advance(c);
+						advance((char) d);
+						pos += 2;
+						return n;
+					}
+				}
+				
+				// A valid surrogate pair or a high surrogate at the very end.
+				// Either way only the high surrogate is consumed.
+			}
+			else if (d != NO_CHAR && isLowSurrogate(d))
+			{
+				// {IC_NO_HIGH_LOW}: The first character is not validated!
+				cbuf[off + n++] = c;
+				wrap(String.valueOf((char) d), line, column + 1, IllegalCodePointType.ISOLATED_SURROGATE);
+				advance(c);
+				advance((char) d);
+				pos += 2;
+				return n;
+			}
+			else
+			{
+				IllegalCodePointType type = classify(c);
+				if (type != null)
+				{
+					wrap(String.valueOf(c), line, column, type);
+					advance(c);
+					pos += 1;
+					return n;
+				}
+			}
+			
+			cbuf[off + n++] = c;
+			advance(c);
+			pos += 1;
+		}
+		
+		return n;
+	}
+	
+	private void wrap(
+			String codePoint,
+			int line,
+			int column,
+			IllegalCodePointType type)
+	{
+		WtIllegalCodePoint p = nf.illegalCp(codePoint, type);
+		p.setNativeLocation(new AstLocation(file, line, column));
+		
+		int id = entityMap.registerEntity(p);
+		
+		pendingStart = 0;
+		pendingEnd = 0;
+		pending[pendingEnd++] = '\uE000';
+		
+		String digits = String.valueOf(id);
+		digits.getChars(0, digits.length(), pending, pendingEnd);
+		pendingEnd += digits.length();
+		
+		pending[pendingEnd++] = '\uE001';
+	}
+	
+	/**
+	 * Keeps track of line and column the same way the lexer generated by
+	 * JFlex does.
+	 */
+	private void advance(char c)
+	{
+		switch (c)
+		{
+			case '\u000B':
+			case '\u000C':
+			case '\u0085':
+			case '\u2028':
+			case '\u2029':
+				++line;
+				column = 0;
+				afterCr = false;
+				break;
+			case '\r':
+				++line;
+				column = 0;
+				afterCr = true;
+				break;
+			case '\n':
+				if (afterCr)
+				{
+					afterCr = false;
+				}
+				else
+				{
+					++line;
+					column = 0;
+				}
+				break;
+			default:
+				afterCr = false;
+				++column;
+				break;
+		}
+	}
+	
+	// =========================================================================
+	
+	private static boolean isHighSurrogate(int c)
+	{
+		return c >= '\uD800' && c <= '\uDBFF';
+	}
+	
+	private static boolean isLowSurrogate(int c)
+	{
+		return c >= '\uDC00' && c <= '\uDFFF';
+	}
+	
+	/**
+	 * {NON_CHAR}, {PRIVATE_USE_CHAR} and {CONTROL_CHAR} for a single
+	 * character.
+	 */
+	private static IllegalCodePointType classify(char c)
+	{
+		if (c < ' ')
+		{
+			// The lexer's range of control characters ends with U+0019
+			if (c <= '\u0008' || c == '\u000B' || c == '\u000C' || (c >= '\u000E' && c <= '\u0019'))
+				return IllegalCodePointType.CONTROL_CHARACTER;
+			return null;
+		}
+		else if (c == '\u007F')
+		{
+			return IllegalCodePointType.CONTROL_CHARACTER;
+		}
+		else if (c >= '\uE000' && c <= '\uF8FF')
+		{
+			return IllegalCodePointType.PRIVATE_USE_CHARACTER;
+		}
+		else if ((c >= '\uFDD0' && c <= '\uFDEF') || c >= '\uFFFE')
+		{
+			return IllegalCodePointType.NON_CHARACTER;
+		}
+		return null;
+	}
+	
+	/**
+	 * {NC_xxFFFE_or_xxFFFF}, {PU_0F0000_to_0FFFFD} and
+	 * {PU_100000_to_10FFFD}.
+	 */
+	private static IllegalCodePointType classifySurrogatePair(char high, char low)
+	{
+		if ((high & 0x3F) == 0x3F && (low == '\uDFFE' || low == '\uDFFF'))
+			return IllegalCodePointType.NON_CHARACTER;
+		
+		if (high >= '\uDB80' && high <= '\uDBBE')
+			return IllegalCodePointType.PRIVATE_USE_CHARACTER;
+		if (high == '\uDBBF' && low <= '\uDFFD')
+			return IllegalCodePointType.PRIVATE_USE_CHARACTER;
+		if (high >= '\uDBC0' && high <= '\uDBFE')
+			return IllegalCodePointType.PRIVATE_USE_CHARACTER;
+		if (high == '\uDBFF' && low <= '\uDFFD')
+			return IllegalCodePointType.PRIVATE_USE_CHARACTER;
+		
+		return null;
+	}
+}
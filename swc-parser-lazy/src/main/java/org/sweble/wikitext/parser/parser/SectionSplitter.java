@@ -0,0 +1,494 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits preprocessed wikitext in front of headings that start a top-level
+ * section. The parts can be parsed independently and the resulting sections
+ * can be stitched together again.
+ * 
+ * A heading only starts a chunk if it is not nested in a table, an XML
+ * element, an XML comment, a template, an internal link or a language
+ * conversion tag. The splitter errs on the safe side: if it cannot tell
+ * whether a heading is nested it does not split in front of it. Once a closing
+ * tag does not match the innermost open element, the splitter cannot know how
+ * the parser will repair the markup and does not split at all from there on.
+ * 
+ * Comments and templates only occur in raw wikitext, which allows the
+ * splitter to also split wikitext before it is preprocessed.
+ */
+public final class SectionSplitter
+{
+	private static final Set<String> VOID_ELEMENTS = new HashSet<String>(Arrays.asList(
+			"area",
+			"base",
+			"br",
+			"col",
+			"embed",
+			"hr",
+			"img",
+			"input",
+			"link",
+			"meta",
+			"param",
+			"source",
+			"track",
+			"wbr"));
+	
+	/**
+	 * Elements whose content is not wikitext. Nothing inside them is scanned
+	 * except for their closing tag.
+	 */
+	private static final Set<String> RAW_ELEMENTS = new HashSet<String>(Arrays.asList(
+			"nowiki",
+			"pre",
+			"math",
+			"source",
+			"syntaxhighlight"));
+	
+	// =========================================================================
+	
+	public static final class Chunk
+	{
+		private final int start;
+		
+		private final int end;
+		
+		private final int firstLine;
+		
+		public Chunk(int start, int end, int firstLine)
+		{
+			this.start = start;
+			this.end = end;
+			this.firstLine = firstLine;
+		}
+		
+		public int getStart()
+		{
+			return start;
+		}
+		
+		public int getEnd()
+		{
+			return end;
+		}
+		
+		/**
+		 * The line number (starting at 1) of the first line of this chunk in
+		 * the complete wikitext.
+		 */
+		public int getFirstLine()
+		{
+			return firstLine;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return "Chunk [start=" + start + ", end=" + end + ", firstLine=" + firstLine + "]";
+		}
+	}
+	
+	// =========================================================================
+	
+	private final CharSequence src;
+	
+	private final int len;
+	
+	private int tableDepth = 0;
+	
+	private final ArrayList<String> openElements = new ArrayList<String>();
+	
+	private String rawElement = null;
+	
+	private boolean unbalanced = false;
+	
+	private boolean strayTableEnd = false;
+	
+	private int linkDepth = 0;
+	
+	private int lctDepth = 0;
+	
+	private int templateDepth = 0;
+	
+	private boolean inComment = false;
+	
+	// =========================================================================
+	
+	private SectionSplitter(CharSequence src)
+	{
+		this.src = src;
+		this.len = src.length();
+	}
+	
+	/**
+	 * Splits the given wikitext into chunks. Every chunk but the first starts
+	 * with a top-level heading and is at least <code>minChunkLength</code>
+	 * characters long, except for the last chunk.
+	 */
+	public static List<Chunk> split(CharSequence wikitext, int minChunkLength)
+	{
+		return new SectionSplitter(wikitext).split(minChunkLength);
+	}
+	
+	/**
+	 * Checks whether the given wikitext closes all tables, elements,
+	 * comments, templates, internal links and language conversion tags it
+	 * opens and does not close a table or an element it did not open. Such
+	 * wikitext parses the same whether it is followed by other wikitext or
+	 * not.
+	 */
+	public static boolean isBalanced(CharSequence wikitext)
+	{
+		SectionSplitter splitter = new SectionSplitter(wikitext);
+		splitter.split(Integer.MAX_VALUE);
+		return splitter.isTopLevel() && !splitter.strayTableEnd;
+	}
+	
+	// =========================================================================
+	
+	private List<Chunk> split(int minChunkLength)
+	{
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		
+		int chunkStart = 0;
+		int chunkLine = 1;
+		int line = 1;
+		
+		int i = 0;
+		while (i < len)
+		{
+			// i is at the start of a line
+			if (i > chunkStart && i - chunkStart >= minChunkLength && isTopLevel() && isHeading(i))
+			{
+				chunks.add(new Chunk(chunkStart, i, chunkLine));
+				chunkStart = i;
+				chunkLine = line;
+			}
+			
+			if (!inComment && rawElement == null)
+				lineStart(i);
+			
+			// Scan the rest of the line
+			while (i < len)
+			{
+				char ch = src.charAt(i);
+				if (ch == '\n')
+				{
+					++i;
+					++line;
+					break;
+				}
+				else if (ch == '\r')
+				{
+					++i;
+					++line;
+					if (i < len && src.charAt(i) == '\n')
+						++i;
+					break;
+				}
+				else
+				{
+					i = scan(i);
+				}
+			}
+		}
+		
+		chunks.add(new Chunk(chunkStart, len, chunkLine));
+		return chunks;
+	}
+	
+	private boolean isTopLevel()
+	{
+		return tableDepth == 0 &&
+				openElements.isEmpty() &&
+				rawElement == null &&
+				!unbalanced &&
+				linkDepth == 0 &&
+				lctDepth == 0 &&
+				templateDepth == 0 &&
+				!inComment;
+	}
+	
+	/**
+	 * Checks whether the line starting at <code>i</code> looks like a
+	 * heading: '='+ Text '='+ Space*
+	 */
+	private boolean isHeading(int i)
+	{
+		if (i >= len || src.charAt(i) != '=')
+			return false;
+		
+		int end = i;
+		while (end < len && src.charAt(end) != '\n' && src.charAt(end) != '\r')
+			++end;
+		
+		while (end > i && (src.charAt(end - 1) == ' ' || src.charAt(end - 1) == '\t'))
+			--end;
+		
+		int open = i;
+		while (open < end && src.charAt(open) == '=')
+			++open;
+		
+		int close = end;
+		while (close > open && src.charAt(close - 1) == '=')
+			--close;
+		
+		return (close > open) && (close < end);
+	}
+	
+	/**
+	 * Tracks tables which can only be opened and closed at the start of a
+	 * line (after optional whitespace or entities like comments).
+	 */
+	private void lineStart(int i)
+	{
+		i = skipSpaceAndEntities(i);
+		if (i + 1 < len)
+		{
+			char ch0 = src.charAt(i);
+			char ch1 = src.charAt(i + 1);
+			if (ch0 == '{' && ch1 == '|')
+				++tableDepth;
+			else if (ch0 == '|' && ch1 == '}')
+			{
+				if (tableDepth > 0)
+					--tableDepth;
+				else
+					strayTableEnd = true;
+			}
+		}
+	}
+	
+	private int skipSpaceAndEntities(int i)
+	{
+		while (i < len)
+		{
+			char ch = src.charAt(i);
+			if (ch == ' ' || ch == '\t')
+			{
+				++i;
+			}
+			else if (ch == '\uE000')
+			{
+				int j = i + 1;
+				while (j < len && src.charAt(j) >= '0' && src.charAt(j) <= '9')
+					++j;
+				if (j < len && src.charAt(j) == '\uE001')
+					i = j + 1;
+				else
+					break;
+			}
+			else
+			{
+				break;
+			}
+		}
+		return i;
+	}
+	
+	/**
+	 * Scans the construct starting at <code>i</code> and returns the index
+	 * following it. Never consumes a newline.
+	 */
+	private int scan(int i)
+	{
+		char ch = src.charAt(i);
+		if (inComment)
+		{
+			if (ch == '-' && i + 2 < len && src.charAt(i + 1) == '-' && src.charAt(i + 2) == '>')
+			{
+				inComment = false;
+				return i + 3;
+			}
+			return i + 1;
+		}
+		
+		if (rawElement != null)
+			return scanRaw(i);
+		
+		switch (ch)
+		{
+			case '[':
+				if (i + 1 < len && src.charAt(i + 1) == '[')
+				{
+					++linkDepth;
+					return i + 2;
+				}
+				break;
+			
+			case ']':
+				if (i + 1 < len && src.charAt(i + 1) == ']')
+				{
+					if (linkDepth > 0)
+						--linkDepth;
+					return i + 2;
+				}
+				break;
+			
+			case '{':
+				if (i + 1 < len && src.charAt(i + 1) == '{')
+				{
+					++templateDepth;
+					return i + 2;
+				}
+				break;
+			
+			case '-':
+				if (i + 1 < len && src.charAt(i + 1) == '{')
+				{
+					++lctDepth;
+					return i + 2;
+				}
+				break;
+			
+			case '}':
+				if (i + 1 < len && src.charAt(i + 1) == '-')
+				{
+					if (lctDepth > 0)
+						--lctDepth;
+					return i + 2;
+				}
+				else if (i + 1 < len && src.charAt(i + 1) == '}')
+				{
+					if (templateDepth > 0)
+						--templateDepth;
+					return i + 2;
+				}
+				break;
+			
+			case '<':
+				if (i + 3 < len &&
+						src.charAt(i + 1) == '!' &&
+						src.charAt(i + 2) == '-' &&
+						src.charAt(i + 3) == '-')
+				{
+					inComment = true;
+					return i + 4;
+				}
+				return scanTag(i);
+		}
+		return i + 1;
+	}
+	
+	private int scanTag(int i)
+	{
+		int j = i + 1;
+		boolean closing = false;
+		if (j < len && src.charAt(j) == '/')
+		{
+			closing = true;
+			++j;
+		}
+		
+		int nameStart = j;
+		while (j < len && isNameChar(src.charAt(j)))
+			++j;
+		
+		if (j == nameStart || !isLetter(src.charAt(nameStart)))
+			return i + 1;
+		
+		String name = src.subSequence(nameStart, j).toString().toLowerCase();
+		
+		// Find the end of the tag. Attributes may not contain newlines we
+		// would have to count.
+		int gt = j;
+		while (gt < len)
+		{
+			char ch = src.charAt(gt);
+			if (ch == '>' || ch == '<' || ch == '\n' || ch == '\r')
+				break;
+			++gt;
+		}
+		
+		if (gt >= len || src.charAt(gt) != '>')
+		{
+			// Might still be an element with attributes on several lines
+			if (!closing)
+				unbalanced = true;
+			return j;
+		}
+		
+		boolean selfClosing = (src.charAt(gt - 1) == '/');
+		if (VOID_ELEMENTS.contains(name))
+		{
+			// Neither <br> nor </br> opens or closes anything
+		}
+		else if (closing)
+		{
+			int top = openElements.size() - 1;
+			if (top >= 0 && openElements.get(top).equals(name))
+				openElements.remove(top);
+			else
+				unbalanced = true;
+		}
+		else if (!selfClosing)
+		{
+			if (RAW_ELEMENTS.contains(name))
+				rawElement = name;
+			else
+				openElements.add(name);
+		}
+		
+		return gt + 1;
+	}
+	
+	/**
+	 * Skips the content of a raw element up to and including its closing tag.
+	 */
+	private int scanRaw(int i)
+	{
+		if (src.charAt(i) != '<' || i + 1 >= len || src.charAt(i + 1) != '/')
+			return i + 1;
+		
+		int j = i + 2;
+		int nameStart = j;
+		while (j < len && isNameChar(src.charAt(j)))
+			++j;
+		
+		String name = src.subSequence(nameStart, j).toString().toLowerCase();
+		if (!name.equals(rawElement))
+			return i + 1;
+		
+		while (j < len && src.charAt(j) != '>' && src.charAt(j) != '\n' && src.charAt(j) != '\r')
+			++j;
+		
+		if (j < len && src.charAt(j) == '>')
+		{
+			rawElement = null;
+			return j + 1;
+		}
+		return j;
+	}
+	
+	private static boolean isLetter(char ch)
+	{
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+	}
+	
+	private static boolean isNameChar(char ch)
+	{
+		return isLetter(ch) || (ch >= '0' && ch <= '9') || ch == '-' || ch == '_' || ch == ':';
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.parser;
+
+import java.util.Stack;
+
+import org.sweble.wikitext.parser.nodes.WtBody;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtNodeList;
+import org.sweble.wikitext.parser.nodes.WtSection;
+
+/**
+ * Stitches the sections of consecutive parts of an article (see
+ * {@link SectionSplitter}) together and nests them the same way the grammar
+ * does.
+ */
+public final class SectionStitcher
+{
+	private final Stack<WtSection> stack = new Stack<WtSection>();
+	
+	private final WtNodeList content;
+	
+	// =========================================================================
+	
+	/**
+	 * @param content
+	 *            The content of the first part. The sections of the following
+	 *            parts are appended to this list or to the bodies of the
+	 *            sections in this list.
+	 */
+	public SectionStitcher(WtNodeList content)
+	{
+		this.content = content;
+		
+		for (WtNode n : content)
+		{
+			if (n.getNodeType() == WtNode.NT_SECTION)
+				pushRightmostPath((WtSection) n);
+		}
+	}
+	
+	// =========================================================================
+	
+	public WtNodeList getContent()
+	{
+		return content;
+	}
+	
+	/**
+	 * Appends the sections of the following part.
+	 * 
+	 * @return False if the part does not consist of sections only or if a
+	 *         section cannot be nested in the section it belongs to. The
+	 *         content is left in an undefined state in this case.
+	 */
+	public boolean append(Iterable<WtNode> part)
+	{
+		for (WtNode n : part)
+		{
+			// A part must consist of sections only, otherwise the heading
+			// that started the part was not a top-level heading
+			if (n.getNodeType() != WtNode.NT_SECTION)
+				return false;
+			
+			WtSection s = (WtSection) n;
+			while (!stack.isEmpty() && s.getLevel() <= stack.peek().getLevel())
+				stack.pop();
+			
+			if (stack.isEmpty())
+			{
+				content.add(s);
+			}
+			else
+			{
+				WtBody body = stack.peek().getBody();
+				if (body == WtBody.NO_BODY)
+					return false;
+				body.add(s);
+			}
+			
+			pushRightmostPath(s);
+		}
+		return true;
+	}
+	
+	// =========================================================================
+	
+	/**
+	 * Pushes the given section and its open sub-sections (the ones that
+	 * following sections of a lower level can still be nested in).
+	 */
+	private void pushRightmostPath(WtSection s)
+	{
+		while (true)
+		{
+			while (!stack.isEmpty() && s.getLevel() <= stack.peek().getLevel())
+				stack.pop();
+			stack.push(s);
+			
+			WtBody body = s.getBody();
+			if (body.isEmpty())
+				break;
+			
+			WtNode last = body.get(body.size() - 1);
+			if (last.getNodeType() != WtNode.NT_SECTION)
+				break;
+			
+			s = (WtSection) last;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.utils;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * A reader over a character sequence. Unlike a {@link java.io.StringReader}
+ * it accepts any kind of character sequence (e.g. a {@link StringBuilder} or
+ * a {@link CharBuffer} wrapping a <code>char[]</code>) without copying it
+ * into a string first. The reader is not synchronized.
+ */
+public class CharSequenceReader
+		extends
+			Reader
+{
+	private final CharSequence source;
+	
+	private final int length;
+	
+	private int pos = 0;
+	
+	private int mark = 0;
+	
+	// =========================================================================
+	
+	public CharSequenceReader(CharSequence source)
+	{
+		if (source == null)
+			throw new NullPointerException();
+		
+		this.source = source;
+		this.length = source.length();
+	}
+	
+	// =========================================================================
+	
+	@Override
+	public int read()
+	{
+		return (pos < length) ? source.charAt(pos++) : -1;
+	}
+	
+	@Override
+	public int read(char[] cbuf, int off, int len)
+	{
+		if ((off < 0) || (len < 0) || (len > cbuf.length - off))
+			throw new IndexOutOfBoundsException();
+		if (len == 0)
+			return 0;
+		if (pos >= length)
+			return -1;
+		
+		int n = Math.min(len, length - pos);
+		int end = pos + n;
+		
+		if (source instanceof String)
+		{
+			((String) source).getChars(pos, end, cbuf, off);
+		}
+		else if (source instanceof StringBuilder)
+		{
+			((StringBuilder) source).getChars(pos, end, cbuf, off);
+		}
+		else if (source instanceof StringBuffer)
+		{
+			((StringBuffer) source).getChars(pos, end, cbuf, off);
+		}
+		else if (source instanceof CharBuffer)
+		{
+			CharBuffer view = ((CharBuffer) source).duplicate();
+			view.position(view.position() + pos);
+			view.get(cbuf, off, n);
+		}
+		else
+		{
+			for (int i = pos; i < end; ++i)
+				cbuf[off++] = source.charAt(i);
+		}
+		
+		pos = end;
+		return n;
+	}
+	
+	@Override
+	public long skip(long n)
+	{
+		long skipped = Math.max(0, Math.min(n, length - pos));
+		pos += skipped;
+		return skipped;
+	}
+	
+	@Override
+	public boolean ready()
+	{
+		return true;
+	}
+	
+	@Override
+	public boolean markSupported()
+	{
+		return true;
+	}
+	
+	@Override
+	public void mark(int readAheadLimit)
+	{
+		mark = pos;
+	}
+	
+	@Override
+	public void reset()
+	{
+		pos = mark;
+	}
+	
+	@Override
+	public void close()
+	{
+	}
+}
@@ -18,15 +18,25 @@
 package org.sweble.wikitext.parser.utils;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.sweble.wikitext.parser.parser.RatsWikitextParser;
-
 import de.fau.cs.osr.utils.StringUtils;
 
+/**
+ * Collects the statistics reported by a single parser instance. Instances
+ * are not thread-safe while they are being filled; use one instance per
+ * thread and combine them with {@link #add(ParserStats)}, which may be called
+ * concurrently on the same target.
+ */
 public class ParserStats
+		implements
+			ParserStatsListener
 {
 	public static final class MemoizedProduction
 	{
@@ -38,44 +48,81 @@ public class ParserStats
 		
 		public int parsed;
 		
+		public int maxDepth;
+		
+		public long time;
+		
+		public void add(MemoizedProduction other)
+		{
+			called += other.called;
+			failed += other.failed;
+			reused += other.reused;
+			parsed += other.parsed;
+			maxDepth = Math.max(maxDepth, other.maxDepth);
+			time += other.time;
+		}
+		
 		@Override
 		public String toString()
 		{
 			return String.format(
-					"MemoizedProduction [called=%5d, reused=%5d, parsed=%5d, failed=%5d]",
+					"MemoizedProduction [called=%5d, reused=%5d, parsed=%5d, failed=%5d, maxDepth=%3d, time=%8.3fms]",
 					called,
 					reused,
 					parsed,
-					failed);
+					failed,
+					maxDepth,
+					time / 1000000.);
 		}
 	}
 	
 	private final Map<String, MemoizedProduction> memoizedProductions =
 			new HashMap<String, MemoizedProduction>();
 	
+	private int maxDepth;
+	
+	// =========================================================================
+	
 	public Map<String, MemoizedProduction> getMemoizedProductions()
 	{
 		return memoizedProductions;
 	}
 	
-	public void parsed(String prod)
+	/**
+	 * The maximum nesting depth of memoized productions that was observed.
+	 */
+	public int getMaxDepth()
 	{
-		getMemoizedProduction(prod).parsed++;
+		return maxDepth;
 	}
 	
-	public void failed(String prod)
-	{
-		getMemoizedProduction(prod).failed++;
-	}
+	// =========================================================================
 	
-	public void called(String prod)
+	@Override
+	public void memoHit(String production)
 	{
-		getMemoizedProduction(prod).called++;
+		MemoizedProduction p = getMemoizedProduction(production);
+		p.called++;
+		p.reused++;
 	}
 	
-	public void reused(String prod)
+	@Override
+	public void memoMiss(
+			String production,
+			boolean success,
+			int depth,
+			long nanos)
 	{
-		getMemoizedProduction(prod).reused++;
+		MemoizedProduction p = getMemoizedProduction(production);
+		p.called++;
+		p.parsed++;
+		if (!success)
+			p.failed++;
+		if (depth > p.maxDepth)
+			p.maxDepth = depth;
+		if (depth > maxDepth)
+			maxDepth = depth;
+		p.time += nanos;
 	}
 	
 	private MemoizedProduction getMemoizedProduction(String prod)
@@ -89,13 +136,55 @@ public class ParserStats
 		return p;
 	}
 	
+	// =========================================================================
+	
+	/**
+	 * Adds the statistics of another instance to this instance. The other
+	 * instance must not be filled concurrently.
+	 */
+	public synchronized void add(ParserStats other)
+	{
+		for (Entry<String, MemoizedProduction> x : other.memoizedProductions.entrySet())
+			getMemoizedProduction(x.getKey()).add(x.getValue());
+		
+		if (other.maxDepth > maxDepth)
+			maxDepth = other.maxDepth;
+	}
+	
+	/**
+	 * Returns the productions ordered by the time spent parsing them, most
+	 * expensive first.
+	 */
+	public synchronized List<Entry<String, MemoizedProduction>> getProductionsByTime()
+	{
+		List<Entry<String, MemoizedProduction>> productions =
+				new ArrayList<Entry<String, MemoizedProduction>>(
+						memoizedProductions.entrySet());
+		
+		Collections.sort(productions, new Comparator<Entry<String, MemoizedProduction>>()
+		{
+			@Override
+			public int compare(
+					Entry<String, MemoizedProduction> a,
+					Entry<String, MemoizedProduction> b)
+			{
+				long ta = a.getValue().time;
+				long tb = b.getValue().time;
+				return (ta < tb) ? 1 : ((ta == tb) ? 0 : -1);
+			}
+		});
+		
+		return productions;
+	}
+	
 	public void dump(PrintStream err)
 	{
-		for (Entry<String, MemoizedProduction> x : RatsWikitextParser.getStats().getMemoizedProductions().entrySet())
+		for (Entry<String, MemoizedProduction> x : getProductionsByTime())
 		{
 			err.print(x.getKey() + ":");
 			err.print(StringUtils.strrep(' ', 20 - x.getKey().length()));
 			err.println(x.getValue());
 		}
+		err.println("Maximum depth: " + getMaxDepth());
 	}
 }
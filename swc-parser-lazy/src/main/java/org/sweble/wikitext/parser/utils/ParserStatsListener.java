@@ -0,0 +1,50 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.utils;
+
+/**
+ * Receives statistics about the state aware memoized productions of a single
+ * parser instance. A listener is only ever called from the thread that runs
+ * the parser it was registered with. To collect statistics over multiple
+ * threads give each parser its own listener and combine the results
+ * afterwards (see {@link ParserStats#add(ParserStats)}).
+ */
+public interface ParserStatsListener
+{
+	/**
+	 * A production was found in the memo table and its result could be reused
+	 * in the current parser context.
+	 */
+	void memoHit(String production);
+	
+	/**
+	 * A production had to be parsed since its result was not memoized yet or
+	 * was memoized for a different parser context.
+	 * 
+	 * @param success
+	 *            Whether the production matched. A failed production means
+	 *            the parser has to backtrack.
+	 * @param depth
+	 *            The number of memoized productions (including this one) that
+	 *            were being parsed when this production finished.
+	 * @param nanos
+	 *            The time spent parsing the production, including the time
+	 *            spent in nested productions.
+	 */
+	void memoMiss(String production, boolean success, int depth, long nanos);
+}
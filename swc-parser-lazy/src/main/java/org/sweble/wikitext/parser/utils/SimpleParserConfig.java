@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.sweble.wikitext.parser.MemoizationPolicy;
 import org.sweble.wikitext.parser.NonStandardElementBehavior;
 import org.sweble.wikitext.parser.ParserConfig;
 import org.sweble.wikitext.parser.WikitextWarning.WarningSeverity;
@@ -49,6 +50,8 @@ public class SimpleParserConfig
 	
 	private final AstTextUtilsImpl textUtils;
 	
+	private MemoizationPolicy memoizationPolicy = MemoizationPolicy.UNBOUNDED;
+	
 	// =========================================================================
 	
 	public SimpleParserConfig()
@@ -94,6 +97,19 @@ public class SimpleParserConfig
 		return gatherRtd;
 	}
 	
+	// ==[ Parser resources ]===================================================
+	
+	public void setMemoizationPolicy(MemoizationPolicy memoizationPolicy)
+	{
+		this.memoizationPolicy = memoizationPolicy;
+	}
+	
+	@Override
+	public MemoizationPolicy getMemoizationPolicy()
+	{
+		return memoizationPolicy;
+	}
+	
 	// ==[ AST creation ]=======================================================
 	
 	@Override
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.utils.CharSequenceReader;
+
+public class CharSequenceReaderTest
+{
+	private static final String TEXT = "Hallo Welt!";
+	
+	// =========================================================================
+	
+	@Test
+	public void testReadsString() throws Exception
+	{
+		assertEquals(TEXT, readAll(new CharSequenceReader(TEXT), 4));
+	}
+	
+	@Test
+	public void testReadsStringBuilder() throws Exception
+	{
+		StringBuilder sb = new StringBuilder(TEXT);
+		assertEquals(TEXT, readAll(new CharSequenceReader(sb), 4));
+	}
+	
+	@Test
+	public void testReadsCharBuffer() throws Exception
+	{
+		CharBuffer cb = CharBuffer.wrap(TEXT.toCharArray());
+		assertEquals(TEXT, readAll(new CharSequenceReader(cb), 4));
+		
+		// The reader must not move the buffer's own position
+		assertEquals(0, cb.position());
+	}
+	
+	@Test
+	public void testReadsCharBufferWithPosition() throws Exception
+	{
+		CharBuffer cb = CharBuffer.wrap(("xx" + TEXT).toCharArray());
+		cb.position(2);
+		assertEquals(TEXT, readAll(new CharSequenceReader(cb), 4));
+	}
+	
+	@Test
+	public void testReadsOtherCharSequence() throws Exception
+	{
+		CharSequence cs = new StringBuilder("--" + TEXT).subSequence(2, 2 + TEXT.length());
+		assertEquals(TEXT, readAll(new CharSequenceReader(new Wrapper(cs)), 4));
+	}
+	
+	@Test
+	public void testReadsIntoOffset() throws Exception
+	{
+		CharSequenceReader r = new CharSequenceReader(TEXT);
+		char[] buf = new char[] { '#', '#', '#', '#', '#' };
+		assertEquals(3, r.read(buf, 1, 3));
+		assertEquals("#Hal#", new String(buf));
+	}
+	
+	@Test
+	public void testSingleCharReadAndEof() throws Exception
+	{
+		CharSequenceReader r = new CharSequenceReader("ab");
+		assertEquals('a', r.read());
+		assertEquals('b', r.read());
+		assertEquals(-1, r.read());
+		assertEquals(-1, r.read(new char[4], 0, 4));
+		assertEquals(0, r.read(new char[4], 0, 0));
+	}
+	
+	@Test
+	public void testEmptySequence() throws Exception
+	{
+		CharSequenceReader r = new CharSequenceReader("");
+		assertEquals(-1, r.read());
+		assertEquals(-1, r.read(new char[1], 0, 1));
+	}
+	
+	@Test
+	public void testSkip() throws Exception
+	{
+		CharSequenceReader r = new CharSequenceReader(TEXT);
+		assertEquals(6, r.skip(6));
+		assertEquals('W', r.read());
+		assertEquals(0, r.skip(-3));
+		assertEquals(4, r.skip(100));
+		assertEquals(0, r.skip(1));
+		assertEquals(-1, r.read());
+	}
+	
+	@Test
+	public void testMarkAndReset() throws Exception
+	{
+		CharSequenceReader r = new CharSequenceReader(TEXT);
+		assertTrue(r.markSupported());
+		
+		// Without a mark reset goes back to the start
+		r.skip(3);
+		r.reset();
+		assertEquals('H', r.read());
+		
+		r.skip(5);
+		r.mark(0);
+		assertEquals("Welt!", readAll(r, 2));
+		r.reset();
+		assertEquals("Welt!", readAll(r, 16));
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testNegativeOffsetThrows() throws Exception
+	{
+		new CharSequenceReader(TEXT).read(new char[4], -1, 2);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testNegativeLengthThrows() throws Exception
+	{
+		new CharSequenceReader(TEXT).read(new char[4], 0, -1);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testLengthBeyondBufferThrows() throws Exception
+	{
+		new CharSequenceReader(TEXT).read(new char[4], 2, 3);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testBadRangeThrowsEvenAtEof() throws Exception
+	{
+		CharSequenceReader r = new CharSequenceReader("");
+		r.read(new char[4], 5, 0);
+	}
+	
+	// =========================================================================
+	
+	private static String readAll(CharSequenceReader r, int chunk) throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[chunk];
+		int n;
+		while ((n = r.read(buf, 0, chunk)) != -1)
+			sb.append(buf, 0, n);
+		return sb.toString();
+	}
+	
+	/**
+	 * Hides the concrete type of a sequence so that the reader has to take
+	 * the generic charAt() path.
+	 */
+	private static final class Wrapper
+			implements
+				CharSequence
+	{
+		private final CharSequence cs;
+		
+		public Wrapper(CharSequence cs)
+		{
+			this.cs = cs;
+		}
+		
+		@Override
+		public int length()
+		{
+			return cs.length();
+		}
+		
+		@Override
+		public char charAt(int index)
+		{
+			return cs.charAt(index);
+		}
+		
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			return cs.subSequence(start, end);
+		}
+		
+		@Override
+		public String toString()
+		{
+			return cs.toString();
+		}
+	}
+}
@@ -20,8 +20,10 @@ package org.sweble.wikitext.parser;
 import static junit.framework.Assert.*;
 
 import java.io.IOException;
+import java.io.Reader;
 
 import org.junit.Test;
+import org.sweble.wikitext.parser.encval.EncodingValidatingReader;
 import org.sweble.wikitext.parser.encval.ValidatedWikitext;
 import org.sweble.wikitext.parser.nodes.WtIllegalCodePoint;
 import org.sweble.wikitext.parser.nodes.WtIllegalCodePoint.IllegalCodePointType;
@@ -104,4 +106,53 @@ public class EncodingValidatorTest
 		
 		assertEquals(ref.toString(), validatedWikitext);
 	}
+	
+	@Test
+	public void testValidatingReaderProducesSameResultAsLexer() throws IOException
+	{
+		String title = "dummy";
+		
+		String[] sources = {
+				"Plain text\nwithout any illegal code points\r\n",
+				"mit ein paar \uE800 und \r\nnat\u00FCrlich \uFDEE.\n",
+				"Aber auch \uDBEF und \uDC80 \r\u2028Letzt \u0007.",
+				"\uDC80 at the start, a pair \uD83D\uDE00 and one at the end \uD800",
+				"\u0001\uDC00 \uDBBF\uDFFE \uDBFF\uDC00 \uDB80\uDC00 \uD83F\uDFFF\uFFFE",
+				"\uD800\n\uD800\uD800\uDC00\uDC00\u000B\u000C\u0085\u2029end" };
+		
+		SimpleParserConfig parserConfig = new SimpleParserConfig();
+		WikitextEncodingValidator v = new WikitextEncodingValidator();
+		
+		for (String source : sources)
+		{
+			ValidatedWikitext expected = v.validate(parserConfig, source, title);
+			
+			WtEntityMap entityMap = new WtEntityMapImpl();
+			Reader in = new EncodingValidatingReader(
+					parserConfig.getNodeFactory(),
+					entityMap,
+					title,
+					source);
+			
+			// Read in small chunks to exercise the pending entity buffer
+			StringBuilder actual = new StringBuilder();
+			char[] buffer = new char[3];
+			int read;
+			while ((read = in.read(buffer, 0, buffer.length)) != -1)
+				actual.append(buffer, 0, read);
+			
+			assertEquals(expected.getWikitext(), actual.toString());
+			
+			WtEntityMap expectedMap = expected.getEntityMap();
+			assertEquals(expectedMap.getMap().size(), entityMap.getMap().size());
+			for (int i = 0; i < expectedMap.getMap().size(); ++i)
+			{
+				WtIllegalCodePoint e = (WtIllegalCodePoint) expectedMap.getEntity(i);
+				WtIllegalCodePoint a = (WtIllegalCodePoint) entityMap.getEntity(i);
+				assertEquals(e.getCodePoint(), a.getCodePoint());
+				assertEquals(e.getType(), a.getType());
+				assertEquals(e.getNativeLocation(), a.getNativeLocation());
+			}
+		}
+	}
 }
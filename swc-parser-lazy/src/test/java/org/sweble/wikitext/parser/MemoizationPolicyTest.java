@@ -0,0 +1,75 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+import org.sweble.wikitext.parser.utils.WtAstPrinter;
+
+public class MemoizationPolicyTest
+{
+	@Test
+	public void testBoundedPolicyProducesSameAst() throws Exception
+	{
+		String source = makePage();
+		
+		String expected = parse(source, MemoizationPolicy.UNBOUNDED);
+		
+		assertEquals(expected, parse(source, MemoizationPolicy.bounded(1)));
+		assertEquals(expected, parse(source, MemoizationPolicy.bounded(64)));
+		assertEquals(expected, parse(source,
+				MemoizationPolicy.UNBOUNDED.withMemoizedProductions("Paragraph")));
+		assertEquals(expected, parse(source,
+				MemoizationPolicy.bounded(16).withMemoizedProductions()));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownProductionIsRejected() throws Exception
+	{
+		MemoizationPolicy.UNBOUNDED.withMemoizedProductions("NoSuchProduction");
+	}
+	
+	// =========================================================================
+	
+	private static String parse(String source, MemoizationPolicy policy) throws Exception
+	{
+		SimpleParserConfig config = new SimpleParserConfig();
+		config.setMemoizationPolicy(policy);
+		
+		WikitextParser parser = new WikitextParser(config);
+		return WtAstPrinter.print(parser.parseArticle(source, "dummy"));
+	}
+	
+	private static String makePage()
+	{
+		StringBuilder b = new StringBuilder();
+		b.append("== Heading ==\n");
+		for (int i = 0; i < 20; ++i)
+		{
+			b.append("* Item ").append(i).append(" with a [[Link]]\n");
+			b.append("** ''Nested'' [http://example.org link]\n");
+		}
+		b.append("\n{|\n|+ Caption\n! Header\n");
+		for (int i = 0; i < 20; ++i)
+			b.append("|-\n| cell ").append(i).append(" || [[Cell]]\n");
+		b.append("|}\n\n A pre line\nText\r\nmore text\n");
+		return b.toString();
+	}
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.parser.SectionSplitter;
+import org.sweble.wikitext.parser.parser.SectionSplitter.Chunk;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+import org.sweble.wikitext.parser.utils.WtAstPrinter;
+import org.sweble.wikitext.parser.utils.WtRtDataPrinter;
+
+public class ParallelParsingTest
+{
+	private ExecutorService executor;
+	
+	// =========================================================================
+	
+	@Before
+	public void setUp()
+	{
+		executor = Executors.newFixedThreadPool(2);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+	}
+	
+	// =========================================================================
+	
+	@Test
+	public void testSplitterOnlySplitsAtTopLevelHeadings() throws Exception
+	{
+		String source = "" +
+				"Intro\n" +
+				"== A ==\n" +
+				"{|\n" +
+				"| cell\n" +
+				"== In table ==\n" +
+				"|}\n" +
+				"<div>\n" +
+				"== In element ==\n" +
+				"</div>\n" +
+				"=== B ===\n" +
+				"Text<br>\r\n" +
+				"== C ==\n";
+		
+		List<Chunk> chunks = SectionSplitter.split(source, 1);
+		assertEquals(4, chunks.size());
+		
+		assertEquals("Intro\n", sub(source, chunks.get(0)));
+		assertTrue(sub(source, chunks.get(1)).startsWith("== A =="));
+		assertTrue(sub(source, chunks.get(2)).startsWith("=== B ==="));
+		assertEquals("== C ==\n", sub(source, chunks.get(3)));
+		
+		assertEquals(1, chunks.get(0).getFirstLine());
+		assertEquals(2, chunks.get(1).getFirstLine());
+		assertEquals(10, chunks.get(2).getFirstLine());
+		assertEquals(12, chunks.get(3).getFirstLine());
+	}
+	
+	@Test
+	public void testParallelParsingProducesSameAst() throws Exception
+	{
+		assertParallelEqualsSequential(makePage());
+	}
+	
+	@Test
+	public void testMismatchedTagsStopSplitting() throws Exception
+	{
+		String source = "" +
+				"Intro\n" +
+				"<div>a</span>\n" +
+				"== H ==\n" +
+				"text</div>\n" +
+				"== I ==\n" +
+				"end\n";
+		
+		assertEquals(1, SectionSplitter.split(source, 1).size());
+		assertParallelEqualsSequential(source);
+	}
+	
+	@Test
+	public void testCrossedTagsStopSplitting() throws Exception
+	{
+		String source = "" +
+				"Intro <span><div>\n" +
+				"a</span></div>\n" +
+				"== H ==\n" +
+				"end\n";
+		
+		assertEquals(1, SectionSplitter.split(source, 1).size());
+		assertParallelEqualsSequential(source);
+	}
+	
+	@Test
+	public void testStrayClosingTagStopsSplitting() throws Exception
+	{
+		String source = "" +
+				"Intro</div>\n" +
+				"== H ==\n" +
+				"end\n";
+		
+		assertEquals(1, SectionSplitter.split(source, 1).size());
+		assertParallelEqualsSequential(source);
+	}
+	
+	@Test
+	public void testUnclosedTableStopsSplitting() throws Exception
+	{
+		String source = "" +
+				"Intro\n" +
+				"{| class=\"wikitable\"\n" +
+				"| cell\n" +
+				"== H ==\n" +
+				"| more\n" +
+				"== I ==\n" +
+				"end\n";
+		
+		assertEquals(1, SectionSplitter.split(source, 1).size());
+		assertParallelEqualsSequential(source);
+	}
+	
+	@Test
+	public void testHeadingsInRawElementsAreNotSplit() throws Exception
+	{
+		String source = "" +
+				"Intro\n" +
+				"<pre>\n" +
+				"== In pre ==\n" +
+				"</pre>\n" +
+				"<nowiki>\n" +
+				"<div> {| [[\n" +
+				"== In nowiki ==\n" +
+				"</nowiki>\n" +
+				"== H ==\n" +
+				"end\n";
+		
+		List<Chunk> chunks = SectionSplitter.split(source, 1);
+		assertEquals(2, chunks.size());
+		assertEquals("== H ==\nend\n", sub(source, chunks.get(1)));
+		
+		assertParallelEqualsSequential(source);
+	}
+	
+	@Test
+	public void testHeadingsInCommentsAreNotSplit() throws Exception
+	{
+		String source = "" +
+				"Intro\n" +
+				"<!--\n" +
+				"== In comment ==\n" +
+				"-->\n" +
+				"== H ==\n" +
+				"text <!-- unclosed\n" +
+				"== In unclosed comment ==\n" +
+				"end\n";
+		
+		List<Chunk> chunks = SectionSplitter.split(source, 1);
+		assertEquals(2, chunks.size());
+		assertTrue(sub(source, chunks.get(1)).startsWith("== H ==\n"));
+		
+		assertParallelEqualsSequential(source);
+	}
+	
+	@Test
+	public void testBalancedWikitext() throws Exception
+	{
+		assertTrue(SectionSplitter.isBalanced("== H ==\n{|\n| <div>cell</div>\n|}\n"));
+		assertTrue(SectionSplitter.isBalanced("<pre>\n{|\n</pre>\n"));
+		
+		assertFalse(SectionSplitter.isBalanced("== H ==\n{| class=\"multicol\"\n| a\n"));
+		assertFalse(SectionSplitter.isBalanced("| b\n|}\n"));
+		assertFalse(SectionSplitter.isBalanced("<div style=\"column-count:2\">\ntext\n"));
+		assertFalse(SectionSplitter.isBalanced("text\n</div>\n"));
+		assertFalse(SectionSplitter.isBalanced("text <!-- open\n"));
+	}
+	
+	// =========================================================================
+	
+	private void assertParallelEqualsSequential(String source) throws Exception
+	{
+		SimpleParserConfig config = new SimpleParserConfig();
+		WtNode expected = new WikitextParser(config).parseArticle(source, "dummy");
+		WtNode actual = new WikitextParser(config, executor, 1).parseArticle(source, "dummy");
+		
+		assertEquals(WtAstPrinter.print(expected), WtAstPrinter.print(actual));
+		assertEquals(WtRtDataPrinter.print(expected), WtRtDataPrinter.print(actual));
+		assertSameLocations(expected, actual);
+	}
+	
+	private static String sub(String source, Chunk chunk)
+	{
+		return source.substring(chunk.getStart(), chunk.getEnd());
+	}
+	
+	private static void assertSameLocations(WtNode expected, WtNode actual)
+	{
+		assertEquals(expected.getNativeLocation(), actual.getNativeLocation());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i)
+			assertSameLocations(expected.get(i), actual.get(i));
+	}
+	
+	private static String makePage()
+	{
+		StringBuilder b = new StringBuilder();
+		b.append("Intro with a [[Link]].\n\n");
+		b.append("== Level 2 ==\n");
+		b.append("* list\n** nested\n\n");
+		b.append("=== Level 3 ===\n");
+		b.append("{|\n| cell || cell\n|-\n! header\n|}\n");
+		b.append("==== Level 4 ====\n");
+		b.append(" pre\ntext\n\n");
+		b.append("=== Level 3 again ===\n");
+		b.append("<div>\n== Inside ==\n</div>\n");
+		b.append("== Level 2 again ==\n");
+		b.append("=== Level 3 last ===\n");
+		b.append("Text ''italic'' [http://example.org link]\n");
+		b.append("= Level 1 =\n");
+		b.append("end");
+		return b.toString();
+	}
+}
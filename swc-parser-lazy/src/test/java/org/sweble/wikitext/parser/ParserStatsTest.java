@@ -0,0 +1,90 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.utils.ParserStats;
+import org.sweble.wikitext.parser.utils.ParserStats.MemoizedProduction;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+
+public class ParserStatsTest
+{
+	private static final String SOURCE =
+			"== Section ==\n" +
+					"A paragraph with a [[Link]] and a [http://example.org link].\n" +
+					"{|\n| cell || cell\n|-\n! header\n|}\n";
+	
+	// =========================================================================
+	
+	@Test
+	public void testStatisticsAreGatheredPerParse() throws Exception
+	{
+		WikitextParser parser = new WikitextParser(new SimpleParserConfig());
+		
+		ParserStats stats = new ParserStats();
+		parser.parseArticle(SOURCE, new WtEntityMapImpl(), "dummy", stats);
+		
+		assertFalse(stats.getMemoizedProductions().isEmpty());
+		assertTrue(stats.getMaxDepth() > 0);
+		
+		for (MemoizedProduction p : stats.getMemoizedProductions().values())
+		{
+			assertEquals(p.called, p.parsed + p.reused);
+			assertTrue(p.failed <= p.parsed);
+		}
+		
+		// Parsing without a listener must not touch the previous statistics
+		ParserStats before = new ParserStats();
+		before.add(stats);
+		parser.parseArticle(SOURCE, new WtEntityMapImpl(), "dummy");
+		assertEquals(
+				count(before),
+				count(stats));
+	}
+	
+	@Test
+	public void testStatisticsCanBeAggregated() throws Exception
+	{
+		WikitextParser parser = new WikitextParser(new SimpleParserConfig());
+		
+		ParserStats a = new ParserStats();
+		parser.parseArticle(SOURCE, new WtEntityMapImpl(), "dummy", a);
+		
+		ParserStats b = new ParserStats();
+		parser.parseArticle(SOURCE, new WtEntityMapImpl(), "dummy", b);
+		
+		ParserStats total = new ParserStats();
+		total.add(a);
+		total.add(b);
+		
+		assertEquals(count(a) + count(b), count(total));
+		assertEquals(Math.max(a.getMaxDepth(), b.getMaxDepth()), total.getMaxDepth());
+	}
+	
+	// =========================================================================
+	
+	private static int count(ParserStats stats)
+	{
+		int called = 0;
+		for (MemoizedProduction p : stats.getMemoizedProductions().values())
+			called += p.called;
+		return called;
+	}
+}